@@ -0,0 +1,432 @@
+package com.example.multi.datasource.demo.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 自适应连接池容量控制
+ *
+ * 节点上所有受管连接池的maxActive之和不超过全局连接预算：连接池创建时从预算中申请配额，预算不足时先从空闲连接池回收，
+ * 仍不足则拒绝创建；连接池关闭或休眠时归还配额。开启自适应调整后，定期根据每个连接池的等待次数、等待时长、
+ * 活跃连接数与借用速率在线调整maxActive/minIdle：有等待的连接池按平均等待时长优先扩容，持续空闲的连接池逐步缩容，
+ * 把配额让给繁忙的连接池。每次调整都会产生一个 {@link PoolResizeEvent}。
+ */
+public class AdaptivePoolSizer {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+    private static final int MAX_RECENT_EVENTS = 50;
+
+    // 全局连接预算（所有受管连接池maxActive之和），小于等于0表示不限制
+    private volatile int budget;
+
+    // 是否定期自适应调整
+    private volatile boolean adaptive;
+
+    // 调整周期(ms)，也作为预算耗尽时的建议重试间隔
+    private volatile long intervalMillis = 10000;
+
+    // 自适应调整时单个连接池maxActive的下限与上限
+    private volatile int minActive = 2;
+    private volatile int maxActive = 100;
+
+    // 连续空闲多少个周期后缩容
+    private volatile int shrinkAfterIdleRounds = 3;
+
+    private final Map<ManagedDataSource, Allocation> allocations = new IdentityHashMap<>();
+
+    private int allocated;
+
+    private long lastResizeNanos;
+
+    private final Deque<PoolResizeEvent> recentEvents = new ArrayDeque<>();
+
+    private final LongAdder grows = new LongAdder();
+
+    private final LongAdder shrinks = new LongAdder();
+
+    private final LongAdder denied = new LongAdder();
+
+    private volatile Consumer<PoolResizeEvent> listener;
+
+    /**
+     * 为即将创建的连接池申请配额
+     * @param pool 受管数据源
+     * @param requested 描述中配置的maxActive
+     * @return 实际授予的maxActive
+     * @throws SQLException 预算已用尽且无法从空闲连接池回收
+     */
+    public int reserve(ManagedDataSource pool, int requested) throws SQLException {
+        List<PoolResizeEvent> events = new ArrayList<>();
+        int granted;
+        synchronized (this) {
+            releaseAllocation(pool);
+            granted = requested;
+            if (budget > 0) {
+                int available = budget - allocated;
+                if (available < requested) {
+                    available += reclaim(requested - available, pool, events);
+                }
+                granted = Math.min(requested, available);
+            }
+            if (granted > 0) {
+                allocations.put(pool, new Allocation(granted));
+                allocated += granted;
+            } else {
+                denied.increment();
+            }
+        }
+        publish(events);
+        if (granted <= 0) {
+            log.warn("节点连接预算 {} 已用尽，拒绝创建连接池 {}", budget, pool.getName());
+            throw new DataSourceUnavailableException(pool.getName(), "节点连接预算已用尽", intervalMillis);
+        }
+        if (granted < requested) {
+            log.info("连接预算不足，连接池 {} 的maxActive由 {} 调整为 {}", pool.getName(), requested, granted);
+        }
+        return granted;
+    }
+
+    /**
+     * 连接池关闭或休眠后归还配额
+     * @param pool 受管数据源
+     */
+    public synchronized void release(ManagedDataSource pool) {
+        releaseAllocation(pool);
+    }
+
+    /**
+     * 在线修改运行中连接池的容量，扩容在预算内进行，预算不足时从空闲连接池回收
+     * @param pool 受管数据源
+     * @param requested 新的maxActive
+     * @param minIdle 新的minIdle
+     * @return 实际生效的maxActive
+     */
+    public int resizeTo(ManagedDataSource pool, int requested, int minIdle) {
+        List<PoolResizeEvent> events = new ArrayList<>();
+        int granted = requested;
+        synchronized (this) {
+            DruidDataSource druid = pool.currentPool();
+            Allocation allocation = allocations.get(pool);
+            if (druid == null) {
+                return requested;
+            }
+            if (allocation == null) {
+                // 未纳入预算管理的连接池直接修改
+                setLimits(druid, requested, Math.min(minIdle, requested));
+                return requested;
+            }
+            if (budget > 0 && requested > allocation.maxActive) {
+                int available = budget - allocated;
+                if (available < requested - allocation.maxActive) {
+                    available += reclaim(requested - allocation.maxActive - available, pool, events);
+                }
+                granted = Math.min(requested, allocation.maxActive + Math.max(0, available));
+            }
+            apply(pool, druid, allocation, granted, Math.min(minIdle, granted), "在线修改连接池参数", events);
+        }
+        publish(events);
+        if (granted < requested) {
+            log.info("连接预算不足，连接池 {} 的maxActive只能调整为 {}（请求 {}）", pool.getName(), granted, requested);
+        }
+        return granted;
+    }
+
+    /**
+     * 采样所有连接池并调整容量，由后台维护线程定期调用
+     */
+    public void resize() {
+        List<PoolResizeEvent> events = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            double elapsedSeconds = lastResizeNanos == 0 ? 0 : (now - lastResizeNanos) / 1e9;
+            lastResizeNanos = now;
+
+            List<Map.Entry<ManagedDataSource, Allocation>> growers = new ArrayList<>();
+            for (Map.Entry<ManagedDataSource, Allocation> entry : allocations.entrySet()) {
+                DruidDataSource druid = entry.getKey().currentPool();
+                if (druid == null) {
+                    continue;
+                }
+                Allocation allocation = entry.getValue();
+                allocation.sample(druid, elapsedSeconds);
+                int active = druid.getActiveCount();
+                if (allocation.busy) {
+                    allocation.idleRounds = 0;
+                    if (allocation.maxActive < maxActive) {
+                        growers.add(entry);
+                    }
+                } else if (active * 2 <= allocation.maxActive && allocation.maxActive > minActive) {
+                    if (++allocation.idleRounds >= shrinkAfterIdleRounds) {
+                        int target = Math.max(minActive, Math.max(active * 2,
+                                allocation.maxActive - Math.max(1, allocation.maxActive / 4)));
+                        if (target < allocation.maxActive) {
+                            apply(entry.getKey(), druid, allocation, target, Math.min(druid.getMinIdle(), target / 2),
+                                    "连续 " + allocation.idleRounds + " 个周期活跃连接不足一半", events);
+                        }
+                        allocation.idleRounds = 0;
+                    }
+                } else {
+                    allocation.idleRounds = 0;
+                }
+            }
+
+            // 平均等待时长越长越优先扩容
+            growers.sort((a, b) -> Double.compare(b.getValue().avgWaitMillis, a.getValue().avgWaitMillis));
+            for (Map.Entry<ManagedDataSource, Allocation> entry : growers) {
+                grow(entry.getKey(), entry.getValue(), events);
+            }
+        }
+        publish(events);
+    }
+
+    private void grow(ManagedDataSource pool, Allocation allocation, List<PoolResizeEvent> events) {
+        DruidDataSource druid = pool.currentPool();
+        if (druid == null) {
+            return;
+        }
+        int step = Math.max(1, allocation.maxActive / 4);
+        int target = Math.min(maxActive, allocation.maxActive + step);
+        if (budget > 0) {
+            int available = budget - allocated;
+            if (available < target - allocation.maxActive) {
+                available += reclaim(target - allocation.maxActive - available, pool, events);
+            }
+            target = Math.min(target, allocation.maxActive + available);
+        }
+        if (target <= allocation.maxActive) {
+            log.debug("连接池 {} 需要扩容但连接预算已用尽", pool.getName());
+            return;
+        }
+        int minIdle = Math.min(target, Math.max(druid.getMinIdle(), druid.getActiveCount()));
+        apply(pool, druid, allocation, target, minIdle, String.format("%d 次等待，平均等待 %.1f ms，借用 %.1f 次/秒",
+                allocation.waits, allocation.avgWaitMillis, allocation.borrowsPerSecond), events);
+    }
+
+    /**
+     * 从没有等待的连接池中回收空闲配额
+     * @param needed 需要的配额
+     * @param exclude 申请配额的连接池，不参与回收
+     * @return 实际回收的配额
+     */
+    private int reclaim(int needed, ManagedDataSource exclude, List<PoolResizeEvent> events) {
+        List<Map.Entry<ManagedDataSource, Allocation>> donors = new ArrayList<>();
+        for (Map.Entry<ManagedDataSource, Allocation> entry : allocations.entrySet()) {
+            if (entry.getKey() != exclude && !entry.getValue().busy && entry.getKey().currentPool() != null) {
+                donors.add(entry);
+            }
+        }
+        // 空闲配额最多的连接池优先让出
+        donors.sort((a, b) -> Integer.compare(spare(b), spare(a)));
+        int reclaimed = 0;
+        for (Map.Entry<ManagedDataSource, Allocation> entry : donors) {
+            if (reclaimed >= needed) {
+                break;
+            }
+            int take = Math.min(needed - reclaimed, spare(entry));
+            if (take <= 0) {
+                break;
+            }
+            DruidDataSource druid = entry.getKey().currentPool();
+            if (druid == null) {
+                continue;
+            }
+            Allocation allocation = entry.getValue();
+            int target = allocation.maxActive - take;
+            apply(entry.getKey(), druid, allocation, target, Math.min(druid.getMinIdle(), target),
+                    "让出配额给其他连接池", events);
+            reclaimed += take;
+        }
+        return reclaimed;
+    }
+
+    private int spare(Map.Entry<ManagedDataSource, Allocation> entry) {
+        return entry.getValue().maxActive - Math.max(minActive, entry.getKey().getActiveCount());
+    }
+
+    private void apply(ManagedDataSource pool, DruidDataSource druid, Allocation allocation,
+                       int newMaxActive, int newMinIdle, String reason, List<PoolResizeEvent> events) {
+        int oldMaxActive = allocation.maxActive;
+        int oldMinIdle = druid.getMinIdle();
+        setLimits(druid, newMaxActive, newMinIdle);
+        if (newMaxActive < oldMaxActive) {
+            shrinks.increment();
+        } else {
+            grows.increment();
+        }
+        allocated += newMaxActive - oldMaxActive;
+        allocation.maxActive = newMaxActive;
+
+        PoolResizeEvent event = new PoolResizeEvent(this, pool.getName(), oldMaxActive, newMaxActive,
+                oldMinIdle, newMinIdle, reason);
+        events.add(event);
+        recentEvents.addFirst(event);
+        if (recentEvents.size() > MAX_RECENT_EVENTS) {
+            recentEvents.removeLast();
+        }
+    }
+
+    /**
+     * 修改运行中连接池的maxActive与minIdle
+     */
+    static void setLimits(DruidDataSource druid, int maxActive, int minIdle) {
+        // Druid要求minIdle不大于maxActive：缩容先降minIdle，扩容先升maxActive
+        if (maxActive < druid.getMaxActive()) {
+            druid.setMinIdle(minIdle);
+            druid.setMaxActive(maxActive);
+        } else {
+            druid.setMaxActive(maxActive);
+            druid.setMinIdle(minIdle);
+        }
+        if (druid.getInitialSize() > maxActive) {
+            druid.setInitialSize(maxActive);
+        }
+    }
+
+    private void releaseAllocation(ManagedDataSource pool) {
+        Allocation allocation = allocations.remove(pool);
+        if (allocation != null) {
+            allocated -= allocation.maxActive;
+        }
+    }
+
+    private void publish(List<PoolResizeEvent> events) {
+        Consumer<PoolResizeEvent> current = listener;
+        for (PoolResizeEvent event : events) {
+            log.info("{}", event);
+            if (current != null) {
+                try {
+                    current.accept(event);
+                } catch (Exception e) {
+                    log.warn("发布连接池容量调整事件失败", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 容量控制状态：预算、各连接池的采样指标与最近的调整事件
+     */
+    public synchronized Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("budget", budget);
+        info.put("allocated", allocated);
+        info.put("adaptive", adaptive);
+        info.put("grows", grows.sum());
+        info.put("shrinks", shrinks.sum());
+        info.put("denied", denied.sum());
+        List<Map<String, Object>> pools = new ArrayList<>();
+        for (Map.Entry<ManagedDataSource, Allocation> entry : allocations.entrySet()) {
+            Allocation allocation = entry.getValue();
+            DruidDataSource druid = entry.getKey().currentPool();
+            Map<String, Object> pool = new LinkedHashMap<>();
+            pool.put("pool", entry.getKey().getName());
+            pool.put("maxActive", allocation.maxActive);
+            pool.put("minIdle", druid != null ? druid.getMinIdle() : 0);
+            pool.put("activeCount", druid != null ? druid.getActiveCount() : 0);
+            pool.put("waitThreadCount", druid != null ? druid.getWaitThreadCount() : 0);
+            pool.put("borrowsPerSecond", allocation.borrowsPerSecond);
+            pool.put("avgWaitMillis", allocation.avgWaitMillis);
+            pools.add(pool);
+        }
+        info.put("pools", pools);
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (PoolResizeEvent event : recentEvents) {
+            events.add(event.describe());
+        }
+        info.put("recentEvents", events);
+        return info;
+    }
+
+    public void setBudget(int budget) {
+        this.budget = budget;
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    public synchronized int getAllocated() {
+        return allocated;
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public void setMinActive(int minActive) {
+        this.minActive = Math.max(1, minActive);
+    }
+
+    public void setMaxActive(int maxActive) {
+        this.maxActive = maxActive;
+    }
+
+    public void setShrinkAfterIdleRounds(int shrinkAfterIdleRounds) {
+        this.shrinkAfterIdleRounds = Math.max(1, shrinkAfterIdleRounds);
+    }
+
+    public void setListener(Consumer<PoolResizeEvent> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 单个连接池的配额与上一周期的采样
+     */
+    private static class Allocation {
+
+        private int maxActive;
+        private long lastConnectCount;
+        private long lastWaitCount;
+        private long lastWaitNanos;
+        private long waits;
+        private double avgWaitMillis;
+        private double borrowsPerSecond;
+        private boolean busy;
+        private int idleRounds;
+
+        Allocation(int maxActive) {
+            this.maxActive = maxActive;
+        }
+
+        void sample(DruidDataSource druid, double elapsedSeconds) {
+            long connectCount = druid.getConnectCount();
+            long waitCount = druid.getNotEmptyWaitCount();
+            long waitNanos = druid.getNotEmptyWaitNanos();
+            long borrows = Math.max(0, connectCount - lastConnectCount);
+            waits = Math.max(0, waitCount - lastWaitCount);
+            long waitedNanos = Math.max(0, waitNanos - lastWaitNanos);
+            lastConnectCount = connectCount;
+            lastWaitCount = waitCount;
+            lastWaitNanos = waitNanos;
+
+            avgWaitMillis = waits > 0 ? waitedNanos / (double) waits / 1e6 : 0;
+            borrowsPerSecond = elapsedSeconds > 0 ? borrows / elapsedSeconds : 0;
+            busy = waits > 0 || druid.getWaitThreadCount() > 0;
+        }
+    }
+}
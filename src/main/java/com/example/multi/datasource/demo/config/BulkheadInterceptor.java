@@ -0,0 +1,74 @@
+package com.example.multi.datasource.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 在控制器执行前按路径中的数据源名称（dsName或dataSourceName）申请请求舱壁名额，满额时直接返回503
+ */
+@Component
+public class BulkheadInterceptor implements HandlerInterceptor {
+
+    private static final String ACQUIRED_ATTRIBUTE = BulkheadInterceptor.class.getName() + ".dsName";
+
+    @Autowired
+    private TenantBulkheads bulkheads;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        String dsName = dsNameOf(request);
+        // 异步请求再次分派时名额已在首次分派中申请
+        if (dsName == null || request.getAttribute(ACQUIRED_ATTRIBUTE) != null) {
+            return true;
+        }
+        if (bulkheads.tryAcquire(dsName)) {
+            request.setAttribute(ACQUIRED_ATTRIBUTE, dsName);
+            return true;
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", false);
+        result.put("message", "数据源 " + dsName + " 的并发请求数已达上限 " + bulkheads.limitOf(dsName) + "，请稍后重试");
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getWriter(), result);
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object dsName = request.getAttribute(ACQUIRED_ATTRIBUTE);
+        if (dsName != null) {
+            request.removeAttribute(ACQUIRED_ATTRIBUTE);
+            bulkheads.release((String) dsName);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String dsNameOf(HttpServletRequest request) {
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables == null) {
+            return null;
+        }
+        // 表管理接口的路径变量名为dataSourceName
+        String dsName = variables.get("dsName");
+        return dsName != null ? dsName : variables.get("dataSourceName");
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.multi.datasource.demo.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接池熔断器
+ *
+ * 连续获取连接失败（或健康探测失败）达到阈值后打开，打开期间直接拒绝借用连接，不再等待maxWait；
+ * 打开时间结束或健康探测恢复后进入半开状态，放行少量试探请求，试探成功则关闭，失败则重新打开。
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private volatile State state = State.CLOSED;
+
+    private volatile int consecutiveFailures;
+
+    private long openedAt;
+
+    private int trialsInFlight;
+
+    private volatile int failureThreshold = 5;
+
+    private volatile long openDurationMillis = 30000;
+
+    private volatile int halfOpenTrials = 1;
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 设置熔断参数
+     * @param failureThreshold 打开熔断的连续失败次数
+     * @param openDurationMillis 打开后多久进入半开(ms)
+     * @param halfOpenTrials 半开时同时放行的试探请求数
+     */
+    public void configure(int failureThreshold, long openDurationMillis, int halfOpenTrials) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenTrials = Math.max(1, halfOpenTrials);
+    }
+
+    /**
+     * 申请借用连接
+     * @return 是否放行
+     */
+    public boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMillis) {
+                halfOpen();
+            }
+            if (state == State.HALF_OPEN && trialsInFlight < halfOpenTrials) {
+                trialsInFlight++;
+                return true;
+            }
+            if (state == State.CLOSED) {
+                return true;
+            }
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * 借用连接成功
+     */
+    public void onSuccess() {
+        if (state == State.CLOSED && consecutiveFailures == 0) {
+            return;
+        }
+        synchronized (this) {
+            consecutiveFailures = 0;
+            if (state == State.HALF_OPEN) {
+                state = State.CLOSED;
+                trialsInFlight = 0;
+            }
+        }
+    }
+
+    /**
+     * 借用连接失败
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * 借用因请求截止时间到达而放弃，不能说明数据库不可用：不计入失败，半开时归还试探名额
+     */
+    public synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN && trialsInFlight > 0) {
+            trialsInFlight--;
+        }
+    }
+
+    /**
+     * 健康探测成功：打开状态下提前进入半开，放行试探请求
+     */
+    public synchronized void onProbeSuccess() {
+        if (state == State.OPEN) {
+            halfOpen();
+        }
+    }
+
+    /**
+     * 健康探测失败：与借用失败同样计数，半开时重新打开
+     */
+    public void onProbeFailure() {
+        onFailure();
+    }
+
+    /**
+     * 距离进入半开还需等待的时间(ms)，未打开时为0
+     */
+    public synchronized long getRetryAfterMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openedAt + openDurationMillis - System.currentTimeMillis());
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 熔断器状态信息
+     */
+    public synchronized Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("state", state.name());
+        info.put("consecutiveFailures", consecutiveFailures);
+        info.put("rejected", rejected.sum());
+        if (state == State.OPEN) {
+            info.put("retryAfterMillis", Math.max(0, openedAt + openDurationMillis - System.currentTimeMillis()));
+        }
+        return info;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        trialsInFlight = 0;
+    }
+
+    private void halfOpen() {
+        state = State.HALF_OPEN;
+        trialsInFlight = 0;
+    }
+}
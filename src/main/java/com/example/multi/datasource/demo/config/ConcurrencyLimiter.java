@@ -0,0 +1,157 @@
+package com.example.multi.datasource.demo.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 梯度式自适应并发限制
+ *
+ * 以连接占用时间作为一次查询的耗时，维护长期耗时基线与近期耗时两个指数移动平均。近期耗时相对基线上升说明数据库开始排队，
+ * 按两者比值（梯度）收缩并发上限；耗时平稳时上限按 sqrt(limit) 缓慢增长，探测数据库可承受的并发数。
+ * 并发数远低于上限时的样本不代表容量，不用于增长上限。超出上限的请求立即拒绝，不在连接池中排队等待。
+ */
+public class ConcurrencyLimiter {
+
+    // 长期基线约覆盖最近600个样本，近期耗时约覆盖最近10个样本
+    private static final double LONG_ALPHA = 2.0 / (600 + 1);
+    private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+
+    // 近期耗时在基线的1.5倍以内视为正常波动
+    private static final double TOLERANCE = 1.5;
+
+    // 新上限与旧上限的平滑系数
+    private static final double SMOOTHING = 0.2;
+
+    // 借用超时等失败时的退避系数
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private volatile double limit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private double longRttNanos;
+
+    private volatile double shortRttNanos;
+
+    private final LongAdder accepted = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+    }
+
+    /**
+     * 申请一个并发名额
+     * @return 是否放行，未放行时调用方应立即拒绝请求
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求正常结束，归还名额并以耗时更新上限
+     * @param rttNanos 连接占用时间(ns)
+     */
+    public void release(long rttNanos) {
+        int inFlightAtRelease = inFlight.getAndDecrement();
+        update(rttNanos, inFlightAtRelease);
+    }
+
+    /**
+     * 请求因超时等过载迹象失败，归还名额并收缩上限
+     */
+    public void releaseDropped() {
+        inFlight.decrementAndGet();
+        dropped.increment();
+        synchronized (this) {
+            limit = Math.max(minLimit, limit * BACKOFF);
+        }
+    }
+
+    /**
+     * 请求在到达数据库之前失败（如熔断拒绝），只归还名额，不影响上限
+     */
+    public void releaseIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    private synchronized void update(long rttNanos, int inFlightAtRelease) {
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+        } else {
+            shortRttNanos += (rttNanos - shortRttNanos) * SHORT_ALPHA;
+            longRttNanos += (rttNanos - longRttNanos) * LONG_ALPHA;
+        }
+        if (shortRttNanos <= 0) {
+            return;
+        }
+        // 负载回落后基线快速跟随，避免长期高估正常耗时
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+        double current = limit;
+        if (inFlightAtRelease < current / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+        double next = current * gradient + Math.sqrt(current);
+        next = current * (1 - SMOOTHING) + next * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    /**
+     * 建议的重试间隔(ms)，取近期耗时，至少1ms
+     */
+    public long getRetryAfterMillis() {
+        return Math.max(1, (long) (shortRttNanos / 1_000_000));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 并发限制状态信息
+     */
+    public synchronized Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("limit", (int) limit);
+        info.put("inFlight", inFlight.get());
+        info.put("accepted", accepted.sum());
+        info.put("rejected", rejected.sum());
+        info.put("dropped", dropped.sum());
+        info.put("shortRttMillis", shortRttNanos / 1e6);
+        info.put("longRttMillis", longRttNanos / 1e6);
+        return info;
+    }
+}
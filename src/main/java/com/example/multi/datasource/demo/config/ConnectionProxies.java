@@ -0,0 +1,137 @@
+package com.example.multi.datasource.demo.config;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 连接代理工具，用于在连接归还连接池前执行回调，或跟踪连接上创建的语句
+ */
+final class ConnectionProxies {
+
+    /**
+     * 连接关闭回调，在目标连接关闭（归还连接池）之前执行
+     */
+    @FunctionalInterface
+    interface CloseCallback {
+        void beforeClose(Connection target) throws SQLException;
+    }
+
+    /**
+     * 语句创建回调
+     */
+    @FunctionalInterface
+    interface StatementCallback {
+        void created(Statement statement) throws SQLException;
+    }
+
+    private ConnectionProxies() {
+    }
+
+    /**
+     * 包装连接，关闭时先执行回调再关闭目标连接
+     * @param target 目标连接
+     * @param callback 关闭回调
+     * @return 代理连接
+     */
+    static Connection onClose(Connection target, CloseCallback callback) {
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, new CloseHandler(target, callback));
+    }
+
+    /**
+     * 包装连接，每创建一个语句（Statement、PreparedStatement、CallableStatement）执行一次回调
+     * @param target 目标连接
+     * @param callback 语句创建回调
+     * @return 代理连接
+     */
+    static Connection onStatement(Connection target, StatementCallback callback) {
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, new StatementHandler(target, callback));
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final StatementCallback callback;
+
+        StatementHandler(Connection target, StatementCallback callback) {
+            this.target = target;
+            this.callback = callback;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getTargetConnection":
+                    return target;
+                default:
+                    break;
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            if (result instanceof Statement) {
+                callback.created((Statement) result);
+            }
+            return result;
+        }
+    }
+
+    private static class CloseHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final CloseCallback callback;
+        private boolean closed;
+
+        CloseHandler(Connection target, CloseCallback callback) {
+            this.target = target;
+            this.callback = callback;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getTargetConnection":
+                    return target;
+                case "isClosed":
+                    return closed || target.isClosed();
+                case "close":
+                    if (closed) {
+                        return null;
+                    }
+                    closed = true;
+                    try {
+                        callback.beforeClose(target);
+                    } finally {
+                        target.close();
+                    }
+                    return null;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.multi.datasource.demo.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 带虚拟节点的一致性哈希环，不可变
+ *
+ * 每个分片在环上放置若干虚拟节点，键路由到顺时针方向的第一个虚拟节点所属的分片。
+ * 增加一个分片只会把约1/N的键迁移到新分片，其余键的归属不变。修改通过复制生成新的环，读取无锁；
+ * 查找只在原始数组上二分，对字符串逐字符计算哈希，不分配对象。
+ */
+public final class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    // 虚拟节点的哈希值，有序
+    private final long[] points;
+
+    // 与points对应的分片名称
+    private final String[] owners;
+
+    private final List<String> shards;
+
+    private final int virtualNodes;
+
+    private ConsistentHashRing(List<String> shards, int virtualNodes) {
+        this.shards = Collections.unmodifiableList(shards);
+        this.virtualNodes = virtualNodes;
+
+        int size = shards.size() * virtualNodes;
+        long[] hashes = new long[size];
+        String[] names = new String[size];
+        Integer[] order = new Integer[size];
+        int index = 0;
+        for (String shard : shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                hashes[index] = hash(shard + "#" + i);
+                names[index] = shard;
+                order[index] = index;
+                index++;
+            }
+        }
+        // 哈希冲突时按分片名称排序，保证同一组分片生成的环完全相同
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> hashes[i]).thenComparing(i -> names[i]));
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = names[order[i]];
+        }
+    }
+
+    /**
+     * 创建哈希环
+     * @param shards 分片名称
+     * @param virtualNodes 每个分片的虚拟节点数
+     */
+    public static ConsistentHashRing of(Collection<String> shards, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("虚拟节点数必须大于0");
+        }
+        // 分片按名称排序，结果与传入顺序无关
+        return new ConsistentHashRing(new ArrayList<>(new TreeSet<>(shards)), virtualNodes);
+    }
+
+    /**
+     * 增加分片后的新环
+     */
+    public ConsistentHashRing withShard(String shard) {
+        if (shards.contains(shard)) {
+            throw new IllegalArgumentException("分片 " + shard + " 已在哈希环中");
+        }
+        List<String> updated = new ArrayList<>(shards);
+        updated.add(shard);
+        return of(updated, virtualNodes);
+    }
+
+    /**
+     * 移除分片后的新环
+     */
+    public ConsistentHashRing withoutShard(String shard) {
+        if (!shards.contains(shard)) {
+            throw new IllegalArgumentException("分片 " + shard + " 不在哈希环中");
+        }
+        List<String> updated = new ArrayList<>(shards);
+        updated.remove(shard);
+        return of(updated, virtualNodes);
+    }
+
+    /**
+     * 字符串键（如邮箱）所属的分片
+     * @return 分片名称，环为空时返回null
+     */
+    public String route(CharSequence key) {
+        return locate(hash(key));
+    }
+
+    /**
+     * 数值键（如全局唯一的用户ID）所属的分片
+     * @return 分片名称，环为空时返回null
+     */
+    public String route(long key) {
+        return locate(mix(key));
+    }
+
+    /**
+     * 顺时针方向第一个不小于hash的虚拟节点，越过末尾时回到第一个
+     */
+    private String locate(long hash) {
+        if (points.length == 0) {
+            return null;
+        }
+        int low = 0;
+        int high = points.length - 1;
+        if (hash > points[high]) {
+            return owners[0];
+        }
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (points[mid] < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low];
+    }
+
+    /**
+     * 每个分片占有的环空间比例，即期望承载的键比例
+     */
+    public Map<String, Double> ownership() {
+        Map<String, Double> ownership = new LinkedHashMap<>();
+        for (String shard : shards) {
+            ownership.put(shard, 0.0);
+        }
+        if (points.length == 0) {
+            return ownership;
+        }
+        // 每个虚拟节点负责从前一个节点（不含）到自身的区间，第一个节点负责越过末尾的区间
+        double ringSize = Math.pow(2, 64);
+        for (int i = 0; i < points.length; i++) {
+            long previous = i == 0 ? points[points.length - 1] : points[i - 1];
+            double span = unsigned(points[i] - previous);
+            if (points.length == 1) {
+                span = ringSize;
+            }
+            ownership.put(owners[i], ownership.get(owners[i]) + span / ringSize);
+        }
+        return ownership;
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public boolean isEmpty() {
+        return shards.isEmpty();
+    }
+
+    /**
+     * 64位FNV-1a逐字符计算后再做一次混合，改善相近键（如连续编号）的分布
+     */
+    static long hash(CharSequence key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3的64位最终混合函数
+     */
+    static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static double unsigned(long value) {
+        return value >= 0 ? value : value + Math.pow(2, 64);
+    }
+}
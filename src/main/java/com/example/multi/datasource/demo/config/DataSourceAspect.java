@@ -5,11 +5,18 @@ import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.lang.reflect.Method;
 
+/**
+ * 数据源切换切面
+ *
+ * 优先级高于事务拦截器，保证在开启事务、借用连接之前设置好数据源上下文与读写标记。
+ */
 @Aspect
 @Order(1)
 @Component
@@ -19,6 +26,12 @@ public class DataSourceAspect {
     public void dataSourcePointCut() {
     }
 
+    @Pointcut("within(com.example.multi.datasource.demo..*) && "
+            + "(@annotation(org.springframework.transaction.annotation.Transactional) "
+            + "|| @within(org.springframework.transaction.annotation.Transactional))")
+    public void transactionalPointCut() {
+    }
+
     @Around("dataSourcePointCut()")
     public Object around(ProceedingJoinPoint point) throws Throwable {
         MethodSignature signature = (MethodSignature) point.getSignature();
@@ -35,4 +48,26 @@ public class DataSourceAspect {
             DynamicDataSource.clearContext();
         }
     }
+
+    /**
+     * 只读事务路由到只读副本
+     */
+    @Around("transactionalPointCut()")
+    public Object aroundTransactional(ProceedingJoinPoint point) throws Throwable {
+        Method method = ((MethodSignature) point.getSignature()).getMethod();
+        Transactional transactional = AnnotatedElementUtils.findMergedAnnotation(method, Transactional.class);
+        if (transactional == null) {
+            transactional = AnnotatedElementUtils.findMergedAnnotation(point.getTarget().getClass(), Transactional.class);
+        }
+        if (transactional == null || !transactional.readOnly() || DynamicDataSource.isReadOnly()) {
+            return point.proceed();
+        }
+
+        DynamicDataSource.setReadOnly(true);
+        try {
+            return point.proceed();
+        } finally {
+            DynamicDataSource.setReadOnly(false);
+        }
+    }
 }
\ No newline at end of file
@@ -31,6 +31,12 @@ public class DataSourceConfig {
     @Primary
     public DataSource dynamicDataSource() {
         DynamicDataSource dynamicDataSource = new DynamicDataSource();
+        
+        // 熔断参数需在预定义数据源纳入管理之前设置
+        if (dataSourceProperties != null) {
+            dynamicDataSource.setCircuitBreaker(dataSourceProperties.getBreakerFailureThreshold(),
+                    dataSourceProperties.getBreakerOpenDuration(), dataSourceProperties.getBreakerHalfOpenTrials());
+        }
 
         // 设置默认数据源
         dynamicDataSource.setDefaultTargetDataSource(dataSource());
@@ -44,23 +50,39 @@ public class DataSourceConfig {
             for (Map.Entry<String, DataSourceProperties.DruidDataSourceProperties> entry : 
                  dataSourceProperties.getDataSources().entrySet()) {
                 String dsName = entry.getKey();
-                DataSourceProperties.DruidDataSourceProperties props = entry.getValue();
-                
-                DruidDataSource druidDataSource = new DruidDataSource();
-                druidDataSource.setUrl(props.getUrl());
-                druidDataSource.setUsername(props.getUsername());
-                druidDataSource.setPassword(props.getPassword());
-                druidDataSource.setDriverClassName(props.getDriverClassName());
-                druidDataSource.setInitialSize(props.getInitialSize());
-                druidDataSource.setMinIdle(props.getMinIdle());
-                druidDataSource.setMaxActive(props.getMaxActive());
-                druidDataSource.setMaxWait(props.getMaxWait());
-                
-                dataSourceMap.put(dsName, druidDataSource);
+                // 只注册连接池描述，第一次借用连接时才创建连接池；相同库与账号的数据源共享连接池
+                dataSourceMap.put(dsName, dynamicDataSource.acquireDataSource(dsName, entry.getValue()));
             }
         }
         
         dynamicDataSource.setTargetDataSources(dataSourceMap);
+        
+        if (dataSourceProperties != null) {
+            dynamicDataSource.setDrainTimeoutMillis(dataSourceProperties.getDrainTimeout());
+            dynamicDataSource.setIdleTimeoutMillis(dataSourceProperties.getIdleTimeout());
+            dynamicDataSource.setIdleCheckIntervalMillis(dataSourceProperties.getIdleCheckInterval());
+            dynamicDataSource.setSchemaResetOnReturn(dataSourceProperties.isSchemaResetOnReturn());
+            dynamicDataSource.setReplicaHeartbeatIntervalMillis(dataSourceProperties.getReplicaHeartbeatInterval());
+            dynamicDataSource.setHealthCheck(dataSourceProperties.getHealthCheckInterval(),
+                    dataSourceProperties.getHealthCheckTimeout());
+            dynamicDataSource.setFailbackProbes(dataSourceProperties.getFailbackProbes());
+            dynamicDataSource.setRedisCommandTimeoutMillis(dataSourceProperties.getRedisCommandTimeout());
+            dynamicDataSource.setConcurrencyLimit(dataSourceProperties.isConcurrencyLimitEnabled(),
+                    dataSourceProperties.getConcurrencyInitialLimit(), dataSourceProperties.getConcurrencyMinLimit(),
+                    dataSourceProperties.getConcurrencyMaxLimit());
+            
+            SharedPoolSchedulers poolSchedulers = dynamicDataSource.getPoolSchedulers();
+            poolSchedulers.setCreateThreads(dataSourceProperties.getCreateSchedulerThreads());
+            poolSchedulers.setDestroyThreads(dataSourceProperties.getDestroySchedulerThreads());
+            poolSchedulers.setEvictionIntervalMillis(dataSourceProperties.getEvictionInterval());
+            
+            AdaptivePoolSizer poolSizer = dynamicDataSource.getPoolSizer();
+            poolSizer.setBudget(dataSourceProperties.getConnectionBudget());
+            poolSizer.setAdaptive(dataSourceProperties.isAdaptiveSizing());
+            poolSizer.setIntervalMillis(dataSourceProperties.getAdaptiveSizingInterval());
+            poolSizer.setMinActive(dataSourceProperties.getAdaptiveMinActive());
+            poolSizer.setMaxActive(dataSourceProperties.getAdaptiveMaxActive());
+        }
 
         return dynamicDataSource;
     }
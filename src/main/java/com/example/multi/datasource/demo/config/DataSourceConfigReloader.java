@@ -0,0 +1,132 @@
+package com.example.multi.datasource.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预定义数据源连接池参数的热加载
+ *
+ * 定期检查外部YAML文件（与application.yml相同的spring.datasource.druid结构），文件变化时与当前参数比较，
+ * 通过 {@link DynamicDataSource#reconfigureDataSource} 在线应用变化。文件中需包含数据源的完整定义，
+ * 缺省的字段按默认值处理；新增或删除数据源不通过热加载完成。
+ */
+@Component
+public class DataSourceConfigReloader {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourceConfigReloader.class);
+
+    private static final String PREFIX = "spring.datasource.druid";
+
+    @Autowired(required = false)
+    private DataSourceProperties dataSourceProperties;
+
+    private ScheduledExecutorService scheduler;
+
+    // 已处理的文件修改时间，启动后的第一次检查即应用文件中的参数
+    private long lastModified;
+
+    @PostConstruct
+    public void start() {
+        if (dataSourceProperties == null || isEmpty(dataSourceProperties.getConfigReloadFile())) {
+            return;
+        }
+        String file = dataSourceProperties.getConfigReloadFile();
+        long interval = dataSourceProperties.getConfigReloadInterval();
+        log.info("启用数据源参数热加载，文件: {}，检查间隔: {} ms", file, interval);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "datasource-config-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> checkForChanges(new File(file)), interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void checkForChanges(File file) {
+        try {
+            long modified = file.lastModified();
+            if (modified == 0 || modified == lastModified) {
+                return;
+            }
+            lastModified = modified;
+            reload(file);
+        } catch (Exception e) {
+            log.warn("热加载数据源参数失败: {}", file, e);
+        }
+    }
+
+    /**
+     * 读取YAML文件并应用其中预定义数据源的参数变化
+     * @param file YAML文件
+     * @return 每个发生变化的数据源的修改结果
+     */
+    public List<Map<String, Object>> reload(File file) throws IOException {
+        List<PropertySource<?>> sources = new YamlPropertySourceLoader().load("datasource-reload", new FileSystemResource(file));
+        DataSourceProperties updated = new Binder(ConfigurationPropertySources.from(sources))
+                .bind(PREFIX, DataSourceProperties.class)
+                .orElse(null);
+        if (updated == null || updated.getDataSources() == null) {
+            log.debug("文件 {} 中没有数据源定义", file);
+            return Collections.emptyList();
+        }
+        return apply(updated.getDataSources());
+    }
+
+    /**
+     * 比较并应用数据源参数变化
+     * @param updated 数据源名称到新参数的映射
+     * @return 每个发生变化的数据源的修改结果
+     */
+    public List<Map<String, Object>> apply(Map<String, DataSourceProperties.DruidDataSourceProperties> updated) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Map.Entry<String, DataSourceProperties.DruidDataSourceProperties> entry : updated.entrySet()) {
+            String dsName = entry.getKey();
+            DataSourceProperties.DruidDataSourceProperties current = dataSourceProperties.getDataSources().get(dsName);
+            if (current == null) {
+                log.info("热加载不支持新增数据源，忽略 {}", dsName);
+                continue;
+            }
+            PoolReconfiguration change = PoolReconfiguration.diff(current, entry.getValue());
+            if (change.isEmpty()) {
+                continue;
+            }
+            try {
+                results.add(DynamicDataSource.getInstance().reconfigureDataSource(dsName, change));
+                change.applyTo(current);
+                log.info("热加载应用数据源 {} 的参数变化: {}", dsName, change.describe());
+            } catch (Exception e) {
+                log.warn("热加载应用数据源 {} 的参数变化失败", dsName, e);
+            }
+        }
+        return results;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.multi.datasource.demo.config;
+
+/**
+ * 带数据源名称的连接池描述，用于批量注册等需要在请求体中携带名称的场景
+ */
+public class DataSourceDescriptor extends DataSourceProperties.DruidDataSourceProperties {
+
+    private String dsName;
+
+    public String getDsName() {
+        return dsName;
+    }
+
+    public void setDsName(String dsName) {
+        this.dsName = dsName;
+    }
+}
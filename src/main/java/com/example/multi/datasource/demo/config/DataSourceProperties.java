@@ -3,7 +3,9 @@ package com.example.multi.datasource.demo.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -12,6 +14,127 @@ public class DataSourceProperties {
     
     private Map<String, DruidDataSourceProperties> dataSources = new HashMap<>();
 
+    // 移除数据源时等待活跃连接归还的最长时间(ms)
+    private long drainTimeout = 30000;
+
+    // 连接池空闲多久后休眠(ms)，小于等于0表示不休眠
+    private long idleTimeout = 600000;
+
+    // 空闲连接池检查间隔(ms)
+    private long idleCheckInterval = 30000;
+
+    // 所有连接池共享的建连线程数
+    private int createSchedulerThreads = 4;
+
+    // 所有连接池共享的回收线程数
+    private int destroySchedulerThreads = 2;
+
+    // 空闲连接回收与保活检测周期(ms)，所有连接池统一批量执行
+    private long evictionInterval = 60000;
+
+    // 批量注册数据源时并行初始化连接池的最大并发数
+    private int bulkInitConcurrency = 8;
+
+    // Schema租户归还连接时是否恢复默认Schema
+    private boolean schemaResetOnReturn = true;
+
+    // 副本心跳间隔(ms)，用于跟踪复制位点，小于等于0表示不跟踪
+    private long replicaHeartbeatInterval = 1000;
+
+    // 连接池健康探测间隔(ms)，小于等于0表示不探测
+    private long healthCheckInterval = 5000;
+
+    // 单次健康探测超时(ms)
+    private long healthCheckTimeout = 1000;
+
+    // 连续失败多少次后打开熔断
+    private int breakerFailureThreshold = 5;
+
+    // 熔断打开后多久进入半开(ms)
+    private long breakerOpenDuration = 30000;
+
+    // 半开时同时放行的试探请求数
+    private int breakerHalfOpenTrials = 1;
+
+    // 每个数据源同时处理中的请求数上限（请求舱壁），小于等于0表示不限制
+    private int bulkheadDefaultLimit = 0;
+
+    // 按数据源覆盖的请求舱壁上限
+    private Map<String, Integer> bulkheadLimits = new HashMap<>();
+
+    // 接口的默认请求超时(ms)，小于等于0表示不限制；请求头或接口注解指定的更短超时优先
+    private long requestTimeoutDefault = 0;
+
+    // 没有请求截止时间时的Redis命令超时(ms)
+    private long redisCommandTimeout = 60000;
+
+    // 热加载的外部YAML文件路径，文件中预定义数据源的连接池参数变化时在线应用；为空表示不热加载
+    private String configReloadFile;
+
+    // 检查外部YAML文件是否变化的间隔(ms)
+    private long configReloadInterval = 10000;
+
+    // 跨数据源并行操作的线程数与排队上限
+    private int fanOutThreads = 16;
+    private int fanOutQueueCapacity = 1000;
+
+    // 跨数据源并行操作中单个数据源的超时(ms)，同时受请求截止时间约束
+    private long fanOutTimeout = 10000;
+
+    // 流式输出时游标每次从数据库获取的行数
+    private int streamFetchSize = 500;
+
+    // 流式输出时每写出多少行刷新一次输出流
+    private int streamFlushRows = 100;
+
+    // 跨数据源聚合时单个数据源返回的分组数上限，超过时该数据源的聚合失败
+    private int aggregateMaxGroups = 10000;
+
+    // 分片组：逻辑名称到分片数据源列表，用户按邮箱一致性哈希分布到分片
+    private Map<String, List<String>> shardGroups = new HashMap<>();
+
+    // 一致性哈希环上每个分片的虚拟节点数
+    private int shardVirtualNodes = 160;
+
+    // 是否启用每个数据源的自适应并发限制，超出上限的请求立即以503拒绝
+    private boolean concurrencyLimitEnabled = false;
+
+    // 并发上限的初始值、下限与上限
+    private int concurrencyInitialLimit = 20;
+    private int concurrencyMinLimit = 2;
+    private int concurrencyMaxLimit = 200;
+
+    // 节点连接预算：所有受管连接池maxActive之和的上限，小于等于0表示不限制
+    private int connectionBudget = 0;
+
+    // 是否根据等待与借用情况自适应调整各连接池的maxActive/minIdle
+    private boolean adaptiveSizing = false;
+
+    // 自适应调整周期(ms)
+    private long adaptiveSizingInterval = 10000;
+
+    // 自适应调整时单个连接池maxActive的下限与上限
+    private int adaptiveMinActive = 2;
+    private int adaptiveMaxActive = 100;
+
+    // 自动回切前主库需要连续成功的健康探测次数
+    private int failbackProbes = 3;
+
+    // 是否对副本读启用对冲
+    private boolean hedgeEnabled = false;
+
+    // 第一次尝试超过近期耗时的该百分位后发起对冲
+    private double hedgePercentile = 95;
+
+    // 对冲等待时间下限(ms)
+    private long hedgeMinDelay = 5;
+
+    // 对冲请求占读请求的最大比例
+    private double hedgeBudgetRatio = 0.05;
+
+    // 执行对冲读的线程数
+    private int hedgeThreads = 16;
+
     public Map<String, DruidDataSourceProperties> getDataSources() {
         return dataSources;
     }
@@ -20,6 +143,350 @@ public class DataSourceProperties {
         this.dataSources = dataSources;
     }
 
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public void setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public long getIdleCheckInterval() {
+        return idleCheckInterval;
+    }
+
+    public void setIdleCheckInterval(long idleCheckInterval) {
+        this.idleCheckInterval = idleCheckInterval;
+    }
+
+    public int getCreateSchedulerThreads() {
+        return createSchedulerThreads;
+    }
+
+    public void setCreateSchedulerThreads(int createSchedulerThreads) {
+        this.createSchedulerThreads = createSchedulerThreads;
+    }
+
+    public int getDestroySchedulerThreads() {
+        return destroySchedulerThreads;
+    }
+
+    public void setDestroySchedulerThreads(int destroySchedulerThreads) {
+        this.destroySchedulerThreads = destroySchedulerThreads;
+    }
+
+    public long getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    public void setEvictionInterval(long evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    public int getBulkInitConcurrency() {
+        return bulkInitConcurrency;
+    }
+
+    public void setBulkInitConcurrency(int bulkInitConcurrency) {
+        this.bulkInitConcurrency = bulkInitConcurrency;
+    }
+
+    public boolean isSchemaResetOnReturn() {
+        return schemaResetOnReturn;
+    }
+
+    public void setSchemaResetOnReturn(boolean schemaResetOnReturn) {
+        this.schemaResetOnReturn = schemaResetOnReturn;
+    }
+
+    public long getReplicaHeartbeatInterval() {
+        return replicaHeartbeatInterval;
+    }
+
+    public void setReplicaHeartbeatInterval(long replicaHeartbeatInterval) {
+        this.replicaHeartbeatInterval = replicaHeartbeatInterval;
+    }
+
+    public long getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    public void setHealthCheckInterval(long healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    public long getHealthCheckTimeout() {
+        return healthCheckTimeout;
+    }
+
+    public void setHealthCheckTimeout(long healthCheckTimeout) {
+        this.healthCheckTimeout = healthCheckTimeout;
+    }
+
+    public int getBreakerFailureThreshold() {
+        return breakerFailureThreshold;
+    }
+
+    public void setBreakerFailureThreshold(int breakerFailureThreshold) {
+        this.breakerFailureThreshold = breakerFailureThreshold;
+    }
+
+    public long getBreakerOpenDuration() {
+        return breakerOpenDuration;
+    }
+
+    public void setBreakerOpenDuration(long breakerOpenDuration) {
+        this.breakerOpenDuration = breakerOpenDuration;
+    }
+
+    public int getBreakerHalfOpenTrials() {
+        return breakerHalfOpenTrials;
+    }
+
+    public void setBreakerHalfOpenTrials(int breakerHalfOpenTrials) {
+        this.breakerHalfOpenTrials = breakerHalfOpenTrials;
+    }
+
+    public int getBulkheadDefaultLimit() {
+        return bulkheadDefaultLimit;
+    }
+
+    public void setBulkheadDefaultLimit(int bulkheadDefaultLimit) {
+        this.bulkheadDefaultLimit = bulkheadDefaultLimit;
+    }
+
+    public Map<String, Integer> getBulkheadLimits() {
+        return bulkheadLimits;
+    }
+
+    public void setBulkheadLimits(Map<String, Integer> bulkheadLimits) {
+        this.bulkheadLimits = bulkheadLimits;
+    }
+
+    public long getRequestTimeoutDefault() {
+        return requestTimeoutDefault;
+    }
+
+    public void setRequestTimeoutDefault(long requestTimeoutDefault) {
+        this.requestTimeoutDefault = requestTimeoutDefault;
+    }
+
+    public long getRedisCommandTimeout() {
+        return redisCommandTimeout;
+    }
+
+    public void setRedisCommandTimeout(long redisCommandTimeout) {
+        this.redisCommandTimeout = redisCommandTimeout;
+    }
+
+    public String getConfigReloadFile() {
+        return configReloadFile;
+    }
+
+    public void setConfigReloadFile(String configReloadFile) {
+        this.configReloadFile = configReloadFile;
+    }
+
+    public long getConfigReloadInterval() {
+        return configReloadInterval;
+    }
+
+    public void setConfigReloadInterval(long configReloadInterval) {
+        this.configReloadInterval = configReloadInterval;
+    }
+
+    public int getFanOutThreads() {
+        return fanOutThreads;
+    }
+
+    public void setFanOutThreads(int fanOutThreads) {
+        this.fanOutThreads = fanOutThreads;
+    }
+
+    public int getFanOutQueueCapacity() {
+        return fanOutQueueCapacity;
+    }
+
+    public void setFanOutQueueCapacity(int fanOutQueueCapacity) {
+        this.fanOutQueueCapacity = fanOutQueueCapacity;
+    }
+
+    public long getFanOutTimeout() {
+        return fanOutTimeout;
+    }
+
+    public void setFanOutTimeout(long fanOutTimeout) {
+        this.fanOutTimeout = fanOutTimeout;
+    }
+
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    public void setStreamFetchSize(int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    public int getStreamFlushRows() {
+        return streamFlushRows;
+    }
+
+    public void setStreamFlushRows(int streamFlushRows) {
+        this.streamFlushRows = streamFlushRows;
+    }
+
+    public int getAggregateMaxGroups() {
+        return aggregateMaxGroups;
+    }
+
+    public void setAggregateMaxGroups(int aggregateMaxGroups) {
+        this.aggregateMaxGroups = aggregateMaxGroups;
+    }
+
+    public Map<String, List<String>> getShardGroups() {
+        return shardGroups;
+    }
+
+    public void setShardGroups(Map<String, List<String>> shardGroups) {
+        this.shardGroups = shardGroups;
+    }
+
+    public int getShardVirtualNodes() {
+        return shardVirtualNodes;
+    }
+
+    public void setShardVirtualNodes(int shardVirtualNodes) {
+        this.shardVirtualNodes = shardVirtualNodes;
+    }
+
+    public boolean isConcurrencyLimitEnabled() {
+        return concurrencyLimitEnabled;
+    }
+
+    public void setConcurrencyLimitEnabled(boolean concurrencyLimitEnabled) {
+        this.concurrencyLimitEnabled = concurrencyLimitEnabled;
+    }
+
+    public int getConcurrencyInitialLimit() {
+        return concurrencyInitialLimit;
+    }
+
+    public void setConcurrencyInitialLimit(int concurrencyInitialLimit) {
+        this.concurrencyInitialLimit = concurrencyInitialLimit;
+    }
+
+    public int getConcurrencyMinLimit() {
+        return concurrencyMinLimit;
+    }
+
+    public void setConcurrencyMinLimit(int concurrencyMinLimit) {
+        this.concurrencyMinLimit = concurrencyMinLimit;
+    }
+
+    public int getConcurrencyMaxLimit() {
+        return concurrencyMaxLimit;
+    }
+
+    public void setConcurrencyMaxLimit(int concurrencyMaxLimit) {
+        this.concurrencyMaxLimit = concurrencyMaxLimit;
+    }
+
+    public int getConnectionBudget() {
+        return connectionBudget;
+    }
+
+    public void setConnectionBudget(int connectionBudget) {
+        this.connectionBudget = connectionBudget;
+    }
+
+    public boolean isAdaptiveSizing() {
+        return adaptiveSizing;
+    }
+
+    public void setAdaptiveSizing(boolean adaptiveSizing) {
+        this.adaptiveSizing = adaptiveSizing;
+    }
+
+    public long getAdaptiveSizingInterval() {
+        return adaptiveSizingInterval;
+    }
+
+    public void setAdaptiveSizingInterval(long adaptiveSizingInterval) {
+        this.adaptiveSizingInterval = adaptiveSizingInterval;
+    }
+
+    public int getAdaptiveMinActive() {
+        return adaptiveMinActive;
+    }
+
+    public void setAdaptiveMinActive(int adaptiveMinActive) {
+        this.adaptiveMinActive = adaptiveMinActive;
+    }
+
+    public int getAdaptiveMaxActive() {
+        return adaptiveMaxActive;
+    }
+
+    public void setAdaptiveMaxActive(int adaptiveMaxActive) {
+        this.adaptiveMaxActive = adaptiveMaxActive;
+    }
+
+    public int getFailbackProbes() {
+        return failbackProbes;
+    }
+
+    public void setFailbackProbes(int failbackProbes) {
+        this.failbackProbes = failbackProbes;
+    }
+
+    public boolean isHedgeEnabled() {
+        return hedgeEnabled;
+    }
+
+    public void setHedgeEnabled(boolean hedgeEnabled) {
+        this.hedgeEnabled = hedgeEnabled;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public long getHedgeMinDelay() {
+        return hedgeMinDelay;
+    }
+
+    public void setHedgeMinDelay(long hedgeMinDelay) {
+        this.hedgeMinDelay = hedgeMinDelay;
+    }
+
+    public double getHedgeBudgetRatio() {
+        return hedgeBudgetRatio;
+    }
+
+    public void setHedgeBudgetRatio(double hedgeBudgetRatio) {
+        this.hedgeBudgetRatio = hedgeBudgetRatio;
+    }
+
+    public int getHedgeThreads() {
+        return hedgeThreads;
+    }
+
+    public void setHedgeThreads(int hedgeThreads) {
+        this.hedgeThreads = hedgeThreads;
+    }
+
     public static class DruidDataSourceProperties {
         private String url;
         private String username;
@@ -29,6 +496,41 @@ public class DataSourceProperties {
         private int minIdle = 5;
         private int maxActive = 20;
         private long maxWait = 60000;
+        // 连接校验SQL，为空时使用驱动的校验方式
+        private String validationQuery;
+        // 借出连接时是否校验
+        private boolean testOnBorrow = false;
+        // 空闲连接是否定期校验
+        private boolean testWhileIdle = true;
+        // 只读副本地址，账号与连接池参数与主库相同
+        private List<String> replicaUrls = new ArrayList<>();
+        // 副本负载均衡策略：round-robin、least-active、latency-aware
+        private String replicaBalancer = ReplicaBalancers.ROUND_ROBIN;
+        // 备用库地址，账号与连接池参数与主库相同；主库熔断后自动切换
+        private String standbyUrl;
+        // 回切策略：auto、manual
+        private String failbackPolicy = FailoverDataSource.FAILBACK_AUTO;
+
+        /**
+         * 生成副本或备用库的连接池描述，除地址外与主库相同
+         * @param url 副本或备用库地址
+         * @return 连接池描述
+         */
+        public DruidDataSourceProperties withUrl(String url) {
+            DruidDataSourceProperties copy = new DruidDataSourceProperties();
+            copy.setUrl(url);
+            copy.setUsername(username);
+            copy.setPassword(password);
+            copy.setDriverClassName(driverClassName);
+            copy.setInitialSize(initialSize);
+            copy.setMinIdle(minIdle);
+            copy.setMaxActive(maxActive);
+            copy.setMaxWait(maxWait);
+            copy.setValidationQuery(validationQuery);
+            copy.setTestOnBorrow(testOnBorrow);
+            copy.setTestWhileIdle(testWhileIdle);
+            return copy;
+        }
 
         // Getters and setters
         public String getUrl() {
@@ -94,5 +596,61 @@ public class DataSourceProperties {
         public void setMaxWait(long maxWait) {
             this.maxWait = maxWait;
         }
+
+        public String getValidationQuery() {
+            return validationQuery;
+        }
+
+        public void setValidationQuery(String validationQuery) {
+            this.validationQuery = validationQuery;
+        }
+
+        public boolean isTestOnBorrow() {
+            return testOnBorrow;
+        }
+
+        public void setTestOnBorrow(boolean testOnBorrow) {
+            this.testOnBorrow = testOnBorrow;
+        }
+
+        public boolean isTestWhileIdle() {
+            return testWhileIdle;
+        }
+
+        public void setTestWhileIdle(boolean testWhileIdle) {
+            this.testWhileIdle = testWhileIdle;
+        }
+
+        public List<String> getReplicaUrls() {
+            return replicaUrls;
+        }
+
+        public void setReplicaUrls(List<String> replicaUrls) {
+            this.replicaUrls = replicaUrls;
+        }
+
+        public String getReplicaBalancer() {
+            return replicaBalancer;
+        }
+
+        public void setReplicaBalancer(String replicaBalancer) {
+            this.replicaBalancer = replicaBalancer;
+        }
+
+        public String getStandbyUrl() {
+            return standbyUrl;
+        }
+
+        public void setStandbyUrl(String standbyUrl) {
+            this.standbyUrl = standbyUrl;
+        }
+
+        public String getFailbackPolicy() {
+            return failbackPolicy;
+        }
+
+        public void setFailbackPolicy(String failbackPolicy) {
+            this.failbackPolicy = failbackPolicy;
+        }
     }
 }
\ No newline at end of file
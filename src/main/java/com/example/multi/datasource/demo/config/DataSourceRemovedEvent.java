@@ -0,0 +1,21 @@
+package com.example.multi.datasource.demo.config;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 数据源移除事件，由 {@link DynamicDataSource} 在数据源离开路由快照后发布，
+ * 按数据源名称保存状态的组件（请求舱壁、分片组）据此清理
+ */
+public class DataSourceRemovedEvent extends ApplicationEvent {
+
+    private final String dsName;
+
+    public DataSourceRemovedEvent(Object source, String dsName) {
+        super(source);
+        this.dsName = dsName;
+    }
+
+    public String getDsName() {
+        return dsName;
+    }
+}
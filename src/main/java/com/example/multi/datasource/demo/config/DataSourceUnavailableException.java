@@ -0,0 +1,31 @@
+package com.example.multi.datasource.demo.config;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * 数据源暂时不可用（熔断中或节点连接预算已用尽），借用连接被直接拒绝
+ */
+public class DataSourceUnavailableException extends SQLTransientConnectionException {
+
+    private final String dataSourceName;
+
+    private final long retryAfterMillis;
+
+    public DataSourceUnavailableException(String dataSourceName, long retryAfterMillis) {
+        this(dataSourceName, "熔断中", retryAfterMillis);
+    }
+
+    public DataSourceUnavailableException(String dataSourceName, String reason, long retryAfterMillis) {
+        super("数据源 " + dataSourceName + " 不可用（" + reason + "），约 " + retryAfterMillis + " ms 后重试");
+        this.dataSourceName = dataSourceName;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.multi.datasource.demo.config;
+
+/**
+ * 请求截止时间已过，工作在开始之前被放弃
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
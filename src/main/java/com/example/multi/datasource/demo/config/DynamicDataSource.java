@@ -1,34 +1,130 @@
 package com.example.multi.datasource.demo.config;
 
+import com.alibaba.druid.pool.DruidDataSource;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.TimeoutOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericToStringSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class DynamicDataSource extends AbstractRoutingDataSource implements ApplicationContextAware {
+public class DynamicDataSource extends AbstractRoutingDataSource implements ApplicationContextAware, DisposableBean {
     
     private static final Logger log = LoggerFactory.getLogger(DynamicDataSource.class);
     private static final ThreadLocal<String> CONTEXT_HOLDER = new ThreadLocal<>();
     
+    // 当前线程的读请求标记，读写分离数据源据此把请求路由到只读副本
+    private static final ThreadLocal<Boolean> READ_ONLY_HOLDER = new ThreadLocal<>();
+    
+    // 当前线程的长期占用标记，流式输出、游标等借用的占用时间不作为并发限制的耗时样本
+    private static final ThreadLocal<Boolean> LONG_LIVED_HOLDER = new ThreadLocal<>();
+    
     // 保存DynamicDataSource实例，用于动态添加数据源
     private static volatile DynamicDataSource instance;
     
     private ApplicationContext applicationContext;
     
-    // 存储动态创建的数据源
-    private final Map<Object, DataSource> dynamicDataSources = new ConcurrentHashMap<>();
+    // 数据源路由快照，写时复制后整体替换，读路径无锁
+    private volatile RoutingTable routingTable = RoutingTable.EMPTY;
+    
+    // JDBC数据源变更锁，仅串行化写操作
+    private final Object jdbcLock = new Object();
+    
+    // Redis配置变更锁，与JDBC数据源变更互不阻塞
+    private final Object redisLock = new Object();
+    
+    // 在线修改连接池参数的锁，同一时间只进行一次修改
+    private final Object reconfigureLock = new Object();
+    
+    // 已移除连接池的排空与关闭
+    private final PoolDrainer poolDrainer = new PoolDrainer();
+    
+    // 新增数据源的预热与就绪门控
+    private final PoolWarmer poolWarmer = new PoolWarmer();
+    
+    // 物理连接池注册表，按(url, username, driver)共享连接池
+    private final PhysicalPoolRegistry physicalPools = new PhysicalPoolRegistry();
+    
+    // 所有连接池共享的创建/销毁调度器
+    private final SharedPoolSchedulers poolSchedulers = new SharedPoolSchedulers();
+    
+    // 节点连接预算与自适应容量调整
+    private final AdaptivePoolSizer poolSizer = new AdaptivePoolSizer();
+    
+    // Schema租户归还连接时是否恢复默认Schema；关闭后基础数据源不应再被直接使用
+    private boolean schemaResetOnReturn = true;
+    
+    // 后台维护任务（空闲连接池休眠等）
+    private ScheduledExecutorService maintenanceScheduler;
+    
+    // 连接池空闲多久后休眠(ms)，小于等于0表示不休眠
+    private long idleTimeoutMillis = 600000;
+    
+    // 空闲检查间隔(ms)
+    private long idleCheckIntervalMillis = 30000;
+    
+    // 读写分离数据源的副本复制位点跟踪
+    private final ReplicaLagTracker lagTracker = new ReplicaLagTracker();
+    
+    // 副本心跳间隔(ms)，小于等于0表示不跟踪复制位点
+    private long replicaHeartbeatIntervalMillis = 1000;
+    
+    // 连接池健康探测间隔(ms)，小于等于0表示不探测
+    private long healthCheckIntervalMillis = 5000;
+    
+    // 单次健康探测超时(ms)
+    private long healthCheckTimeoutMillis = 1000;
+    
+    // 没有请求截止时间时的Redis命令超时(ms)
+    private long redisCommandTimeoutMillis = 60000;
+    
+    // 熔断参数：连续失败次数、打开时长(ms)、半开试探数
+    private int breakerFailureThreshold = 5;
+    private long breakerOpenDurationMillis = 30000;
+    private int breakerHalfOpenTrials = 1;
+    
+    // 健康探测线程，探测之间互不阻塞
+    private ExecutorService healthCheckExecutor;
+    
+    // 每个逻辑数据源的自适应并发限制，超出上限的借用立即拒绝
+    private final Map<String, ConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+    private volatile boolean concurrencyLimitEnabled;
+    private int concurrencyInitialLimit = 20;
+    private int concurrencyMinLimit = 2;
+    private int concurrencyMaxLimit = 200;
+    
+    // 自动回切前主库需要连续成功的健康探测次数
+    private int failbackProbes = 3;
     
     // 存储动态创建的Redis连接工厂
     private final Map<String, LettuceConnectionFactory> dynamicRedisConnectionFactories = new ConcurrentHashMap<>();
@@ -55,11 +151,222 @@ public class DynamicDataSource extends AbstractRoutingDataSource implements Appl
         this.dynamicRedisTemplates.putAll(redisTemplateMap);
     }
     
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        
+        // 将通过setTargetDataSources配置的数据源纳入路由快照
+        Map<String, DataSource> staticDataSources = new HashMap<>();
+        for (Map.Entry<Object, DataSource> entry : getResolvedDataSources().entrySet()) {
+            adopt(entry.getValue());
+            staticDataSources.put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        synchronized (jdbcLock) {
+            routingTable = routingTable.withStaticDataSources(staticDataSources);
+        }
+        
+        startMaintenance();
+    }
+    
+    /**
+     * 让受管数据源使用共享的创建/销毁调度器
+     */
+    private void adopt(DataSource dataSource) {
+        for (ManagedDataSource pool : poolsOf(dataSource)) {
+            pool.setSchedulers(poolSchedulers);
+            pool.setSizer(poolSizer);
+            pool.getCircuitBreaker().configure(breakerFailureThreshold, breakerOpenDurationMillis, breakerHalfOpenTrials);
+        }
+    }
+    
+    private synchronized void startMaintenance() {
+        if (maintenanceScheduler != null) {
+            return;
+        }
+        maintenanceScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "datasource-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (idleTimeoutMillis > 0) {
+            maintenanceScheduler.scheduleWithFixedDelay(this::hibernateIdlePools,
+                    idleCheckIntervalMillis, idleCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (replicaHeartbeatIntervalMillis > 0) {
+            maintenanceScheduler.scheduleWithFixedDelay(this::trackReplicaLag,
+                    replicaHeartbeatIntervalMillis, replicaHeartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (poolSizer.isAdaptive()) {
+            poolSizer.setListener(this::publishResizeEvent);
+            maintenanceScheduler.scheduleWithFixedDelay(this::resizePools,
+                    poolSizer.getIntervalMillis(), poolSizer.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (healthCheckIntervalMillis > 0) {
+            AtomicInteger counter = new AtomicInteger();
+            healthCheckExecutor = Executors.newFixedThreadPool(4, r -> {
+                Thread thread = new Thread(r, "datasource-health-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            maintenanceScheduler.scheduleWithFixedDelay(this::probeHealth,
+                    healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * 按各连接池的等待与借用情况在连接预算内调整容量
+     */
+    private void resizePools() {
+        try {
+            poolSizer.resize();
+        } catch (Exception e) {
+            log.warn("调整连接池容量时发生异常", e);
+        }
+    }
+    
+    private void publishResizeEvent(PoolResizeEvent event) {
+        if (applicationContext != null) {
+            applicationContext.publishEvent(event);
+        }
+    }
+    
+    /**
+     * 对所有已创建的连接池发起健康探测，结果反馈给各自的熔断器
+     */
+    private void probeHealth() {
+        try {
+            Set<ManagedDataSource> pools = Collections.newSetFromMap(new IdentityHashMap<>());
+            routingTable.forEachDataSource((key, dataSource) -> pools.addAll(poolsOf(dataSource)));
+            for (ManagedDataSource pool : pools) {
+                if (pool.isMaterialized()) {
+                    healthCheckExecutor.execute(() -> pool.probe(healthCheckTimeoutMillis));
+                }
+            }
+            routingTable.forEachDataSource((key, dataSource) -> {
+                if (dataSource instanceof FailoverDataSource) {
+                    healthCheckExecutor.execute(() -> evaluateFailover(key, (FailoverDataSource) dataSource));
+                }
+            });
+        } catch (Exception e) {
+            log.warn("健康探测时发生异常", e);
+        }
+    }
+    
+    /**
+     * 预热主备数据源中未生效的一方，并按熔断与探测结果决定是否切换
+     */
+    private void evaluateFailover(String key, FailoverDataSource failover) {
+        try {
+            failover.warmUp();
+        } catch (Exception e) {
+            log.warn("数据源 {} 预热{}失败: {}", key, failover.isOnStandby() ? "主库" : "备用库", e.getMessage());
+        }
+        failover.evaluate();
+    }
+    
+    /**
+     * 写入主库心跳并刷新各副本的复制位点
+     */
+    private void trackReplicaLag() {
+        try {
+            routingTable.forEachDataSource((key, dataSource) -> {
+                if (dataSource instanceof ReplicaGroupDataSource) {
+                    lagTracker.track((ReplicaGroupDataSource) dataSource);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("跟踪副本复制位点时发生异常", e);
+        }
+    }
+    
+    /**
+     * 休眠空闲超时的连接池，下一次借用时重新创建
+     */
+    private void hibernateIdlePools() {
+        try {
+            routingTable.forEachDataSource((key, dataSource) -> {
+                // 主备数据源的两个连接池都需保持就绪，不休眠
+                if (dataSource instanceof FailoverDataSource) {
+                    return;
+                }
+                for (ManagedDataSource pool : poolsOf(dataSource)) {
+                    pool.hibernateIfIdle(idleTimeoutMillis);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("休眠空闲连接池时发生异常", e);
+        }
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!RequestDeadline.isSet()) {
+            return borrowConnection();
+        }
+        // 截止时间已过的请求不再占用连接，未过期时以剩余时间作为每条语句的查询超时
+        if (RequestDeadline.isExpired()) {
+            throw new SQLTimeoutException("请求已超过截止时间，放弃借用数据源 " + getContext() + " 的连接");
+        }
+        return ConnectionProxies.onStatement(borrowConnection(), RequestDeadline::applyQueryTimeout);
+    }
+    
+    private Connection borrowConnection() throws SQLException {
+        String key = getContext();
+        ConcurrencyLimiter limiter = concurrencyLimitEnabled && key != null && routingTable.lookup(key) != null
+                ? concurrencyLimiters.computeIfAbsent(key, k -> new ConcurrencyLimiter(
+                        concurrencyInitialLimit, concurrencyMinLimit, concurrencyMaxLimit))
+                : null;
+        try {
+            if (limiter == null) {
+                return super.getConnection();
+            }
+            if (!limiter.tryAcquire()) {
+                throw new DataSourceUnavailableException(key, "并发已达上限 " + limiter.getLimit(), limiter.getRetryAfterMillis());
+            }
+            boolean sampled = !isLongLived();
+            long start = System.nanoTime();
+            Connection connection;
+            try {
+                connection = super.getConnection();
+            } catch (DataSourceUnavailableException e) {
+                limiter.releaseIgnored();
+                throw e;
+            } catch (SQLException | RuntimeException e) {
+                limiter.releaseDropped();
+                throw e;
+            }
+            // 以连接占用时间作为查询耗时，长期占用的连接只归还名额，避免拉高近期耗时而收缩上限
+            return ConnectionProxies.onClose(connection, target -> {
+                if (sampled) {
+                    limiter.release(System.nanoTime() - start);
+                } else {
+                    limiter.releaseIgnored();
+                }
+            });
+        } catch (DataSourceUnavailableException e) {
+            LoadShedding.record(e);
+            throw e;
+        }
+    }
+    
     @Override
     protected Object determineCurrentLookupKey() {
         return getContext();
     }
     
+    @Override
+    protected DataSource determineTargetDataSource() {
+        String lookupKey = getContext();
+        DataSource dataSource = lookupKey != null ? routingTable.lookup(lookupKey) : null;
+        if (dataSource == null) {
+            dataSource = getResolvedDefaultDataSource();
+        }
+        if (dataSource == null) {
+            throw new IllegalStateException("Cannot determine target DataSource for lookup key [" + lookupKey + "]");
+        }
+        return dataSource;
+    }
+    
     public static String getContext() {
         return CONTEXT_HOLDER.get();
     }
@@ -74,6 +381,44 @@ public class DynamicDataSource extends AbstractRoutingDataSource implements Appl
         CONTEXT_HOLDER.remove();
     }
     
+    /**
+     * 当前线程是否只发起读请求
+     */
+    public static boolean isReadOnly() {
+        return Boolean.TRUE.equals(READ_ONLY_HOLDER.get());
+    }
+    
+    /**
+     * 标记当前线程是否只发起读请求，必须在借用连接（开启事务）之前设置
+     * @param readOnly 是否只读
+     */
+    public static void setReadOnly(boolean readOnly) {
+        if (readOnly) {
+            READ_ONLY_HOLDER.set(Boolean.TRUE);
+        } else {
+            READ_ONLY_HOLDER.remove();
+        }
+    }
+    
+    /**
+     * 当前线程借用的连接是否长期占用
+     */
+    public static boolean isLongLived() {
+        return Boolean.TRUE.equals(LONG_LIVED_HOLDER.get());
+    }
+    
+    /**
+     * 标记当前线程借用的连接是否长期占用（流式输出、游标读取），必须在借用连接之前设置
+     * @param longLived 是否长期占用
+     */
+    public static void setLongLived(boolean longLived) {
+        if (longLived) {
+            LONG_LIVED_HOLDER.set(Boolean.TRUE);
+        } else {
+            LONG_LIVED_HOLDER.remove();
+        }
+    }
+    
     /**
      * 获取DynamicDataSource实例
      * @return DynamicDataSource实例
@@ -84,32 +429,328 @@ public class DynamicDataSource extends AbstractRoutingDataSource implements Appl
     
     /**
      * 动态添加目标数据源
+     *
+     * 调用方检查之后、加入之前可能已有同名数据源通过其他方式加入，该数据源不会被覆盖：
+     * 锁内重新检查后拒绝添加，并释放本次数据源的物理连接池引用。
      * @param key 数据源键
      * @param dataSource 数据源
+     * @throws IllegalArgumentException 同名数据源已存在
      */
-    public synchronized void addTargetDataSource(String key, DataSource dataSource) {
+    public void addTargetDataSource(String key, DataSource dataSource) {
         log.info("添加目标数据源: {}", key);
         
-        dynamicDataSources.put(key, dataSource);
+        adopt(dataSource);
+        DataSource existing;
+        synchronized (jdbcLock) {
+            existing = routingTable.dynamicDataSources().get(key);
+            if (existing == null) {
+                routingTable = routingTable.withDataSource(key, dataSource);
+            }
+        }
+        if (existing != null) {
+            releaseRejected(key, dataSource, existing);
+            throw new IllegalArgumentException("数据源 " + key + " 已存在");
+        }
+        
+        log.info("目标数据源 {} 添加成功", key);
+    }
+    
+    /**
+     * 按连接池描述动态添加目标数据源，连接池在第一次借用时才会创建
+     * @param key 数据源键
+     * @param descriptor 连接池描述
+     */
+    public void addTargetDataSource(String key, DataSourceProperties.DruidDataSourceProperties descriptor) {
+        addTargetDataSource(key, acquireDataSource(key, descriptor));
+    }
+    
+    /**
+     * 按连接池描述添加目标数据源，先在后台预热连接池，就绪后才加入路由
+     *
+     * 每个连接池（含副本和备用库）都借出目标数量的连接并逐个校验，再执行预热查询；
+     * 预热期间数据源处于WARMING状态，不接受请求，失败时释放连接池，不加入路由。
+     * @param key 数据源键
+     * @param descriptor 连接池描述
+     * @param targetSize 每个连接池的目标连接数，不超过maxActive
+     * @param warmUpQueries 预热查询，可为空
+     * @return 预热状态
+     */
+    public PoolWarmer.WarmupStatus addTargetDataSourceWhenReady(String key, DataSourceProperties.DruidDataSourceProperties descriptor,
+                                                               int targetSize, List<String> warmUpQueries) {
+        log.info("预热目标数据源: {}，目标连接数: {}", key, targetSize);
+        
+        if (containsDataSource(key)) {
+            throw new IllegalArgumentException("数据源 " + key + " 已存在");
+        }
+        PoolWarmer.WarmupStatus status = poolWarmer.begin(key, targetSize);
+        DataSource dataSource;
+        try {
+            dataSource = acquireDataSource(key, descriptor);
+        } catch (RuntimeException e) {
+            poolWarmer.fail(status, e.getMessage());
+            throw e;
+        }
+        poolWarmer.warm(status, poolsOf(dataSource), warmUpQueries,
+                () -> publishWarmed(key, dataSource),
+                () -> releaseRejected(key, dataSource, routingTable.lookup(key)));
+        return status;
+    }
+    
+    private void publishWarmed(String key, DataSource dataSource) {
+        adopt(dataSource);
+        synchronized (jdbcLock) {
+            // 预热期间同名数据源可能已通过其他方式加入
+            if (routingTable.lookup(key) != null) {
+                throw new IllegalStateException("数据源 " + key + " 在预热期间已被添加");
+            }
+            routingTable = routingTable.withDataSource(key, dataSource);
+        }
+        log.info("目标数据源 {} 预热完成并加入路由", key);
+    }
+    
+    /**
+     * 数据源是否正在预热（尚未加入路由）
+     * @param key 数据源键
+     */
+    public boolean isWarming(String key) {
+        return poolWarmer.isWarming(key);
+    }
+    
+    /**
+     * 获取数据源的预热状态
+     * @param key 数据源键
+     * @return 预热状态，不存在时返回null
+     */
+    public PoolWarmer.WarmupStatus getWarmupStatus(String key) {
+        return poolWarmer.getStatus(key);
+    }
+    
+    /**
+     * 获取所有预热状态
+     * @return 数据源键到预热状态的映射
+     */
+    public Map<String, Map<String, Object>> getWarmups() {
+        return poolWarmer.getStatuses();
+    }
+    
+    /**
+     * 批量添加目标数据源，所有数据源通过一次路由快照替换同时生效
+     *
+     * 调用方校验之后、发布之前可能已有同名数据源通过其他方式加入，这些数据源不会被覆盖：
+     * 锁内重新检查后跳过，并释放其物理连接池引用。
+     * @param dataSources 数据源键与数据源的映射
+     * @return 因同名数据源已存在而未加入的数据源键
+     */
+    public Set<String> addTargetDataSources(Map<String, ? extends DataSource> dataSources) {
+        log.info("批量添加 {} 个目标数据源", dataSources.size());
         
-        // 更新resolvedDataSources
-        Map<Object, Object> targetDataSources = new HashMap<>(this.getResolvedDataSources());
-        targetDataSources.put(key, dataSource);
+        for (DataSource dataSource : dataSources.values()) {
+            adopt(dataSource);
+        }
+        Map<String, DataSource> accepted = new LinkedHashMap<>(dataSources);
+        Map<String, DataSource> existing = new LinkedHashMap<>();
+        synchronized (jdbcLock) {
+            for (String key : dataSources.keySet()) {
+                DataSource current = routingTable.dynamicDataSources().get(key);
+                if (current != null) {
+                    accepted.remove(key);
+                    existing.put(key, current);
+                }
+            }
+            routingTable = routingTable.withDataSources(accepted);
+        }
         
-        // 重新设置目标数据源
-        this.setTargetDataSources(targetDataSources);
+        for (Map.Entry<String, DataSource> entry : existing.entrySet()) {
+            String key = entry.getKey();
+            log.warn("目标数据源 {} 在批量添加期间已被添加，跳过", key);
+            releaseRejected(key, dataSources.get(key), entry.getValue());
+        }
         
-        // 重新初始化数据源
-        this.afterPropertiesSet();
+        log.info("批量添加 {} 个目标数据源成功", accepted.size());
+        return existing.keySet();
+    }
+    
+    /**
+     * 为逻辑数据源获取物理连接池（尚未加入路由）
+     *
+     * url、username、driverClassName相同的逻辑数据源共享同一个物理连接池。
+     * @param key 逻辑数据源键
+     * @param descriptor 连接池描述
+     * @return 受管数据源
+     */
+    public ManagedDataSource acquirePool(String key, DataSourceProperties.DruidDataSourceProperties descriptor) {
+        ManagedDataSource dataSource = physicalPools.acquire(key, descriptor);
+        adopt(dataSource);
+        return dataSource;
+    }
+    
+    /**
+     * 按连接池描述创建逻辑数据源（尚未加入路由）
+     *
+     * 描述中配置了只读副本时创建读写分离数据源，配置了备用库时创建主备切换数据源，
+     * 主库、副本和备用库各自参与物理连接池共享。
+     * @param key 逻辑数据源键
+     * @param descriptor 连接池描述
+     * @return 受管数据源、读写分离数据源或主备切换数据源
+     */
+    public DataSource acquireDataSource(String key, DataSourceProperties.DruidDataSourceProperties descriptor) {
+        List<String> replicaUrls = descriptor.getReplicaUrls();
+        String standbyUrl = descriptor.getStandbyUrl();
+        boolean hasStandby = standbyUrl != null && !standbyUrl.trim().isEmpty();
+        if (hasStandby && replicaUrls != null && !replicaUrls.isEmpty()) {
+            throw new IllegalArgumentException("数据源 " + key + " 不能同时配置只读副本和备用库");
+        }
+        if (hasStandby) {
+            ManagedDataSource primary = acquirePool(key, descriptor);
+            ManagedDataSource standby = acquirePool(key, descriptor.withUrl(standbyUrl));
+            if (standby == primary) {
+                log.warn("数据源 {} 的备用库与主库地址相同，忽略备用库", key);
+                return primary;
+            }
+            log.info("数据源 {} 配置了备用库，回切策略: {}", key, descriptor.getFailbackPolicy());
+            return new FailoverDataSource(key, primary, standby, descriptor.getFailbackPolicy(), failbackProbes);
+        }
+        if (replicaUrls == null || replicaUrls.isEmpty()) {
+            return acquirePool(key, descriptor);
+        }
+        ReplicaBalancer balancer = ReplicaBalancers.of(descriptor.getReplicaBalancer());
+        ManagedDataSource primary = acquirePool(key, descriptor);
+        List<ManagedDataSource> replicas = new ArrayList<>();
+        for (String replicaUrl : replicaUrls) {
+            ManagedDataSource replica = acquirePool(key, descriptor.withUrl(replicaUrl));
+            // 与主库或已有副本地址相同的副本忽略
+            if (replica != primary && !replicas.contains(replica)) {
+                replicas.add(replica);
+            }
+        }
+        log.info("数据源 {} 配置了 {} 个只读副本，负载均衡策略: {}", key, replicas.size(), descriptor.getReplicaBalancer());
+        return new ReplicaGroupDataSource(key, primary, replicas, balancer);
+    }
+    
+    /**
+     * 释放尚未加入路由的逻辑数据源的所有物理连接池引用
+     * @param key 逻辑数据源键
+     * @param dataSource 逻辑数据源
+     */
+    public void releaseDataSource(String key, DataSource dataSource) {
+        for (ManagedDataSource pool : poolsOf(dataSource)) {
+            releasePool(key, pool);
+        }
+    }
+    
+    /**
+     * 释放未能加入路由的逻辑数据源对物理连接池的引用
+     *
+     * 物理连接池的别名以数据源键登记，与已加入路由的同名数据源共享的物理连接池仍由其持有，不能释放。
+     * @param key 逻辑数据源键
+     * @param rejected 未加入路由的数据源
+     * @param routed 路由中的同名数据源，不存在时为null
+     */
+    private void releaseRejected(String key, DataSource rejected, DataSource routed) {
+        List<ManagedDataSource> kept = routed != null ? poolsOf(routed) : Collections.<ManagedDataSource>emptyList();
+        for (ManagedDataSource pool : poolsOf(rejected)) {
+            if (!kept.contains(pool)) {
+                releasePool(key, pool);
+            }
+        }
+    }
+    
+    /**
+     * 释放尚未加入路由的逻辑数据源对物理连接池的引用，最后一个引用释放时关闭连接池
+     * @param key 逻辑数据源键
+     * @param dataSource 受管数据源
+     */
+    public void releasePool(String key, ManagedDataSource dataSource) {
+        if (physicalPools.release(key, dataSource)) {
+            dataSource.close();
+        }
+    }
+    
+    /**
+     * 添加库内Schema租户，租户与基础数据源共享同一个物理连接池，借出连接时切换到租户的Schema
+     * @param tenant 租户数据源键
+     * @param baseKey 基础数据源键
+     * @param schema 租户所在的Schema
+     */
+    public void addSchemaTenant(String tenant, String baseKey, String schema) {
+        log.info("添加Schema租户: {}，基础数据源: {}，Schema: {}", tenant, baseKey, schema);
         
-        log.info("目标数据源 {} 添加成功", key);
+        ManagedDataSource base = physicalOf(routingTable.lookup(baseKey));
+        if (base == null) {
+            throw new IllegalArgumentException("基础数据源 " + baseKey + " 不存在或不是受管连接池");
+        }
+        // 租户作为物理连接池的别名参与引用计数
+        ManagedDataSource physical = acquirePool(tenant, base.getDescriptor());
+        addTargetDataSource(tenant, new SchemaTenantDataSource(tenant, schema, physical, schemaResetOnReturn));
+    }
+    
+    /**
+     * 获取所有Schema租户及其Schema
+     * @return 租户键与Schema的映射
+     */
+    public Map<String, String> getSchemaTenants() {
+        Map<String, String> tenants = new HashMap<>();
+        routingTable.forEachDataSource((key, dataSource) -> {
+            if (dataSource instanceof SchemaTenantDataSource) {
+                tenants.put(key, ((SchemaTenantDataSource) dataSource).getSchema());
+            }
+        });
+        return tenants;
+    }
+    
+    /**
+     * 添加共享表租户，租户与基础数据源共享同一个物理连接池和同一张表，以租户列区分数据
+     * @param tenant 租户数据源键
+     * @param baseKey 基础数据源键
+     * @param tenantId 租户列的取值
+     */
+    public void addSharedTableTenant(String tenant, String baseKey, String tenantId) {
+        log.info("添加共享表租户: {}，基础数据源: {}，租户标识: {}", tenant, baseKey, tenantId);
+        
+        ManagedDataSource base = physicalOf(routingTable.lookup(baseKey));
+        if (base == null) {
+            throw new IllegalArgumentException("基础数据源 " + baseKey + " 不存在或不是受管连接池");
+        }
+        ManagedDataSource physical = acquirePool(tenant, base.getDescriptor());
+        addTargetDataSource(tenant, new SharedTableTenantDataSource(tenant, tenantId, physical));
+    }
+    
+    /**
+     * 获取数据源键对应的共享表租户标识
+     * @param key 数据源键
+     * @return 租户列的取值，非共享表租户时返回null
+     */
+    public String getSharedTableTenantId(String key) {
+        if (key == null) {
+            return null;
+        }
+        DataSource dataSource = routingTable.lookup(key);
+        return dataSource instanceof SharedTableTenantDataSource
+                ? ((SharedTableTenantDataSource) dataSource).getTenantId() : null;
+    }
+    
+    /**
+     * 获取所有共享表租户及其租户标识
+     * @return 租户键与租户标识的映射
+     */
+    public Map<String, String> getSharedTableTenants() {
+        Map<String, String> tenants = new HashMap<>();
+        routingTable.forEachDataSource((key, dataSource) -> {
+            if (dataSource instanceof SharedTableTenantDataSource) {
+                tenants.put(key, ((SharedTableTenantDataSource) dataSource).getTenantId());
+            }
+        });
+        return tenants;
     }
     
     /**
      * 动态移除目标数据源
+     *
+     * 数据源先从路由中移除，不再接受新的借用；随后等待活跃连接归还并异步关闭连接池。
      * @param key 数据源键
+     * @return 排空状态
      */
-    public synchronized void removeTargetDataSource(String key) {
+    public PoolDrainer.DrainStatus removeTargetDataSource(String key) {
         log.info("移除目标数据源: {}", key);
         
         // 防止移除默认数据源
@@ -118,27 +759,511 @@ public class DynamicDataSource extends AbstractRoutingDataSource implements Appl
             throw new IllegalArgumentException("不能移除默认数据源: " + key);
         }
         
-        dynamicDataSources.remove(key);
+        DataSource removed;
+        synchronized (jdbcLock) {
+            removed = routingTable.dynamicDataSources().get(key);
+            routingTable = routingTable.withoutDataSource(key);
+        }
         
-        // 更新resolvedDataSources
-        Map<Object, Object> targetDataSources = new HashMap<>(this.getResolvedDataSources());
-        targetDataSources.remove(key);
+        if (removed == null) {
+            log.warn("目标数据源 {} 不存在", key);
+            return null;
+        }
+        concurrencyLimiters.remove(key);
+        poolWarmer.forget(key);
+        if (applicationContext != null) {
+            applicationContext.publishEvent(new DataSourceRemovedEvent(this, key));
+        }
         
-        // 重新设置目标数据源
-        this.setTargetDataSources(targetDataSources);
+        List<ManagedDataSource> pools = poolsOf(removed);
+        if (pools.isEmpty()) {
+            log.info("目标数据源 {} 移除成功，开始排空连接池", key);
+            return poolDrainer.drain(key, removed);
+        }
         
-        // 重新初始化数据源
-        this.afterPropertiesSet();
+        // 主库的排空状态以数据源键登记，副本以"数据源键#连接池名"登记
+        PoolDrainer.DrainStatus drainStatus = null;
+        for (ManagedDataSource pool : pools) {
+            String drainKey = drainStatus == null ? key : key + "#" + pool.getName();
+            PoolDrainer.DrainStatus status;
+            if (physicalPools.release(key, pool)) {
+                log.info("目标数据源 {} 移除成功，开始排空连接池 {}", key, pool.getName());
+                status = poolDrainer.drain(drainKey, pool);
+            } else {
+                log.info("目标数据源 {} 移除成功，物理连接池 {} 仍被其他数据源使用", key, pool.getName());
+                status = poolDrainer.released(drainKey, pool.getActiveCount());
+            }
+            if (drainStatus == null) {
+                drainStatus = status;
+            }
+        }
+        return drainStatus;
+    }
+    
+    /**
+     * 在线修改逻辑数据源的连接池参数，不重建连接池
+     *
+     * 容量、maxWait与校验设置应用到数据源的所有连接池（主库、副本、备用库）。账号变化轮换所有连接池，
+     * 地址变化只轮换主库连接池：新连接池校验通过后接管新的借用，旧连接池在活跃连接归还后关闭，
+     * 排空状态以"数据源键#rotated:连接池名"登记。容量等参数对共享同一物理连接池的其他逻辑数据源一同生效，
+     * 被多个逻辑数据源共享的连接池不能修改地址或账号。
+     * @param key 数据源键
+     * @param change 参数变更
+     * @return 修改结果
+     * @throws SQLException 任一新连接池无法建立连接，此时所有连接池保持原样
+     * @throws IllegalArgumentException 数据源不存在、参数非法，或需要轮换的连接池被多个逻辑数据源共享
+     */
+    public Map<String, Object> reconfigureDataSource(String key, PoolReconfiguration change) throws SQLException {
+        log.info("在线修改数据源 {} 的连接池参数: {}", key, change.describe());
         
-        log.info("目标数据源 {} 移除成功", key);
+        synchronized (reconfigureLock) {
+            DataSource dataSource = routingTable.lookup(key);
+            ManagedDataSource primary = physicalOf(dataSource);
+            if (primary == null) {
+                throw new IllegalArgumentException("数据源 " + key + " 不存在或不是受管连接池");
+            }
+            String error = change.validate(primary.getDescriptor());
+            if (error != null) {
+                throw new IllegalArgumentException(error);
+            }
+            
+            List<ManagedDataSource> pools = poolsOf(dataSource);
+            List<String> rotated = new ArrayList<>();
+            if (change.changesConnection()) {
+                // 先检查所有需要轮换的连接池，避免部分连接池已轮换后才失败
+                for (ManagedDataSource pool : pools) {
+                    if ((pool == primary ? change : change.withoutUrl()).changesConnection()) {
+                        physicalPools.checkRotatable(pool);
+                    }
+                }
+                // 为所有需要轮换的连接池建立并校验新连接池，全部成功后再一起切换，
+                // 任何一个失败时放弃已准备的新连接池，所有连接池保持原样
+                Map<ManagedDataSource, ManagedDataSource.Rotation> rotations = prepareRotations(key, pools, primary, change);
+                for (Map.Entry<ManagedDataSource, ManagedDataSource.Rotation> entry : rotations.entrySet()) {
+                    ManagedDataSource pool = entry.getKey();
+                    DruidDataSource old = entry.getValue().commit();
+                    if (old != null) {
+                        poolDrainer.drain(key + "#rotated:" + pool.getName(), old);
+                    }
+                    rotated.add(pool.getName());
+                }
+            }
+            List<Map<String, Object>> poolInfos = new ArrayList<>();
+            for (ManagedDataSource pool : pools) {
+                pool.reconfigure(change);
+                poolInfos.add(describePool(pool));
+            }
+            
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("dsName", key);
+            result.put("changes", change.describe());
+            result.put("rotatedPools", rotated);
+            result.put("pools", poolInfos);
+            return result;
+        }
+    }
+    
+    private Map<ManagedDataSource, ManagedDataSource.Rotation> prepareRotations(String key, List<ManagedDataSource> pools,
+                                                                                ManagedDataSource primary,
+                                                                                PoolReconfiguration change) throws SQLException {
+        Map<ManagedDataSource, ManagedDataSource.Rotation> rotations = new LinkedHashMap<>();
+        // 已换登记标识的连接池及其原地址与账号
+        Map<ManagedDataSource, DataSourceProperties.DruidDataSourceProperties> rekeyed = new LinkedHashMap<>();
+        try {
+            for (ManagedDataSource pool : pools) {
+                PoolReconfiguration poolChange = pool == primary ? change : change.withoutUrl();
+                if (!poolChange.changesConnection()) {
+                    continue;
+                }
+                DataSourceProperties.DruidDataSourceProperties original = pool.getDescriptor().withUrl(pool.getDescriptor().getUrl());
+                physicalPools.rekey(pool, poolChange.getUrl() != null ? poolChange.getUrl() : original.getUrl(),
+                        poolChange.getUsername() != null ? poolChange.getUsername() : original.getUsername());
+                rekeyed.put(pool, original);
+                rotations.put(pool, pool.prepareRotation(poolChange));
+            }
+            return rotations;
+        } catch (SQLException | RuntimeException e) {
+            for (ManagedDataSource.Rotation rotation : rotations.values()) {
+                rotation.abort();
+            }
+            for (Map.Entry<ManagedDataSource, DataSourceProperties.DruidDataSourceProperties> entry : rekeyed.entrySet()) {
+                physicalPools.rekey(entry.getKey(), entry.getValue().getUrl(), entry.getValue().getUsername());
+            }
+            log.warn("数据源 {} 的连接池轮换失败，所有连接池继续使用原连接池", key, e);
+            throw e;
+        }
+    }
+    
+    private static Map<String, Object> describePool(ManagedDataSource pool) {
+        DataSourceProperties.DruidDataSourceProperties descriptor = pool.getDescriptor();
+        DruidDataSource druid = pool.currentPool();
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("pool", pool.getName());
+        info.put("url", descriptor.getUrl());
+        info.put("username", descriptor.getUsername());
+        // 受连接预算限制时实际生效的maxActive可能小于描述中的值
+        info.put("maxActive", druid != null ? druid.getMaxActive() : descriptor.getMaxActive());
+        info.put("minIdle", druid != null ? druid.getMinIdle() : descriptor.getMinIdle());
+        info.put("maxWait", descriptor.getMaxWait());
+        info.put("validationQuery", descriptor.getValidationQuery());
+        info.put("testOnBorrow", descriptor.isTestOnBorrow());
+        info.put("testWhileIdle", descriptor.isTestWhileIdle());
+        info.put("materialized", druid != null);
+        return info;
+    }
+    
+    /**
+     * 获取已移除数据源的排空状态
+     * @param key 数据源键
+     * @return 排空状态，不存在时返回null
+     */
+    public PoolDrainer.DrainStatus getDrainStatus(String key) {
+        return poolDrainer.getStatus(key);
+    }
+    
+    /**
+     * 设置连接池排空超时时间
+     * @param drainTimeoutMillis 排空超时时间(ms)
+     */
+    public void setDrainTimeoutMillis(long drainTimeoutMillis) {
+        poolDrainer.setDrainTimeoutMillis(drainTimeoutMillis);
+    }
+    
+    /**
+     * 设置连接池空闲休眠时间
+     * @param idleTimeoutMillis 空闲休眠时间(ms)，小于等于0表示不休眠
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+    
+    /**
+     * 设置Schema租户归还连接时是否恢复默认Schema
+     * @param schemaResetOnReturn 是否恢复默认Schema
+     */
+    public void setSchemaResetOnReturn(boolean schemaResetOnReturn) {
+        this.schemaResetOnReturn = schemaResetOnReturn;
+    }
+    
+    /**
+     * 设置空闲检查间隔
+     * @param idleCheckIntervalMillis 空闲检查间隔(ms)
+     */
+    public void setIdleCheckIntervalMillis(long idleCheckIntervalMillis) {
+        this.idleCheckIntervalMillis = idleCheckIntervalMillis;
+    }
+    
+    /**
+     * 设置副本心跳间隔
+     * @param replicaHeartbeatIntervalMillis 心跳间隔(ms)，小于等于0表示不跟踪复制位点
+     */
+    public void setReplicaHeartbeatIntervalMillis(long replicaHeartbeatIntervalMillis) {
+        this.replicaHeartbeatIntervalMillis = replicaHeartbeatIntervalMillis;
+    }
+    
+    /**
+     * 设置连接池健康探测参数
+     * @param intervalMillis 探测间隔(ms)，小于等于0表示不探测
+     * @param timeoutMillis 单次探测超时(ms)
+     */
+    public void setHealthCheck(long intervalMillis, long timeoutMillis) {
+        this.healthCheckIntervalMillis = intervalMillis;
+        this.healthCheckTimeoutMillis = timeoutMillis;
+    }
+    
+    /**
+     * 设置熔断参数，对之后纳入管理的连接池生效
+     * @param failureThreshold 打开熔断的连续失败次数
+     * @param openDurationMillis 打开后多久进入半开(ms)
+     * @param halfOpenTrials 半开时同时放行的试探请求数
+     */
+    public void setCircuitBreaker(int failureThreshold, long openDurationMillis, int halfOpenTrials) {
+        this.breakerFailureThreshold = failureThreshold;
+        this.breakerOpenDurationMillis = openDurationMillis;
+        this.breakerHalfOpenTrials = halfOpenTrials;
+    }
+    
+    /**
+     * 设置自动回切前主库需要连续成功的健康探测次数
+     * @param failbackProbes 探测次数
+     */
+    public void setFailbackProbes(int failbackProbes) {
+        this.failbackProbes = failbackProbes;
+    }
+    
+    /**
+     * 设置没有请求截止时间时的Redis命令超时，对之后添加的Redis集群配置生效
+     * @param redisCommandTimeoutMillis 命令超时(ms)
+     */
+    public void setRedisCommandTimeoutMillis(long redisCommandTimeoutMillis) {
+        this.redisCommandTimeoutMillis = redisCommandTimeoutMillis;
+    }
+    
+    /**
+     * 获取主备切换数据源
+     * @param key 数据源键
+     * @return 主备切换数据源，不是主备切换数据源时返回null
+     */
+    public FailoverDataSource getFailover(String key) {
+        DataSource dataSource = key != null ? routingTable.lookup(key) : null;
+        return dataSource instanceof FailoverDataSource ? (FailoverDataSource) dataSource : null;
+    }
+    
+    /**
+     * 获取所有主备切换数据源的状态
+     * @return 数据源键与主备状态的映射
+     */
+    public Map<String, Map<String, Object>> getFailovers() {
+        Map<String, Map<String, Object>> failovers = new HashMap<>();
+        routingTable.forEachDataSource((key, dataSource) -> {
+            if (dataSource instanceof FailoverDataSource) {
+                failovers.put(key, ((FailoverDataSource) dataSource).describe());
+            }
+        });
+        return failovers;
+    }
+    
+    /**
+     * 获取各逻辑数据源（主库）连接池的熔断状态
+     * @return 数据源键与熔断状态的映射
+     */
+    public Map<String, Map<String, Object>> getCircuitBreakers() {
+        Map<String, Map<String, Object>> breakers = new HashMap<>();
+        routingTable.forEachDataSource((key, dataSource) -> {
+            ManagedDataSource physical = physicalOf(dataSource);
+            if (physical != null) {
+                breakers.put(key, physical.getCircuitBreaker().describe());
+            }
+        });
+        return breakers;
+    }
+    
+    /**
+     * 设置每个逻辑数据源的自适应并发限制
+     * @param enabled 是否启用
+     * @param initialLimit 初始并发上限
+     * @param minLimit 并发上限的下限
+     * @param maxLimit 并发上限的上限
+     */
+    public void setConcurrencyLimit(boolean enabled, int initialLimit, int minLimit, int maxLimit) {
+        this.concurrencyInitialLimit = initialLimit;
+        this.concurrencyMinLimit = minLimit;
+        this.concurrencyMaxLimit = maxLimit;
+        this.concurrencyLimitEnabled = enabled;
+    }
+    
+    /**
+     * 获取各逻辑数据源的并发上限与拒绝次数
+     * @return 数据源键与并发限制状态的映射
+     */
+    public Map<String, Map<String, Object>> getConcurrencyLimits() {
+        Map<String, Map<String, Object>> limits = new HashMap<>();
+        for (Map.Entry<String, ConcurrencyLimiter> entry : concurrencyLimiters.entrySet()) {
+            limits.put(entry.getKey(), entry.getValue().describe());
+        }
+        return limits;
+    }
+    
+    /**
+     * 获取节点连接预算与自适应容量调整
+     */
+    public AdaptivePoolSizer getPoolSizer() {
+        return poolSizer;
+    }
+    
+    /**
+     * 获取所有连接池共享的调度器
+     */
+    public SharedPoolSchedulers getPoolSchedulers() {
+        return poolSchedulers;
+    }
+    
+    @Override
+    public void destroy() {
+        if (maintenanceScheduler != null) {
+            maintenanceScheduler.shutdownNow();
+        }
+        if (healthCheckExecutor != null) {
+            healthCheckExecutor.shutdownNow();
+        }
+        poolDrainer.shutdown();
+        poolWarmer.shutdown();
+        routingTable.forEachDataSource((key, dataSource) -> {
+            for (ManagedDataSource pool : poolsOf(dataSource)) {
+                pool.close();
+            }
+        });
+        poolSchedulers.shutdown();
+    }
+    
+    /**
+     * 判断动态数据源是否存在
+     * @param key 数据源键
+     * @return 是否存在
+     */
+    public boolean containsDataSource(String key) {
+        return key != null && routingTable.containsDynamic(key);
+    }
+    
+    /**
+     * 判断数据源是否在路由中，包括配置的预定义数据源
+     * @param key 数据源键
+     * @return 是否存在
+     */
+    public boolean hasDataSource(String key) {
+        return key != null && routingTable.lookup(key) != null;
+    }
+    
+    /**
+     * 获取逻辑数据源对应的物理连接池标识
+     * @param key 逻辑数据源键
+     * @return 物理连接池标识，非共享连接池时返回null
+     */
+    public String getPhysicalPoolId(String key) {
+        ManagedDataSource physical = physicalOf(routingTable.lookup(key));
+        return physical != null ? physicalPools.getPhysicalId(physical) : null;
+    }
+    
+    /**
+     * 获取路由目标背后的物理连接池
+     * @param dataSource 路由目标
+     * @return 物理连接池，非受管数据源时返回null
+     */
+    static ManagedDataSource physicalOf(DataSource dataSource) {
+        if (dataSource instanceof ManagedDataSource) {
+            return (ManagedDataSource) dataSource;
+        }
+        if (dataSource instanceof SchemaTenantDataSource) {
+            return ((SchemaTenantDataSource) dataSource).getTarget();
+        }
+        if (dataSource instanceof SharedTableTenantDataSource) {
+            return ((SharedTableTenantDataSource) dataSource).getTarget();
+        }
+        if (dataSource instanceof ReplicaGroupDataSource) {
+            return ((ReplicaGroupDataSource) dataSource).getPrimary();
+        }
+        if (dataSource instanceof FailoverDataSource) {
+            return ((FailoverDataSource) dataSource).getPrimary();
+        }
+        return null;
+    }
+    
+    /**
+     * 获取路由目标背后的所有物理连接池，读写分离数据源包含主库和所有副本，主备切换数据源包含主库和备用库
+     * @param dataSource 路由目标
+     * @return 物理连接池列表，非受管数据源时为空
+     */
+    public static List<ManagedDataSource> poolsOf(DataSource dataSource) {
+        if (dataSource instanceof ReplicaGroupDataSource) {
+            ReplicaGroupDataSource group = (ReplicaGroupDataSource) dataSource;
+            List<ManagedDataSource> pools = new ArrayList<>(group.getReplicas().size() + 1);
+            pools.add(group.getPrimary());
+            pools.addAll(group.getReplicas());
+            return pools;
+        }
+        if (dataSource instanceof FailoverDataSource) {
+            FailoverDataSource failover = (FailoverDataSource) dataSource;
+            return Arrays.asList(failover.getPrimary(), failover.getStandby());
+        }
+        ManagedDataSource physical = physicalOf(dataSource);
+        return physical != null ? Collections.singletonList(physical) : Collections.<ManagedDataSource>emptyList();
+    }
+    
+    /**
+     * 获取读写分离数据源
+     * @param key 数据源键
+     * @return 读写分离数据源，不是读写分离数据源时返回null
+     */
+    public ReplicaGroupDataSource getReplicaGroup(String key) {
+        DataSource dataSource = key != null ? routingTable.lookup(key) : null;
+        return dataSource instanceof ReplicaGroupDataSource ? (ReplicaGroupDataSource) dataSource : null;
+    }
+    
+    /**
+     * 为刚完成的写请求签发会话令牌，携带令牌的读请求只会路由到已追上的副本
+     * @param key 数据源键
+     * @return 会话令牌，不是读写分离数据源时返回null
+     */
+    public String issueSessionToken(String key) {
+        ReplicaGroupDataSource group = getReplicaGroup(key);
+        return group != null ? ReadConsistency.token(key, group.nextSessionPosition()) : null;
+    }
+    
+    /**
+     * 获取读写分离数据源的复制位点与延迟
+     * @return 数据源键与复制状态的映射
+     */
+    public Map<String, Map<String, Object>> getReplicaLag() {
+        Map<String, Map<String, Object>> lag = new HashMap<>();
+        routingTable.forEachDataSource((key, dataSource) -> {
+            if (dataSource instanceof ReplicaGroupDataSource) {
+                ReplicaGroupDataSource group = (ReplicaGroupDataSource) dataSource;
+                List<Map<String, Object>> replicas = new ArrayList<>();
+                for (int i = 0; i < group.getReplicas().size(); i++) {
+                    Map<String, Object> replica = new HashMap<>();
+                    replica.put("replica", group.getReplicas().get(i).getName());
+                    replica.put("position", group.getReplicaPosition(i));
+                    replica.put("lagMillis", group.getReplicaLagMillis(i));
+                    replicas.add(replica);
+                }
+                Map<String, Object> info = new HashMap<>();
+                info.put("primaryPosition", group.getPrimaryPosition());
+                info.put("replicas", replicas);
+                lag.put(key, info);
+            }
+        });
+        return lag;
+    }
+    
+    /**
+     * 获取所有读写分离数据源的只读副本
+     * @return 数据源键与副本物理连接池标识的映射
+     */
+    public Map<String, List<String>> getReplicaGroups() {
+        Map<String, List<String>> groups = new HashMap<>();
+        routingTable.forEachDataSource((key, dataSource) -> {
+            if (dataSource instanceof ReplicaGroupDataSource) {
+                List<String> replicas = new ArrayList<>();
+                for (ManagedDataSource replica : ((ReplicaGroupDataSource) dataSource).getReplicas()) {
+                    replicas.add(physicalPools.getPhysicalId(replica));
+                }
+                groups.put(key, replicas);
+            }
+        });
+        return groups;
+    }
+    
+    /**
+     * 获取延迟感知负载均衡的副本统计与权重
+     * @return 数据源键与各副本统计信息的映射
+     */
+    public Map<String, List<Map<String, Object>>> getReplicaStats() {
+        Map<String, List<Map<String, Object>>> stats = new HashMap<>();
+        routingTable.forEachDataSource((key, dataSource) -> {
+            if (dataSource instanceof ReplicaGroupDataSource) {
+                ReplicaGroupDataSource group = (ReplicaGroupDataSource) dataSource;
+                if (group.getBalancer() instanceof LatencyAwareBalancer) {
+                    stats.put(key, ((LatencyAwareBalancer) group.getBalancer()).describe(group.getReplicas()));
+                }
+            }
+        });
+        return stats;
+    }
+    
+    /**
+     * 获取所有物理连接池及其逻辑别名
+     * @return 物理连接池信息列表
+     */
+    public List<Map<String, Object>> getPhysicalPools() {
+        return physicalPools.describe();
     }
     
     /**
      * 获取动态数据源
-     * @return 动态数据源Map
+     * @return 动态数据源的只读快照
      */
     public Map<Object, DataSource> getDynamicDataSources() {
-        return new HashMap<>(dynamicDataSources);
+        return Collections.<Object, DataSource>unmodifiableMap(routingTable.dynamicDataSources());
     }
     
     /**
@@ -147,11 +1272,19 @@ public class DynamicDataSource extends AbstractRoutingDataSource implements Appl
      * @param host Redis主机地址
      * @param port Redis端口
      */
-    public synchronized void addRedisCluster(String dataSourceKey, String host, int port) {
+    public void addRedisCluster(String dataSourceKey, String host, int port) {
         log.info("为数据源 {} 添加Redis集群配置: {}:{}", dataSourceKey, host, port);
         
+        synchronized (redisLock) {
+            doAddRedisCluster(dataSourceKey, host, port);
+        }
+        
+        log.info("为数据源 {} 添加Redis集群配置成功", dataSourceKey);
+    }
+    
+    private void doAddRedisCluster(String dataSourceKey, String host, int port) {
         // 检查数据源是否存在
-        if (!dynamicDataSources.containsKey(dataSourceKey)) {
+        if (!containsDataSource(dataSourceKey)) {
             log.warn("数据源 {} 不存在，无法添加Redis集群配置", dataSourceKey);
             throw new IllegalArgumentException("数据源 " + dataSourceKey + " 不存在");
         }
@@ -164,7 +1297,17 @@ public class DynamicDataSource extends AbstractRoutingDataSource implements Appl
         
         // 创建Redis连接工厂
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(host, port);
-        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(config);
+        // 命令超时取请求剩余时间，截止时间到达时命令立即以超时失败
+        Duration commandTimeout = Duration.ofMillis(redisCommandTimeoutMillis);
+        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
+                .commandTimeout(commandTimeout)
+                .clientOptions(ClientOptions.builder()
+                        .timeoutOptions(TimeoutOptions.builder()
+                                .timeoutSource(RequestDeadline.redisTimeoutSource(commandTimeout))
+                                .build())
+                        .build())
+                .build();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(config, clientConfig);
         connectionFactory.afterPropertiesSet();
         
         // 创建Redis模板
@@ -179,17 +1322,23 @@ public class DynamicDataSource extends AbstractRoutingDataSource implements Appl
         // 存储到动态Map中
         dynamicRedisConnectionFactories.put(dataSourceKey, connectionFactory);
         dynamicRedisTemplates.put(dataSourceKey, redisTemplate);
-        
-        log.info("为数据源 {} 添加Redis集群配置成功", dataSourceKey);
     }
     
     /**
      * 移除Redis集群配置
      * @param dataSourceKey 数据源键
      */
-    public synchronized void removeRedisCluster(String dataSourceKey) {
+    public void removeRedisCluster(String dataSourceKey) {
         log.info("移除数据源 {} 的Redis集群配置", dataSourceKey);
         
+        synchronized (redisLock) {
+            doRemoveRedisCluster(dataSourceKey);
+        }
+        
+        log.info("移除数据源 {} 的Redis集群配置成功", dataSourceKey);
+    }
+    
+    private void doRemoveRedisCluster(String dataSourceKey) {
         // 检查Redis集群配置是否存在
         if (!dynamicRedisConnectionFactories.containsKey(dataSourceKey)) {
             log.warn("数据源 {} 的Redis集群配置不存在", dataSourceKey);
@@ -209,8 +1358,6 @@ public class DynamicDataSource extends AbstractRoutingDataSource implements Appl
         
         // 移除Redis模板
         dynamicRedisTemplates.remove(dataSourceKey);
-        
-        log.info("移除数据源 {} 的Redis集群配置成功", dataSourceKey);
     }
     
     /**
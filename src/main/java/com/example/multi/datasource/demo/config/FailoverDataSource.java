@@ -0,0 +1,179 @@
+package com.example.multi.datasource.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 主备切换数据源
+ *
+ * 一个逻辑数据源由主库和一个预热的备用库组成，借用连接时使用当前生效的连接池。主库熔断后立即切换到备用库；
+ * 回切按策略进行：auto 在主库连续若干次健康探测成功后自动回切，manual 只能手动回切。
+ * 生效连接池以原子引用保存，切换只做一次CAS，借用路径无锁。
+ */
+public class FailoverDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(FailoverDataSource.class);
+
+    public static final String FAILBACK_AUTO = "auto";
+
+    public static final String FAILBACK_MANUAL = "manual";
+
+    private final String name;
+
+    private final ManagedDataSource primary;
+
+    private final ManagedDataSource standby;
+
+    private final String failbackPolicy;
+
+    // 自动回切前主库需要连续成功的健康探测次数
+    private final int failbackProbes;
+
+    private final AtomicReference<ManagedDataSource> active;
+
+    private final AtomicInteger switchCount = new AtomicInteger();
+
+    private volatile long lastSwitchTime;
+
+    public FailoverDataSource(String name, ManagedDataSource primary, ManagedDataSource standby,
+                              String failbackPolicy, int failbackProbes) {
+        if (!FAILBACK_AUTO.equals(failbackPolicy) && !FAILBACK_MANUAL.equals(failbackPolicy)) {
+            throw new IllegalArgumentException("未知的回切策略: " + failbackPolicy + "，可选值: auto、manual");
+        }
+        this.name = name;
+        this.primary = primary;
+        this.standby = standby;
+        this.failbackPolicy = failbackPolicy;
+        this.failbackProbes = Math.max(1, failbackProbes);
+        this.active = new AtomicReference<>(primary);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ManagedDataSource current = active.get();
+        try {
+            return current.getConnection();
+        } catch (DataSourceUnavailableException e) {
+            // 主库熔断时立即切换，不必等下一次健康检查；连接预算耗尽等其他原因不切换
+            if (current == primary && primary.getCircuitBreaker().getState() == CircuitBreaker.State.OPEN
+                    && switchTo(standby, "主库熔断")) {
+                return standby.getConnection();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("主备切换数据源不支持指定用户名密码获取连接");
+    }
+
+    /**
+     * 根据熔断与健康探测结果决定是否切换，由后台健康检查定期调用
+     */
+    public void evaluate() {
+        ManagedDataSource current = active.get();
+        if (current == primary) {
+            if (primary.getCircuitBreaker().getState() == CircuitBreaker.State.OPEN) {
+                switchTo(standby, "主库熔断");
+            }
+            return;
+        }
+        if (standby.getCircuitBreaker().getState() == CircuitBreaker.State.OPEN
+                && primary.getCircuitBreaker().getState() != CircuitBreaker.State.OPEN) {
+            switchTo(primary, "备用库熔断");
+        } else if (FAILBACK_AUTO.equals(failbackPolicy) && primary.getConsecutiveProbeSuccesses() >= failbackProbes) {
+            switchTo(primary, "主库已连续 " + failbackProbes + " 次健康探测成功");
+        }
+    }
+
+    /**
+     * 预热未处于生效状态的连接池，保证切换后无需等待建连；同时让它参与健康探测
+     */
+    public void warmUp() throws SQLException {
+        ManagedDataSource current = active.get();
+        ManagedDataSource other = current == primary ? standby : primary;
+        if (!other.isMaterialized()) {
+            log.info("预热数据源 {} 的连接池 {}", name, other.getName());
+            other.obtainPool().init();
+        }
+    }
+
+    /**
+     * 手动切换到备用库
+     * @return 是否发生了切换
+     */
+    public boolean failover() {
+        return switchTo(standby, "手动切换");
+    }
+
+    /**
+     * 手动回切到主库
+     * @return 是否发生了切换
+     */
+    public boolean failback() {
+        return switchTo(primary, "手动回切");
+    }
+
+    private boolean switchTo(ManagedDataSource target, String reason) {
+        // 备用库同样熔断时切换没有意义
+        if (target == standby && standby.getCircuitBreaker().getState() == CircuitBreaker.State.OPEN) {
+            log.warn("数据源 {} 的备用库 {} 不可用，放弃切换", name, standby.getName());
+            return false;
+        }
+        ManagedDataSource expected = target == primary ? standby : primary;
+        if (!active.compareAndSet(expected, target)) {
+            return false;
+        }
+        if (target == standby) {
+            // 自动回切只认切换之后的探测结果
+            primary.resetProbeSuccesses();
+        }
+        switchCount.incrementAndGet();
+        lastSwitchTime = System.currentTimeMillis();
+        log.warn("数据源 {} 切换到{} {}，原因: {}", name, target == primary ? "主库" : "备用库", target.getName(), reason);
+        return true;
+    }
+
+    public boolean isOnStandby() {
+        return active.get() == standby;
+    }
+
+    public ManagedDataSource getActive() {
+        return active.get();
+    }
+
+    public ManagedDataSource getPrimary() {
+        return primary;
+    }
+
+    public ManagedDataSource getStandby() {
+        return standby;
+    }
+
+    public String getFailbackPolicy() {
+        return failbackPolicy;
+    }
+
+    /**
+     * 主备状态信息
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("active", isOnStandby() ? "standby" : "primary");
+        info.put("failbackPolicy", failbackPolicy);
+        info.put("switchCount", switchCount.get());
+        info.put("lastSwitchTime", lastSwitchTime);
+        info.put("primary", primary.getCircuitBreaker().getState().name());
+        info.put("standby", standby.getCircuitBreaker().getState().name());
+        return info;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.multi.datasource.demo.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟感知的副本负载均衡（power of two choices）
+ *
+ * 为每个副本维护查询耗时与等待连接耗时的指数加权移动平均（EWMA）。耗时变大时EWMA立即跟上（峰值EWMA），
+ * 变小时按时间常数逐渐回落。选择时随机取两个副本，比较 (查询耗时 + 等待耗时) × (活跃连接数 + 1)，取代价较小者。
+ * 长时间没有新样本的副本，其代价随空闲时间指数衰减，从而重新获得少量试探流量，恢复后权重逐步回升。
+ * 选择路径不分配对象。
+ */
+public class LatencyAwareBalancer implements ReplicaBalancer {
+
+    // 默认衰减时间常数
+    private static final long DEFAULT_DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    // 获取连接失败时记入的惩罚耗时
+    private static final long DEFAULT_FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double decayNanos;
+
+    private final long failurePenaltyNanos;
+
+    private final Map<ManagedDataSource, TargetStats> stats = new ConcurrentHashMap<>();
+
+    public LatencyAwareBalancer() {
+        this(DEFAULT_DECAY_NANOS, DEFAULT_FAILURE_PENALTY_NANOS);
+    }
+
+    public LatencyAwareBalancer(long decayNanos, long failurePenaltyNanos) {
+        this.decayNanos = decayNanos;
+        this.failurePenaltyNanos = failurePenaltyNanos;
+    }
+
+    @Override
+    public ManagedDataSource choose(List<ManagedDataSource> replicas) {
+        int size = replicas.size();
+        if (size == 1) {
+            return replicas.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        long now = System.nanoTime();
+        ManagedDataSource a = replicas.get(first);
+        ManagedDataSource b = replicas.get(second);
+        return cost(a, now) <= cost(b, now) ? a : b;
+    }
+
+    @Override
+    public boolean tracksLatency() {
+        return true;
+    }
+
+    @Override
+    public void onAcquired(ManagedDataSource replica, long waitNanos) {
+        statsOf(replica).recordWait(waitNanos, System.nanoTime(), decayNanos);
+    }
+
+    @Override
+    public void onReleased(ManagedDataSource replica, long holdNanos) {
+        statsOf(replica).recordLatency(holdNanos, System.nanoTime(), decayNanos);
+    }
+
+    @Override
+    public void onFailure(ManagedDataSource replica) {
+        statsOf(replica).recordLatency(failurePenaltyNanos, System.nanoTime(), decayNanos);
+    }
+
+    /**
+     * 获取副本的统计信息与当前权重，权重为代价倒数在组内的占比
+     * @param replicas 副本列表
+     * @return 每个副本的统计信息
+     */
+    public List<Map<String, Object>> describe(List<ManagedDataSource> replicas) {
+        long now = System.nanoTime();
+        double[] inverse = new double[replicas.size()];
+        double total = 0;
+        for (int i = 0; i < replicas.size(); i++) {
+            inverse[i] = 1.0 / Math.max(cost(replicas.get(i), now), 1.0);
+            total += inverse[i];
+        }
+        List<Map<String, Object>> result = new ArrayList<>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            ManagedDataSource replica = replicas.get(i);
+            TargetStats target = stats.get(replica);
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("replica", replica.getName());
+            info.put("url", replica.getDescriptor().getUrl());
+            info.put("ewmaLatencyMs", target != null ? target.latency(now, decayNanos) / 1_000_000.0 : 0.0);
+            info.put("ewmaWaitMs", target != null ? target.waitTime(now, decayNanos) / 1_000_000.0 : 0.0);
+            info.put("activeCount", replica.getActiveCount());
+            info.put("weight", inverse[i] / total);
+            result.add(info);
+        }
+        return result;
+    }
+
+    private double cost(ManagedDataSource replica, long now) {
+        TargetStats target = stats.get(replica);
+        if (target == null) {
+            // 尚无样本的副本优先获得流量以建立统计
+            return 0;
+        }
+        return (target.latency(now, decayNanos) + target.waitTime(now, decayNanos)) * (replica.getActiveCount() + 1);
+    }
+
+    private TargetStats statsOf(ManagedDataSource replica) {
+        TargetStats target = stats.get(replica);
+        return target != null ? target : stats.computeIfAbsent(replica, key -> new TargetStats());
+    }
+
+    /**
+     * 单个副本的耗时统计
+     */
+    private static final class TargetStats {
+
+        private final Ewma latency = new Ewma();
+        private final Ewma wait = new Ewma();
+
+        void recordLatency(long sample, long now, double decayNanos) {
+            latency.record(sample, now, decayNanos);
+        }
+
+        void recordWait(long sample, long now, double decayNanos) {
+            wait.record(sample, now, decayNanos);
+        }
+
+        double latency(long now, double decayNanos) {
+            return latency.get(now, decayNanos);
+        }
+
+        double waitTime(long now, double decayNanos) {
+            return wait.get(now, decayNanos);
+        }
+    }
+
+    /**
+     * 按时间加权的峰值EWMA，读取时按距上一个样本的时间衰减
+     */
+    private static final class Ewma {
+
+        private volatile double value;
+        private volatile long lastUpdate = System.nanoTime();
+
+        synchronized void record(long sample, long now, double decayNanos) {
+            if (sample >= value) {
+                // 变慢时立即反映
+                value = sample;
+            } else {
+                double weight = Math.exp(-Math.max(now - lastUpdate, 0L) / decayNanos);
+                value = value * weight + sample * (1 - weight);
+            }
+            lastUpdate = now;
+        }
+
+        double get(long now, double decayNanos) {
+            long idle = now - lastUpdate;
+            double current = value;
+            return idle <= 0 ? current : current * Math.exp(-idle / decayNanos);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.multi.datasource.demo.config;
+
+/**
+ * 记录当前请求线程上被拒绝的连接借用，供 {@link LoadSheddingAdvice} 把响应转换为503
+ *
+ * 控制器会捕获异常并返回普通的失败结果，因此拒绝信息通过线程变量传递给响应处理阶段。
+ */
+public final class LoadShedding {
+
+    private static final ThreadLocal<DataSourceUnavailableException> REJECTION = new ThreadLocal<>();
+
+    private LoadShedding() {
+    }
+
+    /**
+     * 记录一次被拒绝的连接借用，同一请求内保留第一次的拒绝
+     * @param rejection 拒绝异常
+     */
+    public static void record(DataSourceUnavailableException rejection) {
+        if (REJECTION.get() == null) {
+            REJECTION.set(rejection);
+        }
+    }
+
+    /**
+     * 当前请求中被拒绝的连接借用，没有时返回null
+     */
+    public static DataSourceUnavailableException current() {
+        return REJECTION.get();
+    }
+
+    public static void clear() {
+        REJECTION.remove();
+    }
+}
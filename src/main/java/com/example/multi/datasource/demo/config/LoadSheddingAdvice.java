@@ -0,0 +1,81 @@
+package com.example.multi.datasource.demo.config;
+
+import com.example.multi.datasource.demo.controller.TableController;
+import com.example.multi.datasource.demo.controller.UnifiedDataSourceController;
+import com.example.multi.datasource.demo.controller.UserController;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 请求处理中连接借用被拒绝（并发超限、熔断、连接预算耗尽）时，把响应转换为503并带上Retry-After
+ *
+ * 只处理经过动态数据源路由借用连接的控制器。拒绝记录在路由借用连接时写入，与请求路径无关，
+ * 因此同时作为拦截器对所有请求注册，在请求开始和结束时清理线程上的拒绝记录。
+ */
+@RestControllerAdvice
+public class LoadSheddingAdvice implements ResponseBodyAdvice<Object>, HandlerInterceptor {
+
+    // 通过动态数据源路由借用连接、可能记录拒绝的控制器
+    private static final List<Class<?>> ROUTING_CONTROLLERS = Arrays.asList(
+            UnifiedDataSourceController.class, TableController.class, UserController.class);
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        for (Class<?> controller : ROUTING_CONTROLLERS) {
+            if (controller.isAssignableFrom(returnType.getContainingClass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        DataSourceUnavailableException rejection = LoadShedding.current();
+        if (rejection == null) {
+            return body;
+        }
+        // 拒绝记录只作用于本次响应
+        LoadShedding.clear();
+        long retryAfterMillis = rejection.getRetryAfterMillis();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        // Retry-After以秒为单位，向上取整
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfterMillis + 999) / 1000)));
+        if (body instanceof Map) {
+            try {
+                ((Map<String, Object>) body).put("retryAfterMillis", retryAfterMillis);
+            } catch (UnsupportedOperationException ignored) {
+                // 不可修改的响应体只设置状态码和响应头
+            }
+        }
+        return body;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        LoadShedding.clear();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        LoadShedding.clear();
+    }
+}
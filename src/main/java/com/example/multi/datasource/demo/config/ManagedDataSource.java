@@ -0,0 +1,425 @@
+package com.example.multi.datasource.demo.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 按需创建的Druid连接池
+ *
+ * 注册时只保存连接池描述，第一次借用连接时才创建真正的 {@link DruidDataSource}。
+ * 连接池空闲超过指定时间后可被休眠（关闭），下一次借用时透明地重新创建。
+ * 借用连接经过熔断器，数据库不可用时快速失败，不必等待maxWait。
+ */
+public class ManagedDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ManagedDataSource.class);
+
+    private final String name;
+
+    private final DataSourceProperties.DruidDataSourceProperties descriptor;
+
+    private final Object lock = new Object();
+
+    private volatile DruidDataSource pool;
+
+    private volatile long lastAccessTime = System.currentTimeMillis();
+
+    private volatile boolean closed;
+
+    // 共享的创建/销毁调度器，为null时使用Druid自带的线程
+    private volatile SharedPoolSchedulers schedulers;
+
+    // 节点连接预算与容量调整，为null时按描述中的maxActive创建
+    private volatile AdaptivePoolSizer sizer;
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    // 是否有健康探测正在进行
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    // 连续成功的健康探测次数，探测失败时清零
+    private volatile int consecutiveProbeSuccesses;
+
+    public ManagedDataSource(String name, DataSourceProperties.DruidDataSourceProperties descriptor) {
+        this.name = name;
+        this.descriptor = descriptor;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new DataSourceUnavailableException(name, circuitBreaker.getRetryAfterMillis());
+        }
+        while (true) {
+            lastAccessTime = System.currentTimeMillis();
+            DruidDataSource current = obtainPool();
+            // 请求截止时间早于maxWait时，只等待剩余时间
+            long maxWait = current.getMaxWait();
+            long wait = RequestDeadline.bound(maxWait);
+            boolean bounded = maxWait <= 0 ? wait != Long.MAX_VALUE : wait < maxWait;
+            try {
+                Connection connection = bounded ? current.getConnection(Math.max(1, wait)) : current.getConnection();
+                circuitBreaker.onSuccess();
+                return connection;
+            } catch (SQLException e) {
+                // 连接池恰好在借用前被休眠关闭，重新创建后重试
+                if (closed || !current.isClosed()) {
+                    if (bounded) {
+                        circuitBreaker.onAbandoned();
+                    } else {
+                        circuitBreaker.onFailure();
+                    }
+                    throw e;
+                }
+                log.debug("数据源 {} 的连接池已休眠，重新创建", name);
+            }
+        }
+    }
+
+    /**
+     * Druid连接池的账号固定，只接受与连接池当前账号一致的用户名密码，借用同样经过熔断与截止时间约束
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (!Objects.equals(username, descriptor.getUsername()) || !Objects.equals(password, descriptor.getPassword())) {
+            throw new UnsupportedOperationException("数据源 " + name + " 不支持以连接池账号以外的用户名密码获取连接");
+        }
+        return getConnection();
+    }
+
+    /**
+     * 获取连接池，尚未创建时按描述创建
+     * @return Druid连接池
+     */
+    public DruidDataSource obtainPool() throws SQLException {
+        DruidDataSource current = pool;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (closed) {
+                throw new SQLException("数据源 " + name + " 已关闭");
+            }
+            if (pool == null) {
+                log.info("首次借用连接，创建数据源 {} 的连接池", name);
+                pool = createPool();
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * 若连接池空闲时间超过阈值且没有活跃连接，则关闭连接池
+     * @param idleTimeoutMillis 空闲阈值(ms)
+     * @return 是否已休眠
+     */
+    public boolean hibernateIfIdle(long idleTimeoutMillis) {
+        DruidDataSource hibernated;
+        synchronized (lock) {
+            hibernated = pool;
+            if (hibernated == null || closed) {
+                return false;
+            }
+            if (System.currentTimeMillis() - lastAccessTime < idleTimeoutMillis || hibernated.getActiveCount() > 0) {
+                return false;
+            }
+            pool = null;
+        }
+        log.info("数据源 {} 空闲超过 {} ms，休眠连接池", name, idleTimeoutMillis);
+        hibernated.close();
+        releaseBudget();
+        return true;
+    }
+
+    /**
+     * 在线修改连接池容量、maxWait与校验设置，不重建连接池；连接池未创建时只更新描述
+     * @param change 参数变更，连接地址与账号的变化不在这里处理
+     */
+    public void reconfigure(PoolReconfiguration change) {
+        DruidDataSource current;
+        synchronized (lock) {
+            change.applySettingsTo(descriptor);
+            current = pool;
+        }
+        if (current == null) {
+            return;
+        }
+        if (change.getMaxWait() != null) {
+            current.setMaxWait(change.getMaxWait());
+        }
+        if (change.getValidationQuery() != null) {
+            current.setValidationQuery(descriptor.getValidationQuery());
+        }
+        if (change.getTestOnBorrow() != null) {
+            current.setTestOnBorrow(change.getTestOnBorrow());
+        }
+        if (change.getTestWhileIdle() != null) {
+            current.setTestWhileIdle(change.getTestWhileIdle());
+        }
+        if (change.changesLimits()) {
+            int maxActive = descriptor.getMaxActive();
+            int minIdle = Math.min(descriptor.getMinIdle(), maxActive);
+            AdaptivePoolSizer currentSizer = sizer;
+            if (currentSizer != null) {
+                currentSizer.resizeTo(this, maxActive, minIdle);
+            } else {
+                AdaptivePoolSizer.setLimits(current, maxActive, minIdle);
+            }
+        }
+        log.info("数据源 {} 的连接池参数已在线修改: {}", name, change.describe());
+    }
+
+    /**
+     * 轮换连接地址或账号
+     *
+     * 按新参数创建连接池并校验一个连接，成功后新的借用切换到新连接池；已借出的连接继续使用旧连接池，
+     * 由调用方在它们归还后关闭旧连接池。新连接池建立失败时抛出异常，旧连接池保持不变，请求不受影响。
+     * 轮换期间新旧连接池的连接数之和可能短暂超过连接预算。
+     * @param change 参数变更
+     * @return 被替换的旧连接池，连接池尚未创建时返回null（新参数在下次创建时生效）
+     * @throws SQLException 新连接池无法建立连接
+     */
+    public DruidDataSource rotate(PoolReconfiguration change) throws SQLException {
+        return prepareRotation(change).commit();
+    }
+
+    /**
+     * 准备轮换：按新参数创建连接池并校验一个连接，但不切换
+     *
+     * 需要一起轮换的多个连接池先逐个准备，全部成功后再逐个提交；任何一个准备失败时放弃已准备的轮换，
+     * 所有连接池保持原样。
+     * @param change 参数变更
+     * @return 待提交的轮换
+     * @throws SQLException 新连接池无法建立连接
+     */
+    public Rotation prepareRotation(PoolReconfiguration change) throws SQLException {
+        synchronized (lock) {
+            if (closed) {
+                throw new SQLException("数据源 " + name + " 已关闭");
+            }
+            DruidDataSource old = pool;
+            if (old == null) {
+                return new Rotation(change, null);
+            }
+            DataSourceProperties.DruidDataSourceProperties updated = descriptor.withUrl(descriptor.getUrl());
+            change.applyTo(updated);
+            DruidDataSource fresh = buildPool(updated, old.getMaxActive());
+            try {
+                fresh.init();
+                try (Connection connection = fresh.getConnection(updated.getMaxWait())) {
+                    if (!connection.isValid((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(updated.getMaxWait())))) {
+                        throw new SQLException("新连接池的连接校验失败");
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                fresh.close();
+                throw e;
+            }
+            return new Rotation(change, fresh);
+        }
+    }
+
+    /**
+     * 已准备好新连接池、尚未切换的轮换
+     */
+    public final class Rotation {
+
+        private final PoolReconfiguration change;
+
+        // 已校验的新连接池，准备时连接池尚未创建则为null
+        private final DruidDataSource fresh;
+
+        private Rotation(PoolReconfiguration change, DruidDataSource fresh) {
+            this.change = change;
+            this.fresh = fresh;
+        }
+
+        /**
+         * 切换到新参数，新的借用使用新连接池
+         * @return 被替换的旧连接池，由调用方在活跃连接归还后关闭；没有需要关闭的连接池时返回null
+         */
+        public DruidDataSource commit() {
+            DruidDataSource old;
+            boolean rebuild = false;
+            synchronized (lock) {
+                if (closed) {
+                    abort();
+                    return null;
+                }
+                change.applyTo(descriptor);
+                old = pool;
+                if (fresh != null && old != null) {
+                    pool = fresh;
+                } else if (fresh != null) {
+                    // 准备之后连接池已休眠，下次借用时按新参数重新创建
+                    fresh.close();
+                } else if (old != null) {
+                    // 准备之后连接池已按原参数创建，下次借用时按新参数重新创建
+                    pool = null;
+                    rebuild = true;
+                }
+            }
+            if (rebuild) {
+                releaseBudget();
+            }
+            if (old != null) {
+                log.info("数据源 {} 的连接池已轮换，旧连接池仍有 {} 个活跃连接", name, old.getActiveCount());
+            }
+            return old;
+        }
+
+        /**
+         * 放弃轮换，关闭已准备的新连接池，原连接池与参数不变
+         */
+        public void abort() {
+            if (fresh != null) {
+                fresh.close();
+            }
+        }
+    }
+
+    /**
+     * 健康探测：在超时时间内借用并校验一个连接，结果反馈给熔断器。
+     * 连接池未创建时跳过；探测不刷新访问时间，不影响空闲休眠。
+     * @param timeoutMillis 探测超时(ms)
+     */
+    public void probe(long timeoutMillis) {
+        DruidDataSource current = pool;
+        if (current == null || closed || !probing.compareAndSet(false, true)) {
+            return;
+        }
+        try (Connection connection = current.getConnection(timeoutMillis)) {
+            int timeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutMillis));
+            if (!connection.isValid(timeoutSeconds)) {
+                throw new SQLException("连接校验失败");
+            }
+            consecutiveProbeSuccesses++;
+            circuitBreaker.onProbeSuccess();
+        } catch (SQLException e) {
+            if (!current.isClosed()) {
+                log.warn("数据源 {} 健康探测失败: {}", name, e.getMessage());
+                consecutiveProbeSuccesses = 0;
+                circuitBreaker.onProbeFailure();
+            }
+        } finally {
+            probing.set(false);
+        }
+    }
+
+    /**
+     * 连续成功的健康探测次数（探测在单线程中进行，计数无需原子操作）
+     */
+    public int getConsecutiveProbeSuccesses() {
+        return consecutiveProbeSuccesses;
+    }
+
+    public void resetProbeSuccesses() {
+        consecutiveProbeSuccesses = 0;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * 当前活跃连接数，连接池未创建时为0
+     */
+    public int getActiveCount() {
+        DruidDataSource current = pool;
+        return current != null ? current.getActiveCount() : 0;
+    }
+
+    /**
+     * 连接池是否已创建
+     */
+    public boolean isMaterialized() {
+        return pool != null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DataSourceProperties.DruidDataSourceProperties getDescriptor() {
+        return descriptor;
+    }
+
+    public void setSchedulers(SharedPoolSchedulers schedulers) {
+        this.schedulers = schedulers;
+    }
+
+    public void setSizer(AdaptivePoolSizer sizer) {
+        this.sizer = sizer;
+    }
+
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    @Override
+    public void close() {
+        DruidDataSource current;
+        synchronized (lock) {
+            closed = true;
+            current = pool;
+            pool = null;
+        }
+        if (current != null) {
+            current.close();
+            releaseBudget();
+        }
+    }
+
+    /**
+     * 当前的Druid连接池，未创建或已休眠时返回null（不会触发创建）
+     */
+    DruidDataSource currentPool() {
+        return pool;
+    }
+
+    private void releaseBudget() {
+        AdaptivePoolSizer currentSizer = sizer;
+        if (currentSizer != null) {
+            currentSizer.release(this);
+        }
+    }
+
+    private DruidDataSource createPool() throws SQLException {
+        int maxActive = descriptor.getMaxActive();
+        AdaptivePoolSizer currentSizer = sizer;
+        if (currentSizer != null) {
+            maxActive = currentSizer.reserve(this, maxActive);
+        }
+        return buildPool(descriptor, maxActive);
+    }
+
+    private DruidDataSource buildPool(DataSourceProperties.DruidDataSourceProperties descriptor, int maxActive) {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setName(name);
+        dataSource.setUrl(descriptor.getUrl());
+        dataSource.setUsername(descriptor.getUsername());
+        dataSource.setPassword(descriptor.getPassword());
+        dataSource.setDriverClassName(descriptor.getDriverClassName());
+        dataSource.setInitialSize(Math.min(descriptor.getInitialSize(), maxActive));
+        dataSource.setMinIdle(Math.min(descriptor.getMinIdle(), maxActive));
+        dataSource.setMaxActive(maxActive);
+        dataSource.setMaxWait(descriptor.getMaxWait());
+        dataSource.setValidationQuery(descriptor.getValidationQuery());
+        dataSource.setTestOnBorrow(descriptor.isTestOnBorrow());
+        dataSource.setTestWhileIdle(descriptor.isTestWhileIdle());
+        SharedPoolSchedulers currentSchedulers = schedulers;
+        if (currentSchedulers != null) {
+            currentSchedulers.apply(dataSource);
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.multi.datasource.demo.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 物理连接池注册表
+ *
+ * 以 (url, username, driverClassName) 作为物理连接池的标识。指向同一数据库与账号的多个逻辑数据源
+ * 共享同一个连接池，注册表按引用计数管理，最后一个逻辑数据源移除时才关闭连接池。
+ * 连接池参数以第一个注册的逻辑数据源为准。
+ */
+public class PhysicalPoolRegistry {
+
+    private final Map<PoolKey, PhysicalPool> pools = new LinkedHashMap<>();
+
+    private final Map<ManagedDataSource, PhysicalPool> poolsByDataSource = new LinkedHashMap<>();
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * 为逻辑数据源获取物理连接池，不存在时按描述创建
+     * @param logicalName 逻辑数据源名称
+     * @param descriptor 连接池描述
+     * @return 共享的受管数据源
+     */
+    public synchronized ManagedDataSource acquire(String logicalName, DataSourceProperties.DruidDataSourceProperties descriptor) {
+        PoolKey key = new PoolKey(descriptor.getUrl(), descriptor.getUsername(), descriptor.getDriverClassName());
+        PhysicalPool pool = pools.get(key);
+        if (pool == null) {
+            String physicalId = "pool-" + sequence.incrementAndGet();
+            pool = new PhysicalPool(physicalId, new ManagedDataSource(physicalId, descriptor));
+            pools.put(key, pool);
+            poolsByDataSource.put(pool.dataSource, pool);
+        }
+        pool.aliases.add(logicalName);
+        return pool.dataSource;
+    }
+
+    /**
+     * 释放逻辑数据源对物理连接池的引用
+     * @param logicalName 逻辑数据源名称
+     * @param dataSource 受管数据源
+     * @return 是否为最后一个引用（调用方负责关闭连接池）
+     */
+    public synchronized boolean release(String logicalName, ManagedDataSource dataSource) {
+        PhysicalPool pool = poolsByDataSource.get(dataSource);
+        if (pool == null) {
+            return true;
+        }
+        pool.aliases.remove(logicalName);
+        if (!pool.aliases.isEmpty()) {
+            return false;
+        }
+        poolsByDataSource.remove(dataSource);
+        pools.values().remove(pool);
+        return true;
+    }
+
+    /**
+     * 连接地址或账号轮换后，以新的标识登记物理连接池
+     *
+     * 被多个逻辑数据源共享的连接池不能轮换：其他别名配置的仍是原地址与账号，轮换会把它们一并带走。
+     * @param dataSource 受管数据源
+     * @param url 新地址
+     * @param username 新用户名
+     * @throws IllegalArgumentException 连接池被多个逻辑数据源共享，或新地址与账号已被另一个物理连接池使用
+     */
+    public synchronized void rekey(ManagedDataSource dataSource, String url, String username) {
+        PhysicalPool pool = poolsByDataSource.get(dataSource);
+        if (pool == null) {
+            return;
+        }
+        PoolKey key = new PoolKey(url, username, dataSource.getDescriptor().getDriverClassName());
+        PhysicalPool existing = pools.get(key);
+        if (existing == pool) {
+            return;
+        }
+        if (pool.aliases.size() > 1) {
+            throw new IllegalArgumentException(sharedMessage(pool));
+        }
+        if (existing != null) {
+            throw new IllegalArgumentException("地址 " + url + " 与账号 " + username + " 已被物理连接池 "
+                    + existing.physicalId + " 使用");
+        }
+        pools.values().remove(pool);
+        pools.put(key, pool);
+    }
+
+    /**
+     * 检查受管数据源的连接池能否轮换地址或账号
+     * @param dataSource 受管数据源
+     * @throws IllegalArgumentException 连接池被多个逻辑数据源共享
+     */
+    public synchronized void checkRotatable(ManagedDataSource dataSource) {
+        PhysicalPool pool = poolsByDataSource.get(dataSource);
+        if (pool != null && pool.aliases.size() > 1) {
+            throw new IllegalArgumentException(sharedMessage(pool));
+        }
+    }
+
+    /**
+     * 获取受管数据源对应的物理连接池标识
+     * @param dataSource 受管数据源
+     * @return 物理连接池标识，不由注册表管理时返回null
+     */
+    public synchronized String getPhysicalId(ManagedDataSource dataSource) {
+        PhysicalPool pool = poolsByDataSource.get(dataSource);
+        return pool != null ? pool.physicalId : null;
+    }
+
+    /**
+     * 获取所有物理连接池及其逻辑别名
+     * @return 物理连接池信息列表
+     */
+    public synchronized List<Map<String, Object>> describe() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map.Entry<PoolKey, PhysicalPool> entry : pools.entrySet()) {
+            PhysicalPool pool = entry.getValue();
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("physicalId", pool.physicalId);
+            info.put("url", entry.getKey().url);
+            info.put("username", entry.getKey().username);
+            info.put("aliases", new ArrayList<>(pool.aliases));
+            info.put("refCount", pool.aliases.size());
+            info.put("materialized", pool.dataSource.isMaterialized());
+            info.put("activeCount", pool.dataSource.getActiveCount());
+            info.put("circuitBreaker", pool.dataSource.getCircuitBreaker().describe());
+            result.add(info);
+        }
+        return result;
+    }
+
+    private static String sharedMessage(PhysicalPool pool) {
+        return "物理连接池 " + pool.physicalId + " 被数据源 " + pool.aliases + " 共享，不能修改地址或账号";
+    }
+
+    private static class PhysicalPool {
+
+        private final String physicalId;
+        private final ManagedDataSource dataSource;
+        private final Set<String> aliases = new LinkedHashSet<>();
+
+        PhysicalPool(String physicalId, ManagedDataSource dataSource) {
+            this.physicalId = physicalId;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private static final class PoolKey {
+
+        private final String url;
+        private final String username;
+        private final String driverClassName;
+
+        PoolKey(String url, String username, String driverClassName) {
+            this.url = url;
+            this.username = username;
+            this.driverClassName = driverClassName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) o;
+            return Objects.equals(url, other.url)
+                    && Objects.equals(username, other.username)
+                    && Objects.equals(driverClassName, other.driverClassName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, username, driverClassName);
+        }
+    }
+}
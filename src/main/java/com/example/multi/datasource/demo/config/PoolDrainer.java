@@ -0,0 +1,225 @@
+package com.example.multi.datasource.demo.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * 已移除连接池的排空与关闭
+ *
+ * 数据源从路由快照中移除后不会再有新的借用，这里等待其活跃连接全部归还（最长不超过排空超时），
+ * 然后在后台线程中关闭连接池，释放物理连接以及Druid的创建/销毁线程。
+ */
+public class PoolDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolDrainer.class);
+
+    // 已结束的排空状态保留时长，超过后清理
+    private static final long STATUS_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    public enum DrainState {
+        DRAINING, CLOSED, FORCE_CLOSED, FAILED,
+        // 物理连接池仍被其他逻辑数据源引用，仅移除了别名
+        RELEASED
+    }
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, DrainStatus> statuses = new ConcurrentHashMap<>();
+
+    private volatile long drainTimeoutMillis = 30000;
+
+    private volatile long pollIntervalMillis = 200;
+
+    public PoolDrainer() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "datasource-drainer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 开始排空并异步关闭数据源
+     * @param key 数据源键
+     * @param dataSource 已从路由中移除的数据源
+     * @return 排空状态
+     */
+    public DrainStatus drain(String key, DataSource dataSource) {
+        purgeExpiredStatuses();
+
+        DrainStatus status = new DrainStatus(key, drainTimeoutMillis);
+        statuses.put(key, status);
+
+        if (dataSource instanceof ManagedDataSource) {
+            ManagedDataSource managed = (ManagedDataSource) dataSource;
+            scheduler.execute(new DrainTask(managed::getActiveCount, managed, status));
+        } else if (dataSource instanceof DruidDataSource) {
+            DruidDataSource druid = (DruidDataSource) dataSource;
+            scheduler.execute(new DrainTask(druid::getActiveCount, druid, status));
+        } else {
+            // 无法观察活跃连接数的数据源直接关闭
+            scheduler.execute(new DrainTask(() -> 0, dataSource, status));
+        }
+        return status;
+    }
+
+    /**
+     * 记录仅移除别名、物理连接池仍在使用的情况
+     * @param key 数据源键
+     * @param activeCount 物理连接池当前活跃连接数
+     * @return 排空状态
+     */
+    public DrainStatus released(String key, int activeCount) {
+        purgeExpiredStatuses();
+
+        DrainStatus status = new DrainStatus(key, 0);
+        status.finish(DrainState.RELEASED, activeCount);
+        statuses.put(key, status);
+        return status;
+    }
+
+    /**
+     * 获取数据源的排空状态
+     * @param key 数据源键
+     * @return 排空状态，不存在时返回null
+     */
+    public DrainStatus getStatus(String key) {
+        return statuses.get(key);
+    }
+
+    public void setDrainTimeoutMillis(long drainTimeoutMillis) {
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void purgeExpiredStatuses() {
+        long now = System.currentTimeMillis();
+        Iterator<DrainStatus> iterator = statuses.values().iterator();
+        while (iterator.hasNext()) {
+            DrainStatus status = iterator.next();
+            if (status.endTime > 0 && now - status.endTime > STATUS_RETENTION_MILLIS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void closeQuietly(DataSource dataSource, DrainStatus status) {
+        if (!(dataSource instanceof AutoCloseable)) {
+            return;
+        }
+        try {
+            ((AutoCloseable) dataSource).close();
+        } catch (Exception e) {
+            log.warn("关闭数据源 {} 时发生异常", status.key, e);
+            status.state = DrainState.FAILED;
+        }
+    }
+
+    private class DrainTask implements Runnable {
+
+        private final IntSupplier activeCounter;
+        private final DataSource dataSource;
+        private final DrainStatus status;
+
+        DrainTask(IntSupplier activeCounter, DataSource dataSource, DrainStatus status) {
+            this.activeCounter = activeCounter;
+            this.dataSource = dataSource;
+            this.status = status;
+        }
+
+        @Override
+        public void run() {
+            int activeCount = activeCounter.getAsInt();
+            status.activeCount = activeCount;
+
+            boolean timedOut = System.currentTimeMillis() >= status.deadline;
+            if (activeCount > 0 && !timedOut) {
+                scheduler.schedule(this, pollIntervalMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            if (activeCount > 0) {
+                log.warn("数据源 {} 排空超时，仍有 {} 个活跃连接，强制关闭", status.key, activeCount);
+            }
+            closeQuietly(dataSource, status);
+            if (status.state == DrainState.FAILED) {
+                status.finish(DrainState.FAILED, activeCount);
+            } else {
+                status.finish(activeCount > 0 ? DrainState.FORCE_CLOSED : DrainState.CLOSED, activeCount);
+            }
+            log.info("数据源 {} 排空结束，状态: {}", status.key, status.state);
+        }
+    }
+
+    /**
+     * 排空进度
+     */
+    public static class DrainStatus {
+
+        private final String key;
+        private final long startTime;
+        private final long deadline;
+        private volatile DrainState state = DrainState.DRAINING;
+        private volatile int activeCount;
+        private volatile long endTime;
+
+        DrainStatus(String key, long drainTimeoutMillis) {
+            this.key = key;
+            this.startTime = System.currentTimeMillis();
+            this.deadline = startTime + drainTimeoutMillis;
+        }
+
+        private void finish(DrainState state, int activeCount) {
+            this.activeCount = activeCount;
+            this.state = state;
+            this.endTime = System.currentTimeMillis();
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public DrainState getState() {
+            return state;
+        }
+
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("dsName", key);
+            map.put("state", state.name());
+            map.put("activeCount", activeCount);
+            map.put("startTime", startTime);
+            map.put("deadline", deadline);
+            if (endTime > 0) {
+                map.put("endTime", endTime);
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.multi.datasource.demo.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 连接池的在线参数变更，为null的字段保持不变
+ *
+ * maxActive、minIdle、maxWait与校验设置直接修改运行中的连接池；url、username、password的变化需要建立新的物理连接，
+ * 通过轮换连接池完成：新连接池校验通过后接管新的借用，旧连接池在活跃连接归还后关闭。
+ */
+public class PoolReconfiguration {
+
+    private Integer maxActive;
+    private Integer minIdle;
+    private Long maxWait;
+    private String validationQuery;
+    private Boolean testOnBorrow;
+    private Boolean testWhileIdle;
+    private String url;
+    private String username;
+    private String password;
+
+    /**
+     * 比较两份连接池描述，生成从current变为updated所需的变更
+     * @param current 当前描述
+     * @param updated 新描述
+     * @return 变更，没有变化时 {@link #isEmpty()} 为true
+     */
+    public static PoolReconfiguration diff(DataSourceProperties.DruidDataSourceProperties current,
+                                           DataSourceProperties.DruidDataSourceProperties updated) {
+        PoolReconfiguration change = new PoolReconfiguration();
+        if (current.getMaxActive() != updated.getMaxActive()) {
+            change.maxActive = updated.getMaxActive();
+        }
+        if (current.getMinIdle() != updated.getMinIdle()) {
+            change.minIdle = updated.getMinIdle();
+        }
+        if (current.getMaxWait() != updated.getMaxWait()) {
+            change.maxWait = updated.getMaxWait();
+        }
+        if (!Objects.equals(current.getValidationQuery(), updated.getValidationQuery())) {
+            change.validationQuery = updated.getValidationQuery() != null ? updated.getValidationQuery() : "";
+        }
+        if (current.isTestOnBorrow() != updated.isTestOnBorrow()) {
+            change.testOnBorrow = updated.isTestOnBorrow();
+        }
+        if (current.isTestWhileIdle() != updated.isTestWhileIdle()) {
+            change.testWhileIdle = updated.isTestWhileIdle();
+        }
+        if (!Objects.equals(current.getUrl(), updated.getUrl())) {
+            change.url = updated.getUrl();
+        }
+        if (!Objects.equals(current.getUsername(), updated.getUsername())) {
+            change.username = updated.getUsername();
+        }
+        if (!Objects.equals(current.getPassword(), updated.getPassword())) {
+            change.password = updated.getPassword() != null ? updated.getPassword() : "";
+        }
+        return change;
+    }
+
+    /**
+     * 校验变更
+     * @param current 当前描述
+     * @return 错误信息，合法时返回null
+     */
+    public String validate(DataSourceProperties.DruidDataSourceProperties current) {
+        if (isEmpty()) {
+            return "没有需要修改的参数";
+        }
+        int newMaxActive = maxActive != null ? maxActive : current.getMaxActive();
+        int newMinIdle = minIdle != null ? minIdle : current.getMinIdle();
+        if (newMaxActive <= 0) {
+            return "maxActive必须大于0";
+        }
+        if (newMinIdle < 0 || newMinIdle > newMaxActive) {
+            return "minIdle必须在0到maxActive之间";
+        }
+        if (url != null && url.trim().isEmpty()) {
+            return "url不能为空";
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return maxActive == null && minIdle == null && maxWait == null && validationQuery == null
+                && testOnBorrow == null && testWhileIdle == null && !changesConnection();
+    }
+
+    /**
+     * 是否修改了连接地址或账号，需要轮换连接池
+     */
+    public boolean changesConnection() {
+        return url != null || username != null || password != null;
+    }
+
+    /**
+     * 是否修改了maxActive或minIdle
+     */
+    public boolean changesLimits() {
+        return maxActive != null || minIdle != null;
+    }
+
+    /**
+     * 去掉地址变更的副本，用于副本和备用库：它们与主库共用账号，但地址各自独立
+     */
+    public PoolReconfiguration withoutUrl() {
+        PoolReconfiguration copy = new PoolReconfiguration();
+        copy.maxActive = maxActive;
+        copy.minIdle = minIdle;
+        copy.maxWait = maxWait;
+        copy.validationQuery = validationQuery;
+        copy.testOnBorrow = testOnBorrow;
+        copy.testWhileIdle = testWhileIdle;
+        copy.username = username;
+        copy.password = password;
+        return copy;
+    }
+
+    /**
+     * 把变更写入连接池描述
+     * @param descriptor 连接池描述
+     */
+    public void applyTo(DataSourceProperties.DruidDataSourceProperties descriptor) {
+        applySettingsTo(descriptor);
+        if (url != null) {
+            descriptor.setUrl(url);
+        }
+        if (username != null) {
+            descriptor.setUsername(username);
+        }
+        if (password != null) {
+            descriptor.setPassword(password);
+        }
+    }
+
+    /**
+     * 只把连接池容量与校验设置写入连接池描述
+     * @param descriptor 连接池描述
+     */
+    public void applySettingsTo(DataSourceProperties.DruidDataSourceProperties descriptor) {
+        if (maxActive != null) {
+            descriptor.setMaxActive(maxActive);
+        }
+        if (minIdle != null) {
+            descriptor.setMinIdle(minIdle);
+        }
+        if (maxWait != null) {
+            descriptor.setMaxWait(maxWait);
+        }
+        if (validationQuery != null) {
+            descriptor.setValidationQuery(validationQuery.isEmpty() ? null : validationQuery);
+        }
+        if (testOnBorrow != null) {
+            descriptor.setTestOnBorrow(testOnBorrow);
+        }
+        if (testWhileIdle != null) {
+            descriptor.setTestWhileIdle(testWhileIdle);
+        }
+    }
+
+    /**
+     * 变更内容，不包含密码
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        putIfSet(info, "maxActive", maxActive);
+        putIfSet(info, "minIdle", minIdle);
+        putIfSet(info, "maxWait", maxWait);
+        putIfSet(info, "validationQuery", validationQuery);
+        putIfSet(info, "testOnBorrow", testOnBorrow);
+        putIfSet(info, "testWhileIdle", testWhileIdle);
+        putIfSet(info, "url", url);
+        putIfSet(info, "username", username);
+        if (password != null) {
+            info.put("password", "******");
+        }
+        return info;
+    }
+
+    private static void putIfSet(Map<String, Object> info, String name, Object value) {
+        if (value != null) {
+            info.put(name, value);
+        }
+    }
+
+    public Integer getMaxActive() {
+        return maxActive;
+    }
+
+    public void setMaxActive(Integer maxActive) {
+        this.maxActive = maxActive;
+    }
+
+    public Integer getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(Integer minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public Long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(Long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public void setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+    }
+
+    public Boolean getTestOnBorrow() {
+        return testOnBorrow;
+    }
+
+    public void setTestOnBorrow(Boolean testOnBorrow) {
+        this.testOnBorrow = testOnBorrow;
+    }
+
+    public Boolean getTestWhileIdle() {
+        return testWhileIdle;
+    }
+
+    public void setTestWhileIdle(Boolean testWhileIdle) {
+        this.testWhileIdle = testWhileIdle;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+}
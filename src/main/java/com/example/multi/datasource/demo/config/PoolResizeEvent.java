@@ -0,0 +1,75 @@
+package com.example.multi.datasource.demo.config;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 连接池容量调整事件，由 {@link AdaptivePoolSizer} 在调整maxActive/minIdle后发布
+ */
+public class PoolResizeEvent extends ApplicationEvent {
+
+    private final String poolName;
+
+    private final int oldMaxActive;
+
+    private final int newMaxActive;
+
+    private final int oldMinIdle;
+
+    private final int newMinIdle;
+
+    private final String reason;
+
+    public PoolResizeEvent(Object source, String poolName, int oldMaxActive, int newMaxActive,
+                           int oldMinIdle, int newMinIdle, String reason) {
+        super(source);
+        this.poolName = poolName;
+        this.oldMaxActive = oldMaxActive;
+        this.newMaxActive = newMaxActive;
+        this.oldMinIdle = oldMinIdle;
+        this.newMinIdle = newMinIdle;
+        this.reason = reason;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    public int getOldMaxActive() {
+        return oldMaxActive;
+    }
+
+    public int getNewMaxActive() {
+        return newMaxActive;
+    }
+
+    public int getOldMinIdle() {
+        return oldMinIdle;
+    }
+
+    public int getNewMinIdle() {
+        return newMinIdle;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("pool", poolName);
+        info.put("maxActive", oldMaxActive + " -> " + newMaxActive);
+        info.put("minIdle", oldMinIdle + " -> " + newMinIdle);
+        info.put("reason", reason);
+        info.put("timestamp", getTimestamp());
+        return info;
+    }
+
+    @Override
+    public String toString() {
+        return "连接池 " + poolName + " maxActive " + oldMaxActive + " -> " + newMaxActive
+                + "，minIdle " + oldMinIdle + " -> " + newMinIdle + "，原因: " + reason;
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.multi.datasource.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 新增数据源的连接预热与就绪门控
+ *
+ * 数据源在加入路由之前先把每个连接池预热到目标连接数，逐个校验连接并执行预热查询，全部成功后才发布到路由快照，
+ * 第一批请求不必承担建立物理连接和冷缓存的开销。预热期间数据源处于WARMING状态，失败时释放连接池，不加入路由。
+ */
+public class PoolWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolWarmer.class);
+
+    // 已结束的预热状态保留时长，超过后清理
+    private static final long STATUS_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    public enum WarmupState {
+        WARMING, READY, FAILED
+    }
+
+    private final ExecutorService executor;
+
+    private final Map<String, WarmupStatus> statuses = new ConcurrentHashMap<>();
+
+    // 单个连接的校验超时(s)
+    private volatile int validationTimeoutSeconds = 5;
+
+    public PoolWarmer() {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "datasource-warmer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 登记一个开始预热的数据源
+     * @param key 数据源键
+     * @param targetSize 每个连接池的目标连接数
+     * @return 预热状态
+     * @throws IllegalArgumentException 数据源已在预热中
+     */
+    public synchronized WarmupStatus begin(String key, int targetSize) {
+        purgeExpiredStatuses();
+
+        WarmupStatus existing = statuses.get(key);
+        if (existing != null && existing.state == WarmupState.WARMING) {
+            throw new IllegalArgumentException("数据源 " + key + " 正在预热");
+        }
+        WarmupStatus status = new WarmupStatus(key, targetSize);
+        statuses.put(key, status);
+        return status;
+    }
+
+    /**
+     * 在后台预热连接池，成功后发布数据源，失败时释放连接池
+     * @param status {@link #begin} 返回的预热状态
+     * @param pools 数据源的所有连接池
+     * @param warmUpQueries 预热查询，每个连接池执行一次，可为空
+     * @param publish 发布数据源到路由
+     * @param release 释放数据源的连接池
+     */
+    public void warm(WarmupStatus status, List<ManagedDataSource> pools, List<String> warmUpQueries,
+                     Runnable publish, Runnable release) {
+        List<String> queries = warmUpQueries != null ? warmUpQueries : Collections.<String>emptyList();
+        executor.execute(() -> {
+            try {
+                for (ManagedDataSource pool : pools) {
+                    warmPool(pool, status, queries);
+                }
+                publish.run();
+                status.finish(WarmupState.READY, null);
+                log.info("数据源 {} 预热完成，共预热 {} 个连接，耗时 {} ms", status.key, status.warmed.get(),
+                        status.endTime - status.startTime);
+            } catch (Exception e) {
+                log.warn("数据源 {} 预热失败，不加入路由", status.key, e);
+                status.finish(WarmupState.FAILED, e.getMessage());
+                try {
+                    release.run();
+                } catch (Exception releaseError) {
+                    log.warn("释放预热失败的数据源 {} 时发生异常", status.key, releaseError);
+                }
+            }
+        });
+    }
+
+    /**
+     * 记录在后台预热开始前就失败的数据源
+     * @param status 预热状态
+     * @param error 失败原因
+     */
+    public void fail(WarmupStatus status, String error) {
+        status.finish(WarmupState.FAILED, error);
+    }
+
+    /**
+     * 同时借出目标数量的连接，迫使连接池建立物理连接，逐个校验后全部归还
+     */
+    private void warmPool(ManagedDataSource pool, WarmupStatus status, List<String> queries) throws SQLException {
+        int target = Math.min(status.targetSize, pool.obtainPool().getMaxActive());
+        List<Connection> held = new ArrayList<>(target);
+        try {
+            for (int i = 0; i < Math.max(1, target); i++) {
+                Connection connection = pool.getConnection();
+                held.add(connection);
+                if (!connection.isValid(validationTimeoutSeconds)) {
+                    throw new SQLException("连接池 " + pool.getName() + " 的连接校验失败");
+                }
+                status.warmed.incrementAndGet();
+            }
+            // 预热查询填充数据库侧的缓存，每个连接池执行一次
+            for (String query : queries) {
+                try (Statement statement = held.get(0).createStatement()) {
+                    statement.execute(query);
+                }
+            }
+        } finally {
+            for (Connection connection : held) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("归还预热连接时发生异常", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 数据源是否正在预热
+     * @param key 数据源键
+     */
+    public boolean isWarming(String key) {
+        WarmupStatus status = statuses.get(key);
+        return status != null && status.state == WarmupState.WARMING;
+    }
+
+    /**
+     * 获取数据源的预热状态
+     * @param key 数据源键
+     * @return 预热状态，不存在时返回null
+     */
+    public WarmupStatus getStatus(String key) {
+        return statuses.get(key);
+    }
+
+    /**
+     * 所有预热状态
+     */
+    public Map<String, Map<String, Object>> getStatuses() {
+        purgeExpiredStatuses();
+        Map<String, Map<String, Object>> result = new HashMap<>();
+        for (WarmupStatus status : statuses.values()) {
+            result.put(status.key, status.toMap());
+        }
+        return result;
+    }
+
+    /**
+     * 移除数据源的预热记录，数据源被删除时调用
+     * @param key 数据源键
+     */
+    public void forget(String key) {
+        WarmupStatus status = statuses.get(key);
+        if (status != null && status.state != WarmupState.WARMING) {
+            statuses.remove(key, status);
+        }
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void purgeExpiredStatuses() {
+        long now = System.currentTimeMillis();
+        Iterator<WarmupStatus> iterator = statuses.values().iterator();
+        while (iterator.hasNext()) {
+            WarmupStatus status = iterator.next();
+            if (status.endTime > 0 && now - status.endTime > STATUS_RETENTION_MILLIS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 预热进度
+     */
+    public static class WarmupStatus {
+
+        private final String key;
+        private final int targetSize;
+        private final long startTime;
+        private final AtomicInteger warmed = new AtomicInteger();
+        private volatile WarmupState state = WarmupState.WARMING;
+        private volatile String error;
+        private volatile long endTime;
+
+        WarmupStatus(String key, int targetSize) {
+            this.key = key;
+            this.targetSize = targetSize;
+            this.startTime = System.currentTimeMillis();
+        }
+
+        private void finish(WarmupState state, String error) {
+            this.error = error;
+            this.endTime = System.currentTimeMillis();
+            this.state = state;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public WarmupState getState() {
+            return state;
+        }
+
+        public int getWarmed() {
+            return warmed.get();
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("dsName", key);
+            map.put("state", state.name());
+            map.put("targetSize", targetSize);
+            map.put("warmed", warmed.get());
+            map.put("startTime", startTime);
+            if (endTime > 0) {
+                map.put("endTime", endTime);
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+}
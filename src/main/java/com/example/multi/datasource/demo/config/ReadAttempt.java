@@ -0,0 +1,117 @@
+package com.example.multi.datasource.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次副本读尝试
+ *
+ * 对冲读时同一个查询会在两个副本上各执行一次。每次尝试绑定在执行它的线程上，记录选中的副本与执行中的语句，
+ * 输掉的一方可以通过 {@link #cancel()} 取消正在执行的语句。对冲尝试会避开第一次尝试已选中的副本。
+ */
+public final class ReadAttempt {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadAttempt.class);
+
+    private static final ThreadLocal<ReadAttempt> CURRENT = new ThreadLocal<>();
+
+    private final ManagedDataSource excluded;
+
+    private final List<Statement> statements = new ArrayList<>();
+
+    private volatile ManagedDataSource replica;
+
+    private volatile boolean cancelled;
+
+    public ReadAttempt(ManagedDataSource excluded) {
+        this.excluded = excluded;
+    }
+
+    /**
+     * 将尝试绑定到当前线程
+     */
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * 解除当前线程绑定的尝试
+     */
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    static ReadAttempt current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 取消尝试，正在执行的语句会被取消，之后不再借出连接
+     */
+    public void cancel() {
+        List<Statement> running;
+        synchronized (statements) {
+            cancelled = true;
+            running = new ArrayList<>(statements);
+        }
+        for (Statement statement : running) {
+            cancelQuietly(statement);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 本次尝试选中的副本，尚未借用连接时为null
+     */
+    public ManagedDataSource getReplica() {
+        return replica;
+    }
+
+    ManagedDataSource getExcluded() {
+        return excluded;
+    }
+
+    /**
+     * 记录选中的副本并跟踪连接上创建的语句
+     */
+    Connection track(ManagedDataSource chosen, Connection connection) throws SQLException {
+        if (cancelled) {
+            connection.close();
+            throw new SQLException("读尝试已取消");
+        }
+        replica = chosen;
+        return ConnectionProxies.onStatement(connection, this::register);
+    }
+
+    private void register(Statement statement) {
+        boolean cancelNow;
+        synchronized (statements) {
+            cancelNow = cancelled;
+            if (!cancelNow) {
+                statements.add(statement);
+            }
+        }
+        if (cancelNow) {
+            cancelQuietly(statement);
+        }
+    }
+
+    private static void cancelQuietly(Statement statement) {
+        try {
+            if (!statement.isClosed()) {
+                statement.cancel();
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.debug("取消语句失败: {}", e.getMessage());
+        }
+    }
+}
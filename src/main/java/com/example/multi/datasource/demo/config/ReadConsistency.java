@@ -0,0 +1,107 @@
+package com.example.multi.datasource.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 读己之写的一致性要求
+ *
+ * 写请求返回会话令牌（数据源名@复制位点），后续读请求携带该令牌时，只会路由到复制位点不低于令牌的副本，
+ * 没有追上的副本时回退到主库。要求绑定在当前线程上。
+ */
+public final class ReadConsistency {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadConsistency.class);
+
+    /**
+     * 传递会话令牌的请求/响应头
+     */
+    public static final String HEADER = "X-Session-Token";
+
+    private static final ThreadLocal<Requirement> CURRENT = new ThreadLocal<>();
+
+    private ReadConsistency() {
+    }
+
+    /**
+     * 生成会话令牌
+     * @param dsName 数据源名称
+     * @param position 副本需要达到的复制位点
+     * @return 会话令牌
+     */
+    public static String token(String dsName, long position) {
+        return dsName + "@" + position;
+    }
+
+    /**
+     * 按会话令牌为当前线程设置一致性要求，令牌非法时忽略
+     * @param token 会话令牌
+     */
+    public static void require(String token) {
+        int separator = token != null ? token.lastIndexOf('@') : -1;
+        if (separator <= 0) {
+            return;
+        }
+        try {
+            long position = Long.parseLong(token.substring(separator + 1));
+            CURRENT.set(new Requirement(token.substring(0, separator), position));
+        } catch (NumberFormatException e) {
+            log.debug("忽略非法的会话令牌: {}", token);
+        }
+    }
+
+    /**
+     * 为当前线程设置一致性要求，用于在线程间传递
+     * @param requirement 一致性要求，为null时清除
+     */
+    public static void require(Requirement requirement) {
+        if (requirement != null) {
+            CURRENT.set(requirement);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 当前线程的一致性要求
+     */
+    public static Requirement current() {
+        return CURRENT.get();
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 当前线程对指定数据源要求的复制位点
+     * @param dsName 数据源名称
+     * @return 复制位点，没有要求时为0
+     */
+    static long requiredPosition(String dsName) {
+        Requirement requirement = CURRENT.get();
+        return requirement != null && requirement.dsName.equals(dsName) ? requirement.position : 0;
+    }
+
+    /**
+     * 一致性要求：数据源与副本需要达到的复制位点
+     */
+    public static final class Requirement {
+
+        private final String dsName;
+        private final long position;
+
+        Requirement(String dsName, long position) {
+            this.dsName = dsName;
+            this.position = position;
+        }
+
+        public String getDsName() {
+            return dsName;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.multi.datasource.demo.config;
+
+import java.util.List;
+
+/**
+ * 只读副本负载均衡策略
+ */
+@FunctionalInterface
+public interface ReplicaBalancer {
+
+    /**
+     * 从副本中选择一个用于本次读请求
+     * @param replicas 副本列表，不为空
+     * @return 选中的副本
+     */
+    ManagedDataSource choose(List<ManagedDataSource> replicas);
+
+    /**
+     * 是否需要连接借用与归还的耗时反馈；为true时读写分离数据源会包装连接以统计归还时间
+     */
+    default boolean tracksLatency() {
+        return false;
+    }
+
+    /**
+     * 从副本借到连接
+     * @param replica 副本
+     * @param waitNanos 等待连接的耗时(ns)
+     */
+    default void onAcquired(ManagedDataSource replica, long waitNanos) {
+    }
+
+    /**
+     * 副本连接归还
+     * @param replica 副本
+     * @param holdNanos 连接借出到归还的耗时(ns)，近似为查询耗时
+     */
+    default void onReleased(ManagedDataSource replica, long holdNanos) {
+    }
+
+    /**
+     * 从副本获取连接失败
+     * @param replica 副本
+     */
+    default void onFailure(ManagedDataSource replica) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.multi.datasource.demo.config;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内置的副本负载均衡策略
+ */
+public final class ReplicaBalancers {
+
+    public static final String ROUND_ROBIN = "round-robin";
+
+    public static final String LEAST_ACTIVE = "least-active";
+
+    public static final String LATENCY_AWARE = "latency-aware";
+
+    private ReplicaBalancers() {
+    }
+
+    /**
+     * 按名称创建负载均衡策略，每个副本组使用独立的实例
+     * @param name 策略名称，为空时使用轮询
+     * @return 负载均衡策略
+     */
+    public static ReplicaBalancer of(String name) {
+        if (name == null || name.isEmpty() || ROUND_ROBIN.equals(name)) {
+            return new RoundRobin();
+        }
+        if (LEAST_ACTIVE.equals(name)) {
+            return new LeastActive();
+        }
+        if (LATENCY_AWARE.equals(name)) {
+            return new LatencyAwareBalancer();
+        }
+        throw new IllegalArgumentException("未知的副本负载均衡策略: " + name);
+    }
+
+    /**
+     * 轮询
+     */
+    static class RoundRobin implements ReplicaBalancer {
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public ManagedDataSource choose(List<ManagedDataSource> replicas) {
+            return replicas.get((next.getAndIncrement() & Integer.MAX_VALUE) % replicas.size());
+        }
+    }
+
+    /**
+     * 最少活跃连接，按Druid的活跃连接数选择；活跃数相同时从轮转的起点开始比较，避免总是命中第一个副本
+     */
+    static class LeastActive implements ReplicaBalancer {
+
+        private final AtomicInteger offset = new AtomicInteger();
+
+        @Override
+        public ManagedDataSource choose(List<ManagedDataSource> replicas) {
+            int size = replicas.size();
+            int start = (offset.getAndIncrement() & Integer.MAX_VALUE) % size;
+            ManagedDataSource best = replicas.get(start);
+            int bestActive = best.getActiveCount();
+            for (int i = 1; i < size && bestActive > 0; i++) {
+                ManagedDataSource candidate = replicas.get((start + i) % size);
+                int active = candidate.getActiveCount();
+                if (active < bestActive) {
+                    best = candidate;
+                    bestActive = active;
+                }
+            }
+            return best;
+        }
+    }
+}
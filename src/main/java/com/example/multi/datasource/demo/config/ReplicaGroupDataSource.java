@@ -0,0 +1,183 @@
+package com.example.multi.datasource.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 读写分离数据源
+ *
+ * 一个逻辑数据源由一个主库和若干只读副本组成。写请求始终使用主库；当前线程标记为只读时
+ * （见 {@link DynamicDataSource#setReadOnly(boolean)}），按负载均衡策略选择副本，副本不可用时回退到主库。
+ * 读请求带有会话令牌时（见 {@link ReadConsistency}），只在复制位点已追上令牌的副本中选择。
+ */
+public class ReplicaGroupDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaGroupDataSource.class);
+
+    private final String name;
+
+    private final ManagedDataSource primary;
+
+    private final List<ManagedDataSource> replicas;
+
+    private volatile ReplicaBalancer balancer;
+
+    // 主库已提交的心跳位点
+    private volatile long primaryPosition;
+
+    // 主库正在写入的心跳位点，会话令牌以此为基准签发
+    private volatile long pendingPosition;
+
+    // 每个副本已复制到的心跳位点
+    private final AtomicLongArray replicaPositions;
+
+    // 每个副本的复制延迟(ms)，未知时为-1
+    private final AtomicLongArray replicaLagMillis;
+
+    public ReplicaGroupDataSource(String name, ManagedDataSource primary, List<ManagedDataSource> replicas,
+                                  ReplicaBalancer balancer) {
+        this.name = name;
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.balancer = balancer;
+        this.replicaPositions = new AtomicLongArray(this.replicas.size());
+        this.replicaLagMillis = new AtomicLongArray(this.replicas.size());
+        for (int i = 0; i < this.replicas.size(); i++) {
+            replicaLagMillis.set(i, -1);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!DynamicDataSource.isReadOnly() || replicas.isEmpty()) {
+            return primary.getConnection();
+        }
+        List<ManagedDataSource> candidates = replicas;
+        long required = ReadConsistency.requiredPosition(name);
+        if (required > 0) {
+            candidates = caughtUp(required);
+            if (candidates.isEmpty()) {
+                log.debug("数据源 {} 没有复制位点达到 {} 的副本，读请求使用主库", name, required);
+                return primary.getConnection();
+            }
+        }
+        ReplicaBalancer current = balancer;
+        ReadAttempt attempt = ReadAttempt.current();
+        ManagedDataSource replica = attempt != null && attempt.getExcluded() != null
+                ? chooseExcluding(current, candidates, attempt.getExcluded())
+                : current.choose(candidates);
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = replica.getConnection();
+        } catch (SQLException e) {
+            current.onFailure(replica);
+            log.warn("数据源 {} 的副本 {} 获取连接失败，回退到主库: {}", name, replica.getName(), e.getMessage());
+            return primary.getConnection();
+        }
+        if (attempt != null) {
+            connection = attempt.track(replica, connection);
+        }
+        if (!current.tracksLatency()) {
+            return connection;
+        }
+        long acquired = System.nanoTime();
+        current.onAcquired(replica, acquired - start);
+        return ConnectionProxies.onClose(connection, target -> current.onReleased(replica, System.nanoTime() - acquired));
+    }
+
+    /**
+     * 在除指定副本以外的候选副本中选择，仅用于对冲读
+     */
+    private ManagedDataSource chooseExcluding(ReplicaBalancer current, List<ManagedDataSource> candidates,
+                                              ManagedDataSource excluded) {
+        List<ManagedDataSource> others = new ArrayList<>(candidates.size());
+        for (ManagedDataSource replica : candidates) {
+            if (replica != excluded) {
+                others.add(replica);
+            }
+        }
+        return current.choose(others.isEmpty() ? candidates : others);
+    }
+
+    /**
+     * 复制位点不低于指定位点的副本
+     */
+    private List<ManagedDataSource> caughtUp(long required) {
+        List<ManagedDataSource> result = new ArrayList<>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            if (replicaPositions.get(i) >= required) {
+                result.add(replicas.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 为刚完成的写请求签发的复制位点：主库下一次（或正在写入的）心跳之后的位点
+     */
+    public long nextSessionPosition() {
+        return pendingPosition + 1;
+    }
+
+    void beginHeartbeat(long position) {
+        pendingPosition = position;
+    }
+
+    void updatePrimaryPosition(long position) {
+        primaryPosition = position;
+        if (pendingPosition < position) {
+            pendingPosition = position;
+        }
+    }
+
+    void updateReplicaPosition(int index, long position, long lagMillis) {
+        replicaPositions.set(index, position);
+        replicaLagMillis.set(index, lagMillis);
+    }
+
+    public long getPrimaryPosition() {
+        return primaryPosition;
+    }
+
+    public long getReplicaPosition(int index) {
+        return replicaPositions.get(index);
+    }
+
+    public long getReplicaLagMillis(int index) {
+        return replicaLagMillis.get(index);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("读写分离数据源不支持指定用户名密码获取连接");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ManagedDataSource getPrimary() {
+        return primary;
+    }
+
+    public List<ManagedDataSource> getReplicas() {
+        return replicas;
+    }
+
+    public ReplicaBalancer getBalancer() {
+        return balancer;
+    }
+
+    public void setBalancer(ReplicaBalancer balancer) {
+        this.balancer = balancer;
+    }
+}
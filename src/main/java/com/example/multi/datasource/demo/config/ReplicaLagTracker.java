@@ -0,0 +1,102 @@
+package com.example.multi.datasource.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 基于心跳表的副本复制位点跟踪
+ *
+ * 定期向主库的心跳表写入递增序号和时间戳，再从每个副本读取心跳表：副本读到的序号即为其复制位点，
+ * 与主库时间戳之差即为复制延迟。只跟踪已创建的连接池，且不刷新连接池的访问时间，不影响空闲休眠。
+ */
+class ReplicaLagTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagTracker.class);
+
+    static final String HEARTBEAT_TABLE = "ds_heartbeat";
+
+    // 已确认心跳表存在的主库
+    private final Set<ReplicaGroupDataSource> initialized = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /**
+     * 写入一次心跳并刷新所有副本的复制位点
+     * @param group 读写分离数据源
+     */
+    void track(ReplicaGroupDataSource group) {
+        ManagedDataSource primary = group.getPrimary();
+        if (!primary.isMaterialized()) {
+            return;
+        }
+        try {
+            writeHeartbeat(group);
+        } catch (SQLException e) {
+            log.warn("数据源 {} 写入心跳失败: {}", group.getName(), e.getMessage());
+            return;
+        }
+        for (int i = 0; i < group.getReplicas().size(); i++) {
+            ManagedDataSource replica = group.getReplicas().get(i);
+            if (!replica.isMaterialized()) {
+                continue;
+            }
+            try (Connection connection = replica.obtainPool().getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT seq, ts FROM " + HEARTBEAT_TABLE + " WHERE id = 1")) {
+                if (resultSet.next()) {
+                    group.updateReplicaPosition(i, resultSet.getLong(1), System.currentTimeMillis() - resultSet.getLong(2));
+                }
+            } catch (SQLException e) {
+                // 副本尚未复制到心跳表，保持原位点
+                log.debug("读取数据源 {} 副本 {} 的心跳失败: {}", group.getName(), replica.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private void writeHeartbeat(ReplicaGroupDataSource group) throws SQLException {
+        try (Connection connection = group.getPrimary().obtainPool().getConnection()) {
+            if (!initialized.contains(group)) {
+                initialize(connection, group);
+                initialized.add(group);
+            }
+            long next = group.getPrimaryPosition() + 1;
+            // 先登记待提交的位点，保证此后签发的令牌不会早于这次心跳
+            group.beginHeartbeat(next);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE " + HEARTBEAT_TABLE + " SET seq = ?, ts = ? WHERE id = 1")) {
+                statement.setLong(1, next);
+                statement.setLong(2, System.currentTimeMillis());
+                if (statement.executeUpdate() == 0) {
+                    try (PreparedStatement insert = connection.prepareStatement(
+                            "INSERT INTO " + HEARTBEAT_TABLE + " (id, seq, ts) VALUES (1, ?, ?)")) {
+                        insert.setLong(1, next);
+                        insert.setLong(2, System.currentTimeMillis());
+                        insert.executeUpdate();
+                    }
+                }
+            }
+            group.updatePrimaryPosition(next);
+        }
+    }
+
+    private void initialize(Connection connection, ReplicaGroupDataSource group) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + HEARTBEAT_TABLE
+                    + " (id INT PRIMARY KEY, seq BIGINT NOT NULL, ts BIGINT NOT NULL)");
+            // 重启后从已有序号继续递增
+            try (ResultSet resultSet = statement.executeQuery("SELECT seq FROM " + HEARTBEAT_TABLE + " WHERE id = 1")) {
+                if (resultSet.next()) {
+                    group.updatePrimaryPosition(resultSet.getLong(1));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.multi.datasource.demo.config;
+
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.protocol.RedisCommand;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求级截止时间
+ *
+ * 截止时间来自请求头或接口默认超时，绑定在当前线程上，并转换为JDBC语句的查询超时、Druid借用连接的等待时间
+ * 和Redis命令超时。截止时间已过的工作直接放弃，不再借用连接或发出命令。没有截止时间时各项超时保持原配置。
+ */
+public final class RequestDeadline {
+
+    /**
+     * 传递请求超时时间(ms)的请求头
+     */
+    public static final String HEADER = "X-Request-Timeout";
+
+    // System.nanoTime() 表示的截止时刻
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    /**
+     * 为当前线程设置截止时间
+     * @param timeoutMillis 从现在起的超时时间(ms)
+     */
+    public static void start(long timeoutMillis) {
+        DEADLINE.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    /**
+     * 为当前线程设置截止时间，用于在线程间传递
+     * @param deadline {@link #current()} 返回的截止时刻，为null时清除
+     */
+    public static void restore(Long deadline) {
+        if (deadline != null) {
+            DEADLINE.set(deadline);
+        } else {
+            DEADLINE.remove();
+        }
+    }
+
+    /**
+     * 当前线程的截止时刻，没有截止时间时返回null
+     */
+    public static Long current() {
+        return DEADLINE.get();
+    }
+
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    public static boolean isSet() {
+        return DEADLINE.get() != null;
+    }
+
+    /**
+     * 剩余时间(ms)，没有截止时间时为Long.MAX_VALUE，已过期时为0或负数
+     */
+    public static long remainingMillis() {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    public static boolean isExpired() {
+        Long deadline = DEADLINE.get();
+        return deadline != null && deadline - System.nanoTime() <= 0;
+    }
+
+    /**
+     * 用剩余时间约束一个等待时间
+     * @param waitMillis 原等待时间(ms)，小于等于0表示不限
+     * @return 不超过剩余时间的等待时间(ms)
+     */
+    public static long bound(long waitMillis) {
+        long remaining = remainingMillis();
+        if (waitMillis <= 0) {
+            return remaining;
+        }
+        return Math.min(waitMillis, remaining);
+    }
+
+    /**
+     * 截止时间已过时放弃即将开始的工作
+     * @param action 即将开始的工作，用于异常信息
+     * @throws DeadlineExceededException 截止时间已过
+     */
+    public static void check(String action) {
+        if (isExpired()) {
+            throw new DeadlineExceededException("请求已超过截止时间，放弃" + action);
+        }
+    }
+
+    /**
+     * 按剩余时间设置语句的查询超时，JDBC超时以秒为单位，向上取整
+     * @param statement 新创建的语句
+     * @throws SQLTimeoutException 截止时间已过
+     */
+    static void applyQueryTimeout(Statement statement) throws SQLException {
+        long remaining = remainingMillis();
+        if (remaining == Long.MAX_VALUE) {
+            return;
+        }
+        if (remaining <= 0) {
+            statement.close();
+            throw new SQLTimeoutException("请求已超过截止时间，放弃执行语句");
+        }
+        int seconds = (int) Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000);
+        int configured = statement.getQueryTimeout();
+        if (configured == 0 || seconds < configured) {
+            statement.setQueryTimeout(seconds);
+        }
+    }
+
+    /**
+     * Redis命令超时来源：有截止时间时取剩余时间，否则取默认命令超时
+     * @param defaultTimeout 默认命令超时
+     * @return Lettuce超时来源
+     */
+    public static TimeoutOptions.TimeoutSource redisTimeoutSource(Duration defaultTimeout) {
+        long defaultMillis = defaultTimeout.toMillis();
+        return new TimeoutOptions.TimeoutSource() {
+            @Override
+            public long getTimeout(RedisCommand<?, ?, ?> command) {
+                // 命令在发出命令的线程上取得超时；小于等于0在Lettuce中表示不超时，已过期时取1ms
+                return Math.max(1, Math.min(defaultMillis, remainingMillis()));
+            }
+        };
+    }
+}
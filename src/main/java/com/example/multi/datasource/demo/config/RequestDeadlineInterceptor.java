@@ -0,0 +1,90 @@
+package com.example.multi.datasource.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 按请求头、接口注解和全局默认值中最短的超时为本次请求设置截止时间
+ */
+@Component
+public class RequestDeadlineInterceptor implements HandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestDeadlineInterceptor.class);
+
+    private static final String DEADLINE_ATTRIBUTE = RequestDeadlineInterceptor.class.getName() + ".deadline";
+
+    @Autowired(required = false)
+    private DataSourceProperties dataSourceProperties;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 异步请求再次分派时沿用首次分派的截止时间
+        Object started = request.getAttribute(DEADLINE_ATTRIBUTE);
+        if (started != null) {
+            RequestDeadline.restore((Long) started);
+            return true;
+        }
+        long timeout = shorter(headerTimeout(request), endpointTimeout(handler));
+        if (dataSourceProperties != null) {
+            timeout = shorter(timeout, dataSourceProperties.getRequestTimeoutDefault());
+        }
+        if (timeout > 0) {
+            RequestDeadline.start(timeout);
+            request.setAttribute(DEADLINE_ATTRIBUTE, RequestDeadline.current());
+        } else {
+            RequestDeadline.clear();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestDeadline.clear();
+    }
+
+    private static long headerTimeout(HttpServletRequest request) {
+        String header = request.getHeader(RequestDeadline.HEADER);
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            log.debug("忽略非法的请求超时: {}", header);
+            return 0;
+        }
+    }
+
+    private static long endpointTimeout(Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return 0;
+        }
+        HandlerMethod method = (HandlerMethod) handler;
+        RequestTimeout timeout = AnnotatedElementUtils.findMergedAnnotation(method.getMethod(), RequestTimeout.class);
+        if (timeout == null) {
+            timeout = AnnotatedElementUtils.findMergedAnnotation(method.getBeanType(), RequestTimeout.class);
+        }
+        return timeout != null ? timeout.value() : 0;
+    }
+
+    /**
+     * 取两个超时中较短的一个，小于等于0表示不限制
+     */
+    private static long shorter(long a, long b) {
+        if (a <= 0) {
+            return b;
+        }
+        if (b <= 0) {
+            return a;
+        }
+        return Math.min(a, b);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.multi.datasource.demo.config;
+
+import java.lang.annotation.*;
+
+/**
+ * 接口的默认请求超时时间(ms)，请求头 {@link RequestDeadline#HEADER} 指定的更短超时优先
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RequestTimeout {
+    long value();
+}
@@ -0,0 +1,96 @@
+package com.example.multi.datasource.demo.config;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 数据源路由快照
+ *
+ * 实例一经创建即不可变，所有修改都会生成新的快照，由 {@link DynamicDataSource} 整体原子替换。
+ * 读路径（路由查找、存在性检查）只做一次 HashMap 查找，不加锁也不分配对象。
+ */
+final class RoutingTable {
+
+    static final RoutingTable EMPTY = new RoutingTable(
+            Collections.<String, DataSource>emptyMap(), Collections.<String, DataSource>emptyMap());
+
+    // 通过 setTargetDataSources 配置的数据源（默认数据源及预定义数据源）
+    private final Map<String, DataSource> staticDataSources;
+
+    // 运行时动态添加的数据源
+    private final Map<String, DataSource> dynamicDataSources;
+
+    private RoutingTable(Map<String, DataSource> staticDataSources, Map<String, DataSource> dynamicDataSources) {
+        this.staticDataSources = staticDataSources;
+        this.dynamicDataSources = dynamicDataSources;
+    }
+
+    /**
+     * 根据数据源键查找目标数据源，动态数据源优先
+     * @param key 数据源键
+     * @return 目标数据源，不存在时返回null
+     */
+    DataSource lookup(String key) {
+        DataSource dataSource = dynamicDataSources.get(key);
+        return dataSource != null ? dataSource : staticDataSources.get(key);
+    }
+
+    /**
+     * 判断动态数据源是否存在
+     * @param key 数据源键
+     * @return 是否存在
+     */
+    boolean containsDynamic(String key) {
+        return dynamicDataSources.containsKey(key);
+    }
+
+    /**
+     * 获取动态数据源的只读视图
+     * @return 动态数据源Map
+     */
+    Map<String, DataSource> dynamicDataSources() {
+        return dynamicDataSources;
+    }
+
+    /**
+     * 遍历快照中的全部数据源（预定义数据源与动态数据源）
+     * @param action 处理函数
+     */
+    void forEachDataSource(BiConsumer<String, DataSource> action) {
+        staticDataSources.forEach(action);
+        dynamicDataSources.forEach(action);
+    }
+
+    int size() {
+        return dynamicDataSources.size();
+    }
+
+    RoutingTable withStaticDataSources(Map<String, DataSource> dataSources) {
+        return new RoutingTable(freeze(new HashMap<>(dataSources)), dynamicDataSources);
+    }
+
+    RoutingTable withDataSource(String key, DataSource dataSource) {
+        Map<String, DataSource> copy = new HashMap<>(dynamicDataSources);
+        copy.put(key, dataSource);
+        return new RoutingTable(staticDataSources, freeze(copy));
+    }
+
+    RoutingTable withDataSources(Map<String, ? extends DataSource> dataSources) {
+        Map<String, DataSource> copy = new HashMap<>(dynamicDataSources);
+        copy.putAll(dataSources);
+        return new RoutingTable(staticDataSources, freeze(copy));
+    }
+
+    RoutingTable withoutDataSource(String key) {
+        Map<String, DataSource> copy = new HashMap<>(dynamicDataSources);
+        copy.remove(key);
+        return new RoutingTable(staticDataSources, freeze(copy));
+    }
+
+    private static Map<String, DataSource> freeze(Map<String, DataSource> dataSources) {
+        return Collections.unmodifiableMap(dataSources);
+    }
+}
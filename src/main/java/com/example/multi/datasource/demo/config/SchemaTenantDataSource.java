@@ -0,0 +1,129 @@
+package com.example.multi.datasource.demo.config;
+
+import com.alibaba.druid.pool.DruidPooledConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 库内多Schema租户数据源
+ *
+ * 多个租户以Schema的形式存放在同一个物理数据库中，共享同一个连接池。借出连接时切换到租户的Schema，
+ * 归还时（可配置）恢复到默认Schema。每个物理连接当前所在的Schema会被记录下来，已处于目标Schema时不再切换。
+ */
+public class SchemaTenantDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaTenantDataSource.class);
+
+    // 物理连接的Schema状态，以物理连接为键，连接被连接池丢弃后自动清理
+    private static final Map<Connection, SchemaState> SCHEMA_STATES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final String tenant;
+
+    private final String schema;
+
+    private final ManagedDataSource target;
+
+    private final boolean resetOnReturn;
+
+    public SchemaTenantDataSource(String tenant, String schema, ManagedDataSource target, boolean resetOnReturn) {
+        this.tenant = tenant;
+        this.schema = schema;
+        this.target = target;
+        this.resetOnReturn = resetOnReturn;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = target.getConnection();
+        try {
+            switchSchema(connection, schema);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        if (!resetOnReturn) {
+            return connection;
+        }
+        return ConnectionProxies.onClose(connection, this::resetSchema);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Schema租户数据源不支持指定用户名密码获取连接");
+    }
+
+    private void resetSchema(Connection connection) throws SQLException {
+        if (!connection.isClosed()) {
+            SchemaState state = stateOf(connection);
+            switchSchema(connection, state, state.defaultSchema);
+        }
+    }
+
+    private void switchSchema(Connection connection, String targetSchema) throws SQLException {
+        switchSchema(connection, stateOf(connection), targetSchema);
+    }
+
+    private void switchSchema(Connection connection, SchemaState state, String targetSchema) throws SQLException {
+        // 连接已处于目标Schema时跳过切换
+        if (targetSchema == null || targetSchema.equals(state.currentSchema)) {
+            return;
+        }
+        log.debug("租户 {} 切换Schema: {} -> {}", tenant, state.currentSchema, targetSchema);
+        connection.setSchema(targetSchema);
+        state.currentSchema = targetSchema;
+    }
+
+    private static SchemaState stateOf(Connection connection) throws SQLException {
+        Connection physical = physicalConnection(connection);
+        SchemaState state = SCHEMA_STATES.get(physical);
+        if (state == null) {
+            // 新的物理连接，其当前Schema即为默认Schema
+            state = new SchemaState(connection.getSchema());
+            SCHEMA_STATES.put(physical, state);
+        }
+        return state;
+    }
+
+    private static Connection physicalConnection(Connection connection) {
+        if (connection instanceof DruidPooledConnection) {
+            Connection physical = ((DruidPooledConnection) connection).getConnection();
+            if (physical != null) {
+                return physical;
+            }
+        }
+        return connection;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public ManagedDataSource getTarget() {
+        return target;
+    }
+
+    /**
+     * 物理连接的Schema状态，同一时刻只会被借用该连接的线程访问
+     */
+    private static class SchemaState {
+
+        private final String defaultSchema;
+        private volatile String currentSchema;
+
+        SchemaState(String defaultSchema) {
+            this.defaultSchema = defaultSchema;
+            this.currentSchema = defaultSchema;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.multi.datasource.demo.config;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 读取请求头中的会话令牌，使本次请求的副本读满足读己之写
+ */
+@Component
+public class SessionTokenInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        String token = request.getHeader(ReadConsistency.HEADER);
+        if (token != null) {
+            ReadConsistency.require(token);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        ReadConsistency.clear();
+    }
+}
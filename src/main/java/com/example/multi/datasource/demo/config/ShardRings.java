@@ -0,0 +1,327 @@
+package com.example.multi.datasource.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分片组：逻辑数据源名称到一致性哈希环的映射
+ *
+ * 每个分片组把用户按分片键分布到若干物理数据源。增删分片时保留变更前的各代环，
+ * 读取在新归属中找不到数据时依次回退到历代归属，已有数据迁移完成前仍可读到；新写入总是落在新归属。
+ * 迁移把数据移到当前归属后退役迁移开始时的历代环。
+ * 分片必须是路由中的数据源，依赖dynamicDataSource完成初始化以校验配置的分片组，分片不在路由中的配置分片组被跳过。
+ */
+@Component
+@DependsOn("dynamicDataSource")
+public class ShardRings {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRings.class);
+
+    @Autowired(required = false)
+    private DataSourceProperties dataSourceProperties;
+
+    private final Map<String, RingState> groups = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (dataSourceProperties == null || dataSourceProperties.getShardGroups() == null) {
+            return;
+        }
+        for (Map.Entry<String, List<String>> entry : dataSourceProperties.getShardGroups().entrySet()) {
+            // 配置的分片不在路由中时跳过该分片组，不影响应用启动
+            List<String> missing = new ArrayList<>();
+            for (String dsName : entry.getValue()) {
+                if (!isRouted(dsName)) {
+                    missing.add(dsName);
+                }
+            }
+            if (!missing.isEmpty()) {
+                log.warn("分片组 {} 的分片 {} 不在路由中，跳过该分片组", entry.getKey(), missing);
+                continue;
+            }
+            createGroup(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 创建分片组
+     * @param group 分片组名称
+     * @param shards 分片数据源
+     */
+    public void createGroup(String group, List<String> shards) {
+        for (String dsName : shards) {
+            checkDataSource(dsName);
+        }
+        int virtualNodes = dataSourceProperties != null
+                ? dataSourceProperties.getShardVirtualNodes() : ConsistentHashRing.DEFAULT_VIRTUAL_NODES;
+        ConsistentHashRing ring = ConsistentHashRing.of(shards, virtualNodes);
+        if (groups.putIfAbsent(group, new RingState(ring, Collections.<ConsistentHashRing>emptyList())) != null) {
+            throw new IllegalArgumentException("分片组 " + group + " 已存在");
+        }
+        log.info("创建分片组 {}，分片: {}，每个分片 {} 个虚拟节点", group, ring.getShards(), virtualNodes);
+    }
+
+    /**
+     * 键在分片组中的写入位置
+     * @param group 分片组名称
+     * @param key 分片键
+     * @return 数据源名称
+     */
+    public String route(String group, String key) {
+        String dsName = stateOf(group).current.route(key);
+        if (dsName == null) {
+            throw new IllegalStateException("分片组 " + group + " 中没有分片");
+        }
+        return dsName;
+    }
+
+    /**
+     * 读取键时依次尝试的数据源：当前归属，以及尚未退役的历代环中的归属，由新到旧，去重
+     * @param group 分片组名称
+     * @param key 分片键
+     * @return 数据源名称列表
+     */
+    public List<String> readRoute(String group, String key) {
+        RingState state = stateOf(group);
+        String current = state.current.route(key);
+        if (current == null) {
+            throw new IllegalStateException("分片组 " + group + " 中没有分片");
+        }
+        if (state.generations.isEmpty()) {
+            return Collections.singletonList(current);
+        }
+        LinkedHashSet<String> route = new LinkedHashSet<>();
+        route.add(current);
+        for (ConsistentHashRing generation : state.generations) {
+            String owner = generation.route(key);
+            if (owner != null) {
+                route.add(owner);
+            }
+        }
+        return new ArrayList<>(route);
+    }
+
+    /**
+     * 分片组中可能存有数据的所有分片：当前环与尚未退役的历代环中的分片
+     * @param group 分片组名称
+     * @return 数据源名称
+     */
+    public List<String> shardsOf(String group) {
+        RingState state = stateOf(group);
+        LinkedHashSet<String> shards = new LinkedHashSet<>(state.current.getShards());
+        for (ConsistentHashRing generation : state.generations) {
+            shards.addAll(generation.getShards());
+        }
+        return new ArrayList<>(shards);
+    }
+
+    /**
+     * 尚未退役的历代环，由新到旧
+     * @param group 分片组名称
+     */
+    public List<ConsistentHashRing> generations(String group) {
+        return stateOf(group).generations;
+    }
+
+    /**
+     * 数据迁移完成后退役历代环，读取不再回退到这些环中的归属
+     *
+     * 只退役迁移开始时取得的环，迁移期间增删分片产生的新一代环保留，由下一次迁移处理。
+     * @param group 分片组名称
+     * @param migrated 迁移开始时的历代环
+     * @return 退役的环数
+     */
+    public synchronized int retireGenerations(String group, List<ConsistentHashRing> migrated) {
+        RingState state = stateOf(group);
+        List<ConsistentHashRing> kept = new ArrayList<>();
+        for (ConsistentHashRing generation : state.generations) {
+            if (!containsSame(migrated, generation)) {
+                kept.add(generation);
+            }
+        }
+        int retired = state.generations.size() - kept.size();
+        groups.put(group, new RingState(state.current, Collections.unmodifiableList(kept)));
+        log.info("分片组 {} 退役 {} 代历史环，保留 {} 代", group, retired, kept.size());
+        return retired;
+    }
+
+    /**
+     * 向分片组增加分片
+     * @param group 分片组名称
+     * @param dsName 数据源名称
+     * @return 新分片接管的键比例
+     */
+    public synchronized double addShard(String group, String dsName) {
+        checkDataSource(dsName);
+        ConsistentHashRing ring = update(group, stateOf(group).current.withShard(dsName));
+        double moved = ring.ownership().get(dsName);
+        log.info("分片组 {} 增加分片 {}，约 {}% 的键迁移到新分片", group, dsName, String.format("%.1f", moved * 100));
+        return moved;
+    }
+
+    /**
+     * 从分片组移除分片
+     * @param group 分片组名称
+     * @param dsName 数据源名称
+     * @return 被移除分片原先承载的键比例
+     */
+    public synchronized double removeShard(String group, String dsName) {
+        double moved = stateOf(group).current.ownership().getOrDefault(dsName, 0.0);
+        update(group, stateOf(group).current.withoutShard(dsName));
+        log.info("分片组 {} 移除分片 {}，约 {}% 的键迁移到其他分片", group, dsName, String.format("%.1f", moved * 100));
+        return moved;
+    }
+
+    /**
+     * 删除数据源时从所有分片组中移除它
+     *
+     * 数据源上的数据已不可读，历代环中也一并去掉，读取不再回退到它。
+     * @param dsName 数据源名称
+     */
+    public synchronized void forgetDataSource(String dsName) {
+        for (Map.Entry<String, RingState> entry : groups.entrySet()) {
+            RingState state = entry.getValue();
+            boolean inCurrent = state.current.getShards().contains(dsName);
+            List<ConsistentHashRing> generations = new ArrayList<>(state.generations.size());
+            boolean inGenerations = false;
+            for (ConsistentHashRing generation : state.generations) {
+                if (generation.getShards().contains(dsName)) {
+                    inGenerations = true;
+                    generation = generation.withoutShard(dsName);
+                }
+                generations.add(generation);
+            }
+            if (!inCurrent && !inGenerations) {
+                continue;
+            }
+            ConsistentHashRing current = inCurrent ? state.current.withoutShard(dsName) : state.current;
+            groups.put(entry.getKey(), new RingState(current, distinctGenerations(current, generations)));
+            log.info("数据源 {} 已删除，从分片组 {} 中移除", dsName, entry.getKey());
+        }
+    }
+
+    /**
+     * 任何途径删除数据源后都从分片组中移除它
+     */
+    @EventListener
+    public void onDataSourceRemoved(DataSourceRemovedEvent event) {
+        forgetDataSource(event.getDsName());
+    }
+
+    public boolean containsGroup(String group) {
+        return groups.containsKey(group);
+    }
+
+    /**
+     * 分片组信息：分片、虚拟节点数、每个分片占有的环空间比例
+     */
+    public Map<String, Object> describe(String group) {
+        RingState state = stateOf(group);
+        Map<String, Object> info = new HashMap<>();
+        info.put("group", group);
+        info.put("shards", state.current.getShards());
+        info.put("virtualNodes", state.current.getVirtualNodes());
+        info.put("ownership", state.current.ownership());
+        List<List<String>> generations = new ArrayList<>(state.generations.size());
+        for (ConsistentHashRing generation : state.generations) {
+            generations.add(generation.getShards());
+        }
+        info.put("generations", generations);
+        return info;
+    }
+
+    /**
+     * 所有分片组的信息
+     */
+    public Map<String, Map<String, Object>> describeAll() {
+        Map<String, Map<String, Object>> all = new TreeMap<>();
+        for (String group : groups.keySet()) {
+            all.put(group, describe(group));
+        }
+        return all;
+    }
+
+    private ConsistentHashRing update(String group, ConsistentHashRing ring) {
+        RingState state = stateOf(group);
+        List<ConsistentHashRing> generations = new ArrayList<>(state.generations.size() + 1);
+        generations.add(state.current);
+        generations.addAll(state.generations);
+        groups.put(group, new RingState(ring, distinctGenerations(ring, generations)));
+        return ring;
+    }
+
+    /**
+     * 去掉与当前环或更新一代环分片相同的环（归属完全一致）以及空环，保持由新到旧的顺序
+     */
+    private static List<ConsistentHashRing> distinctGenerations(ConsistentHashRing current, List<ConsistentHashRing> generations) {
+        List<ConsistentHashRing> distinct = new ArrayList<>(generations.size());
+        LinkedHashSet<List<String>> seen = new LinkedHashSet<>();
+        seen.add(current.getShards());
+        for (ConsistentHashRing generation : generations) {
+            if (!generation.isEmpty() && seen.add(generation.getShards())) {
+                distinct.add(generation);
+            }
+        }
+        return Collections.unmodifiableList(distinct);
+    }
+
+    private static boolean containsSame(List<ConsistentHashRing> rings, ConsistentHashRing ring) {
+        for (ConsistentHashRing candidate : rings) {
+            if (candidate == ring) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 分片必须是路由中的数据源，包括配置的预定义数据源
+     */
+    private static void checkDataSource(String dsName) {
+        if (!isRouted(dsName)) {
+            throw new IllegalArgumentException("数据源 " + dsName + " 不存在");
+        }
+    }
+
+    private static boolean isRouted(String dsName) {
+        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+        return dynamicDataSource == null || dynamicDataSource.hasDataSource(dsName);
+    }
+
+    private RingState stateOf(String group) {
+        RingState state = groups.get(group);
+        if (state == null) {
+            throw new IllegalArgumentException("分片组 " + group + " 不存在");
+        }
+        return state;
+    }
+
+    /**
+     * 当前环与尚未退役的历代环（由新到旧）
+     */
+    private static final class RingState {
+
+        private final ConsistentHashRing current;
+
+        private final List<ConsistentHashRing> generations;
+
+        RingState(ConsistentHashRing current, List<ConsistentHashRing> generations) {
+            this.current = current;
+            this.generations = generations;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.multi.datasource.demo.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 所有连接池共享的创建/销毁调度器
+ *
+ * Druid默认为每个连接池启动一个CreateConnectionThread和一个DestroyConnectionThread，
+ * 连接池数量增长时线程数随之线性增长。设置共享调度器后，各连接池的建连任务提交到固定大小的创建调度器，
+ * 空闲连接回收与保活检测则由销毁调度器按统一周期批量执行，节点线程数不再随数据源数量增长。
+ */
+public class SharedPoolSchedulers {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedPoolSchedulers.class);
+
+    private int createThreads = 4;
+
+    private int destroyThreads = 2;
+
+    private long evictionIntervalMillis = 60000;
+
+    private ScheduledThreadPoolExecutor createScheduler;
+
+    private BatchingEvictionScheduler destroyScheduler;
+
+    /**
+     * 将共享调度器应用到连接池，需在连接池初始化之前调用
+     * @param dataSource Druid连接池
+     */
+    public void apply(DruidDataSource dataSource) {
+        dataSource.setCreateScheduler(getCreateScheduler());
+        dataSource.setDestroyScheduler(getDestroyScheduler());
+        // 统一回收周期，使各连接池的回收任务落在同一批次中
+        dataSource.setTimeBetweenEvictionRunsMillis(evictionIntervalMillis);
+    }
+
+    public synchronized ScheduledExecutorService getCreateScheduler() {
+        if (createScheduler == null) {
+            createScheduler = new ScheduledThreadPoolExecutor(createThreads, new NamedThreadFactory("druid-create-"));
+            createScheduler.setRemoveOnCancelPolicy(true);
+        }
+        return createScheduler;
+    }
+
+    public synchronized ScheduledExecutorService getDestroyScheduler() {
+        if (destroyScheduler == null) {
+            destroyScheduler = new BatchingEvictionScheduler(destroyThreads, new NamedThreadFactory("druid-destroy-"),
+                    evictionIntervalMillis);
+        }
+        return destroyScheduler;
+    }
+
+    public void setCreateThreads(int createThreads) {
+        this.createThreads = createThreads;
+    }
+
+    public void setDestroyThreads(int destroyThreads) {
+        this.destroyThreads = destroyThreads;
+    }
+
+    public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+    /**
+     * 当前参与批量回收的连接池数量
+     */
+    public synchronized int getEvictionTaskCount() {
+        return destroyScheduler != null ? destroyScheduler.tasks.size() : 0;
+    }
+
+    public synchronized void shutdown() {
+        if (createScheduler != null) {
+            createScheduler.shutdownNow();
+        }
+        if (destroyScheduler != null) {
+            destroyScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 批量回收调度器
+     *
+     * Druid通过scheduleAtFixedRate为每个连接池注册一个DestroyTask，这里不为每个任务单独排期，
+     * 而是登记到批次中，由一个统一的周期任务在每个回收周期内依次分发执行。
+     */
+    private static class BatchingEvictionScheduler extends ScheduledThreadPoolExecutor {
+
+        private final Set<BatchedTask> tasks = ConcurrentHashMap.newKeySet();
+
+        BatchingEvictionScheduler(int threads, ThreadFactory threadFactory, long intervalMillis) {
+            super(threads, threadFactory);
+            setRemoveOnCancelPolicy(true);
+            super.scheduleWithFixedDelay(this::runBatch, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            BatchedTask task = new BatchedTask(command);
+            tasks.add(task);
+            return task;
+        }
+
+        private void runBatch() {
+            for (BatchedTask task : tasks) {
+                // 上一批次尚未执行完的连接池跳过本批次
+                if (task.running.compareAndSet(false, true)) {
+                    try {
+                        execute(task);
+                    } catch (Exception e) {
+                        task.running.set(false);
+                        log.warn("提交连接池回收任务失败", e);
+                    }
+                }
+            }
+        }
+
+        private class BatchedTask implements ScheduledFuture<Object>, Runnable {
+
+            private final Runnable command;
+            private final AtomicBoolean running = new AtomicBoolean();
+            private volatile boolean cancelled;
+
+            BatchedTask(Runnable command) {
+                this.command = command;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    if (!cancelled) {
+                        command.run();
+                    }
+                } catch (Throwable e) {
+                    log.warn("连接池回收任务执行异常", e);
+                } finally {
+                    running.set(false);
+                }
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                cancelled = true;
+                return tasks.remove(this);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled;
+            }
+
+            @Override
+            public boolean isDone() {
+                return cancelled;
+            }
+
+            @Override
+            public Object get() {
+                return null;
+            }
+
+            @Override
+            public Object get(long timeout, TimeUnit unit) {
+                return null;
+            }
+
+            @Override
+            public long getDelay(TimeUnit unit) {
+                return 0;
+            }
+
+            @Override
+            public int compareTo(Delayed other) {
+                return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+            }
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
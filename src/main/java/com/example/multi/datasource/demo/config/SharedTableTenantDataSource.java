@@ -0,0 +1,49 @@
+package com.example.multi.datasource.demo.config;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 共享表租户数据源
+ *
+ * 多个租户的数据存放在同一张表中，以租户列区分。租户与基础数据源共享同一个物理连接池，
+ * 连接本身不做任何切换，查询按租户标识过滤。适用于大量数据量很小的租户。
+ */
+public class SharedTableTenantDataSource extends AbstractDataSource {
+
+    private final String tenant;
+
+    private final String tenantId;
+
+    private final ManagedDataSource target;
+
+    public SharedTableTenantDataSource(String tenant, String tenantId, ManagedDataSource target) {
+        this.tenant = tenant;
+        this.tenantId = tenantId;
+        this.target = target;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return target.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("共享表租户数据源不支持指定用户名密码获取连接");
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public ManagedDataSource getTarget() {
+        return target;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.multi.datasource.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按租户（数据源）隔离的请求舱壁
+ *
+ * 限制每个数据源同时处理中的请求数，满额时立即拒绝，避免一个慢租户占满所有Servlet工作线程。
+ * 上限由默认值与按租户覆盖值组成，均可在运行时修改；修改对之后的请求立即生效，已在处理中的请求不受影响。
+ * 只为路由中存在的数据源建立舱壁，数据源移除时一并清理。
+ */
+@Component
+public class TenantBulkheads {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantBulkheads.class);
+
+    @Autowired(required = false)
+    private DataSourceProperties dataSourceProperties;
+
+    // 默认上限，小于等于0表示不限制
+    private volatile int defaultLimit;
+
+    private final Map<String, Integer> overrides = new ConcurrentHashMap<>();
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (dataSourceProperties != null) {
+            defaultLimit = dataSourceProperties.getBulkheadDefaultLimit();
+            if (dataSourceProperties.getBulkheadLimits() != null) {
+                overrides.putAll(dataSourceProperties.getBulkheadLimits());
+            }
+        }
+    }
+
+    /**
+     * 为数据源的一次请求申请名额，路由中不存在的数据源直接放行，由控制器返回错误
+     * @param dsName 数据源名称
+     * @return 是否放行
+     */
+    public boolean tryAcquire(String dsName) {
+        Bulkhead bulkhead = bulkheads.get(dsName);
+        if (bulkhead == null) {
+            DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+            if (dynamicDataSource == null || !dynamicDataSource.hasDataSource(dsName)) {
+                return true;
+            }
+            bulkhead = bulkheads.computeIfAbsent(dsName, k -> new Bulkhead());
+        }
+        int limit = limitOf(dsName);
+        if (limit <= 0) {
+            bulkhead.inFlight.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            int current = bulkhead.inFlight.get();
+            if (current >= limit) {
+                bulkhead.rejected.increment();
+                return false;
+            }
+            if (bulkhead.inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 请求结束，归还名额
+     * @param dsName 数据源名称
+     */
+    public void release(String dsName) {
+        Bulkhead bulkhead = bulkheads.get(dsName);
+        if (bulkhead != null) {
+            // 放行时舱壁尚未建立，或数据源移除后以同名重新加入时，名额不属于当前舱壁，不能减成负数
+            bulkhead.inFlight.updateAndGet(current -> current > 0 ? current - 1 : 0);
+        }
+    }
+
+    /**
+     * 数据源移除后清理其舱壁，覆盖上限保留，同名数据源重新加入时继续生效
+     */
+    @EventListener
+    public void onDataSourceRemoved(DataSourceRemovedEvent event) {
+        bulkheads.remove(event.getDsName());
+    }
+
+    /**
+     * 数据源当前生效的上限
+     * @param dsName 数据源名称
+     * @return 上限，小于等于0表示不限制
+     */
+    public int limitOf(String dsName) {
+        Integer override = overrides.get(dsName);
+        return override != null ? override : defaultLimit;
+    }
+
+    public int getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    public void setDefaultLimit(int defaultLimit) {
+        log.info("请求舱壁默认上限调整为 {}", defaultLimit);
+        this.defaultLimit = defaultLimit;
+    }
+
+    /**
+     * 设置数据源的覆盖上限
+     * @param dsName 数据源名称
+     * @param limit 上限，小于等于0表示不限制
+     */
+    public void setLimit(String dsName, int limit) {
+        log.info("数据源 {} 的请求舱壁上限调整为 {}", dsName, limit);
+        overrides.put(dsName, limit);
+    }
+
+    /**
+     * 移除数据源的覆盖上限，恢复使用默认值
+     * @param dsName 数据源名称
+     * @return 是否存在覆盖值
+     */
+    public boolean removeLimit(String dsName) {
+        log.info("移除数据源 {} 的请求舱壁覆盖上限", dsName);
+        return overrides.remove(dsName) != null;
+    }
+
+    /**
+     * 各数据源的上限、处理中请求数与拒绝次数
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("defaultLimit", defaultLimit);
+        info.put("overrides", new HashMap<>(overrides));
+        Map<String, Map<String, Object>> tenants = new LinkedHashMap<>();
+        TreeSet<String> names = new TreeSet<>(bulkheads.keySet());
+        names.addAll(overrides.keySet());
+        for (String dsName : names) {
+            Bulkhead bulkhead = bulkheads.get(dsName);
+            Map<String, Object> tenant = new LinkedHashMap<>();
+            tenant.put("limit", limitOf(dsName));
+            tenant.put("inFlight", bulkhead != null ? bulkhead.inFlight.get() : 0);
+            tenant.put("rejected", bulkhead != null ? bulkhead.rejected.sum() : 0L);
+            tenants.put(dsName, tenant);
+        }
+        info.put("tenants", tenants);
+        return info;
+    }
+
+    private static class Bulkhead {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder rejected = new LongAdder();
+    }
+}
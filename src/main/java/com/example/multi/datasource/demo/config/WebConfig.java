@@ -11,8 +11,24 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private PageViewInterceptor pageViewInterceptor;
     
+    @Autowired
+    private SessionTokenInterceptor sessionTokenInterceptor;
+    
+    @Autowired
+    private RequestDeadlineInterceptor requestDeadlineInterceptor;
+    
+    @Autowired
+    private LoadSheddingAdvice loadSheddingAdvice;
+    
+    @Autowired
+    private BulkheadInterceptor bulkheadInterceptor;
+    
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(pageViewInterceptor);
+        registry.addInterceptor(sessionTokenInterceptor).addPathPatterns("/api/**");
+        registry.addInterceptor(requestDeadlineInterceptor).addPathPatterns("/api/**", "/users/**");
+        registry.addInterceptor(loadSheddingAdvice);
+        registry.addInterceptor(bulkheadInterceptor).addPathPatterns("/api/datasource/*/**");
     }
 }
\ No newline at end of file
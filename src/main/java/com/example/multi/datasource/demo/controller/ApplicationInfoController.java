@@ -1,7 +1,10 @@
 package com.example.multi.datasource.demo.controller;
 
 import com.example.multi.datasource.demo.config.ApplicationStartupListener;
+import com.example.multi.datasource.demo.config.DynamicDataSource;
 import com.example.multi.datasource.demo.config.PageViewCounter;
+import com.example.multi.datasource.demo.config.TenantBulkheads;
+import com.example.multi.datasource.demo.service.HedgedReadService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -19,6 +22,12 @@ public class ApplicationInfoController {
     @Autowired
     private PageViewCounter pageViewCounter;
     
+    @Autowired
+    private HedgedReadService hedgedReadService;
+    
+    @Autowired
+    private TenantBulkheads tenantBulkheads;
+    
     /**
      * 获取应用启动信息
      * @return 启动信息
@@ -93,6 +102,17 @@ public class ApplicationInfoController {
             result.put("apiCalls", pageViewCounter.getApiCalls());
             result.put("startupTime", ApplicationStartupListener.getFormattedStartupTime());
             result.put("currentTime", java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+            
+            // 延迟感知负载均衡的副本权重
+            DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+            if (dynamicDataSource != null) {
+                result.put("replicaStats", dynamicDataSource.getReplicaStats());
+                result.put("replicaLag", dynamicDataSource.getReplicaLag());
+                result.put("poolSizing", dynamicDataSource.getPoolSizer().describe());
+                result.put("concurrencyLimits", dynamicDataSource.getConcurrencyLimits());
+            }
+            result.put("hedgedReads", hedgedReadService.getStats());
+            result.put("bulkheads", tenantBulkheads.describe());
             result.put("message", "获取统计信息成功");
         } catch (Exception e) {
             result.put("success", false);
@@ -2,7 +2,6 @@ package com.example.multi.datasource.demo.controller;
 
 import com.example.multi.datasource.demo.config.DataSourceProperties;
 import com.example.multi.datasource.demo.config.DynamicDataSource;
-import com.alibaba.druid.pool.DruidDataSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -48,27 +47,26 @@ public class DataSourceController {
         try {
             // 检查数据源是否已存在
             DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-            Map<Object, DataSource> existingDataSources = dynamicDataSource.getDynamicDataSources();
-            if (existingDataSources.containsKey(dsName)) {
+            if (dynamicDataSource.containsDataSource(dsName)) {
                 result.put("success", false);
                 result.put("message", "数据源 " + dsName + " 已存在");
                 return result;
             }
             
-            // 创建新的数据源
-            DruidDataSource dataSource = new DruidDataSource();
-            dataSource.setUrl(url);
-            dataSource.setUsername(username);
-            dataSource.setPassword(password);
-            dataSource.setDriverClassName(driverClassName);
-            dataSource.setInitialSize(initialSize);
-            dataSource.setMinIdle(minIdle);
-            dataSource.setMaxActive(maxActive);
-            dataSource.setMaxWait(maxWait);
+            // 创建连接池描述，连接池在第一次借用连接时才会创建
+            DataSourceProperties.DruidDataSourceProperties descriptor = new DataSourceProperties.DruidDataSourceProperties();
+            descriptor.setUrl(url);
+            descriptor.setUsername(username);
+            descriptor.setPassword(password);
+            descriptor.setDriverClassName(driverClassName);
+            descriptor.setInitialSize(initialSize);
+            descriptor.setMinIdle(minIdle);
+            descriptor.setMaxActive(maxActive);
+            descriptor.setMaxWait(maxWait);
             
             // 获取DynamicDataSource实例并添加新的数据源
             if (dynamicDataSource != null) {
-                dynamicDataSource.addTargetDataSource(dsName, dataSource);
+                dynamicDataSource.addTargetDataSource(dsName, descriptor);
                 result.put("success", true);
                 result.put("message", "数据源 " + dsName + " 添加成功");
             } else {
@@ -102,8 +100,7 @@ public class DataSourceController {
             }
             
             DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-            Map<Object, DataSource> existingDataSources = dynamicDataSource.getDynamicDataSources();
-            if (!existingDataSources.containsKey(dsName)) {
+            if (!dynamicDataSource.containsDataSource(dsName)) {
                 result.put("success", false);
                 result.put("message", "数据源 " + dsName + " 不存在");
                 return result;
@@ -132,8 +129,7 @@ public class DataSourceController {
         try {
             // 检查数据源是否存在
             DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-            Map<Object, DataSource> existingDataSources = dynamicDataSource.getDynamicDataSources();
-            if (!existingDataSources.containsKey(dsName)) {
+            if (!dynamicDataSource.containsDataSource(dsName)) {
                 result.put("success", false);
                 result.put("message", "数据源 " + dsName + " 不存在");
                 return result;
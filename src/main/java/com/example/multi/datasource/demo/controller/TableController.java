@@ -1,5 +1,6 @@
 package com.example.multi.datasource.demo.controller;
 
+import com.example.multi.datasource.demo.config.RequestTimeout;
 import com.example.multi.datasource.demo.service.TableService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,6 +11,7 @@ import java.util.Map;
 
 @RestController
 @RequestMapping("/api/datasource")
+@RequestTimeout(30000)
 public class TableController {
     
     private static final Logger log = LoggerFactory.getLogger(TableController.class);
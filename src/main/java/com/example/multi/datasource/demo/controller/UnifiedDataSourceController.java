@@ -1,16 +1,41 @@
 package com.example.multi.datasource.demo.controller;
 
+import com.example.multi.datasource.demo.config.DataSourceDescriptor;
+import com.example.multi.datasource.demo.config.DataSourceProperties;
 import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.FailoverDataSource;
+import com.example.multi.datasource.demo.config.PoolDrainer;
+import com.example.multi.datasource.demo.config.PoolReconfiguration;
+import com.example.multi.datasource.demo.config.PoolWarmer;
+import com.example.multi.datasource.demo.config.ReadConsistency;
+import com.example.multi.datasource.demo.config.RequestTimeout;
+import com.example.multi.datasource.demo.config.ShardRings;
+import com.example.multi.datasource.demo.config.TenantBulkheads;
 import com.example.multi.datasource.demo.entity.User;
+import com.example.multi.datasource.demo.service.AggregationQuery;
+import com.example.multi.datasource.demo.service.AggregationResult;
+import com.example.multi.datasource.demo.service.AggregationService;
+import com.example.multi.datasource.demo.service.DataSourceRegistrationService;
+import com.example.multi.datasource.demo.service.FanOutResult;
+import com.example.multi.datasource.demo.service.ShardedUserService;
+import com.example.multi.datasource.demo.service.TableService;
+import com.example.multi.datasource.demo.service.UserPage;
+import com.example.multi.datasource.demo.service.UserPageService;
 import com.example.multi.datasource.demo.service.UserService;
-import com.alibaba.druid.pool.DruidDataSource;
+import com.example.multi.datasource.demo.service.UserStreamService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.sql.DataSource;
+import java.io.BufferedReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -24,9 +49,36 @@ public class UnifiedDataSourceController {
     
     @Autowired
     private UserService userService;
+
+    @Autowired
+    private UserStreamService userStreamService;
+
+    @Autowired
+    private UserPageService userPageService;
+
+    @Autowired
+    private AggregationService aggregationService;
+
+    @Autowired
+    private ShardedUserService shardedUserService;
+
+    @Autowired
+    private ShardRings shardRings;
     
     @Autowired
-    private com.example.multi.datasource.demo.config.DataSourceProperties dataSourceProperties;
+    private DataSourceProperties dataSourceProperties;
+    
+    @Autowired
+    private TenantBulkheads tenantBulkheads;
+    
+    @Autowired
+    private DataSourceRegistrationService registrationService;
+    
+    @Autowired
+    private TableService tableService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
 
     /**
      * 动态添加数据源
@@ -40,7 +92,14 @@ public class UnifiedDataSourceController {
                                              @RequestParam(defaultValue = "5") int initialSize,
                                              @RequestParam(defaultValue = "5") int minIdle,
                                              @RequestParam(defaultValue = "20") int maxActive,
-                                             @RequestParam(defaultValue = "60000") long maxWait) {
+                                             @RequestParam(defaultValue = "60000") long maxWait,
+                                             @RequestParam(required = false) List<String> replicaUrls,
+                                             @RequestParam(defaultValue = "round-robin") String replicaBalancer,
+                                             @RequestParam(required = false) String standbyUrl,
+                                             @RequestParam(defaultValue = "auto") String failbackPolicy,
+                                             @RequestParam(defaultValue = "false") boolean warmUp,
+                                             @RequestParam(defaultValue = "0") int warmUpSize,
+                                             @RequestParam(required = false) List<String> warmUpQueries) {
         log.info("开始添加数据源: {}, URL: {}", dsName, url);
         
         Map<String, Object> result = new HashMap<>();
@@ -48,28 +107,51 @@ public class UnifiedDataSourceController {
         try {
             // 检查数据源是否已存在
             DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-            Map<Object, DataSource> existingDataSources = dynamicDataSource.getDynamicDataSources();
-            if (existingDataSources.containsKey(dsName)) {
+            if (dynamicDataSource.containsDataSource(dsName)) {
                 log.warn("数据源 {} 已存在", dsName);
                 result.put("success", false);
                 result.put("message", "数据源 " + dsName + " 已存在");
                 return result;
             }
+            if (dynamicDataSource.isWarming(dsName)) {
+                log.warn("数据源 {} 正在预热", dsName);
+                result.put("success", false);
+                result.put("message", "数据源 " + dsName + " 正在预热");
+                return result;
+            }
 
-            // 创建新的数据源
-            DruidDataSource dataSource = new DruidDataSource();
-            dataSource.setUrl(url);
-            dataSource.setUsername(username);
-            dataSource.setPassword(password);
-            dataSource.setDriverClassName(driverClassName);
-            dataSource.setInitialSize(initialSize);
-            dataSource.setMinIdle(minIdle);
-            dataSource.setMaxActive(maxActive);
-            dataSource.setMaxWait(maxWait);
+            // 创建连接池描述，不预热时连接池在第一次借用连接时才会创建
+            DataSourceProperties.DruidDataSourceProperties descriptor = new DataSourceProperties.DruidDataSourceProperties();
+            descriptor.setUrl(url);
+            descriptor.setUsername(username);
+            descriptor.setPassword(password);
+            descriptor.setDriverClassName(driverClassName);
+            descriptor.setInitialSize(initialSize);
+            descriptor.setMinIdle(minIdle);
+            descriptor.setMaxActive(maxActive);
+            descriptor.setMaxWait(maxWait);
+            if (replicaUrls != null) {
+                descriptor.setReplicaUrls(replicaUrls);
+            }
+            descriptor.setReplicaBalancer(replicaBalancer);
+            descriptor.setStandbyUrl(standbyUrl);
+            descriptor.setFailbackPolicy(failbackPolicy);
+
+            // 预热模式：连接池预热并校验通过后才加入路由，期间数据源处于WARMING状态
+            if (warmUp) {
+                int targetSize = warmUpSize > 0 ? warmUpSize : Math.max(minIdle, initialSize);
+                PoolWarmer.WarmupStatus warmupStatus = dynamicDataSource.addTargetDataSourceWhenReady(
+                        dsName, descriptor, targetSize, warmUpQueries);
+                log.info("数据源 {} 开始预热，就绪后加入路由", dsName);
+                result.put("success", true);
+                result.put("message", "数据源 " + dsName + " 正在预热，就绪后加入路由");
+                result.put("warmup", warmupStatus.toMap());
+                return result;
+            }
 
             // 获取DynamicDataSource实例并添加新的数据源
             if (dynamicDataSource != null) {
-                dynamicDataSource.addTargetDataSource(dsName, dataSource);
+                dynamicDataSource.addTargetDataSource(dsName, descriptor);
                 log.info("数据源 {} 添加成功", dsName);
                 result.put("success", true);
                 result.put("message", "数据源 " + dsName + " 添加成功");
@@ -87,6 +169,131 @@ public class UnifiedDataSourceController {
         return result;
     }
 
+    /**
+     * 批量添加数据源（JSON数组），所有数据源在一次路由切换中同时生效
+     */
+    @PostMapping(value = "/bulk-add", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> bulkAddDataSources(@RequestBody List<DataSourceDescriptor> descriptors,
+                                                  @RequestParam(defaultValue = "true") boolean initialize) {
+        log.info("开始批量添加 {} 个数据源", descriptors.size());
+        return bulkAdd(descriptors, initialize);
+    }
+
+    /**
+     * 批量添加数据源（NDJSON，每行一个数据源描述）
+     */
+    @PostMapping(value = "/bulk-add", consumes = "application/x-ndjson")
+    public Map<String, Object> bulkAddDataSourcesFromStream(HttpServletRequest request,
+                                                            @RequestParam(defaultValue = "true") boolean initialize) {
+        Map<String, Object> result = new HashMap<>();
+        List<DataSourceDescriptor> descriptors = new ArrayList<>();
+        try (BufferedReader reader = request.getReader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    descriptors.add(objectMapper.readValue(line, DataSourceDescriptor.class));
+                }
+            }
+        } catch (Exception e) {
+            log.error("解析批量数据源描述失败", e);
+            result.put("success", false);
+            result.put("message", "解析批量数据源描述失败: " + e.getMessage());
+            return result;
+        }
+        log.info("开始批量添加 {} 个数据源(NDJSON)", descriptors.size());
+        return bulkAdd(descriptors, initialize);
+    }
+
+    private Map<String, Object> bulkAdd(List<DataSourceDescriptor> descriptors, boolean initialize) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            List<Map<String, Object>> results = registrationService.registerAll(descriptors, initialize);
+            long succeeded = results.stream().filter(r -> Boolean.TRUE.equals(r.get("success"))).count();
+            result.put("success", succeeded == results.size());
+            result.put("total", results.size());
+            result.put("succeeded", succeeded);
+            result.put("failed", results.size() - succeeded);
+            result.put("results", results);
+            result.put("message", "批量添加数据源完成，成功 " + succeeded + " 个");
+        } catch (Exception e) {
+            log.error("批量添加数据源失败", e);
+            result.put("success", false);
+            result.put("message", "批量添加数据源失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 添加库内Schema租户，与基础数据源共享连接池，借出连接时切换Schema
+     */
+    @PostMapping("/schema-tenant/add")
+    public Map<String, Object> addSchemaTenant(@RequestParam String dsName,
+                                               @RequestParam String baseDsName,
+                                               @RequestParam String schema,
+                                               @RequestParam(defaultValue = "false") boolean createSchema) {
+        log.info("开始添加Schema租户: {}，基础数据源: {}，Schema: {}", dsName, baseDsName, schema);
+        
+        Map<String, Object> result = new HashMap<>();
+        try {
+            DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+            if (dynamicDataSource.containsDataSource(dsName)) {
+                log.warn("数据源 {} 已存在", dsName);
+                result.put("success", false);
+                result.put("message", "数据源 " + dsName + " 已存在");
+                return result;
+            }
+            
+            if (createSchema) {
+                tableService.createSchema(baseDsName, schema);
+            }
+            dynamicDataSource.addSchemaTenant(dsName, baseDsName, schema);
+            log.info("Schema租户 {} 添加成功", dsName);
+            result.put("success", true);
+            result.put("message", "Schema租户 " + dsName + " 添加成功");
+        } catch (Exception e) {
+            log.error("添加Schema租户失败: " + dsName, e);
+            result.put("success", false);
+            result.put("message", "添加Schema租户失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 添加共享表租户，与基础数据源共享连接池和用户表，按租户列过滤数据
+     */
+    @PostMapping("/shared-tenant/add")
+    public Map<String, Object> addSharedTableTenant(@RequestParam String dsName,
+                                                    @RequestParam String baseDsName,
+                                                    @RequestParam(required = false) String tenantId,
+                                                    @RequestParam(defaultValue = "false") boolean createTable) {
+        String discriminator = tenantId != null ? tenantId : dsName;
+        log.info("开始添加共享表租户: {}，基础数据源: {}，租户标识: {}", dsName, baseDsName, discriminator);
+        
+        Map<String, Object> result = new HashMap<>();
+        try {
+            DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+            if (dynamicDataSource.containsDataSource(dsName)) {
+                log.warn("数据源 {} 已存在", dsName);
+                result.put("success", false);
+                result.put("message", "数据源 " + dsName + " 已存在");
+                return result;
+            }
+            
+            if (createTable) {
+                tableService.createSharedUsersTable(baseDsName);
+            }
+            dynamicDataSource.addSharedTableTenant(dsName, baseDsName, discriminator);
+            log.info("共享表租户 {} 添加成功", dsName);
+            result.put("success", true);
+            result.put("message", "共享表租户 " + dsName + " 添加成功");
+        } catch (Exception e) {
+            log.error("添加共享表租户失败: " + dsName, e);
+            result.put("success", false);
+            result.put("message", "添加共享表租户失败: " + e.getMessage());
+        }
+        return result;
+    }
+
     /**
      * 删除数据源
      */
@@ -106,18 +313,20 @@ public class UnifiedDataSourceController {
             }
 
             DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-            Map<Object, DataSource> existingDataSources = dynamicDataSource.getDynamicDataSources();
-            if (!existingDataSources.containsKey(dsName)) {
+            if (!dynamicDataSource.containsDataSource(dsName)) {
                 log.warn("数据源 {} 不存在", dsName);
                 result.put("success", false);
                 result.put("message", "数据源 " + dsName + " 不存在");
                 return result;
             }
 
-            dynamicDataSource.removeTargetDataSource(dsName);
+            PoolDrainer.DrainStatus drainStatus = dynamicDataSource.removeTargetDataSource(dsName);
             log.info("数据源 {} 删除成功", dsName);
             result.put("success", true);
             result.put("message", "数据源 " + dsName + " 删除成功");
+            if (drainStatus != null) {
+                result.put("drain", drainStatus.toMap());
+            }
         } catch (Exception e) {
             log.error("删除数据源失败: " + dsName, e);
             result.put("success", false);
@@ -127,6 +336,78 @@ public class UnifiedDataSourceController {
         return result;
     }
 
+    /**
+     * 在线修改数据源的连接池参数（请求体中只需包含要修改的字段），不重建连接池；
+     * 地址或账号变化时逐步轮换连接，已借出的连接不受影响
+     */
+    @PatchMapping(value = "/pool", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> reconfigurePool(@RequestParam String dsName, @RequestBody PoolReconfiguration change) {
+        log.info("在线修改数据源 {} 的连接池参数: {}", dsName, change.describe());
+        
+        Map<String, Object> result = new HashMap<>();
+        try {
+            Map<String, Object> reconfigured = DynamicDataSource.getInstance().reconfigureDataSource(dsName, change);
+            result.put("success", true);
+            result.put("message", "数据源 " + dsName + " 的连接池参数修改成功");
+            result.put("data", reconfigured);
+        } catch (Exception e) {
+            log.error("修改数据源 {} 的连接池参数失败: {}", dsName, e.getMessage(), e);
+            result.put("success", false);
+            result.put("message", "修改连接池参数失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 查询以预热模式添加的数据源的预热进度
+     */
+    @GetMapping("/add/status")
+    public Map<String, Object> getAddStatus(@RequestParam String dsName) {
+        log.info("查询数据源 {} 的预热进度", dsName);
+        
+        Map<String, Object> result = new HashMap<>();
+        try {
+            PoolWarmer.WarmupStatus warmupStatus = DynamicDataSource.getInstance().getWarmupStatus(dsName);
+            if (warmupStatus == null) {
+                result.put("success", false);
+                result.put("message", "数据源 " + dsName + " 没有预热记录");
+                return result;
+            }
+            result.put("success", true);
+            result.put("warmup", warmupStatus.toMap());
+        } catch (Exception e) {
+            log.error("查询预热进度失败: " + dsName, e);
+            result.put("success", false);
+            result.put("message", "查询预热进度失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 查询已删除数据源的连接池排空进度
+     */
+    @GetMapping("/remove/status")
+    public Map<String, Object> getRemoveStatus(@RequestParam String dsName) {
+        log.info("查询数据源 {} 的排空进度", dsName);
+        
+        Map<String, Object> result = new HashMap<>();
+        try {
+            PoolDrainer.DrainStatus drainStatus = DynamicDataSource.getInstance().getDrainStatus(dsName);
+            if (drainStatus == null) {
+                result.put("success", false);
+                result.put("message", "数据源 " + dsName + " 没有排空记录");
+                return result;
+            }
+            result.put("success", true);
+            result.put("drain", drainStatus.toMap());
+        } catch (Exception e) {
+            log.error("查询排空进度失败: " + dsName, e);
+            result.put("success", false);
+            result.put("message", "查询排空进度失败: " + e.getMessage());
+        }
+        return result;
+    }
+
     /**
      * 切换数据源
      */
@@ -138,8 +419,7 @@ public class UnifiedDataSourceController {
         try {
             // 检查数据源是否存在
             DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-            Map<Object, DataSource> existingDataSources = dynamicDataSource.getDynamicDataSources();
-            if (!existingDataSources.containsKey(dsName)) {
+            if (!dynamicDataSource.containsDataSource(dsName)) {
                 log.warn("数据源 {} 不存在", dsName);
                 result.put("success", false);
                 result.put("message", "数据源 " + dsName + " 不存在");
@@ -158,6 +438,107 @@ public class UnifiedDataSourceController {
         return result;
     }
 
+    /**
+     * 手动主备切换：target=standby 切换到备用库，target=primary 回切到主库
+     */
+    @PostMapping("/failover")
+    public Map<String, Object> failover(@RequestParam String dsName,
+                                        @RequestParam(defaultValue = "standby") String target) {
+        log.info("手动主备切换，数据源: {}，目标: {}", dsName, target);
+
+        Map<String, Object> result = new HashMap<>();
+        try {
+            FailoverDataSource failover = DynamicDataSource.getInstance().getFailover(dsName);
+            if (failover == null) {
+                result.put("success", false);
+                result.put("message", "数据源 " + dsName + " 不存在或未配置备用库");
+                return result;
+            }
+            boolean switched;
+            if ("standby".equals(target)) {
+                switched = failover.failover();
+            } else if ("primary".equals(target)) {
+                switched = failover.failback();
+            } else {
+                result.put("success", false);
+                result.put("message", "未知的切换目标: " + target + "，可选值: standby、primary");
+                return result;
+            }
+            result.put("success", true);
+            result.put("switched", switched);
+            result.put("message", switched ? "数据源 " + dsName + " 已切换到 " + target : "数据源 " + dsName + " 未发生切换");
+            result.put("failover", failover.describe());
+        } catch (Exception e) {
+            log.error("主备切换失败: " + dsName, e);
+            result.put("success", false);
+            result.put("message", "主备切换失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 获取请求舱壁配置与各数据源的处理中请求数
+     */
+    @GetMapping("/bulkhead")
+    public Map<String, Object> getBulkheads() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.put("success", true);
+            result.put("bulkheads", tenantBulkheads.describe());
+        } catch (Exception e) {
+            log.error("获取请求舱壁配置失败", e);
+            result.put("success", false);
+            result.put("message", "获取请求舱壁配置失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 设置请求舱壁上限：指定dsName时设置该数据源的覆盖值，否则设置默认值；小于等于0表示不限制
+     */
+    @PostMapping("/bulkhead")
+    public Map<String, Object> setBulkhead(@RequestParam(required = false) String dsName,
+                                           @RequestParam int limit) {
+        log.info("设置请求舱壁上限，数据源: {}，上限: {}", dsName != null ? dsName : "默认", limit);
+
+        Map<String, Object> result = new HashMap<>();
+        try {
+            if (dsName == null || dsName.trim().isEmpty()) {
+                tenantBulkheads.setDefaultLimit(limit);
+                result.put("message", "请求舱壁默认上限已设置为 " + limit);
+            } else {
+                tenantBulkheads.setLimit(dsName, limit);
+                result.put("message", "数据源 " + dsName + " 的请求舱壁上限已设置为 " + limit);
+            }
+            result.put("success", true);
+        } catch (Exception e) {
+            log.error("设置请求舱壁上限失败", e);
+            result.put("success", false);
+            result.put("message", "设置请求舱壁上限失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 移除数据源的请求舱壁覆盖值，恢复使用默认上限
+     */
+    @DeleteMapping("/bulkhead")
+    public Map<String, Object> removeBulkhead(@RequestParam String dsName) {
+        log.info("移除数据源 {} 的请求舱壁覆盖上限", dsName);
+
+        Map<String, Object> result = new HashMap<>();
+        try {
+            boolean removed = tenantBulkheads.removeLimit(dsName);
+            result.put("success", true);
+            result.put("message", removed ? "数据源 " + dsName + " 已恢复使用默认上限" : "数据源 " + dsName + " 没有覆盖上限");
+        } catch (Exception e) {
+            log.error("移除请求舱壁覆盖上限失败: " + dsName, e);
+            result.put("success", false);
+            result.put("message", "移除请求舱壁覆盖上限失败: " + e.getMessage());
+        }
+        return result;
+    }
+
     /**
      * 获取所有数据源列表
      */
@@ -186,9 +567,26 @@ public class UnifiedDataSourceController {
                 log.warn("预定义数据源为空或未正确加载");
             }
             
+            // 逻辑数据源到物理连接池的映射
+            Map<String, String> physicalMapping = new HashMap<>();
+            for (String dsName : dataSourceNames) {
+                String physicalId = dynamicDataSource.getPhysicalPoolId(dsName);
+                if (physicalId != null) {
+                    physicalMapping.put(dsName, physicalId);
+                }
+            }
+            
             log.info("获取到 {} 个数据源", dataSourceNames.size());
             result.put("success", true);
             result.put("dataSources", dataSourceNames);
+            result.put("physicalMapping", physicalMapping);
+            result.put("physicalPools", dynamicDataSource.getPhysicalPools());
+            result.put("schemaTenants", dynamicDataSource.getSchemaTenants());
+            result.put("sharedTableTenants", dynamicDataSource.getSharedTableTenants());
+            result.put("replicaGroups", dynamicDataSource.getReplicaGroups());
+            result.put("circuitBreakers", dynamicDataSource.getCircuitBreakers());
+            result.put("failovers", dynamicDataSource.getFailovers());
+            result.put("warmups", dynamicDataSource.getWarmups());
         } catch (Exception e) {
             log.error("获取数据源列表失败", e);
             result.put("success", false);
@@ -212,8 +610,7 @@ public class UnifiedDataSourceController {
             DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
             
             // 检查数据源是否存在
-            Map<Object, DataSource> dataSources = dynamicDataSource.getDynamicDataSources();
-            if (!dataSources.containsKey(dsName)) {
+            if (!dynamicDataSource.containsDataSource(dsName)) {
                 log.warn("数据源 {} 不存在", dsName);
                 result.put("success", false);
                 result.put("message", "数据源 " + dsName + " 不存在");
@@ -309,12 +706,14 @@ public class UnifiedDataSourceController {
     /**
      * 在指定数据源中添加用户
      */
+    @RequestTimeout(10000)
     @PostMapping("/{dsName}/users")
-    public Map<String, Object> addUser(@PathVariable String dsName, @RequestBody User user) {
+    public Map<String, Object> addUser(@PathVariable String dsName, @RequestBody User user, HttpServletResponse response) {
         log.info("在数据源 {} 中添加用户: {}", dsName, user);
         Map<String, Object> result = new HashMap<>();
         try {
             User savedUser = userService.saveToDynamicDataSource(user.getName(), user.getEmail(), dsName);
+            putSessionToken(dsName, result, response);
             result.put("success", true);
             result.put("data", savedUser);
             result.put("message", "用户添加成功");
@@ -329,15 +728,20 @@ public class UnifiedDataSourceController {
     /**
      * 向所有数据源中添加用户
      */
+    @RequestTimeout(30000)
     @PostMapping("/all/users")
     public Map<String, Object> addUserToAllDataSources(@RequestBody User user) {
         log.info("向所有数据源中添加用户: {}", user);
         Map<String, Object> result = new HashMap<>();
         try {
-            List<User> users = userService.saveToAllDataSources(user.getName(), user.getEmail());
+            FanOutResult<User> users = userService.fanOutSave(user.getName(), user.getEmail());
             result.put("success", true);
-            result.put("data", users);
-            result.put("message", "用户添加成功");
+            result.put("data", users.getValues());
+            result.put("sources", users.describe());
+            result.put("partial", !users.isComplete());
+            result.put("elapsedMillis", users.getElapsedMillis());
+            result.put("message", users.isComplete() ? "用户添加成功"
+                    : "用户已添加到 " + users.getSuccessCount() + "/" + users.getResults().size() + " 个数据源");
         } catch (Exception e) {
             log.error("向所有数据源中添加用户失败: {}", e.getMessage(), e);
             result.put("success", false);
@@ -349,6 +753,7 @@ public class UnifiedDataSourceController {
     /**
      * 从指定数据源中获取所有用户
      */
+    @RequestTimeout(10000)
     @GetMapping("/{dsName}/users")
     public Map<String, Object> getUsers(@PathVariable String dsName) {
         log.info("从数据源 {} 中获取所有用户", dsName);
@@ -367,17 +772,31 @@ public class UnifiedDataSourceController {
     }
     
     /**
-     * 从所有数据源中获取所有用户
+     * 从所有数据源中获取所有用户；指定limit或after时按sort字段全局排序分页
      */
+    @RequestTimeout(30000)
     @GetMapping("/all/users")
-    public Map<String, Object> getAllUsersFromAllDataSources() {
+    public Map<String, Object> getAllUsersFromAllDataSources(@RequestParam(required = false) String sort,
+                                                             @RequestParam(required = false) Integer limit,
+                                                             @RequestParam(required = false) String after) {
+        if (limit != null || after != null) {
+            return getUsersPage(sort, limit != null ? limit : 50, after);
+        }
         log.info("从所有数据源中获取所有用户");
         Map<String, Object> result = new HashMap<>();
         try {
-            List<User> users = userService.getAllUsersFromAllDataSources();
+            FanOutResult<List<User>> perSource = userService.fanOutGetAllUsers();
+            List<User> users = new ArrayList<>();
+            for (List<User> sourceUsers : perSource.getValues()) {
+                users.addAll(sourceUsers);
+            }
             result.put("success", true);
             result.put("data", users);
-            result.put("message", "获取所有用户列表成功");
+            // 部分数据源失败或超时时返回已获取的用户，并标明每个数据源的状态
+            result.put("sources", perSource.describe());
+            result.put("partial", !perSource.isComplete());
+            result.put("elapsedMillis", perSource.getElapsedMillis());
+            result.put("message", perSource.isComplete() ? "获取所有用户列表成功" : "部分数据源未返回用户列表");
         } catch (Exception e) {
             log.error("从所有数据源中获取用户失败: {}", e.getMessage(), e);
             result.put("success", false);
@@ -386,9 +805,220 @@ public class UnifiedDataSourceController {
         return result;
     }
 
+    private Map<String, Object> getUsersPage(String sort, int limit, String after) {
+        log.info("全局排序分页获取用户: sort={}, limit={}", sort, limit);
+        Map<String, Object> result = new HashMap<>();
+        try {
+            UserPage page = userPageService.getUsersPage(sort, limit, after);
+            result.put("success", true);
+            result.put("data", page.getUsers());
+            result.put("nextCursor", page.getNextCursor());
+            result.put("sources", page.getSources().describe());
+            result.put("partial", !page.getSources().isComplete());
+            result.put("elapsedMillis", page.getSources().getElapsedMillis());
+            result.put("message", "获取用户分页成功");
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        } catch (Exception e) {
+            log.error("全局排序分页获取用户失败: {}", e.getMessage(), e);
+            result.put("success", false);
+            result.put("message", "获取用户分页失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 跨数据源聚合：在每个数据源上计算部分聚合，合并后返回
+     */
+    @RequestTimeout(30000)
+    @PostMapping("/aggregate")
+    public Map<String, Object> aggregate(@RequestBody AggregationQuery query) {
+        log.info("跨数据源聚合表 {}", query.getTable());
+        Map<String, Object> result = new HashMap<>();
+        try {
+            AggregationResult aggregation = aggregationService.aggregate(query);
+            result.put("success", true);
+            result.put("data", aggregation.getRows());
+            result.put("sources", aggregation.getSources().describe());
+            result.put("partial", !aggregation.getSources().isComplete());
+            result.put("elapsedMillis", aggregation.getSources().getElapsedMillis());
+            result.put("message", aggregation.getSources().isComplete() ? "聚合成功" : "部分数据源聚合失败，结果不完整");
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        } catch (Exception e) {
+            log.error("跨数据源聚合失败: {}", e.getMessage(), e);
+            result.put("success", false);
+            result.put("message", "聚合失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 所有分片组的信息
+     */
+    @GetMapping("/sharded")
+    public Map<String, Object> listShardGroups() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("data", shardRings.describeAll());
+        return result;
+    }
+
+    /**
+     * 查看分片组的分片与各分片占有的环空间比例；指定key时同时返回该键路由到的数据源
+     */
+    @GetMapping("/sharded/{group}")
+    public Map<String, Object> getShardGroup(@PathVariable String group, @RequestParam(required = false) String key) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            Map<String, Object> info = shardRings.describe(group);
+            if (key != null) {
+                info.put("key", key);
+                info.put("route", shardRings.route(group, key));
+            }
+            result.put("success", true);
+            result.put("data", info);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 向分片组增加分片，约1/N的键改由新分片承载
+     */
+    @PostMapping("/sharded/{group}/shards")
+    public Map<String, Object> addShard(@PathVariable String group, @RequestParam String dsName) {
+        log.info("分片组 {} 增加分片 {}", group, dsName);
+        Map<String, Object> result = new HashMap<>();
+        try {
+            double moved = shardRings.addShard(group, dsName);
+            result.put("success", true);
+            result.put("movedFraction", moved);
+            result.put("data", shardRings.describe(group));
+            result.put("message", "分片 " + dsName + " 已加入分片组 " + group);
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 从分片组移除分片，其承载的键分散到其余分片
+     */
+    @DeleteMapping("/sharded/{group}/shards")
+    public Map<String, Object> removeShard(@PathVariable String group, @RequestParam String dsName) {
+        log.info("分片组 {} 移除分片 {}", group, dsName);
+        Map<String, Object> result = new HashMap<>();
+        try {
+            double moved = shardRings.removeShard(group, dsName);
+            result.put("success", true);
+            result.put("movedFraction", moved);
+            result.put("data", shardRings.describe(group));
+            result.put("message", "分片 " + dsName + " 已从分片组 " + group + " 移除");
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 把分片组中不在当前归属的用户迁移到当前归属，完成后读取不再回退到历代环
+     */
+    @PostMapping("/sharded/{group}/migrate")
+    public Map<String, Object> migrateShardGroup(@PathVariable String group) {
+        log.info("迁移分片组 {}", group);
+        Map<String, Object> result = new HashMap<>();
+        try {
+            int migrated = shardedUserService.migrate(group);
+            result.put("success", true);
+            result.put("migrated", migrated);
+            result.put("data", shardRings.describe(group));
+            result.put("message", "分片组 " + group + " 迁移完成，共迁移 " + migrated + " 个用户");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        } catch (Exception e) {
+            log.error("迁移分片组 {} 失败: {}", group, e.getMessage(), e);
+            result.put("success", false);
+            result.put("message", "迁移分片组失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 向分片组添加用户，按邮箱自动选择数据源
+     */
+    @RequestTimeout(10000)
+    @PostMapping("/sharded/{group}/users")
+    public Map<String, Object> addShardedUser(@PathVariable String group, @RequestBody User user) {
+        log.info("向分片组 {} 中添加用户: {}", group, user);
+        Map<String, Object> result = new HashMap<>();
+        try {
+            ShardedUserService.Placement placement = shardedUserService.save(group, user.getName(), user.getEmail());
+            result.put("success", true);
+            result.put("dsName", placement.getDsName());
+            result.put("data", placement.getUser());
+            result.put("message", "用户添加成功");
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        } catch (Exception e) {
+            log.error("向分片组 {} 中添加用户失败: {}", group, e.getMessage(), e);
+            result.put("success", false);
+            result.put("message", "添加用户失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 在分片组中根据邮箱获取用户
+     */
+    @RequestTimeout(10000)
+    @GetMapping("/sharded/{group}/users")
+    public Map<String, Object> getShardedUser(@PathVariable String group, @RequestParam String email) {
+        log.info("在分片组 {} 中根据邮箱 {} 获取用户", group, email);
+        Map<String, Object> result = new HashMap<>();
+        try {
+            ShardedUserService.Placement placement = shardedUserService.findByEmail(group, email);
+            if (placement != null) {
+                result.put("success", true);
+                result.put("dsName", placement.getDsName());
+                result.put("data", placement.getUser());
+                result.put("message", "获取用户成功");
+            } else {
+                result.put("success", false);
+                result.put("message", "用户不存在");
+            }
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        } catch (Exception e) {
+            log.error("在分片组 {} 中获取用户失败: {}", group, e.getMessage(), e);
+            result.put("success", false);
+            result.put("message", "获取用户失败: " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 以NDJSON流式输出所有数据源的用户，逐行写出，内存占用与用户数量无关
+     */
+    @GetMapping(value = "/all/users/stream", produces = UserStreamService.MEDIA_TYPE)
+    public StreamingResponseBody streamAllUsersFromAllDataSources() {
+        log.info("流式输出所有数据源的用户");
+        return userStreamService.streamAllUsers();
+    }
+
     /**
      * 在指定数据源中根据ID获取用户
      */
+    @RequestTimeout(10000)
     @GetMapping("/{dsName}/users/{id}")
     public Map<String, Object> getUserById(@PathVariable String dsName, @PathVariable Long id) {
         log.info("在数据源 {} 中根据ID {} 获取用户", dsName, id);
@@ -414,13 +1044,16 @@ public class UnifiedDataSourceController {
     /**
      * 在指定数据源中更新用户
      */
+    @RequestTimeout(10000)
     @PutMapping("/{dsName}/users/{id}")
-    public Map<String, Object> updateUser(@PathVariable String dsName, @PathVariable Long id, @RequestBody User user) {
+    public Map<String, Object> updateUser(@PathVariable String dsName, @PathVariable Long id, @RequestBody User user,
+                                          HttpServletResponse response) {
         log.info("在数据源 {} 中更新用户ID {}: {}", dsName, id, user);
         Map<String, Object> result = new HashMap<>();
         try {
             User updatedUser = userService.updateUserInDynamicDataSource(id, user.getName(), user.getEmail(), dsName);
             if (updatedUser != null) {
+                putSessionToken(dsName, result, response);
                 result.put("success", true);
                 result.put("data", updatedUser);
                 result.put("message", "用户更新成功");
@@ -436,9 +1069,22 @@ public class UnifiedDataSourceController {
         return result;
     }
 
+    /**
+     * 写请求完成后签发会话令牌，客户端在后续读请求的请求头中带上令牌即可读到自己的写入
+     */
+    private void putSessionToken(String dsName, Map<String, Object> result, HttpServletResponse response) {
+        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+        String token = dynamicDataSource != null ? dynamicDataSource.issueSessionToken(dsName) : null;
+        if (token != null) {
+            result.put("sessionToken", token);
+            response.setHeader(ReadConsistency.HEADER, token);
+        }
+    }
+
     /**
      * 在指定数据源中删除用户
      */
+    @RequestTimeout(10000)
     @DeleteMapping("/{dsName}/users/{id}")
     public Map<String, Object> deleteUser(@PathVariable String dsName, @PathVariable Long id) {
         log.info("在数据源 {} 中删除用户ID {}", dsName, id);
@@ -452,6 +1098,7 @@ public class UnifiedDataSourceController {
     /**
      * 在指定数据源的Redis中设置键值对
      */
+    @RequestTimeout(5000)
     @PostMapping("/{dsName}/redis/set")
     public Map<String, Object> setRedisValue(@PathVariable String dsName, 
                                              @RequestParam String key, 
@@ -487,6 +1134,7 @@ public class UnifiedDataSourceController {
     /**
      * 从指定数据源的Redis中获取值
      */
+    @RequestTimeout(5000)
     @GetMapping("/{dsName}/redis/get")
     public Map<String, Object> getRedisValue(@PathVariable String dsName, 
                                              @RequestParam String key) {
@@ -1,10 +1,22 @@
 package com.example.multi.datasource.demo.entity;
 
+import org.hibernate.annotations.Filter;
+import org.hibernate.annotations.FilterDef;
+import org.hibernate.annotations.ParamDef;
+
 import javax.persistence.*;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_tenant_id", columnList = "tenant_id, id"))
+@FilterDef(name = User.TENANT_FILTER, parameters = @ParamDef(name = User.TENANT_ID_PARAM, type = "string"))
+@Filter(name = User.TENANT_FILTER, condition = "tenant_id = :" + User.TENANT_ID_PARAM)
 public class User {
+
+    // 共享表租户过滤器，在共享表租户的会话中启用后，查询只返回本租户的数据
+    public static final String TENANT_FILTER = "tenantFilter";
+
+    public static final String TENANT_ID_PARAM = "tenantId";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -14,6 +26,10 @@ public class User {
     
     @Column(name = "email")
     private String email;
+    
+    // 共享表租户模式下的租户标识，独立连接池或Schema租户中为空
+    @Column(name = "tenant_id", length = 64)
+    private String tenantId;
 
     public User() {
     }
@@ -47,4 +63,12 @@ public class User {
     public void setEmail(String email) {
         this.email = email;
     }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
 }
\ No newline at end of file
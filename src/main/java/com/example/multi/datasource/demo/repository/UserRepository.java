@@ -4,6 +4,15 @@ import com.example.multi.datasource.demo.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    /**
+     * 根据邮箱查询用户，邮箱重复时取ID最小的一个
+     * @param email 邮箱
+     * @return 用户
+     */
+    Optional<User> findFirstByEmailOrderById(String email);
 }
\ No newline at end of file
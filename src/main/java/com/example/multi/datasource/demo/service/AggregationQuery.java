@@ -0,0 +1,117 @@
+package com.example.multi.datasource.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 跨数据源聚合查询
+ *
+ * 例如按租户统计用户数：{"table":"users","groupBy":["dsName"],"aggregates":[{"function":"count"}]}。
+ * groupBy中的dsName表示按数据源分组，在内存中完成；其余分组列下推到数据库。
+ */
+public class AggregationQuery {
+
+    public static final String DATA_SOURCE_GROUP = "dsName";
+
+    public enum Function {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    private String table = "users";
+
+    // 参与聚合的数据源，为空时使用所有数据源
+    private List<String> dataSources;
+
+    private List<String> groupBy = new ArrayList<>();
+
+    private List<Aggregate> aggregates = new ArrayList<>();
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public List<String> getDataSources() {
+        return dataSources;
+    }
+
+    public void setDataSources(List<String> dataSources) {
+        this.dataSources = dataSources;
+    }
+
+    public List<String> getGroupBy() {
+        return groupBy;
+    }
+
+    public void setGroupBy(List<String> groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public List<Aggregate> getAggregates() {
+        return aggregates;
+    }
+
+    public void setAggregates(List<Aggregate> aggregates) {
+        this.aggregates = aggregates;
+    }
+
+    /**
+     * 单个聚合函数
+     */
+    public static class Aggregate {
+
+        private Function function;
+
+        // 聚合的列，COUNT可为空表示count(*)
+        private String column;
+
+        // 结果中的名称，为空时使用 函数名_列名
+        private String alias;
+
+        public Aggregate() {
+        }
+
+        public Aggregate(Function function, String column) {
+            this.function = function;
+            this.column = column;
+        }
+
+        /**
+         * 结果中的名称
+         */
+        public String name() {
+            if (alias != null && !alias.isEmpty()) {
+                return alias;
+            }
+            String name = function.name().toLowerCase();
+            return column != null ? name + "_" + column : name;
+        }
+
+        public Function getFunction() {
+            return function;
+        }
+
+        public void setFunction(Function function) {
+            this.function = function;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public void setColumn(String column) {
+            this.column = column;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        public void setAlias(String alias) {
+            this.alias = alias;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.multi.datasource.demo.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨数据源聚合的结果
+ */
+public class AggregationResult {
+
+    private final List<Map<String, Object>> rows;
+
+    private final FanOutResult<List<Object[]>> sources;
+
+    AggregationResult(List<Map<String, Object>> rows, FanOutResult<List<Object[]>> sources) {
+        this.rows = rows;
+        this.sources = sources;
+    }
+
+    /**
+     * 合并后的结果，每个分组一行，包含分组列与聚合值
+     */
+    public List<Map<String, Object>> getRows() {
+        return rows;
+    }
+
+    /**
+     * 每个数据源上部分聚合的执行状态
+     */
+    public FanOutResult<List<Object[]>> getSources() {
+        return sources;
+    }
+}
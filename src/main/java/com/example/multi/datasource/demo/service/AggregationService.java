@@ -0,0 +1,349 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 跨数据源聚合
+ *
+ * 聚合下推到每个数据源，在数据库中按分组列计算部分聚合（AVG拆成SUM与COUNT），各数据源并行执行，
+ * 只把每个分组的部分结果传回应用，再在内存中按分组合并：COUNT、SUM相加，MIN、MAX取最值，AVG由合并后的SUM除以COUNT得到。
+ * 共享表租户的数据源自动加上tenant_id条件，要求聚合的表带有tenant_id列。
+ */
+@Service
+public class AggregationService {
+
+    private static final Logger log = LoggerFactory.getLogger(AggregationService.class);
+
+    // 合法的SQL标识符，表名可带Schema前缀
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Pattern TABLE = Pattern.compile("([A-Za-z_][A-Za-z0-9_]*\\.)?[A-Za-z_][A-Za-z0-9_]*");
+
+    @Autowired
+    private FanOutExecutor fanOutExecutor;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    /**
+     * 在所选数据源上执行聚合并合并结果
+     * @param query 聚合查询
+     * @return 每个分组的聚合值与每个数据源的执行状态
+     */
+    public AggregationResult aggregate(AggregationQuery query) {
+        validate(query);
+        List<String> dataSources = selectDataSources(query.getDataSources());
+        List<String> pushedGroups = pushedGroups(query);
+        int maxGroups = dataSourceProperties.getAggregateMaxGroups();
+        log.info("跨数据源聚合: 数据源 {} 个，SQL: {}", dataSources.size(), buildSql(query, pushedGroups, false));
+
+        FanOutResult<List<Object[]>> partials = fanOutExecutor.execute(dataSources,
+                dsName -> aggregateSource(dsName, query, pushedGroups, maxGroups));
+
+        List<Map<String, Object>> rows = merge(query, partials);
+        log.info("跨数据源聚合完成，成功 {} 个数据源，{} 个分组，耗时 {} ms", partials.getSuccessCount(), rows.size(),
+                partials.getElapsedMillis());
+        return new AggregationResult(rows, partials);
+    }
+
+    /**
+     * 当前路由中的所有数据源名称
+     */
+    List<String> dataSourceNames() {
+        return UserService.dataSourceNames();
+    }
+
+    private List<String> selectDataSources(List<String> requested) {
+        List<String> all = dataSourceNames();
+        if (requested == null || requested.isEmpty()) {
+            return all;
+        }
+        Set<String> known = new HashSet<>(all);
+        for (String dsName : requested) {
+            if (!known.contains(dsName)) {
+                throw new IllegalArgumentException("数据源 " + dsName + " 不存在");
+            }
+        }
+        return new ArrayList<>(new LinkedHashSet<>(requested));
+    }
+
+    private static void validate(AggregationQuery query) {
+        if (query.getTable() == null || !TABLE.matcher(query.getTable()).matches()) {
+            throw new IllegalArgumentException("无效的表名: " + query.getTable());
+        }
+        if (query.getAggregates() == null || query.getAggregates().isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个聚合函数");
+        }
+        Set<String> names = new HashSet<>();
+        for (AggregationQuery.Aggregate aggregate : query.getAggregates()) {
+            if (aggregate.getFunction() == null) {
+                throw new IllegalArgumentException("聚合函数不能为空");
+            }
+            String column = aggregate.getColumn();
+            if (column == null && aggregate.getFunction() != AggregationQuery.Function.COUNT) {
+                throw new IllegalArgumentException(aggregate.getFunction() + " 需要指定列");
+            }
+            if (column != null && !IDENTIFIER.matcher(column).matches()) {
+                throw new IllegalArgumentException("无效的列名: " + column);
+            }
+            if (!names.add(aggregate.name())) {
+                throw new IllegalArgumentException("聚合结果名称重复: " + aggregate.name());
+            }
+        }
+        if (query.getGroupBy() != null) {
+            for (String group : query.getGroupBy()) {
+                if (group == null || !IDENTIFIER.matcher(group).matches()) {
+                    throw new IllegalArgumentException("无效的分组列: " + group);
+                }
+            }
+        }
+    }
+
+    /**
+     * 下推到数据库的分组列，不含按数据源分组
+     */
+    private static List<String> pushedGroups(AggregationQuery query) {
+        List<String> groups = new ArrayList<>();
+        if (query.getGroupBy() != null) {
+            for (String group : query.getGroupBy()) {
+                if (!AggregationQuery.DATA_SOURCE_GROUP.equals(group)) {
+                    groups.add(group);
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * 生成部分聚合SQL
+     * @param tenantFilter 是否加上共享表租户的tenant_id条件
+     */
+    private static String buildSql(AggregationQuery query, List<String> groups, boolean tenantFilter) {
+        List<String> columns = new ArrayList<>(groups);
+        for (AggregationQuery.Aggregate aggregate : query.getAggregates()) {
+            String column = aggregate.getColumn();
+            switch (aggregate.getFunction()) {
+                case COUNT:
+                    columns.add(column != null ? "count(" + column + ")" : "count(*)");
+                    break;
+                case AVG:
+                    // AVG不能直接合并，拆成SUM与COUNT
+                    columns.add("sum(" + column + ")");
+                    columns.add("count(" + column + ")");
+                    break;
+                default:
+                    columns.add(aggregate.getFunction().name().toLowerCase() + "(" + column + ")");
+            }
+        }
+        StringBuilder sql = new StringBuilder("select ").append(String.join(", ", columns))
+                .append(" from ").append(query.getTable());
+        if (tenantFilter) {
+            sql.append(" where tenant_id = ?");
+        }
+        if (!groups.isEmpty()) {
+            sql.append(" group by ").append(String.join(", ", groups));
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 在一个数据源上执行部分聚合，在工作线程上执行，数据源上下文已切换
+     * @return 每个分组一行：分组值在前，部分聚合值在后
+     */
+    private List<Object[]> aggregateSource(String dsName, AggregationQuery query, List<String> groups, int maxGroups) {
+        DynamicDataSource.setReadOnly(true);
+        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+        String tenantId = dynamicDataSource != null ? dynamicDataSource.getSharedTableTenantId(dsName) : null;
+        String sql = buildSql(query, groups, tenantId != null);
+        Object[] args = tenantId != null ? new Object[]{tenantId} : new Object[0];
+
+        int groupCount = groups.size();
+        int width = groupCount + partialWidth(query);
+        List<Object[]> rows = new ArrayList<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            if (rows.size() >= maxGroups) {
+                throw new IllegalStateException("数据源 " + dsName + " 的分组数超过上限 " + maxGroups);
+            }
+            rows.add(readRow(rs, query, groupCount, width));
+        }, args);
+        return rows;
+    }
+
+    private static Object[] readRow(ResultSet rs, AggregationQuery query, int groupCount, int width) throws SQLException {
+        Object[] row = new Object[width];
+        int index = 0;
+        for (; index < groupCount; index++) {
+            row[index] = normalize(rs.getObject(index + 1));
+        }
+        for (AggregationQuery.Aggregate aggregate : query.getAggregates()) {
+            switch (aggregate.getFunction()) {
+                case COUNT:
+                    row[index] = rs.getLong(index + 1);
+                    index++;
+                    break;
+                case SUM:
+                    row[index] = rs.getBigDecimal(index + 1);
+                    index++;
+                    break;
+                case AVG:
+                    row[index] = rs.getBigDecimal(index + 1);
+                    row[index + 1] = rs.getLong(index + 2);
+                    index += 2;
+                    break;
+                default:
+                    row[index] = normalize(rs.getObject(index + 1));
+                    index++;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * 按分组合并各数据源的部分聚合
+     */
+    static List<Map<String, Object>> merge(AggregationQuery query, FanOutResult<List<Object[]>> partials) {
+        List<String> groupBy = query.getGroupBy() != null ? query.getGroupBy() : new ArrayList<>();
+        int pushed = pushedGroups(query).size();
+        Map<List<Object>, Object[]> merged = new LinkedHashMap<>();
+        for (FanOutResult.SourceResult<List<Object[]>> source : partials.getResults()) {
+            if (source.getStatus() != FanOutResult.Status.SUCCESS) {
+                continue;
+            }
+            for (Object[] row : source.getValue()) {
+                List<Object> key = groupKey(groupBy, row, source.getDsName());
+                Object[] accumulator = merged.get(key);
+                if (accumulator == null) {
+                    merged.put(key, Arrays.copyOfRange(row, pushed, row.length));
+                } else {
+                    combine(query, accumulator, row, pushed);
+                }
+            }
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>(merged.size());
+        for (Map.Entry<List<Object>, Object[]> entry : merged.entrySet()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < groupBy.size(); i++) {
+                row.put(groupBy.get(i), entry.getKey().get(i));
+            }
+            Object[] values = entry.getValue();
+            int index = 0;
+            for (AggregationQuery.Aggregate aggregate : query.getAggregates()) {
+                if (aggregate.getFunction() == AggregationQuery.Function.AVG) {
+                    BigDecimal sum = (BigDecimal) values[index];
+                    long count = (Long) values[index + 1];
+                    row.put(aggregate.name(), sum != null && count > 0
+                            ? sum.divide(BigDecimal.valueOf(count), MathContext.DECIMAL64) : null);
+                    index += 2;
+                } else {
+                    row.put(aggregate.name(), values[index]);
+                    index++;
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<Object> groupKey(List<String> groupBy, Object[] row, String dsName) {
+        List<Object> key = new ArrayList<>(groupBy.size());
+        int index = 0;
+        for (String group : groupBy) {
+            key.add(AggregationQuery.DATA_SOURCE_GROUP.equals(group) ? dsName : row[index++]);
+        }
+        return key;
+    }
+
+    private static void combine(AggregationQuery query, Object[] accumulator, Object[] row, int offset) {
+        int index = 0;
+        for (AggregationQuery.Aggregate aggregate : query.getAggregates()) {
+            Object value = row[offset + index];
+            switch (aggregate.getFunction()) {
+                case COUNT:
+                    accumulator[index] = (Long) accumulator[index] + (Long) value;
+                    break;
+                case SUM:
+                    accumulator[index] = add((BigDecimal) accumulator[index], (BigDecimal) value);
+                    break;
+                case AVG:
+                    accumulator[index] = add((BigDecimal) accumulator[index], (BigDecimal) value);
+                    accumulator[index + 1] = (Long) accumulator[index + 1] + (Long) row[offset + index + 1];
+                    index++;
+                    break;
+                case MIN:
+                    if (value != null && (accumulator[index] == null || compare(value, accumulator[index]) < 0)) {
+                        accumulator[index] = value;
+                    }
+                    break;
+                case MAX:
+                    if (value != null && (accumulator[index] == null || compare(value, accumulator[index]) > 0)) {
+                        accumulator[index] = value;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("未知的聚合函数: " + aggregate.getFunction());
+            }
+            index++;
+        }
+    }
+
+    private static int partialWidth(AggregationQuery query) {
+        int width = 0;
+        for (AggregationQuery.Aggregate aggregate : query.getAggregates()) {
+            width += aggregate.getFunction() == AggregationQuery.Function.AVG ? 2 : 1;
+        }
+        return width;
+    }
+
+    private static BigDecimal add(BigDecimal a, BigDecimal b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a.add(b);
+    }
+
+    /**
+     * 不同驱动返回的整数类型可能不同，统一为Long，分组和比较时才能相等
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        return value;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceDescriptor;
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.FailoverDataSource;
+import com.example.multi.datasource.demo.config.ManagedDataSource;
+import com.example.multi.datasource.demo.config.ReplicaBalancers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class DataSourceRegistrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourceRegistrationService.class);
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    private volatile ExecutorService initExecutor;
+
+    /**
+     * 批量注册数据源
+     *
+     * 先逐个校验描述，再以有限并发并行初始化连接池，最后通过一次路由快照替换发布所有成功的数据源。
+     * @param descriptors 连接池描述列表
+     * @param initialize 是否在发布前初始化连接池，为false时连接池在第一次借用时创建
+     * @return 每个数据源的注册结果
+     */
+    public List<Map<String, Object>> registerAll(List<DataSourceDescriptor> descriptors, boolean initialize) {
+        log.info("批量注册 {} 个数据源，初始化连接池: {}", descriptors.size(), initialize);
+
+        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+        // 结果按请求顺序排列，slots记录每个候选数据源在结果中的位置
+        List<Map<String, Object>> results = new ArrayList<>(descriptors.size());
+        Map<String, Integer> slots = new HashMap<>();
+        Map<String, DataSource> candidates = new LinkedHashMap<>();
+
+        // 校验描述并创建受管数据源
+        for (DataSourceDescriptor descriptor : descriptors) {
+            String dsName = descriptor.getDsName();
+            String error = validate(descriptor, dynamicDataSource, slots.keySet());
+            if (error != null) {
+                results.add(failure(dsName, error));
+                continue;
+            }
+            slots.put(dsName, results.size());
+            candidates.put(dsName, dynamicDataSource.acquireDataSource(dsName, descriptor));
+            results.add(null);
+        }
+
+        // 以有限并发并行初始化连接池
+        if (initialize && !candidates.isEmpty()) {
+            Map<String, Future<?>> futures = new LinkedHashMap<>();
+            for (Map.Entry<String, DataSource> entry : candidates.entrySet()) {
+                List<ManagedDataSource> pools = DynamicDataSource.poolsOf(entry.getValue());
+                futures.put(entry.getKey(), getInitExecutor().submit(() -> {
+                    for (ManagedDataSource pool : pools) {
+                        pool.obtainPool().init();
+                    }
+                    return null;
+                }));
+            }
+            for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                String dsName = entry.getKey();
+                try {
+                    entry.getValue().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failCandidate(dsName, "初始化被中断", candidates, results, slots);
+                } catch (ExecutionException e) {
+                    log.warn("数据源 {} 初始化失败", dsName, e.getCause());
+                    failCandidate(dsName, "初始化连接池失败: " + e.getCause().getMessage(), candidates, results, slots);
+                }
+            }
+        }
+
+        // 一次性发布所有成功的数据源，校验之后已被其他请求添加的数据源由发布方跳过并释放
+        if (!candidates.isEmpty()) {
+            for (String dsName : dynamicDataSource.addTargetDataSources(candidates)) {
+                candidates.remove(dsName);
+                results.set(slots.get(dsName), failure(dsName, "数据源 " + dsName + " 在注册期间已被添加"));
+            }
+        }
+        for (String dsName : candidates.keySet()) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("dsName", dsName);
+            result.put("success", true);
+            result.put("message", "数据源 " + dsName + " 添加成功");
+            results.set(slots.get(dsName), result);
+        }
+
+        log.info("批量注册数据源完成，成功 {} 个，失败 {} 个", candidates.size(), results.size() - candidates.size());
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (initExecutor != null) {
+            initExecutor.shutdownNow();
+        }
+    }
+
+    private String validate(DataSourceDescriptor descriptor, DynamicDataSource dynamicDataSource, Set<String> seen) {
+        String dsName = descriptor.getDsName();
+        if (isEmpty(dsName)) {
+            return "数据源名称不能为空";
+        }
+        if (isEmpty(descriptor.getUrl()) || isEmpty(descriptor.getDriverClassName())) {
+            return "url和driverClassName不能为空";
+        }
+        try {
+            ReplicaBalancers.of(descriptor.getReplicaBalancer());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        if (!isEmpty(descriptor.getStandbyUrl())) {
+            if (descriptor.getReplicaUrls() != null && !descriptor.getReplicaUrls().isEmpty()) {
+                return "不能同时配置只读副本和备用库";
+            }
+            if (!FailoverDataSource.FAILBACK_AUTO.equals(descriptor.getFailbackPolicy())
+                    && !FailoverDataSource.FAILBACK_MANUAL.equals(descriptor.getFailbackPolicy())) {
+                return "未知的回切策略: " + descriptor.getFailbackPolicy() + "，可选值: auto、manual";
+            }
+        }
+        if (seen.contains(dsName)) {
+            return "数据源 " + dsName + " 在请求中重复";
+        }
+        if (dynamicDataSource.containsDataSource(dsName)) {
+            return "数据源 " + dsName + " 已存在";
+        }
+        if (dynamicDataSource.isWarming(dsName)) {
+            return "数据源 " + dsName + " 正在预热";
+        }
+        return null;
+    }
+
+    private void failCandidate(String dsName, String message, Map<String, DataSource> candidates,
+                               List<Map<String, Object>> results, Map<String, Integer> slots) {
+        DataSource dataSource = candidates.remove(dsName);
+        if (dataSource != null) {
+            DynamicDataSource.getInstance().releaseDataSource(dsName, dataSource);
+        }
+        results.set(slots.get(dsName), failure(dsName, message));
+    }
+
+    private Map<String, Object> failure(String dsName, String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("dsName", dsName);
+        result.put("success", false);
+        result.put("message", message);
+        return result;
+    }
+
+    private ExecutorService getInitExecutor() {
+        ExecutorService executor = initExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (initExecutor == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    initExecutor = Executors.newFixedThreadPool(dataSourceProperties.getBulkInitConcurrency(), r -> {
+                        Thread thread = new Thread(r, "datasource-bulk-init-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                executor = initExecutor;
+            }
+        }
+        return executor;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
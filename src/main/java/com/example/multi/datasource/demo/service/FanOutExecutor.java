@@ -0,0 +1,194 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import com.example.multi.datasource.demo.config.DataSourceUnavailableException;
+import com.example.multi.datasource.demo.config.DeadlineExceededException;
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.LoadShedding;
+import com.example.multi.datasource.demo.config.ReadConsistency;
+import com.example.multi.datasource.demo.config.RequestDeadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 跨数据源并行执行
+ *
+ * 每个数据源的操作在有界线程池中并行执行，总耗时取决于最慢的数据源而不是所有数据源之和。
+ * 工作线程上的数据源上下文切换到目标数据源，并继承调用线程的只读标记、读一致性要求与请求截止时间；
+ * 每个数据源的截止时间取单源超时与请求截止时间中较早者，超时的数据源被放弃，其余数据源的结果照常返回。
+ */
+@Service
+public class FanOutExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(FanOutExecutor.class);
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * 在每个数据源上并行执行操作
+     * @param dataSourceNames 数据源名称
+     * @param task 单个数据源上的操作，参数为数据源名称
+     * @return 成功数据源的返回值与每个数据源的执行状态
+     */
+    public <T> FanOutResult<T> execute(Collection<String> dataSourceNames, Function<String, T> task) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(dataSourceProperties.getFanOutTimeout());
+        Long requestDeadline = RequestDeadline.current();
+        if (requestDeadline != null && requestDeadline - deadline < 0) {
+            deadline = requestDeadline;
+        }
+        long sourceDeadline = deadline;
+        boolean readOnly = DynamicDataSource.isReadOnly();
+        ReadConsistency.Requirement requirement = ReadConsistency.current();
+
+        Map<String, Future<FanOutResult.SourceResult<T>>> futures = new LinkedHashMap<>();
+        List<FanOutResult.SourceResult<T>> results = new ArrayList<>(dataSourceNames.size());
+        for (String dsName : dataSourceNames) {
+            try {
+                futures.put(dsName, getExecutor().submit(
+                        () -> run(dsName, sourceDeadline, readOnly, requirement, task)));
+            } catch (RejectedExecutionException e) {
+                futures.put(dsName, null);
+            }
+        }
+
+        boolean interrupted = false;
+        for (Map.Entry<String, Future<FanOutResult.SourceResult<T>>> entry : futures.entrySet()) {
+            String dsName = entry.getKey();
+            Future<FanOutResult.SourceResult<T>> future = entry.getValue();
+            if (future == null) {
+                results.add(new FanOutResult.SourceResult<>(dsName, FanOutResult.Status.REJECTED, null,
+                        "并行执行线程已满", 0));
+                continue;
+            }
+            try {
+                if (interrupted) {
+                    throw new InterruptedException();
+                }
+                results.add(future.get(Math.max(0, sourceDeadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                // 工作线程上的查询超时同样受截止时间约束，这里不中断线程，避免连接因中断被破坏
+                future.cancel(false);
+                results.add(new FanOutResult.SourceResult<>(dsName, FanOutResult.Status.TIMEOUT, null,
+                        "超过截止时间未返回", elapsedMillis(start)));
+            } catch (InterruptedException e) {
+                interrupted = true;
+                future.cancel(false);
+                results.add(new FanOutResult.SourceResult<>(dsName, FanOutResult.Status.FAILED, null,
+                        "等待结果被中断", elapsedMillis(start)));
+            } catch (ExecutionException e) {
+                results.add(new FanOutResult.SourceResult<>(dsName, FanOutResult.Status.FAILED, null,
+                        String.valueOf(e.getCause()), elapsedMillis(start)));
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        FanOutResult<T> result = new FanOutResult<>(results, elapsedMillis(start));
+        log.debug("并行操作 {} 个数据源完成，成功 {} 个，耗时 {} ms", results.size(), result.getSuccessCount(),
+                result.getElapsedMillis());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> FanOutResult.SourceResult<T> run(String dsName, long deadline, boolean readOnly,
+                                                 ReadConsistency.Requirement requirement, Function<String, T> task) {
+        long start = System.nanoTime();
+        // 线程池中的线程可能残留上一个任务的上下文，执行前全部覆盖，执行后全部清理
+        DynamicDataSource.setContext(dsName);
+        DynamicDataSource.setReadOnly(readOnly);
+        ReadConsistency.require(requirement);
+        RequestDeadline.restore(deadline);
+        LoadShedding.clear();
+        try {
+            RequestDeadline.check("在数据源 " + dsName + " 上的并行操作");
+            T value = task.apply(dsName);
+            return new FanOutResult.SourceResult<>(dsName, FanOutResult.Status.SUCCESS, value, null, elapsedMillis(start));
+        } catch (RuntimeException e) {
+            FanOutResult.Status status = classify(e);
+            log.warn("数据源 {} 上的并行操作失败，状态: {}，原因: {}", dsName, status, e.getMessage());
+            return new FanOutResult.SourceResult<>(dsName, status, null, e.getMessage(), elapsedMillis(start));
+        } finally {
+            LoadShedding.clear();
+            RequestDeadline.clear();
+            ReadConsistency.clear();
+            DynamicDataSource.setReadOnly(false);
+            DynamicDataSource.clearContext();
+        }
+    }
+
+    /**
+     * 按异常原因链判断数据源的执行状态
+     */
+    static FanOutResult.Status classify(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataSourceUnavailableException) {
+                return FanOutResult.Status.REJECTED;
+            }
+            if (cause instanceof DeadlineExceededException || cause instanceof SQLTimeoutException
+                    || cause instanceof QueryTimeoutException) {
+                return FanOutResult.Status.TIMEOUT;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return FanOutResult.Status.FAILED;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    int threads = dataSourceProperties.getFanOutThreads();
+                    // 排队的任务在开始前检查截止时间，等待过久的数据源直接放弃
+                    executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(dataSourceProperties.getFanOutQueueCapacity()), r -> {
+                        Thread thread = new Thread(r, "datasource-fan-out-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                }
+                current = executor;
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.multi.datasource.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨数据源并行操作的结果：成功的数据源返回值，以及每个数据源的执行状态
+ * @param <T> 单个数据源的返回值类型
+ */
+public class FanOutResult<T> {
+
+    public enum Status {
+        SUCCESS,
+        FAILED,
+        // 超过单个数据源的超时或请求截止时间
+        TIMEOUT,
+        // 被熔断、并发限制或连接预算拒绝，或执行线程已满
+        REJECTED
+    }
+
+    private final List<SourceResult<T>> results;
+
+    private final long elapsedMillis;
+
+    FanOutResult(List<SourceResult<T>> results, long elapsedMillis) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * 成功的数据源的返回值，按数据源顺序排列
+     */
+    public List<T> getValues() {
+        List<T> values = new ArrayList<>();
+        for (SourceResult<T> result : results) {
+            if (result.status == Status.SUCCESS) {
+                values.add(result.value);
+            }
+        }
+        return values;
+    }
+
+    public List<SourceResult<T>> getResults() {
+        return results;
+    }
+
+    public int getSuccessCount() {
+        int count = 0;
+        for (SourceResult<T> result : results) {
+            if (result.status == Status.SUCCESS) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 是否所有数据源都执行成功
+     */
+    public boolean isComplete() {
+        return getSuccessCount() == results.size();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * 每个数据源的执行状态，不包含返回值
+     */
+    public List<Map<String, Object>> describe() {
+        List<Map<String, Object>> sources = new ArrayList<>(results.size());
+        for (SourceResult<T> result : results) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("dsName", result.dsName);
+            info.put("status", result.status.name());
+            info.put("elapsedMillis", result.elapsedMillis);
+            if (result.error != null) {
+                info.put("error", result.error);
+            }
+            sources.add(info);
+        }
+        return sources;
+    }
+
+    /**
+     * 单个数据源的执行结果
+     * @param <T> 返回值类型
+     */
+    public static class SourceResult<T> {
+
+        private final String dsName;
+        private final Status status;
+        private final T value;
+        private final String error;
+        private final long elapsedMillis;
+
+        SourceResult(String dsName, Status status, T value, String error, long elapsedMillis) {
+            this.dsName = dsName;
+            this.status = status;
+            this.value = value;
+            this.error = error;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getDsName() {
+            return dsName;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+}
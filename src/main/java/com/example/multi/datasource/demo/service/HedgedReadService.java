@@ -0,0 +1,316 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.ReadAttempt;
+import com.example.multi.datasource.demo.config.ReadConsistency;
+import com.example.multi.datasource.demo.config.RequestDeadline;
+import com.example.multi.datasource.demo.config.ReplicaGroupDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 副本对冲读
+ *
+ * 读请求先在一个副本上执行；若超过该数据源近期读耗时的指定百分位仍未返回，则在另一个副本上重复执行，
+ * 先返回者胜出，另一方的语句被取消。对冲次数受预算限制，不超过读请求的一定比例。
+ */
+@Service
+public class HedgedReadService {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgedReadService.class);
+
+    // 对冲预算的最大积累量，允许短时间的突发
+    private static final double MAX_BUDGET = 10;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    private final HedgeBudget budget = new HedgeBudget();
+
+    private final LongAdder reads = new LongAdder();
+
+    private final LongAdder hedges = new LongAdder();
+
+    private final LongAdder hedgeWins = new LongAdder();
+
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * 数据源是否可以对冲读：已启用对冲且数据源至少有两个只读副本
+     * @param dataSourceName 数据源名称
+     * @return 是否可以对冲
+     */
+    public boolean canHedge(String dataSourceName) {
+        if (!dataSourceProperties.isHedgeEnabled()) {
+            return false;
+        }
+        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+        ReplicaGroupDataSource group = dynamicDataSource != null ? dynamicDataSource.getReplicaGroup(dataSourceName) : null;
+        return group != null && group.getReplicas().size() >= 2;
+    }
+
+    /**
+     * 在指定数据源的副本上执行读操作，必要时对冲
+     * @param dataSourceName 数据源名称
+     * @param query 读操作，在工作线程上以只读上下文执行
+     * @return 先返回的结果
+     */
+    public <T> T read(String dataSourceName, Supplier<T> query) {
+        reads.increment();
+        budget.deposit(dataSourceProperties.getHedgeBudgetRatio());
+        LatencyWindow window = windows.computeIfAbsent(dataSourceName,
+                key -> new LatencyWindow(dataSourceProperties.getHedgePercentile()));
+        long delayNanos = window.threshold(TimeUnit.MILLISECONDS.toNanos(dataSourceProperties.getHedgeMinDelay()));
+
+        CompletionService<T> completionService = new ExecutorCompletionService<>(getExecutor());
+        ReadAttempt first = new ReadAttempt(null);
+        // 会话令牌的一致性要求随读请求传递到工作线程
+        ReadConsistency.Requirement requirement = ReadConsistency.current();
+        // 请求截止时间同样传递到工作线程，用作查询超时
+        Long deadline = RequestDeadline.current();
+        long start = System.nanoTime();
+        Future<T> firstFuture;
+        try {
+            firstFuture = completionService.submit(() -> execute(dataSourceName, first, requirement, deadline, query));
+        } catch (RejectedExecutionException e) {
+            // 对冲线程已满时直接在调用线程上执行
+            log.debug("对冲读线程已满，直接执行数据源 {} 的读请求", dataSourceName);
+            return execute(dataSourceName, first, requirement, deadline, query);
+        }
+
+        ReadAttempt hedge = null;
+        Future<T> hedgeFuture = null;
+        int outstanding = 1;
+        try {
+            Future<T> done = delayNanos > 0 ? completionService.poll(delayNanos, TimeUnit.NANOSECONDS) : completionService.take();
+            if (done == null) {
+                // 截止时间已过时不再发起对冲
+                if (!RequestDeadline.isExpired() && budget.tryWithdraw()) {
+                    hedge = new ReadAttempt(first.getReplica());
+                    ReadAttempt hedgeAttempt = hedge;
+                    try {
+                        hedgeFuture = completionService.submit(() -> execute(dataSourceName, hedgeAttempt, requirement, deadline, query));
+                        outstanding++;
+                        hedges.increment();
+                        log.debug("数据源 {} 的读请求超过 {} ms未返回，发起对冲", dataSourceName, delayNanos / 1_000_000.0);
+                    } catch (RejectedExecutionException e) {
+                        hedge = null;
+                    }
+                } else {
+                    budgetExhausted.increment();
+                }
+                done = completionService.take();
+            }
+
+            while (true) {
+                outstanding--;
+                try {
+                    T result = done.get();
+                    window.record(System.nanoTime() - start);
+                    if (done == hedgeFuture) {
+                        hedgeWins.increment();
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    // 一方失败时等待另一方
+                    if (outstanding == 0) {
+                        throw rethrow(e.getCause());
+                    }
+                    log.debug("数据源 {} 的一次读尝试失败，等待另一次尝试: {}", dataSourceName, e.getCause().getMessage());
+                }
+                done = completionService.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("对冲读被中断", e);
+        } finally {
+            cancel(first, firstFuture);
+            if (hedge != null) {
+                cancel(hedge, hedgeFuture);
+            }
+        }
+    }
+
+    /**
+     * 获取对冲读统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long readCount = reads.sum();
+        long hedgeCount = hedges.sum();
+        long winCount = hedgeWins.sum();
+        stats.put("enabled", dataSourceProperties.isHedgeEnabled());
+        stats.put("reads", readCount);
+        stats.put("hedges", hedgeCount);
+        stats.put("hedgeWins", winCount);
+        stats.put("budgetExhausted", budgetExhausted.sum());
+        stats.put("hedgeRate", readCount > 0 ? (double) hedgeCount / readCount : 0.0);
+        stats.put("hedgeWinRate", hedgeCount > 0 ? (double) winCount / hedgeCount : 0.0);
+        Map<String, Double> thresholds = new HashMap<>();
+        for (Map.Entry<String, LatencyWindow> entry : windows.entrySet()) {
+            long threshold = entry.getValue().threshold(0);
+            if (threshold >= 0) {
+                thresholds.put(entry.getKey(), threshold / 1_000_000.0);
+            }
+        }
+        stats.put("thresholdMs", thresholds);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> T execute(String dataSourceName, ReadAttempt attempt, ReadConsistency.Requirement requirement,
+                          Long deadline, Supplier<T> query) {
+        ReadConsistency.Requirement previous = ReadConsistency.current();
+        Long previousDeadline = RequestDeadline.current();
+        DynamicDataSource.setContext(dataSourceName);
+        DynamicDataSource.setReadOnly(true);
+        ReadConsistency.require(requirement);
+        RequestDeadline.restore(deadline);
+        attempt.bind();
+        try {
+            return query.get();
+        } finally {
+            ReadAttempt.unbind();
+            RequestDeadline.restore(previousDeadline);
+            ReadConsistency.require(previous);
+            DynamicDataSource.setReadOnly(false);
+            DynamicDataSource.clearContext();
+        }
+    }
+
+    private static void cancel(ReadAttempt attempt, Future<?> future) {
+        if (!future.isDone()) {
+            // 只取消语句，不中断工作线程，避免连接因中断被破坏
+            attempt.cancel();
+            future.cancel(false);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    int threads = dataSourceProperties.getHedgeThreads();
+                    // 不排队：线程用尽时由调用线程直接执行，避免读请求在队列中等待
+                    executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                        Thread thread = new Thread(r, "hedged-read-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                }
+                current = executor;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 近期读耗时窗口，定期计算指定百分位作为对冲等待时间
+     */
+    private static final class LatencyWindow {
+
+        private static final int SIZE = 128;
+        private static final int MIN_SAMPLES = 20;
+        private static final int REFRESH_INTERVAL = 16;
+
+        private final double percentile;
+        private final long[] samples = new long[SIZE];
+        private int count;
+        private int next;
+        private int sinceRefresh;
+        private volatile long cachedNanos = -1;
+
+        LatencyWindow(double percentile) {
+            this.percentile = percentile;
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % SIZE;
+            if (count < SIZE) {
+                count++;
+            }
+            if (++sinceRefresh >= REFRESH_INTERVAL && count >= MIN_SAMPLES) {
+                sinceRefresh = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile / 100 * count) - 1;
+                cachedNanos = sorted[Math.max(0, Math.min(index, count - 1))];
+            }
+        }
+
+        /**
+         * @param minNanos 下限
+         * @return 对冲等待时间(ns)，样本不足时返回-1表示不对冲
+         */
+        long threshold(long minNanos) {
+            long cached = cachedNanos;
+            return cached < 0 ? -1 : Math.max(cached, minNanos);
+        }
+    }
+
+    /**
+     * 对冲预算：每个读请求积累一定比例的额度，每次对冲消耗一个额度
+     */
+    private static final class HedgeBudget {
+
+        private double tokens;
+
+        synchronized void deposit(double ratio) {
+            tokens = Math.min(MAX_BUDGET, tokens + ratio);
+        }
+
+        synchronized boolean tryWithdraw() {
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.ConsistentHashRing;
+import com.example.multi.datasource.demo.config.ShardRings;
+import com.example.multi.datasource.demo.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 分片用户存储：按邮箱在分片组的一致性哈希环上选择数据源，调用方不必指定dsName
+ *
+ * 用户ID由各数据源的自增列生成，写入前无法得知，因此以邮箱作为分片键。
+ * 路由到的数据源不在路由表中时拒绝访问，避免落到默认数据源。
+ * 增删分片后已有用户仍留在原归属，由迁移移到当前归属，迁移完成后退役历代环。
+ */
+@Service
+public class ShardedUserService {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedUserService.class);
+
+    @Autowired
+    private ShardRings shardRings;
+
+    @Autowired
+    private UserService userService;
+
+    /**
+     * 把用户保存到邮箱所属的分片
+     * @param group 分片组名称
+     * @param name 用户名
+     * @param email 邮箱
+     * @return 保存的用户及其所在数据源
+     * @throws IllegalArgumentException 邮箱已存在于分片组中（包括尚未迁移的原归属）
+     */
+    public Placement save(String group, String name, String email) {
+        Placement existing = findByEmail(group, email);
+        if (existing != null) {
+            throw new IllegalArgumentException("分片组 " + group + " 中邮箱 " + email + " 的用户已存在于数据源 "
+                    + existing.getDsName());
+        }
+        String dsName = shardRings.route(group, email);
+        checkRouted(group, dsName);
+        log.info("分片组 {} 中邮箱 {} 路由到数据源 {}", group, email, dsName);
+        return new Placement(dsName, userService.saveToDynamicDataSource(name, email, dsName));
+    }
+
+    /**
+     * 根据邮箱查询用户，当前归属中不存在时依次回退到历代环中的归属
+     * @param group 分片组名称
+     * @param email 邮箱
+     * @return 用户及其所在数据源，不存在时返回null
+     */
+    public Placement findByEmail(String group, String email) {
+        if (email == null || email.isEmpty()) {
+            throw new IllegalArgumentException("分片键email不能为空");
+        }
+        List<String> route = shardRings.readRoute(group, email);
+        checkRouted(group, route.get(0));
+        for (String dsName : route) {
+            if (!isRouted(dsName)) {
+                log.warn("分片组 {} 历代环中的分片 {} 已不在路由表中，跳过回退读取", group, dsName);
+                continue;
+            }
+            User user = userService.getUserByEmailFromDynamicDataSource(email, dsName);
+            if (user != null) {
+                if (!dsName.equals(route.get(0))) {
+                    log.info("分片组 {} 中邮箱 {} 的用户仍在变更前的分片 {}，尚未迁移到 {}", group, email, dsName, route.get(0));
+                }
+                return new Placement(dsName, user);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把分片组中不在当前归属的用户迁移到当前归属，完成后退役迁移开始时的历代环
+     *
+     * 用户先写入当前归属再从原分片删除，迁移期间读取总能在某一代归属中找到。
+     * 用户ID由目标数据源重新生成。
+     * @param group 分片组名称
+     * @return 迁移的用户数
+     */
+    public int migrate(String group) {
+        List<ConsistentHashRing> generations = shardRings.generations(group);
+        if (generations.isEmpty()) {
+            return 0;
+        }
+        int migrated = 0;
+        for (String dsName : shardRings.shardsOf(group)) {
+            if (!isRouted(dsName)) {
+                log.warn("分片组 {} 的分片 {} 已不在路由表中，跳过迁移", group, dsName);
+                continue;
+            }
+            for (User user : userService.getAllUsersFromDynamicDataSource(dsName)) {
+                String email = user.getEmail();
+                if (email == null || email.isEmpty()) {
+                    continue;
+                }
+                String owner = shardRings.route(group, email);
+                if (owner.equals(dsName)) {
+                    continue;
+                }
+                checkRouted(group, owner);
+                if (userService.getUserByEmailFromDynamicDataSource(email, owner) == null) {
+                    userService.saveToDynamicDataSource(user.getName(), email, owner);
+                }
+                userService.deleteUserFromDynamicDataSource(user.getId(), dsName);
+                migrated++;
+            }
+        }
+        shardRings.retireGenerations(group, generations);
+        log.info("分片组 {} 迁移完成，共迁移 {} 个用户", group, migrated);
+        return migrated;
+    }
+
+    private static void checkRouted(String group, String dsName) {
+        if (!isRouted(dsName)) {
+            throw new IllegalStateException("分片组 " + group + " 路由到的数据源 " + dsName + " 不在路由表中");
+        }
+    }
+
+    private static boolean isRouted(String dsName) {
+        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+        return dynamicDataSource != null && dynamicDataSource.hasDataSource(dsName);
+    }
+
+    /**
+     * 用户及其所在的分片数据源
+     */
+    public static class Placement {
+
+        private final String dsName;
+
+        private final User user;
+
+        Placement(String dsName, User user) {
+            this.dsName = dsName;
+            this.user = user;
+        }
+
+        public String getDsName() {
+            return dsName;
+        }
+
+        public User getUser() {
+            return user;
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package com.example.multi.datasource.demo.service;
 
 import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.RequestDeadline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
@@ -15,11 +15,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 @Service
 public class TableService {
     
     private static final Logger log = LoggerFactory.getLogger(TableService.class);
+    
+    // 合法的SQL标识符
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
@@ -39,14 +43,15 @@ public class TableService {
         try {
             // 检查数据源是否存在
             DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-            Map<Object, DataSource> allDataSources = dynamicDataSource.getDynamicDataSources();
-            if (!allDataSources.containsKey(dataSourceName)) {
+            if (!dynamicDataSource.containsDataSource(dataSourceName)) {
                 log.warn("数据源 {} 不存在", dataSourceName);
                 result.put("success", false);
                 result.put("message", "数据源 " + dataSourceName + " 不存在");
                 return result;
             }
 
+            RequestDeadline.check("在数据源 " + dataSourceName + " 中创建表");
+
             // 切换到指定数据源
             DynamicDataSource.setContext(dataSourceName);
             
@@ -69,6 +74,47 @@ public class TableService {
         return result;
     }
 
+    /**
+     * 在指定数据源中创建Schema（已存在时忽略）
+     * @param dataSourceName 数据源名称
+     * @param schema Schema名称
+     */
+    public void createSchema(String dataSourceName, String schema) {
+        log.info("在数据源 {} 中创建Schema {}", dataSourceName, schema);
+        
+        if (schema == null || !IDENTIFIER.matcher(schema).matches()) {
+            throw new IllegalArgumentException("非法的Schema名称: " + schema);
+        }
+        
+        RequestDeadline.check("在数据源 " + dataSourceName + " 中创建Schema");
+        DynamicDataSource.setContext(dataSourceName);
+        try {
+            jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + schema);
+        } finally {
+            DynamicDataSource.clearContext();
+        }
+    }
+
+    /**
+     * 在指定数据源中创建共享表租户使用的用户表及 (tenant_id, id) 复合索引（已存在时忽略），
+     * 已有的用户表缺少tenant_id列时补上
+     * @param dataSourceName 数据源名称
+     */
+    public void createSharedUsersTable(String dataSourceName) {
+        log.info("在数据源 {} 中创建共享用户表", dataSourceName);
+        
+        RequestDeadline.check("在数据源 " + dataSourceName + " 中创建共享用户表");
+        DynamicDataSource.setContext(dataSourceName);
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS users (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "name VARCHAR(255), email VARCHAR(255), tenant_id VARCHAR(64))");
+            jdbcTemplate.execute("ALTER TABLE users ADD COLUMN IF NOT EXISTS tenant_id VARCHAR(64)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_users_tenant_id ON users (tenant_id, id)");
+        } finally {
+            DynamicDataSource.clearContext();
+        }
+    }
+
     /**
      * 在指定数据源中删除表
      * @param dataSourceName 数据源名称
@@ -83,14 +129,15 @@ public class TableService {
         try {
             // 检查数据源是否存在
             DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-            Map<Object, DataSource> allDataSources = dynamicDataSource.getDynamicDataSources();
-            if (!allDataSources.containsKey(dataSourceName)) {
+            if (!dynamicDataSource.containsDataSource(dataSourceName)) {
                 log.warn("数据源 {} 不存在", dataSourceName);
                 result.put("success", false);
                 result.put("message", "数据源 " + dataSourceName + " 不存在");
                 return result;
             }
 
+            RequestDeadline.check("在数据源 " + dataSourceName + " 中删除表");
+
             // 切换到指定数据源
             DynamicDataSource.setContext(dataSourceName);
             
@@ -127,14 +174,15 @@ public class TableService {
         try {
             // 检查数据源是否存在
             DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-            Map<Object, DataSource> allDataSources = dynamicDataSource.getDynamicDataSources();
-            if (!allDataSources.containsKey(dataSourceName)) {
+            if (!dynamicDataSource.containsDataSource(dataSourceName)) {
                 log.warn("数据源 {} 不存在", dataSourceName);
                 result.put("success", false);
                 result.put("message", "数据源 " + dataSourceName + " 不存在");
                 return result;
             }
 
+            RequestDeadline.check("获取数据源 " + dataSourceName + " 中的表列表");
+
             // 切换到指定数据源
             DynamicDataSource.setContext(dataSourceName);
             
@@ -146,10 +194,10 @@ public class TableService {
                 try (Connection connection = jdbcTemplate.getDataSource().getConnection()) {
                     DatabaseMetaData metaData = connection.getMetaData();
                     
-                    // 对于H2数据库，schemaPattern应该是PUBLIC
+                    // 对于H2数据库，只列出连接当前schema中的表，按schema隔离的租户连接已切换到租户schema
                     String schemaPattern = null;
                     if (isH2Database(connection)) {
-                        schemaPattern = "PUBLIC";
+                        schemaPattern = connection.getSchema();
                     }
                     
                     try (java.sql.ResultSet rs = metaData.getTables(null, schemaPattern, null, new String[]{"TABLE"})) {
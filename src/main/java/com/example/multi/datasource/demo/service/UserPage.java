@@ -0,0 +1,41 @@
+package com.example.multi.datasource.demo.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨数据源全局排序的一页用户
+ */
+public class UserPage {
+
+    private final List<Map<String, Object>> users;
+
+    // 下一页的游标，没有更多数据时为null
+    private final String nextCursor;
+
+    private final FanOutResult<List<Map<String, Object>>> sources;
+
+    UserPage(List<Map<String, Object>> users, String nextCursor, FanOutResult<List<Map<String, Object>>> sources) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+        this.sources = sources;
+    }
+
+    /**
+     * 本页的用户，每个用户带有所在数据源的名称dsName
+     */
+    public List<Map<String, Object>> getUsers() {
+        return users;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * 本页在每个数据源上的查询状态
+     */
+    public FanOutResult<List<Map<String, Object>>> getSources() {
+        return sources;
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 跨数据源全局排序分页
+ *
+ * 每个数据源按排序字段执行键集分页查询（ORDER BY 排序字段, id LIMIT k），各自返回不超过k行，
+ * 再用大小不超过数据源个数的堆做k路归并，取全局最前的k行。游标记录每个数据源已消费到的位置，
+ * 下一页从该位置之后继续查询，不会重新扫描之前的行；没有剩余数据的数据源不再查询。
+ */
+@Service
+public class UserPageService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserPageService.class);
+
+    public static final int MAX_LIMIT = 1000;
+
+    // 允许的排序字段到列表达式的映射；可为空的列按空字符串排序，保证键集条件与排序一致
+    private static final Map<String, String> SORT_COLUMNS = new HashMap<>();
+
+    static {
+        SORT_COLUMNS.put("id", "id");
+        SORT_COLUMNS.put("name", "coalesce(name, '')");
+        SORT_COLUMNS.put("email", "coalesce(email, '')");
+    }
+
+    @Autowired
+    private FanOutExecutor fanOutExecutor;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 获取全局排序的一页用户
+     * @param sort 排序字段（id、name、email），为空时使用游标中的排序字段，默认id
+     * @param limit 每页行数
+     * @param after 上一页返回的游标，为空时从第一页开始
+     * @return 一页用户与下一页的游标
+     */
+    public UserPage getUsersPage(String sort, int limit, String after) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit必须在1到" + MAX_LIMIT + "之间");
+        }
+        PageCursor cursor = after != null && !after.isEmpty() ? decode(after) : null;
+        String sortKey = sort != null && !sort.isEmpty() ? sort : (cursor != null ? cursor.sort : "id");
+        if (!SORT_COLUMNS.containsKey(sortKey)) {
+            throw new IllegalArgumentException("不支持的排序字段: " + sortKey + "，可选: " + SORT_COLUMNS.keySet());
+        }
+        if (cursor != null && !sortKey.equals(cursor.sort)) {
+            throw new IllegalArgumentException("游标的排序字段为 " + cursor.sort + "，与请求的排序字段 " + sortKey + " 不一致");
+        }
+        if (cursor == null) {
+            cursor = new PageCursor(sortKey);
+            for (String dsName : dataSourceNames()) {
+                cursor.positions.put(dsName, new ArrayList<>());
+            }
+        }
+
+        // 游标生成后被删除的数据源不再查询
+        Set<String> current = new HashSet<>(dataSourceNames());
+        List<String> shards = new ArrayList<>();
+        for (String dsName : cursor.positions.keySet()) {
+            if (current.contains(dsName)) {
+                shards.add(dsName);
+            }
+        }
+
+        PageCursor from = cursor;
+        FanOutResult<List<Map<String, Object>>> fetched = fanOutExecutor.execute(shards,
+                dsName -> fetchShard(dsName, sortKey, from.positions.get(dsName), limit));
+
+        List<Map<String, Object>> users = merge(fetched, sortKey, limit);
+        PageCursor next = advance(cursor, fetched, users, sortKey, limit, current);
+        log.info("全局排序分页: sort={}, limit={}, 查询 {} 个数据源，返回 {} 行，耗时 {} ms", sortKey, limit,
+                shards.size(), users.size(), fetched.getElapsedMillis());
+        return new UserPage(users, next.positions.isEmpty() ? null : encode(next), fetched);
+    }
+
+    /**
+     * 当前路由中的所有数据源名称
+     */
+    List<String> dataSourceNames() {
+        return UserService.dataSourceNames();
+    }
+
+    /**
+     * 在一个数据源上查询位置之后的前limit行，在工作线程上执行，数据源上下文已切换
+     */
+    private List<Map<String, Object>> fetchShard(String dsName, String sortKey, List<Object> position, int limit) {
+        DynamicDataSource.setReadOnly(true);
+        String column = SORT_COLUMNS.get(sortKey);
+        StringBuilder sql = new StringBuilder("select id, name, email, tenant_id, ")
+                .append(column).append(" as sort_key from users");
+        List<Object> args = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+
+        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+        String tenantId = dynamicDataSource != null ? dynamicDataSource.getSharedTableTenantId(dsName) : null;
+        if (tenantId != null) {
+            conditions.add("tenant_id = ?");
+            args.add(tenantId);
+        }
+        if (!position.isEmpty()) {
+            long lastId = ((Number) position.get(position.size() - 1)).longValue();
+            if ("id".equals(sortKey)) {
+                conditions.add("id > ?");
+                args.add(lastId);
+            } else {
+                String lastValue = (String) position.get(0);
+                conditions.add("(" + column + " > ? or (" + column + " = ? and id > ?))");
+                args.add(lastValue);
+                args.add(lastValue);
+                args.add(lastId);
+            }
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" where ").append(String.join(" and ", conditions));
+        }
+        sql.append(" order by ").append(column).append(", id limit ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            Map<String, Object> user = new LinkedHashMap<>();
+            user.put("dsName", dsName);
+            user.put("id", rs.getLong("id"));
+            user.put("name", rs.getString("name"));
+            user.put("email", rs.getString("email"));
+            user.put("tenantId", rs.getString("tenant_id"));
+            user.put("sortKey", "id".equals(sortKey) ? null : rs.getString("sort_key"));
+            return user;
+        }, args.toArray());
+    }
+
+    /**
+     * k路归并：堆中每个数据源只放当前最前的一行，弹出后补入该数据源的下一行
+     */
+    static List<Map<String, Object>> merge(FanOutResult<List<Map<String, Object>>> fetched, String sortKey, int limit) {
+        Comparator<Map<String, Object>> order = rowOrder(sortKey);
+        PriorityQueue<Head> heap = new PriorityQueue<>(Math.max(1, fetched.getResults().size()),
+                (a, b) -> order.compare(a.row(), b.row()));
+        for (FanOutResult.SourceResult<List<Map<String, Object>>> source : fetched.getResults()) {
+            if (source.getStatus() == FanOutResult.Status.SUCCESS && !source.getValue().isEmpty()) {
+                heap.add(new Head(source.getValue()));
+            }
+        }
+        List<Map<String, Object>> page = new ArrayList<>(limit);
+        while (page.size() < limit && !heap.isEmpty()) {
+            Head head = heap.poll();
+            page.add(head.row());
+            if (++head.index < head.rows.size()) {
+                heap.add(head);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * 根据本页消费的行计算每个数据源的新位置
+     */
+    private static PageCursor advance(PageCursor cursor, FanOutResult<List<Map<String, Object>>> fetched,
+                                      List<Map<String, Object>> page, String sortKey, int limit, Set<String> current) {
+        Map<String, Map<String, Object>> lastConsumed = new HashMap<>();
+        Map<String, Integer> consumed = new HashMap<>();
+        for (Map<String, Object> row : page) {
+            String dsName = (String) row.get("dsName");
+            lastConsumed.put(dsName, row);
+            consumed.merge(dsName, 1, Integer::sum);
+            row.remove("sortKey");
+        }
+
+        Map<String, FanOutResult.SourceResult<List<Map<String, Object>>>> results = new HashMap<>();
+        for (FanOutResult.SourceResult<List<Map<String, Object>>> source : fetched.getResults()) {
+            results.put(source.getDsName(), source);
+        }
+
+        PageCursor next = new PageCursor(sortKey);
+        for (Map.Entry<String, List<Object>> entry : cursor.positions.entrySet()) {
+            String dsName = entry.getKey();
+            if (!current.contains(dsName)) {
+                continue;
+            }
+            FanOutResult.SourceResult<List<Map<String, Object>>> source = results.get(dsName);
+            if (source == null || source.getStatus() != FanOutResult.Status.SUCCESS) {
+                // 查询失败的数据源保持原位置，下一页重试
+                next.positions.put(dsName, entry.getValue());
+                continue;
+            }
+            int rows = source.getValue().size();
+            int used = consumed.getOrDefault(dsName, 0);
+            if (rows < limit && used == rows) {
+                // 该数据源已没有剩余的行
+                continue;
+            }
+            Map<String, Object> last = lastConsumed.get(dsName);
+            if (last == null) {
+                next.positions.put(dsName, entry.getValue());
+            } else {
+                List<Object> position = new ArrayList<>(2);
+                if (!"id".equals(sortKey)) {
+                    Object value = last.get(sortKey);
+                    position.add(value != null ? value : "");
+                }
+                position.add(last.get("id"));
+                next.positions.put(dsName, position);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * 全局顺序：排序字段、id、数据源名称
+     *
+     * 归并只依赖每个数据源内部已有的顺序，数据库排序规则与这里的比较不一致时，页内顺序可能略有不同，但不会遗漏或重复行。
+     */
+    private static Comparator<Map<String, Object>> rowOrder(String sortKey) {
+        Comparator<Map<String, Object>> byId = Comparator.comparingLong(row -> (Long) row.get("id"));
+        Comparator<Map<String, Object>> byDataSource = Comparator.comparing(row -> (String) row.get("dsName"));
+        if ("id".equals(sortKey)) {
+            return byId.thenComparing(byDataSource);
+        }
+        Comparator<Map<String, Object>> byKey = Comparator.comparing(row -> (String) row.get("sortKey"));
+        return byKey.thenComparing(byId).thenComparing(byDataSource);
+    }
+
+    String encode(PageCursor cursor) {
+        try {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("sort", cursor.sort);
+            json.put("positions", cursor.positions);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(json));
+        } catch (IOException e) {
+            throw new IllegalStateException("生成分页游标失败", e);
+        }
+    }
+
+    PageCursor decode(String after) {
+        try {
+            Map<String, Object> json = objectMapper.readValue(Base64.getUrlDecoder().decode(after),
+                    new TypeReference<Map<String, Object>>() { });
+            PageCursor cursor = new PageCursor((String) json.get("sort"));
+            Map<String, List<Object>> positions = objectMapper.convertValue(json.get("positions"),
+                    new TypeReference<LinkedHashMap<String, List<Object>>>() { });
+            if (cursor.sort == null || positions == null) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            for (Map.Entry<String, List<Object>> entry : positions.entrySet()) {
+                List<Object> position = entry.getValue();
+                if (position == null || position.size() > 2
+                        || (!position.isEmpty() && !(position.get(position.size() - 1) instanceof Number))) {
+                    throw new IllegalArgumentException("无效的分页游标");
+                }
+                // JSON中较小的id解析为Integer，统一为Long
+                if (!position.isEmpty()) {
+                    position.set(position.size() - 1, ((Number) position.get(position.size() - 1)).longValue());
+                }
+            }
+            cursor.positions.putAll(positions);
+            return cursor;
+        } catch (IOException | IllegalArgumentException | ClassCastException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+
+    /**
+     * 每个数据源已消费到的位置：空列表表示从头开始，[id] 或 [排序值, id] 表示该行之后；没有剩余数据的数据源不在其中
+     */
+    static class PageCursor {
+
+        private final String sort;
+
+        private final Map<String, List<Object>> positions = new LinkedHashMap<>();
+
+        PageCursor(String sort) {
+            this.sort = sort;
+        }
+    }
+
+    /**
+     * 归并中一个数据源的当前行
+     */
+    private static class Head {
+
+        private final List<Map<String, Object>> rows;
+
+        private int index;
+
+        Head(List<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        Map<String, Object> row() {
+            return rows.get(index);
+        }
+    }
+}
@@ -1,19 +1,26 @@
 package com.example.multi.datasource.demo.service;
 
 import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.RequestDeadline;
 import com.example.multi.datasource.demo.entity.User;
 import com.example.multi.datasource.demo.repository.UserRepository;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import javax.sql.DataSource;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Service
 public class UserService {
@@ -23,6 +30,18 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired(required = false)
+    private HedgedReadService hedgedReadService;
+
+    @Autowired
+    private FanOutExecutor fanOutExecutor;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     /**
      * 在指定的动态数据源中保存用户
      * @param name 用户名
@@ -40,14 +59,16 @@ public class UserService {
 
         // 使用自动关闭的数据源上下文
         try (DynamicDataSourceContext ignored = new DynamicDataSourceContext(dataSourceName)) {
-            User user = userRepository.save(new User(name, email));
+            User newUser = new User(name, email);
+            newUser.setTenantId(currentTenantId());
+            User user = userRepository.save(newUser);
             log.info("在数据源 {} 中保存用户成功，用户ID: {}", dataSourceName, user.getId());
 
             // 同时保存到对应的Redis中
             try {
                 DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
                 RedisTemplate<String, Object> redisTemplate = dynamicDataSource.getRedisTemplate(dataSourceName);
-                if (redisTemplate != null) {
+                if (redisTemplate != null && !RequestDeadline.isExpired()) {
                     // 将用户信息保存到Redis中，设置1小时过期时间
                     String userKey = "user:" + user.getId();
                     redisTemplate.opsForValue().set(userKey, user, 1, TimeUnit.HOURS);
@@ -68,28 +89,24 @@ public class UserService {
      * @return 保存的用户列表
      */
     public List<User> saveToAllDataSources(String name, String email) {
-        log.info("向所有数据源中保存用户: name={}, email={}", name, email);
+        return fanOutSave(name, email).getValues();
+    }
 
-        List<User> users = new ArrayList<>();
+    /**
+     * 并行向所有数据源中保存用户，单个数据源失败或超时不影响其他数据源
+     * @param name 用户名
+     * @param email 邮箱
+     * @return 保存的用户与每个数据源的执行状态
+     */
+    public FanOutResult<User> fanOutSave(String name, String email) {
+        log.info("向所有数据源中保存用户: name={}, email={}", name, email);
 
-        // 获取所有数据源名称
-        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-        Map<Object, DataSource> dataSources = dynamicDataSource.getDynamicDataSources();
-        if (dataSources != null) {
-            for (Object dsName : dataSources.keySet()) {
-                if (dsName instanceof String) {
-                    try {
-                        User user = saveToDynamicDataSource(name, email, (String) dsName);
-                        users.add(user);
-                    } catch (Exception e) {
-                        log.error("在数据源 {} 中保存用户时发生异常", dsName, e);
-                    }
-                }
-            }
-        }
+        FanOutResult<User> result = fanOutExecutor.execute(dataSourceNames(),
+                dsName -> saveToDynamicDataSource(name, email, dsName));
 
-        log.info("向所有数据源中保存用户完成，共保存到 {} 个数据源", users.size());
-        return users;
+        log.info("向所有数据源中保存用户完成，共保存到 {} 个数据源，耗时 {} ms",
+                result.getSuccessCount(), result.getElapsedMillis());
+        return result;
     }
     
     /**
@@ -105,9 +122,9 @@ public class UserService {
             throw new IllegalArgumentException("DataSourceName must not be null");
         }
 
-        // 使用自动关闭的数据源上下文
-        try (DynamicDataSourceContext ignored = new DynamicDataSourceContext(dataSourceName)) {
-            List<User> users = userRepository.findAll();
+        // 使用自动关闭的数据源上下文，读请求路由到只读副本
+        try (DynamicDataSourceContext ignored = new DynamicDataSourceContext(dataSourceName, true)) {
+            List<User> users = withTenantFilter(() -> userRepository.findAll());
             log.info("从数据源 {} 中获取到 {} 个用户", dataSourceName, users.size());
             return users;
         }
@@ -118,28 +135,42 @@ public class UserService {
      * @return 所有用户列表
      */
     public List<User> getAllUsersFromAllDataSources() {
+        List<User> allUsers = new ArrayList<>();
+        for (List<User> users : fanOutGetAllUsers().getValues()) {
+            allUsers.addAll(users);
+        }
+        return allUsers;
+    }
+
+    /**
+     * 并行从所有数据源中获取所有用户，总耗时取决于最慢的数据源
+     * @return 每个数据源的用户列表与执行状态
+     */
+    public FanOutResult<List<User>> fanOutGetAllUsers() {
         log.info("从所有数据源中获取所有用户");
 
-        List<User> allUsers = new ArrayList<>();
+        FanOutResult<List<User>> result = fanOutExecutor.execute(dataSourceNames(),
+                this::getAllUsersFromDynamicDataSource);
 
-        // 获取所有数据源名称
-        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
-        Map<Object, DataSource> dataSources = dynamicDataSource.getDynamicDataSources();
+        log.info("从所有数据源中获取用户完成，成功 {} 个数据源，耗时 {} ms",
+                result.getSuccessCount(), result.getElapsedMillis());
+        return result;
+    }
+
+    /**
+     * 当前路由中的所有数据源名称
+     */
+    static List<String> dataSourceNames() {
+        List<String> names = new ArrayList<>();
+        Map<Object, DataSource> dataSources = DynamicDataSource.getInstance().getDynamicDataSources();
         if (dataSources != null) {
             for (Object dsName : dataSources.keySet()) {
                 if (dsName instanceof String) {
-                    try {
-                        List<User> users = getAllUsersFromDynamicDataSource((String) dsName);
-                        allUsers.addAll(users);
-                    } catch (Exception e) {
-                        log.error("从数据源 {} 中获取用户时发生异常", dsName, e);
-                    }
+                    names.add((String) dsName);
                 }
             }
         }
-
-        log.info("从所有数据源中获取用户完成，共获取到 {} 个用户", allUsers.size());
-        return allUsers;
+        return names;
     }
     
     /**
@@ -150,6 +181,7 @@ public class UserService {
      */
     public User getUserFromRedis(String dataSourceName, Long userId) {
         log.info("从数据源 {} 的Redis中获取用户ID: {}", dataSourceName, userId);
+        RequestDeadline.check("从数据源 " + dataSourceName + " 的Redis中获取用户");
         try {
             RedisTemplate<String, Object> redisTemplate = DynamicDataSource.getInstance().getRedisTemplate(dataSourceName);
             if (redisTemplate != null) {
@@ -175,6 +207,7 @@ public class UserService {
      */
     public void saveUserToRedis(String dataSourceName, User user) {
         log.info("将用户信息保存到数据源 {} 的Redis中: {}", dataSourceName, user);
+        RequestDeadline.check("将用户信息保存到数据源 " + dataSourceName + " 的Redis中");
         try {
             RedisTemplate<String, Object> redisTemplate = DynamicDataSource.getInstance().getRedisTemplate(dataSourceName);
             if (redisTemplate != null) {
@@ -196,14 +229,34 @@ public class UserService {
     public User getUserByIdFromDynamicDataSource(Long id, String dataSourceName) {
         log.info("在数据源 {} 中根据ID {} 获取用户", dataSourceName, id);
 
-        try (DynamicDataSourceContext ignored = new DynamicDataSourceContext(dataSourceName)) {
-            User user = userRepository.findById(id).orElse(null);
-            if (user != null) {
-                log.info("在数据源 {} 中根据ID {} 获取用户成功", dataSourceName, id);
-            } else {
-                log.info("在数据源 {} 中未找到ID为 {} 的用户", dataSourceName, id);
+        User user;
+        if (hedgedReadService != null && hedgedReadService.canHedge(dataSourceName)) {
+            // 多副本时对冲读，降低单个副本抖动对尾延迟的影响
+            user = hedgedReadService.read(dataSourceName, () -> findUserById(id));
+        } else {
+            try (DynamicDataSourceContext ignored = new DynamicDataSourceContext(dataSourceName, true)) {
+                user = findUserById(id);
             }
-            return user;
+        }
+        if (user != null) {
+            log.info("在数据源 {} 中根据ID {} 获取用户成功", dataSourceName, id);
+        } else {
+            log.info("在数据源 {} 中未找到ID为 {} 的用户", dataSourceName, id);
+        }
+        return user;
+    }
+
+    /**
+     * 在指定的动态数据源中根据邮箱获取用户
+     * @param email 邮箱
+     * @param dataSourceName 数据源名称
+     * @return 用户，不存在时返回null
+     */
+    public User getUserByEmailFromDynamicDataSource(String email, String dataSourceName) {
+        log.info("在数据源 {} 中根据邮箱 {} 获取用户", dataSourceName, email);
+
+        try (DynamicDataSourceContext ignored = new DynamicDataSourceContext(dataSourceName, true)) {
+            return withTenantFilter(() -> userRepository.findFirstByEmailOrderById(email).orElse(null));
         }
     }
 
@@ -219,7 +272,7 @@ public class UserService {
         log.info("在数据源 {} 中更新用户ID {}: name={}, email={}", dataSourceName, id, name, email);
 
         try (DynamicDataSourceContext ignored = new DynamicDataSourceContext(dataSourceName)) {
-            User user = userRepository.findById(id).orElse(null);
+            User user = findUserById(id);
             if (user != null) {
                 user.setName(name);
                 user.setEmail(email);
@@ -230,7 +283,7 @@ public class UserService {
                 try {
                     DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
                     RedisTemplate<String, Object> redisTemplate = dynamicDataSource.getRedisTemplate(dataSourceName);
-                    if (redisTemplate != null) {
+                    if (redisTemplate != null && !RequestDeadline.isExpired()) {
                         // 更新Redis中的用户信息
                         String userKey = "user:" + updatedUser.getId();
                         redisTemplate.opsForValue().set(userKey, updatedUser, 1, TimeUnit.HOURS);
@@ -248,6 +301,27 @@ public class UserService {
         }
     }
 
+    /**
+     * 在指定的动态数据源中删除用户
+     * @param id 用户ID
+     * @param dataSourceName 数据源名称
+     * @return 用户是否存在并已删除
+     */
+    public boolean deleteUserFromDynamicDataSource(Long id, String dataSourceName) {
+        log.info("在数据源 {} 中删除用户ID {}", dataSourceName, id);
+
+        try (DynamicDataSourceContext ignored = new DynamicDataSourceContext(dataSourceName)) {
+            User user = findUserById(id);
+            if (user == null) {
+                log.info("在数据源 {} 中未找到ID为 {} 的用户，无法删除", dataSourceName, id);
+                return false;
+            }
+            userRepository.delete(user);
+            log.info("在数据源 {} 中删除用户ID {} 成功", dataSourceName, id);
+            return true;
+        }
+    }
+
     /**
      * 在指定的动态数据源中执行操作
      * @param dataSourceName 数据源名称
@@ -269,6 +343,54 @@ public class UserService {
         }
     }
 
+    /**
+     * 在当前数据源中根据ID查询用户，共享表租户只能查到本租户的数据
+     * @param id 用户ID
+     * @return 用户
+     */
+    private User findUserById(Long id) {
+        User user = userRepository.findById(id).orElse(null);
+        // 按主键加载不经过Hibernate过滤器，共享表租户需校验数据归属
+        String tenantId = currentTenantId();
+        if (user != null && tenantId != null && !tenantId.equals(user.getTenantId())) {
+            return null;
+        }
+        return user;
+    }
+
+    /**
+     * 在当前数据源中执行查询，共享表租户在会话上启用租户过滤器，查询只返回本租户的数据
+     *
+     * 过滤器作用于会话，查询在事务中执行以保证启用过滤器的会话与查询使用的是同一个，
+     * 结束后关闭过滤器，避免请求内共用的会话在访问其他数据源时仍带着租户条件。
+     * @param query 查询
+     * @return 查询结果
+     */
+    private <T> T withTenantFilter(Supplier<T> query) {
+        String tenantId = currentTenantId();
+        if (tenantId == null) {
+            return query.get();
+        }
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            session.enableFilter(User.TENANT_FILTER).setParameter(User.TENANT_ID_PARAM, tenantId);
+            try {
+                return query.get();
+            } finally {
+                session.disableFilter(User.TENANT_FILTER);
+            }
+        });
+    }
+
+    /**
+     * 获取当前数据源上下文对应的共享表租户标识
+     * @return 租户标识，非共享表租户时返回null
+     */
+    private String currentTenantId() {
+        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+        return dynamicDataSource != null ? dynamicDataSource.getSharedTableTenantId(DynamicDataSource.getContext()) : null;
+    }
+
     /**
      * 数据源操作函数式接口
      */
@@ -282,14 +404,24 @@ public class UserService {
      */
     private static class DynamicDataSourceContext implements AutoCloseable {
         private final String dataSourceName;
+        private final boolean previousReadOnly;
 
         public DynamicDataSourceContext(String dataSourceName) {
+            this(dataSourceName, false);
+        }
+
+        public DynamicDataSourceContext(String dataSourceName, boolean readOnly) {
+            // 截止时间已过的请求不再切换数据源开始新的工作
+            RequestDeadline.check("在数据源 " + dataSourceName + " 中的操作");
             this.dataSourceName = dataSourceName;
+            this.previousReadOnly = DynamicDataSource.isReadOnly();
             DynamicDataSource.setContext(dataSourceName);
+            DynamicDataSource.setReadOnly(readOnly);
         }
 
         @Override
         public void close() {
+            DynamicDataSource.setReadOnly(previousReadOnly);
             DynamicDataSource.clearContext();
         }
     }
@@ -0,0 +1,205 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.LoadShedding;
+import com.example.multi.datasource.demo.config.ReadConsistency;
+import com.example.multi.datasource.demo.config.RequestDeadline;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 以NDJSON流式输出所有数据源的用户
+ *
+ * 逐个数据源以只进游标读取，每读到一行立即写入响应输出流，内存占用与数据量无关。
+ * 输出流写满时（客户端读取较慢）写入阻塞，游标随之暂停读取，形成背压；同一时刻只占用一个数据库连接。
+ * 每行是一个JSON对象：type为user的行是用户，type为source的行在每个数据源读取结束后给出该数据源的状态和行数。
+ */
+@Service
+public class UserStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserStreamService.class);
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private static final String SELECT_USERS = "select id, name, email, tenant_id from users";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    /**
+     * 创建流式输出所有数据源用户的响应体
+     *
+     * 响应体在MVC的异步线程中执行，这里捕获调用线程的请求截止时间和读一致性要求，在写出时恢复。
+     * @return 响应体
+     */
+    public StreamingResponseBody streamAllUsers() {
+        Long deadline = RequestDeadline.current();
+        ReadConsistency.Requirement requirement = ReadConsistency.current();
+        List<String> dataSourceNames = UserService.dataSourceNames();
+        return out -> {
+            RequestDeadline.restore(deadline);
+            ReadConsistency.require(requirement);
+            try {
+                writeAllUsers(out, dataSourceNames);
+            } finally {
+                ReadConsistency.clear();
+                RequestDeadline.clear();
+                LoadShedding.clear();
+            }
+        };
+    }
+
+    /**
+     * 依次读取每个数据源的用户并写入输出流
+     * @param out 输出流
+     * @param dataSourceNames 数据源名称
+     */
+    void writeAllUsers(OutputStream out, List<String> dataSourceNames) throws IOException {
+        long start = System.currentTimeMillis();
+        long total = 0;
+        // 关闭AUTO_CLOSE_TARGET，输出流由容器负责关闭；每行以换行结束，不使用默认的空格分隔
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null)) {
+            for (String dsName : dataSourceNames) {
+                long sourceStart = System.currentTimeMillis();
+                long[] count = new long[1];
+                FanOutResult.Status status = FanOutResult.Status.SUCCESS;
+                String error = null;
+                try {
+                    RequestDeadline.check("流式读取数据源 " + dsName + " 的用户");
+                    streamSource(dsName, generator, count);
+                } catch (UncheckedIOException e) {
+                    // 客户端断开连接，不再读取剩余的数据源
+                    log.info("流式输出用户时客户端断开连接，数据源: {}，已输出 {} 行", dsName, total + count[0]);
+                    throw e.getCause();
+                } catch (RuntimeException e) {
+                    status = FanOutExecutor.classify(e);
+                    error = e.getMessage();
+                    log.warn("流式读取数据源 {} 的用户失败，状态: {}，已输出 {} 行", dsName, status, count[0], e);
+                }
+                total += count[0];
+                writeSourceLine(generator, dsName, status, count[0], error, System.currentTimeMillis() - sourceStart);
+                generator.flush();
+            }
+        }
+        log.info("流式输出所有数据源的用户完成，共 {} 行，耗时 {} ms", total, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 以只进游标读取一个数据源的用户，逐行写出
+     */
+    private void streamSource(String dsName, JsonGenerator generator, long[] count) {
+        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+        String tenantId = dynamicDataSource != null ? dynamicDataSource.getSharedTableTenantId(dsName) : null;
+        int fetchSize = dataSourceProperties.getStreamFetchSize();
+        int flushRows = Math.max(1, dataSourceProperties.getStreamFlushRows());
+
+        DynamicDataSource.setContext(dsName);
+        DynamicDataSource.setReadOnly(true);
+        DynamicDataSource.setLongLived(true);
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                // 部分驱动（如PostgreSQL）只在事务内使用服务端游标，读取期间关闭自动提交
+                boolean autoCommit = connection.getAutoCommit();
+                if (autoCommit) {
+                    connection.setAutoCommit(false);
+                }
+                try {
+                    readRows(connection, dsName, tenantId, fetchSize, flushRows, generator, count);
+                    if (autoCommit) {
+                        connection.commit();
+                    }
+                } finally {
+                    if (autoCommit) {
+                        rollbackQuietly(connection);
+                        connection.setAutoCommit(true);
+                    }
+                }
+                return null;
+            });
+        } finally {
+            DynamicDataSource.setLongLived(false);
+            DynamicDataSource.setReadOnly(false);
+            DynamicDataSource.clearContext();
+        }
+    }
+
+    private static void readRows(Connection connection, String dsName, String tenantId, int fetchSize, int flushRows,
+                                 JsonGenerator generator, long[] count) throws SQLException {
+        String sql = tenantId != null ? SELECT_USERS + " where tenant_id = ? order by id" : SELECT_USERS + " order by id";
+        try (PreparedStatement statement = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(fetchSize);
+            if (tenantId != null) {
+                statement.setString(1, tenantId);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    try {
+                        generator.writeStartObject();
+                        generator.writeStringField("type", "user");
+                        generator.writeStringField("dsName", dsName);
+                        generator.writeNumberField("id", rs.getLong(1));
+                        generator.writeStringField("name", rs.getString(2));
+                        generator.writeStringField("email", rs.getString(3));
+                        generator.writeStringField("tenantId", rs.getString(4));
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+                        if (++count[0] % flushRows == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeSourceLine(JsonGenerator generator, String dsName, FanOutResult.Status status, long count,
+                                        String error, long elapsedMillis) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "source");
+        generator.writeStringField("dsName", dsName);
+        generator.writeStringField("status", status.name());
+        generator.writeNumberField("count", count);
+        generator.writeNumberField("elapsedMillis", elapsedMillis);
+        if (error != null) {
+            generator.writeStringField("error", error);
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            log.debug("结束流式读取时回滚失败", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.multi.datasource.demo;
+
+import com.example.multi.datasource.demo.config.ShardRings;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用随应用发布的application.yml启动上下文，配置中的任何项都不能导致启动失败
+ */
+@SpringBootTest(classes = MultiDatasourceDemoApplication.class)
+public class MultiDatasourceDemoApplicationTest {
+
+    @Autowired
+    private ShardRings shardRings;
+
+    @Test
+    public void testContextLoadsWithShippedConfiguration() {
+        assertNotNull(shardRings.describeAll());
+    }
+}
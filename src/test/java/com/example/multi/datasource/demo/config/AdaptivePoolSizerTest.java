@@ -0,0 +1,92 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptivePoolSizerTest {
+
+    private final AdaptivePoolSizer sizer = new AdaptivePoolSizer();
+
+    private final List<ManagedDataSource> pools = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        for (ManagedDataSource pool : pools) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testBudgetIsReclaimedFromIdlePools() throws Exception {
+        sizer.setBudget(10);
+        ManagedDataSource a = pool("a", 8, 100);
+        ManagedDataSource b = pool("b", 8, 100);
+        a.obtainPool();
+        assertEquals(8, a.obtainPool().getMaxActive());
+
+        // a空闲，让出配额给b，但保留下限
+        b.obtainPool();
+        assertEquals(2, a.obtainPool().getMaxActive());
+        assertEquals(8, b.obtainPool().getMaxActive());
+        assertEquals(10, sizer.getAllocated());
+
+        // 所有连接池都已到下限时拒绝创建
+        sizer.setBudget(4);
+        ManagedDataSource c = pool("c", 8, 100);
+        b.close();
+        assertEquals(2, sizer.getAllocated());
+        c.obtainPool();
+        assertEquals(2, c.obtainPool().getMaxActive());
+        ManagedDataSource d = pool("d", 8, 100);
+        assertThrows(DataSourceUnavailableException.class, d::getConnection);
+        assertTrue(sizer.getAllocated() <= 4);
+    }
+
+    @Test
+    public void testBusyPoolGrowsAndEventIsPublished() throws Exception {
+        List<PoolResizeEvent> events = new ArrayList<>();
+        sizer.setListener(events::add);
+        ManagedDataSource busy = pool("busy", 2, 200);
+
+        try (Connection c1 = busy.getConnection(); Connection c2 = busy.getConnection()) {
+            // 连接池已满，第三次借用等待后超时
+            assertThrows(Exception.class, busy::getConnection);
+            sizer.resize();
+        }
+
+        assertEquals(3, busy.obtainPool().getMaxActive());
+        assertEquals(1, events.size());
+        assertEquals("busy", events.get(0).getPoolName());
+        assertEquals(2, events.get(0).getOldMaxActive());
+        assertEquals(3, events.get(0).getNewMaxActive());
+    }
+
+    @Test
+    public void testIdlePoolShrinks() throws Exception {
+        sizer.setShrinkAfterIdleRounds(2);
+        ManagedDataSource idle = pool("idle", 20, 100);
+        idle.getConnection().close();
+
+        sizer.resize();
+        assertEquals(20, idle.obtainPool().getMaxActive());
+        sizer.resize();
+        assertEquals(15, idle.obtainPool().getMaxActive());
+        assertTrue(idle.obtainPool().getMinIdle() <= 7);
+    }
+
+    private ManagedDataSource pool(String name, int maxActive, long maxWait) {
+        DataSourceProperties.DruidDataSourceProperties descriptor = TestPools.h2("adaptiveSizerTest_" + name);
+        descriptor.setMaxActive(maxActive);
+        descriptor.setMaxWait(maxWait);
+        ManagedDataSource pool = new ManagedDataSource(name, descriptor);
+        pool.setSizer(sizer);
+        pools.add(pool);
+        return pool;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.configure(3, 60000, 1);
+
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertTrue(breaker.getRetryAfterMillis() > 0);
+        assertEquals(1L, breaker.describe().get("rejected"));
+    }
+
+    @Test
+    public void testHalfOpenTrialClosesOnSuccess() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.configure(1, 20, 1);
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(40);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // 半开时只放行一个试探请求
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testHalfOpenTrialReopensOnFailure() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.configure(1, 20, 1);
+        breaker.onFailure();
+
+        Thread.sleep(40);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testProbeSuccessMovesOpenToHalfOpen() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.configure(1, 60000, 1);
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onProbeSuccess();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+}
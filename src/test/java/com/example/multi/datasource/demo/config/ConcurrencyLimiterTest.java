@@ -0,0 +1,81 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testRejectsBeyondLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(3, 1, 10);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejected());
+
+        limiter.releaseIgnored();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testLimitGrowsWhileLatencyIsStable() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+        for (int round = 0; round < 20; round++) {
+            saturate(limiter, 10 * MILLIS);
+        }
+        assertTrue(limiter.getLimit() > 20, "limit=" + limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitShrinksWhenLatencyRises() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(50, 1, 100);
+        for (int round = 0; round < 5; round++) {
+            saturate(limiter, 10 * MILLIS);
+        }
+        int before = limiter.getLimit();
+        for (int round = 0; round < 5; round++) {
+            saturate(limiter, 100 * MILLIS);
+        }
+        assertTrue(limiter.getLimit() < before / 2, "before=" + before + ", after=" + limiter.getLimit());
+        assertTrue(limiter.getRetryAfterMillis() >= 50);
+    }
+
+    @Test
+    public void testLimitIsUnchangedWhenUnderused() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 1, 100);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(10 * MILLIS);
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void testDropsBackOff() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 5, 100);
+        for (int i = 0; i < 30; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.releaseDropped();
+        }
+        assertEquals(5, limiter.getLimit());
+    }
+
+    /**
+     * 占满当前上限后以相同耗时全部归还
+     */
+    private static void saturate(ConcurrencyLimiter limiter, long rttNanos) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(rttNanos);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 一致性哈希环基准：键分布的均匀程度、增删分片时迁移的键比例，以及查找耗时与内存分配
+ *
+ * 查找耗时随分片数的变化依赖运行机器，标记为benchmark，默认构建不执行，使用 mvn test -Pbenchmark 运行；
+ * 分布、迁移比例与查找不分配对象的校验始终执行。
+ */
+public class ConsistentHashRingBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsistentHashRingBenchmarkTest.class);
+
+    private static final int KEYS = 500_000;
+    private static final int[] SHARD_COUNTS = {4, 16, 64, 256};
+    private static final int LOOKUPS = 2_000_000;
+
+    private static final String[] EMAILS = new String[KEYS];
+
+    static {
+        for (int i = 0; i < KEYS; i++) {
+            EMAILS[i] = "user" + i + "@example.com";
+        }
+    }
+
+    @Test
+    public void testKeysAreEvenlyDistributed() {
+        ConsistentHashRing ring = ConsistentHashRing.of(shards(10), ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        Map<String, Integer> counts = new HashMap<>();
+        for (String email : EMAILS) {
+            counts.merge(ring.route(email), 1, Integer::sum);
+        }
+        log.info("shards=10, virtualNodes={}, keys per shard: {}", ring.getVirtualNodes(), counts);
+
+        // 每个分片承载的键数在平均值的±25%以内
+        double mean = (double) KEYS / 10;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            assertTrue(Math.abs(entry.getValue() - mean) < mean * 0.25,
+                    "shard " + entry.getKey() + " holds " + entry.getValue() + " keys, mean " + mean);
+        }
+        // 环空间占比与实际分布一致
+        for (Map.Entry<String, Double> entry : ring.ownership().entrySet()) {
+            assertEquals(entry.getValue(), counts.get(entry.getKey()) / (double) KEYS, 0.01);
+        }
+    }
+
+    @Test
+    public void testAddingShardMovesOnlyItsShareOfKeys() {
+        ConsistentHashRing before = ConsistentHashRing.of(shards(10), ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        ConsistentHashRing after = before.withShard("shard-10");
+
+        int moved = 0;
+        for (String email : EMAILS) {
+            String from = before.route(email);
+            String to = after.route(email);
+            if (!from.equals(to)) {
+                moved++;
+                // 键只会迁移到新分片，分片之间不发生其他迁移
+                assertEquals("shard-10", to);
+            }
+        }
+        double fraction = (double) moved / KEYS;
+        log.info("add shard-10: moved {}% of keys, ring ownership {}%", String.format("%.2f", fraction * 100),
+                String.format("%.2f", after.ownership().get("shard-10") * 100));
+        // 约1/11的键迁移
+        assertTrue(fraction > 0.05 && fraction < 0.15, "moved fraction " + fraction);
+
+        // 再移除新分片，所有键回到原归属
+        ConsistentHashRing removed = after.withoutShard("shard-10");
+        for (int i = 0; i < KEYS; i += 97) {
+            assertEquals(before.route(EMAILS[i]), removed.route(EMAILS[i]));
+        }
+    }
+
+    @Test
+    public void testRingIsIndependentOfShardOrder() {
+        List<String> shards = shards(8);
+        ConsistentHashRing ring = ConsistentHashRing.of(shards, 64);
+        Collections.reverse(shards);
+        ConsistentHashRing reversed = ConsistentHashRing.of(shards, 64);
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(ring.route(EMAILS[i]), reversed.route(EMAILS[i]));
+            assertEquals(ring.route((long) i), reversed.route((long) i));
+        }
+        assertNull(ConsistentHashRing.of(Collections.<String>emptyList(), 64).route("anyone@example.com"));
+    }
+
+    @Test
+    public void testLookupIsAllocationFree() {
+        for (int shardCount : SHARD_COUNTS) {
+            ConsistentHashRing ring = ConsistentHashRing.of(shards(shardCount), ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+            // 预热
+            long sink = run(ring, LOOKUPS);
+            long allocatedBefore = allocatedBytes();
+            sink += run(ring, LOOKUPS);
+            long allocated = allocatedBytes() - allocatedBefore;
+            assertTrue(sink > 0);
+            log.info("shards={}, points={}, allocated={} bytes", shardCount, shardCount * ring.getVirtualNodes(), allocated);
+            if (allocatedBefore >= 0) {
+                // 查找只在原始数组上二分，不分配对象；留出计量本身的余量
+                assertTrue(allocated < 64 * 1024, "lookups allocated " + allocated + " bytes");
+            }
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void testLookupCostGrowsLogarithmically() {
+        double[] nanosPerLookup = new double[SHARD_COUNTS.length];
+        for (int i = 0; i < SHARD_COUNTS.length; i++) {
+            ConsistentHashRing ring = ConsistentHashRing.of(shards(SHARD_COUNTS[i]), ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+            // 预热
+            long sink = run(ring, LOOKUPS);
+            long start = System.nanoTime();
+            sink += run(ring, LOOKUPS);
+            long elapsed = System.nanoTime() - start;
+            assertTrue(sink > 0);
+            nanosPerLookup[i] = (double) elapsed / LOOKUPS;
+            log.info("shards={}, points={}, lookup={} ns/op", SHARD_COUNTS[i],
+                    SHARD_COUNTS[i] * ring.getVirtualNodes(), String.format("%.1f", nanosPerLookup[i]));
+        }
+
+        // 分片数增长64倍，二分查找只多约6次比较
+        double baseline = Math.max(nanosPerLookup[0], 20.0);
+        assertTrue(nanosPerLookup[SHARD_COUNTS.length - 1] < baseline * 5,
+                "lookup cost grew with shard count: " + Arrays.toString(nanosPerLookup));
+    }
+
+    private static long run(ConsistentHashRing ring, int lookups) {
+        long sink = 0;
+        for (int i = 0; i < lookups; i++) {
+            sink += ring.route(EMAILS[i % KEYS]).length();
+        }
+        return sink;
+    }
+
+    /**
+     * 当前线程已分配的字节数，JVM不支持时返回-1
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static List<String> shards(int count) {
+        List<String> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add("shard-" + i);
+        }
+        return shards;
+    }
+}
@@ -3,6 +3,10 @@ package com.example.multi.datasource.demo.config;
 import com.example.multi.datasource.demo.MultiDatasourceDemoApplication;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -11,9 +15,15 @@ public class DynamicDataSourceTest {
 
     @Test
     public void testDynamicDataSourceCreation() {
-        DynamicDataSource dynamicDataSource = new DynamicDataSource();
-        assertNotNull(dynamicDataSource);
-        assertNotNull(DynamicDataSource.getInstance());
+        DynamicDataSource previousInstance = DynamicDataSource.getInstance();
+        try {
+            DynamicDataSource dynamicDataSource = new DynamicDataSource();
+            assertNotNull(dynamicDataSource);
+            assertNotNull(DynamicDataSource.getInstance());
+        } finally {
+            // 恢复Spring容器中的实例，避免影响共用同一容器的其他测试
+            ReflectionTestUtils.setField(DynamicDataSource.class, "instance", previousInstance);
+        }
     }
 
     @Test
@@ -24,4 +34,37 @@ public class DynamicDataSourceTest {
         DynamicDataSource.clearContext();
         assertNull(DynamicDataSource.getContext());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLongLivedBorrowIsNotSampled() throws Exception {
+        DynamicDataSource previousInstance = DynamicDataSource.getInstance();
+        DynamicDataSource dynamicDataSource = new DynamicDataSource();
+        try {
+            dynamicDataSource.setConcurrencyLimit(true, 10, 1, 100);
+            dynamicDataSource.addTargetDataSource("sampled", TestPools.h2("dynamicDataSourceTest_sampled"));
+            DynamicDataSource.setContext("sampled");
+
+            // 流式读取长期占用连接，只归还名额，不计入耗时
+            DynamicDataSource.setLongLived(true);
+            try (Connection connection = dynamicDataSource.getConnection()) {
+                Thread.sleep(50);
+            } finally {
+                DynamicDataSource.setLongLived(false);
+            }
+            Map<String, Object> limits = dynamicDataSource.getConcurrencyLimits().get("sampled");
+            assertEquals(0, limits.get("inFlight"));
+            assertEquals(0.0, limits.get("shortRttMillis"));
+
+            try (Connection connection = dynamicDataSource.getConnection()) {
+                assertTrue(connection.isValid(1));
+            }
+            limits = dynamicDataSource.getConcurrencyLimits().get("sampled");
+            assertEquals(0, limits.get("inFlight"));
+            assertTrue((Double) limits.get("shortRttMillis") < 50, "shortRttMillis=" + limits.get("shortRttMillis"));
+        } finally {
+            DynamicDataSource.clearContext();
+            dynamicDataSource.destroy();
+            ReflectionTestUtils.setField(DynamicDataSource.class, "instance", previousInstance);
+        }
+    }
+}
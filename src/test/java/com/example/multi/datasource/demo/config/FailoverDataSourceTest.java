@@ -0,0 +1,84 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FailoverDataSourceTest {
+
+    private ManagedDataSource primary;
+
+    private ManagedDataSource standby;
+
+    @BeforeEach
+    public void setUp() {
+        primary = pool("primary");
+        standby = pool("standby");
+        for (ManagedDataSource dataSource : new ManagedDataSource[]{primary, standby}) {
+            TestPools.withNodeTable(dataSource);
+            dataSource.getCircuitBreaker().configure(1, 60000, 1);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        primary.close();
+        standby.close();
+    }
+
+    @Test
+    public void testSwitchesToStandbyWhenPrimaryBreakerOpens() {
+        FailoverDataSource failover = new FailoverDataSource("ds", primary, standby, FailoverDataSource.FAILBACK_MANUAL, 3);
+        JdbcTemplate template = new JdbcTemplate(failover);
+        assertEquals("primary", template.queryForObject("SELECT name FROM node", String.class));
+
+        primary.getCircuitBreaker().onFailure();
+        assertEquals("standby", template.queryForObject("SELECT name FROM node", String.class));
+        assertTrue(failover.isOnStandby());
+
+        // manual策略下主库恢复也不会自动回切
+        for (int i = 0; i < 5; i++) {
+            primary.probe(1000);
+        }
+        failover.evaluate();
+        assertTrue(failover.isOnStandby());
+
+        assertTrue(failover.failback());
+        assertEquals("primary", template.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    @Test
+    public void testAutoFailbackAfterConsecutiveProbes() {
+        FailoverDataSource failover = new FailoverDataSource("ds", primary, standby, FailoverDataSource.FAILBACK_AUTO, 3);
+        primary.getCircuitBreaker().onFailure();
+        failover.evaluate();
+        assertTrue(failover.isOnStandby());
+
+        primary.probe(1000);
+        primary.probe(1000);
+        failover.evaluate();
+        assertTrue(failover.isOnStandby());
+
+        primary.probe(1000);
+        failover.evaluate();
+        assertFalse(failover.isOnStandby());
+        assertEquals(2, failover.describe().get("switchCount"));
+    }
+
+    @Test
+    public void testDoesNotSwitchToOpenStandby() {
+        FailoverDataSource failover = new FailoverDataSource("ds", primary, standby, FailoverDataSource.FAILBACK_AUTO, 3);
+        standby.getCircuitBreaker().onFailure();
+        primary.getCircuitBreaker().onFailure();
+
+        assertThrows(DataSourceUnavailableException.class, failover::getConnection);
+        assertFalse(failover.isOnStandby());
+    }
+
+    private static ManagedDataSource pool(String name) {
+        return TestPools.pool(name, "failoverTest_" + name);
+    }
+}
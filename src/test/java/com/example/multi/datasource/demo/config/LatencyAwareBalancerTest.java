@@ -0,0 +1,66 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyAwareBalancerTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ManagedDataSource slow = TestPools.pool("slow", "slow");
+
+    private final ManagedDataSource fast = TestPools.pool("fast", "fast");
+
+    private final List<ManagedDataSource> replicas = Arrays.asList(slow, fast);
+
+    @Test
+    public void testSteersAwayFromSlowReplica() {
+        LatencyAwareBalancer balancer = new LatencyAwareBalancer(TimeUnit.SECONDS.toNanos(10), TimeUnit.SECONDS.toNanos(1));
+        balancer.onReleased(slow, 200 * MILLIS);
+        balancer.onReleased(fast, MILLIS);
+
+        for (int i = 0; i < 1000; i++) {
+            assertSame(fast, balancer.choose(replicas));
+        }
+
+        List<Map<String, Object>> stats = balancer.describe(replicas);
+        assertTrue((Double) stats.get(1).get("weight") > 0.99);
+    }
+
+    @Test
+    public void testSlowReplicaRecoversGradually() throws Exception {
+        LatencyAwareBalancer balancer = new LatencyAwareBalancer(20 * MILLIS, TimeUnit.SECONDS.toNanos(1));
+        balancer.onReleased(slow, 200 * MILLIS);
+
+        // 快副本持续有样本，慢副本的代价随空闲时间衰减，最终重新获得试探流量
+        boolean probed = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!probed && System.nanoTime() < deadline) {
+            balancer.onReleased(fast, MILLIS);
+            probed = balancer.choose(replicas) == slow;
+            Thread.sleep(5);
+        }
+        assertTrue(probed, "slow replica never received probe traffic");
+
+        // 恢复后的样本使其权重回升
+        balancer.onReleased(slow, MILLIS);
+        balancer.onReleased(fast, MILLIS);
+        double weight = (Double) balancer.describe(replicas).get(0).get("weight");
+        assertTrue(weight > 0.2, "weight did not recover: " + weight);
+    }
+
+    @Test
+    public void testFailureIsPenalized() {
+        LatencyAwareBalancer balancer = new LatencyAwareBalancer();
+        balancer.onReleased(fast, 10 * MILLIS);
+        balancer.onFailure(slow);
+
+        assertSame(fast, balancer.choose(replicas));
+    }
+}
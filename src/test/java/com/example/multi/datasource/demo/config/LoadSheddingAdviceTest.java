@@ -0,0 +1,66 @@
+package com.example.multi.datasource.demo.config;
+
+import com.example.multi.datasource.demo.controller.DataSourceController;
+import com.example.multi.datasource.demo.controller.UserController;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadSheddingAdviceTest {
+
+    private final LoadSheddingAdvice advice = new LoadSheddingAdvice();
+
+    @AfterEach
+    public void tearDown() {
+        LoadShedding.clear();
+    }
+
+    @Test
+    public void testSupportsOnlyRoutingControllers() throws Exception {
+        assertTrue(advice.supports(returnType(UserController.class, "getAllUsersFromAllDataSources"),
+                MappingJackson2HttpMessageConverter.class));
+        assertFalse(advice.supports(returnType(DataSourceController.class, "listDataSources"),
+                MappingJackson2HttpMessageConverter.class));
+    }
+
+    @Test
+    public void testRejectionBecomes503AndIsCleared() throws Exception {
+        LoadShedding.record(new DataSourceUnavailableException("one", 1500));
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        ServletServerHttpResponse response = new ServletServerHttpResponse(servletResponse);
+        Map<String, Object> body = new LinkedHashMap<>();
+
+        advice.beforeBodyWrite(body, returnType(UserController.class, "getAllUsersFromAllDataSources"),
+                MediaType.APPLICATION_JSON, MappingJackson2HttpMessageConverter.class,
+                new ServletServerHttpRequest(new MockHttpServletRequest()), response);
+
+        assertEquals(503, servletResponse.getStatus());
+        assertEquals("2", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1500L, body.get("retryAfterMillis"));
+        // 读取后即清理，同一线程上的下一个响应不受影响
+        assertNull(LoadShedding.current());
+    }
+
+    @Test
+    public void testInterceptorClearsStaleRejection() {
+        LoadShedding.record(new DataSourceUnavailableException("one", 1000));
+        advice.preHandle(new MockHttpServletRequest("GET", "/datasource/list"), new MockHttpServletResponse(), null);
+        assertNull(LoadShedding.current());
+    }
+
+    private static MethodParameter returnType(Class<?> controller, String method) throws NoSuchMethodException {
+        return new MethodParameter(controller.getMethod(method), -1);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.multi.datasource.demo.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManagedDataSourceTest {
+
+    private ManagedDataSource pool;
+
+    @BeforeEach
+    public void setUp() {
+        // 休眠会关闭所有连接，保留内存库以验证重新创建后数据仍在
+        pool = TestPools.pool("managed", "managedDataSourceTest;DB_CLOSE_DELAY=-1");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testPoolIsCreatedOnFirstBorrow() throws Exception {
+        assertFalse(pool.isMaterialized());
+        assertNull(pool.currentPool());
+        assertEquals(0, pool.getActiveCount());
+
+        try (Connection ignored = pool.getConnection()) {
+            assertTrue(pool.isMaterialized());
+            assertEquals(1, pool.getActiveCount());
+        }
+        DruidDataSource created = pool.currentPool();
+        assertSame(created, pool.obtainPool());
+    }
+
+    @Test
+    public void testHibernatedPoolReopensOnNextBorrow() throws Exception {
+        JdbcTemplate template = new JdbcTemplate(pool);
+        template.execute("CREATE TABLE IF NOT EXISTS item (id INT)");
+        template.execute("DELETE FROM item");
+        template.update("INSERT INTO item (id) VALUES (1)");
+        DruidDataSource first = pool.currentPool();
+
+        // 刚借用过，未达到空闲阈值
+        assertFalse(pool.hibernateIfIdle(60000));
+        Thread.sleep(20);
+        assertTrue(pool.hibernateIfIdle(10));
+        assertFalse(pool.isMaterialized());
+        assertTrue(first.isClosed());
+
+        assertEquals(Integer.valueOf(1), template.queryForObject("SELECT COUNT(*) FROM item", Integer.class));
+        assertTrue(pool.isMaterialized());
+        assertNotSame(first, pool.currentPool());
+    }
+
+    @Test
+    public void testPoolWithBorrowedConnectionIsNotHibernated() throws Exception {
+        try (Connection ignored = pool.getConnection()) {
+            Thread.sleep(20);
+            assertFalse(pool.hibernateIfIdle(1));
+            assertTrue(pool.isMaterialized());
+        }
+    }
+
+    @Test
+    public void testCredentialBorrowUsesCircuitBreaker() throws Exception {
+        try (Connection ignored = pool.getConnection("sa", "")) {
+            assertTrue(pool.isMaterialized());
+        }
+        assertThrows(UnsupportedOperationException.class, () -> pool.getConnection("other", "secret"));
+
+        pool.getCircuitBreaker().configure(1, 60000, 1);
+        pool.getCircuitBreaker().onFailure();
+        assertThrows(DataSourceUnavailableException.class, () -> pool.getConnection("sa", ""));
+    }
+
+    @Test
+    public void testClosedPoolIsNotRecreated() {
+        pool.close();
+
+        assertThrows(SQLException.class, pool::getConnection);
+        assertFalse(pool.isMaterialized());
+        assertFalse(pool.hibernateIfIdle(0));
+    }
+}
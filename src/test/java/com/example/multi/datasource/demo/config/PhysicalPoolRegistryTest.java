@@ -0,0 +1,154 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhysicalPoolRegistryTest {
+
+    private DynamicDataSource previousInstance;
+
+    private DynamicDataSource dynamicDataSource;
+
+    @BeforeEach
+    public void setUp() {
+        previousInstance = DynamicDataSource.getInstance();
+        dynamicDataSource = new DynamicDataSource();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dynamicDataSource.destroy();
+        ReflectionTestUtils.setField(DynamicDataSource.class, "instance", previousInstance);
+    }
+
+    @Test
+    public void testAliasesShareOnePoolUntilLastRelease() {
+        PhysicalPoolRegistry registry = new PhysicalPoolRegistry();
+        ManagedDataSource first = registry.acquire("a", TestPools.h2("physicalPoolRegistryTest_shared"));
+        ManagedDataSource second = registry.acquire("b", TestPools.h2("physicalPoolRegistryTest_shared"));
+        ManagedDataSource other = registry.acquire("c", TestPools.h2("physicalPoolRegistryTest_other"));
+        try {
+            assertSame(first, second);
+            assertNotSame(first, other);
+            assertEquals(registry.getPhysicalId(first), registry.getPhysicalId(second));
+
+            Map<String, Object> shared = registry.describe().get(0);
+            assertEquals(Arrays.asList("a", "b"), shared.get("aliases"));
+            assertEquals(2, shared.get("refCount"));
+
+            // 还有别名引用时不是最后一个引用
+            assertFalse(registry.release("a", first));
+            assertEquals(1, registry.describe().get(0).get("refCount"));
+            assertTrue(registry.release("b", second));
+            assertNull(registry.getPhysicalId(first));
+            assertEquals(1, registry.describe().size());
+        } finally {
+            first.close();
+            other.close();
+        }
+    }
+
+    @Test
+    public void testRemovingAliasKeepsSharedPoolOpen() throws Exception {
+        dynamicDataSource.setDrainTimeoutMillis(1000);
+        dynamicDataSource.addTargetDataSource("alias1", TestPools.h2("physicalPoolRegistryTest_alias"));
+        dynamicDataSource.addTargetDataSource("alias2", TestPools.h2("physicalPoolRegistryTest_alias"));
+        assertEquals(dynamicDataSource.getPhysicalPoolId("alias1"), dynamicDataSource.getPhysicalPoolId("alias2"));
+        ManagedDataSource shared = (ManagedDataSource) dynamicDataSource.getDynamicDataSources().get("alias2");
+
+        Connection borrowed = shared.getConnection();
+        try {
+            // 只移除别名，物理连接池及其借出的连接不受影响
+            PoolDrainer.DrainStatus released = dynamicDataSource.removeTargetDataSource("alias1");
+            assertEquals(PoolDrainer.DrainState.RELEASED, released.getState());
+            assertEquals(1, released.getActiveCount());
+            assertSame(released, dynamicDataSource.getDrainStatus("alias1"));
+            assertTrue(borrowed.isValid(1));
+
+            List<Map<String, Object>> pools = dynamicDataSource.getPhysicalPools();
+            assertEquals(1, pools.size());
+            assertEquals(Arrays.asList("alias2"), pools.get(0).get("aliases"));
+        } finally {
+            borrowed.close();
+        }
+
+        // 最后一个别名移除后排空并关闭连接池
+        PoolDrainer.DrainStatus drained = dynamicDataSource.removeTargetDataSource("alias2");
+        awaitFinished(drained);
+        assertEquals(PoolDrainer.DrainState.CLOSED, drained.getState());
+        assertTrue(dynamicDataSource.getPhysicalPools().isEmpty());
+        assertThrows(SQLException.class, shared::getConnection);
+    }
+
+    @Test
+    public void testSharedPoolRejectsConnectionRotation() throws Exception {
+        dynamicDataSource.addTargetDataSource("alias1", TestPools.h2("physicalPoolRegistryTest_rotate"));
+        dynamicDataSource.addTargetDataSource("alias2", TestPools.h2("physicalPoolRegistryTest_rotate"));
+        PoolReconfiguration rotation = new PoolReconfiguration();
+        rotation.setUrl("jdbc:h2:mem:physicalPoolRegistryTest_rotated");
+
+        // 另一个别名仍配置原地址，共享的连接池不能被带到新地址
+        assertThrows(IllegalArgumentException.class, () -> dynamicDataSource.reconfigureDataSource("alias1", rotation));
+        assertEquals("jdbc:h2:mem:physicalPoolRegistryTest_rotate", dynamicDataSource.getPhysicalPools().get(0).get("url"));
+
+        // 不涉及地址与账号的修改对共享连接池照常生效
+        PoolReconfiguration resize = new PoolReconfiguration();
+        resize.setMaxActive(6);
+        dynamicDataSource.reconfigureDataSource("alias1", resize);
+        ManagedDataSource shared = (ManagedDataSource) dynamicDataSource.getDynamicDataSources().get("alias2");
+        assertEquals(6, shared.getDescriptor().getMaxActive());
+
+        // 只剩一个别名后可以轮换
+        dynamicDataSource.removeTargetDataSource("alias2");
+        Map<String, Object> rotated = dynamicDataSource.reconfigureDataSource("alias1", rotation);
+        assertEquals(Arrays.asList(shared.getName()), rotated.get("rotatedPools"));
+        assertEquals("jdbc:h2:mem:physicalPoolRegistryTest_rotated", dynamicDataSource.getPhysicalPools().get(0).get("url"));
+    }
+
+    @Test
+    public void testRacingAddKeepsRoutedDataSource() throws Exception {
+        // 两个请求都通过了存在性检查，后加入的一方不能覆盖先加入的数据源
+        dynamicDataSource.addTargetDataSource("raced", TestPools.h2("physicalPoolRegistryTest_winner"));
+        DataSource winner = dynamicDataSource.getDynamicDataSources().get("raced");
+        assertThrows(IllegalArgumentException.class,
+                () -> dynamicDataSource.addTargetDataSource("raced", TestPools.h2("physicalPoolRegistryTest_loser")));
+
+        assertSame(winner, dynamicDataSource.getDynamicDataSources().get("raced"));
+        // 落选的连接池已释放，不再登记在注册表中
+        List<Map<String, Object>> pools = dynamicDataSource.getPhysicalPools();
+        assertEquals(1, pools.size());
+        assertEquals("jdbc:h2:mem:physicalPoolRegistryTest_winner", pools.get(0).get("url"));
+    }
+
+    @Test
+    public void testRacingAddKeepsSharedPoolOpen() throws Exception {
+        dynamicDataSource.addTargetDataSource("raced", TestPools.h2("physicalPoolRegistryTest_racedShared"));
+        ManagedDataSource winner = (ManagedDataSource) dynamicDataSource.getDynamicDataSources().get("raced");
+        assertThrows(IllegalArgumentException.class,
+                () -> dynamicDataSource.addTargetDataSource("raced", TestPools.h2("physicalPoolRegistryTest_racedShared")));
+
+        // 落选方与已加入的数据源共享物理连接池，别名仍由后者持有，连接池不能关闭
+        try (Connection connection = winner.getConnection()) {
+            assertTrue(connection.isValid(1));
+        }
+        assertEquals(Arrays.asList("raced"), dynamicDataSource.getPhysicalPools().get(0).get("aliases"));
+    }
+
+    private static void awaitFinished(PoolDrainer.DrainStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (status.getState() == PoolDrainer.DrainState.DRAINING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
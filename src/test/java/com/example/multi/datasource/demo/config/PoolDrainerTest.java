@@ -0,0 +1,84 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PoolDrainerTest {
+
+    private final PoolDrainer drainer = new PoolDrainer();
+
+    private ManagedDataSource pool;
+
+    @BeforeEach
+    public void setUp() {
+        drainer.setPollIntervalMillis(10);
+        pool = TestPools.pool("drain", "poolDrainerTest");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        drainer.shutdown();
+        pool.close();
+    }
+
+    @Test
+    public void testClosesAfterActiveConnectionsReturn() throws Exception {
+        drainer.setDrainTimeoutMillis(10000);
+        Connection connection = pool.getConnection();
+
+        PoolDrainer.DrainStatus status = drainer.drain("ds", pool);
+        Thread.sleep(100);
+        // 借出的连接未归还前保持排空状态，连接仍可使用
+        assertEquals(PoolDrainer.DrainState.DRAINING, status.getState());
+        assertEquals(1, status.getActiveCount());
+        assertTrue(connection.isValid(1));
+
+        connection.close();
+        awaitFinished(status);
+        assertEquals(PoolDrainer.DrainState.CLOSED, status.getState());
+        assertEquals(0, status.getActiveCount());
+        assertSame(status, drainer.getStatus("ds"));
+        assertThrows(SQLException.class, pool::getConnection);
+    }
+
+    @Test
+    public void testForceClosesWhenConnectionsOutliveTimeout() throws Exception {
+        drainer.setDrainTimeoutMillis(100);
+        Connection connection = pool.getConnection();
+        try {
+            PoolDrainer.DrainStatus status = drainer.drain("ds", pool);
+            awaitFinished(status);
+
+            assertEquals(PoolDrainer.DrainState.FORCE_CLOSED, status.getState());
+            assertEquals(1, status.getActiveCount());
+            assertFalse(pool.isMaterialized());
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testIdlePoolClosesWithoutWaiting() throws Exception {
+        drainer.setDrainTimeoutMillis(10000);
+        pool.obtainPool();
+
+        PoolDrainer.DrainStatus status = drainer.drain("ds", pool);
+        awaitFinished(status);
+
+        assertEquals(PoolDrainer.DrainState.CLOSED, status.getState());
+        assertFalse(pool.isMaterialized());
+    }
+
+    private static void awaitFinished(PoolDrainer.DrainStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (status.getState() == PoolDrainer.DrainState.DRAINING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.multi.datasource.demo.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PoolReconfigurationTest {
+
+    private ManagedDataSource pool;
+
+    @BeforeEach
+    public void setUp() {
+        for (String db : new String[]{"a", "b"}) {
+            DruidDataSource seed = new DruidDataSource();
+            seed.setUrl(url(db) + ";DB_CLOSE_DELAY=-1");
+            seed.setUsername("sa");
+            seed.setPassword("");
+            JdbcTemplate template = new JdbcTemplate(seed);
+            template.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(32))");
+            template.execute("DELETE FROM node");
+            template.update("INSERT INTO node (name) VALUES (?)", db);
+            seed.close();
+        }
+        DataSourceProperties.DruidDataSourceProperties descriptor = TestPools.h2("reconfigureTest_a");
+        descriptor.setMaxWait(2000);
+        pool = new ManagedDataSource("reconfigure", descriptor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testReconfiguresLivePoolWithoutRecreatingIt() throws Exception {
+        DruidDataSource druid = pool.obtainPool();
+        new JdbcTemplate(pool).queryForObject("SELECT name FROM node", String.class);
+
+        PoolReconfiguration change = new PoolReconfiguration();
+        change.setMaxActive(8);
+        change.setMinIdle(2);
+        change.setMaxWait(500L);
+        change.setValidationQuery("SELECT 1");
+        change.setTestOnBorrow(true);
+        assertNull(change.validate(pool.getDescriptor()));
+        pool.reconfigure(change);
+
+        assertSame(druid, pool.obtainPool());
+        assertEquals(8, druid.getMaxActive());
+        assertEquals(2, druid.getMinIdle());
+        assertEquals(500, druid.getMaxWait());
+        assertEquals("SELECT 1", druid.getValidationQuery());
+        assertTrue(druid.isTestOnBorrow());
+        assertEquals(8, pool.getDescriptor().getMaxActive());
+    }
+
+    @Test
+    public void testRejectsMinIdleAboveMaxActive() {
+        PoolReconfiguration change = new PoolReconfiguration();
+        change.setMinIdle(10);
+        assertNotNull(change.validate(pool.getDescriptor()));
+        assertNotNull(new PoolReconfiguration().validate(pool.getDescriptor()));
+    }
+
+    @Test
+    public void testRotationKeepsBorrowedConnectionsWorking() throws Exception {
+        Connection borrowed = pool.getConnection();
+        assertEquals("a", name(borrowed));
+
+        PoolReconfiguration change = new PoolReconfiguration();
+        change.setUrl(url("b"));
+        DruidDataSource old = pool.rotate(change);
+        assertNotNull(old);
+
+        // 新的借用来自新连接池，已借出的连接继续可用
+        assertEquals("b", new JdbcTemplate(pool).queryForObject("SELECT name FROM node", String.class));
+        assertEquals("a", name(borrowed));
+        assertEquals(1, old.getActiveCount());
+        borrowed.close();
+        assertEquals(0, old.getActiveCount());
+        old.close();
+        assertEquals(url("b"), pool.getDescriptor().getUrl());
+    }
+
+    @Test
+    public void testFailedRotationKeepsCurrentPool() throws Exception {
+        DruidDataSource druid = pool.obtainPool();
+        PoolReconfiguration change = new PoolReconfiguration();
+        change.setUrl("jdbc:h2:tcp://127.0.0.1:1/unreachable");
+
+        assertThrows(SQLException.class, () -> pool.rotate(change));
+        assertSame(druid, pool.obtainPool());
+        assertEquals(url("a"), pool.getDescriptor().getUrl());
+        assertEquals("a", new JdbcTemplate(pool).queryForObject("SELECT name FROM node", String.class));
+    }
+
+    @Test
+    public void testFailedReplicaRotationKeepsEveryPool() throws Exception {
+        // 新账号只存在于主库，副本的新连接池无法建立
+        new JdbcTemplate(pool).execute("CREATE USER IF NOT EXISTS rotator PASSWORD 'pw' ADMIN");
+        DynamicDataSource previousInstance = DynamicDataSource.getInstance();
+        DynamicDataSource dynamicDataSource = new DynamicDataSource();
+        try {
+            DataSourceProperties.DruidDataSourceProperties descriptor = TestPools.h2("reconfigureTest_a");
+            descriptor.setMaxWait(2000);
+            descriptor.setReplicaUrls(Collections.singletonList(url("b")));
+            dynamicDataSource.addTargetDataSource("replicated", descriptor);
+            ReplicaGroupDataSource group = dynamicDataSource.getReplicaGroup("replicated");
+            DruidDataSource primary = group.getPrimary().obtainPool();
+            DruidDataSource replica = group.getReplicas().get(0).obtainPool();
+
+            PoolReconfiguration change = new PoolReconfiguration();
+            change.setUsername("rotator");
+            change.setPassword("pw");
+            assertThrows(SQLException.class, () -> dynamicDataSource.reconfigureDataSource("replicated", change));
+
+            // 主库已准备好的新连接池被放弃，没有连接池处于已轮换状态
+            assertSame(primary, group.getPrimary().obtainPool());
+            assertSame(replica, group.getReplicas().get(0).obtainPool());
+            assertEquals("sa", group.getPrimary().getDescriptor().getUsername());
+            assertEquals("sa", group.getReplicas().get(0).getDescriptor().getUsername());
+            for (Map<String, Object> physical : dynamicDataSource.getPhysicalPools()) {
+                assertEquals("sa", physical.get("username"));
+            }
+            assertEquals("a", new JdbcTemplate(group.getPrimary()).queryForObject("SELECT name FROM node", String.class));
+        } finally {
+            dynamicDataSource.destroy();
+            ReflectionTestUtils.setField(DynamicDataSource.class, "instance", previousInstance);
+        }
+    }
+
+    @Test
+    public void testDiffOnlyContainsChangedFields() {
+        DataSourceProperties.DruidDataSourceProperties current = pool.getDescriptor();
+        DataSourceProperties.DruidDataSourceProperties updated = current.withUrl(current.getUrl());
+        assertTrue(PoolReconfiguration.diff(current, updated).isEmpty());
+
+        updated.setMaxActive(10);
+        updated.setPassword("secret");
+        PoolReconfiguration change = PoolReconfiguration.diff(current, updated);
+        assertEquals(Integer.valueOf(10), change.getMaxActive());
+        assertNull(change.getMinIdle());
+        assertTrue(change.changesConnection());
+        assertEquals("******", change.describe().get("password"));
+    }
+
+    private static String url(String db) {
+        return "jdbc:h2:mem:reconfigureTest_" + db;
+    }
+
+    private static String name(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT name FROM node")) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PoolWarmerTest {
+
+    private PoolWarmer warmer;
+
+    private ManagedDataSource pool;
+
+    @BeforeEach
+    public void setUp() {
+        warmer = new PoolWarmer();
+        DataSourceProperties.DruidDataSourceProperties descriptor = TestPools.h2("poolWarmerTest");
+        descriptor.setInitialSize(0);
+        descriptor.setMinIdle(0);
+        pool = new ManagedDataSource("warm", descriptor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        warmer.shutdown();
+        pool.close();
+    }
+
+    @Test
+    public void testPublishesAfterPoolIsWarm() throws Exception {
+        AtomicBoolean published = new AtomicBoolean();
+        AtomicBoolean released = new AtomicBoolean();
+        PoolWarmer.WarmupStatus status = warmer.begin("warm", 3);
+        assertTrue(warmer.isWarming("warm"));
+        // 同一数据源不能重复预热
+        assertThrows(IllegalArgumentException.class, () -> warmer.begin("warm", 3));
+
+        warmer.warm(status, Collections.singletonList(pool), Arrays.asList("SELECT 1"),
+                () -> published.set(true), () -> released.set(true));
+        awaitFinished(status);
+
+        assertEquals(PoolWarmer.WarmupState.READY, status.getState());
+        assertEquals(3, status.getWarmed());
+        assertTrue(published.get());
+        assertFalse(released.get());
+        assertTrue(pool.obtainPool().getPoolingCount() >= 3);
+        assertFalse(warmer.isWarming("warm"));
+    }
+
+    @Test
+    public void testFailedWarmUpIsNotPublished() throws Exception {
+        AtomicBoolean published = new AtomicBoolean();
+        AtomicBoolean released = new AtomicBoolean();
+        PoolWarmer.WarmupStatus status = warmer.begin("warm", 2);
+
+        warmer.warm(status, Collections.singletonList(pool), Arrays.asList("SELECT * FROM missing_table"),
+                () -> published.set(true), () -> released.set(true));
+        awaitFinished(status);
+
+        assertEquals(PoolWarmer.WarmupState.FAILED, status.getState());
+        assertNotNull(status.toMap().get("error"));
+        assertFalse(published.get());
+        assertTrue(released.get());
+    }
+
+    private static void awaitFinished(PoolWarmer.WarmupStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (status.getState() == PoolWarmer.WarmupState.WARMING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicaGroupDataSourceTest {
+
+    private ManagedDataSource primary;
+
+    private List<ManagedDataSource> replicas;
+
+    @BeforeEach
+    public void setUp() {
+        primary = pool("primary");
+        replicas = Arrays.asList(pool("replica1"), pool("replica2"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DynamicDataSource.setReadOnly(false);
+        for (ManagedDataSource dataSource : allPools()) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testWritesUsePrimary() {
+        JdbcTemplate template = new JdbcTemplate(group(ReplicaBalancers.ROUND_ROBIN));
+        for (int i = 0; i < 4; i++) {
+            assertEquals("primary", template.queryForObject("SELECT name FROM node", String.class));
+        }
+    }
+
+    @Test
+    public void testReadsAreSpreadAcrossReplicas() {
+        JdbcTemplate template = new JdbcTemplate(group(ReplicaBalancers.ROUND_ROBIN));
+        DynamicDataSource.setReadOnly(true);
+
+        Set<String> nodes = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(template.queryForObject("SELECT name FROM node", String.class));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("replica1", "replica2")), nodes);
+    }
+
+    @Test
+    public void testLeastActivePicksIdleReplica() throws Exception {
+        ReplicaGroupDataSource group = group(ReplicaBalancers.LEAST_ACTIVE);
+        DynamicDataSource.setReadOnly(true);
+
+        // 占用replica1的一个连接，后续读请求应全部落在replica2
+        try (Connection ignored = replicas.get(0).getConnection()) {
+            JdbcTemplate template = new JdbcTemplate(group);
+            for (int i = 0; i < 4; i++) {
+                assertEquals("replica2", template.queryForObject("SELECT name FROM node", String.class));
+            }
+        }
+    }
+
+    private ReplicaGroupDataSource group(String balancer) {
+        return new ReplicaGroupDataSource("group", primary, replicas, ReplicaBalancers.of(balancer));
+    }
+
+    private List<ManagedDataSource> allPools() {
+        List<ManagedDataSource> pools = new ArrayList<>(replicas);
+        pools.add(0, primary);
+        return pools;
+    }
+
+    private static ManagedDataSource pool(String name) {
+        return TestPools.withNodeTable(TestPools.pool(name, "replicaGroupTest_" + name));
+    }
+}
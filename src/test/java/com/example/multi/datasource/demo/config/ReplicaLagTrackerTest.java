@@ -0,0 +1,74 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicaLagTrackerTest {
+
+    private ManagedDataSource primary;
+
+    private ManagedDataSource replica;
+
+    private ReplicaGroupDataSource group;
+
+    private final ReplicaLagTracker tracker = new ReplicaLagTracker();
+
+    @BeforeEach
+    public void setUp() {
+        primary = pool("primary");
+        replica = pool("replica");
+        group = new ReplicaGroupDataSource("lagTest", primary, Collections.singletonList(replica),
+                ReplicaBalancers.of(ReplicaBalancers.ROUND_ROBIN));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReadConsistency.clear();
+        DynamicDataSource.setReadOnly(false);
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    public void testTokenReadsWaitForReplicaToCatchUp() {
+        tracker.track(group);
+        assertEquals(1, group.getPrimaryPosition());
+        assertEquals(0, group.getReplicaPosition(0));
+
+        String token = ReadConsistency.token("lagTest", group.nextSessionPosition());
+        JdbcTemplate template = new JdbcTemplate(group);
+        DynamicDataSource.setReadOnly(true);
+        ReadConsistency.require(token);
+
+        // 副本尚未追上，带令牌的读请求使用主库
+        assertEquals("primary", template.queryForObject("SELECT name FROM node", String.class));
+
+        // 模拟复制：副本的心跳表追上主库的下一次心跳
+        JdbcTemplate replicaTemplate = new JdbcTemplate(replica);
+        replicaTemplate.execute("CREATE TABLE ds_heartbeat (id INT PRIMARY KEY, seq BIGINT NOT NULL, ts BIGINT NOT NULL)");
+        replicaTemplate.update("INSERT INTO ds_heartbeat (id, seq, ts) VALUES (1, 2, ?)", System.currentTimeMillis());
+        tracker.track(group);
+        assertEquals(2, group.getReplicaPosition(0));
+        assertTrue(group.getReplicaLagMillis(0) >= 0);
+
+        assertEquals("replica", template.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    @Test
+    public void testReadsWithoutTokenUseReplica() {
+        JdbcTemplate template = new JdbcTemplate(group);
+        DynamicDataSource.setReadOnly(true);
+
+        assertEquals("replica", template.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    private static ManagedDataSource pool(String name) {
+        return TestPools.withNodeTable(TestPools.pool(name, "lagTest_" + name));
+    }
+}
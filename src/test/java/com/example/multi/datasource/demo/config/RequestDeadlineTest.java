@@ -0,0 +1,71 @@
+package com.example.multi.datasource.demo.config;
+
+import io.lettuce.core.TimeoutOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestDeadlineTest {
+
+    @AfterEach
+    public void tearDown() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    public void testWithoutDeadlineNothingIsBounded() {
+        assertFalse(RequestDeadline.isSet());
+        assertFalse(RequestDeadline.isExpired());
+        assertEquals(60000, RequestDeadline.bound(60000));
+        RequestDeadline.check("测试");
+    }
+
+    @Test
+    public void testBoundsWaitAndAbandonsExpiredWork() {
+        RequestDeadline.start(2000);
+        long bounded = RequestDeadline.bound(60000);
+        assertTrue(bounded > 1000 && bounded <= 2000);
+        assertEquals(500, RequestDeadline.bound(500));
+
+        RequestDeadline.restore(System.nanoTime() - 1);
+        assertTrue(RequestDeadline.isExpired());
+        assertThrows(DeadlineExceededException.class, () -> RequestDeadline.check("测试"));
+    }
+
+    @Test
+    public void testQueryTimeoutUsesRemainingBudget() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:deadline_test");
+             Statement statement = connection.createStatement()) {
+            RequestDeadline.start(2500);
+            RequestDeadline.applyQueryTimeout(statement);
+            // 剩余时间按秒向上取整
+            assertEquals(3, statement.getQueryTimeout());
+
+            Statement expired = connection.createStatement();
+            RequestDeadline.restore(System.nanoTime() - 1);
+            assertThrows(SQLTimeoutException.class, () -> RequestDeadline.applyQueryTimeout(expired));
+            assertTrue(expired.isClosed());
+        }
+    }
+
+    @Test
+    public void testRedisTimeoutFollowsDeadline() {
+        TimeoutOptions.TimeoutSource source = RequestDeadline.redisTimeoutSource(Duration.ofSeconds(60));
+        assertEquals(60000, source.getTimeout(null));
+
+        RequestDeadline.start(1000);
+        long timeout = source.getTimeout(null);
+        assertTrue(timeout > 0 && timeout <= 1000);
+
+        // 已过期时仍返回正数，0在Lettuce中表示不超时
+        RequestDeadline.restore(System.nanoTime() - 1);
+        assertEquals(1, source.getTimeout(null));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 路由快照查找开销基准：数据源数量从10增长到10000时，单次查找耗时应保持平稳
+ *
+ * 耗时比较依赖运行机器，标记为benchmark，默认构建不执行，使用 mvn test -Pbenchmark 运行。
+ */
+public class RoutingTableBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RoutingTableBenchmarkTest.class);
+
+    private static final int[] SIZES = {10, 100, 1000, 10000};
+    private static final int LOOKUPS = 2_000_000;
+
+    @Test
+    @Tag("benchmark")
+    public void testLookupCostStaysFlat() {
+        double[] nanosPerLookup = new double[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            nanosPerLookup[i] = measure(SIZES[i]);
+            log.info("datasources={}, lookup={} ns/op", SIZES[i], String.format("%.1f", nanosPerLookup[i]));
+        }
+
+        // 查找为O(1)的HashMap访问，10000个数据源时的耗时不应明显高于10个数据源时
+        double baseline = Math.max(nanosPerLookup[0], 20.0);
+        assertTrue(nanosPerLookup[SIZES.length - 1] < baseline * 10,
+                "lookup cost grew with datasource count: " + Arrays.toString(nanosPerLookup));
+    }
+
+    @Test
+    public void testCopyOnWriteKeepsOldSnapshotIntact() {
+        DataSource dataSource = new DriverManagerDataSource();
+        RoutingTable before = RoutingTable.EMPTY.withDataSource("ds1", dataSource);
+        RoutingTable after = before.withoutDataSource("ds1");
+
+        assertTrue(before.containsDynamic("ds1"));
+        assertSame(dataSource, before.lookup("ds1"));
+        assertFalse(after.containsDynamic("ds1"));
+        assertNull(after.lookup("ds1"));
+    }
+
+    private static double measure(int size) {
+        Map<String, DataSource> dataSources = new HashMap<>();
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "tenant-" + i;
+            dataSources.put(keys[i], new DriverManagerDataSource());
+        }
+        RoutingTable table = RoutingTable.EMPTY.withDataSources(dataSources);
+
+        // 预热
+        long sink = run(table, keys, LOOKUPS);
+        long start = System.nanoTime();
+        sink += run(table, keys, LOOKUPS);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return (double) elapsed / LOOKUPS;
+    }
+
+    private static long run(RoutingTable table, String[] keys, int lookups) {
+        long hits = 0;
+        for (int i = 0; i < lookups; i++) {
+            String key = keys[i % keys.length];
+            if (table.containsDynamic(key) && table.lookup(key) != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
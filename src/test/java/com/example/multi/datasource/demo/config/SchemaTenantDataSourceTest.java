@@ -0,0 +1,63 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaTenantDataSourceTest {
+
+    private ManagedDataSource pool;
+
+    @BeforeEach
+    public void setUp() {
+        DataSourceProperties.DruidDataSourceProperties descriptor = TestPools.h2("schemaTenantTest;DB_CLOSE_DELAY=-1");
+        // 只有一个物理连接，保证所有租户复用同一个连接
+        descriptor.setMaxActive(1);
+        pool = new ManagedDataSource("schemaTenantTest", descriptor);
+
+        JdbcTemplate base = new JdbcTemplate(pool);
+        base.execute("CREATE SCHEMA IF NOT EXISTS TENANT_A");
+        base.execute("CREATE SCHEMA IF NOT EXISTS TENANT_B");
+        base.execute("CREATE TABLE IF NOT EXISTS TENANT_A.users (id BIGINT PRIMARY KEY, name VARCHAR(64))");
+        base.execute("CREATE TABLE IF NOT EXISTS TENANT_B.users (id BIGINT PRIMARY KEY, name VARCHAR(64))");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        new JdbcTemplate(pool).execute("DROP ALL OBJECTS");
+        pool.close();
+    }
+
+    @Test
+    public void testTenantsAreIsolatedOnSharedConnection() {
+        JdbcTemplate tenantA = new JdbcTemplate(new SchemaTenantDataSource("a", "TENANT_A", pool, true));
+        JdbcTemplate tenantB = new JdbcTemplate(new SchemaTenantDataSource("b", "TENANT_B", pool, true));
+
+        tenantA.update("INSERT INTO users (id, name) VALUES (1, 'alice')");
+        tenantB.update("INSERT INTO users (id, name) VALUES (1, 'bob')");
+
+        assertEquals("alice", tenantA.queryForObject("SELECT name FROM users WHERE id = 1", String.class));
+        assertEquals("bob", tenantB.queryForObject("SELECT name FROM users WHERE id = 1", String.class));
+    }
+
+    @Test
+    public void testSchemaIsResetOnReturn() throws Exception {
+        SchemaTenantDataSource tenantA = new SchemaTenantDataSource("a", "TENANT_A", pool, true);
+
+        String defaultSchema;
+        try (Connection connection = pool.getConnection()) {
+            defaultSchema = connection.getSchema();
+        }
+        try (Connection connection = tenantA.getConnection()) {
+            assertEquals("TENANT_A", connection.getSchema());
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertEquals(defaultSchema, connection.getSchema());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.multi.datasource.demo.config;
+
+import com.example.multi.datasource.demo.MultiDatasourceDemoApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 启动时由配置创建分片组：分片都在路由中的分片组被创建，否则跳过且不影响启动
+ */
+@SpringBootTest(classes = MultiDatasourceDemoApplication.class)
+@TestPropertySource(properties = {
+    "spring.datasource.druid.data-sources.east.url=jdbc:h2:mem:shardRingsContextTest_east",
+    "spring.datasource.druid.data-sources.east.username=sa",
+    "spring.datasource.druid.data-sources.east.driver-class-name=org.h2.Driver",
+    "spring.datasource.druid.data-sources.west.url=jdbc:h2:mem:shardRingsContextTest_west",
+    "spring.datasource.druid.data-sources.west.username=sa",
+    "spring.datasource.druid.data-sources.west.driver-class-name=org.h2.Driver",
+    "spring.datasource.druid.shard-groups.routed=east,west",
+    "spring.datasource.druid.shard-groups.unrouted=east,missing"
+})
+public class ShardRingsContextTest {
+
+    @Autowired
+    private ShardRings shardRings;
+
+    @Test
+    public void testConfiguredGroupsAreCreatedOnlyForRoutedShards() {
+        assertTrue(shardRings.containsGroup("routed"));
+        assertEquals(Arrays.asList("east", "west"), shardRings.describe("routed").get("shards"));
+        assertFalse(shardRings.containsGroup("unrouted"));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRingsTest {
+
+    private DynamicDataSource previousInstance;
+
+    private DynamicDataSource dynamicDataSource;
+
+    private ShardRings shardRings;
+
+    @BeforeEach
+    public void setUp() {
+        previousInstance = DynamicDataSource.getInstance();
+        dynamicDataSource = new DynamicDataSource();
+        // one、two为配置的预定义数据源，three为运行时添加的数据源
+        Map<Object, Object> staticDataSources = new HashMap<>();
+        staticDataSources.put("one", TestPools.pool("one", "shardRingsTest_one"));
+        staticDataSources.put("two", TestPools.pool("two", "shardRingsTest_two"));
+        dynamicDataSource.setTargetDataSources(staticDataSources);
+        dynamicDataSource.afterPropertiesSet();
+        dynamicDataSource.addTargetDataSource("three", TestPools.h2("shardRingsTest_three"));
+        shardRings = new ShardRings();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dynamicDataSource.destroy();
+        ReflectionTestUtils.setField(DynamicDataSource.class, "instance", previousInstance);
+    }
+
+    @Test
+    public void testReadFallsBackAfterAddingShard() {
+        shardRings.createGroup("users", Arrays.asList("one", "two"));
+        shardRings.addShard("users", "three");
+
+        // 迁移到新分片的键先读新归属，再回退到原归属
+        String moved = keyRoutedTo("three");
+        List<String> route = shardRings.readRoute("users", moved);
+        assertEquals(2, route.size());
+        assertEquals("three", route.get(0));
+        assertTrue(Arrays.asList("one", "two").contains(route.get(1)));
+        // 增加分片只把键迁移到新分片，仍在原分片的键只读一个分片
+        assertEquals(Collections.singletonList("one"), shardRings.readRoute("users", keyRoutedTo("one")));
+    }
+
+    @Test
+    public void testReadFallsBackAfterRemovingShard() {
+        shardRings.createGroup("users", Arrays.asList("one", "two", "three"));
+        String moved = keyRoutedTo("three");
+        shardRings.removeShard("users", "three");
+
+        List<String> route = shardRings.readRoute("users", moved);
+        assertEquals(Arrays.asList(shardRings.route("users", moved), "three"), route);
+        assertNotEquals("three", route.get(0));
+    }
+
+    @Test
+    public void testRemovedDataSourceLeavesRingAndFallback() {
+        shardRings.createGroup("users", Arrays.asList("one", "two"));
+        shardRings.addShard("users", "three");
+        String moved = keyRoutedTo("three");
+
+        dynamicDataSource.removeTargetDataSource("three");
+        shardRings.onDataSourceRemoved(new DataSourceRemovedEvent(dynamicDataSource, "three"));
+
+        // 已删除数据源的数据不可读，读取既不路由也不回退到它
+        assertFalse(shardRings.readRoute("users", moved).contains("three"));
+        Map<String, Object> info = shardRings.describe("users");
+        assertEquals(Arrays.asList("one", "two"), info.get("shards"));
+        // 去掉已删除数据源后与当前环相同的历代环不再保留
+        assertEquals(Collections.emptyList(), info.get("generations"));
+    }
+
+    @Test
+    public void testForgetsDataSourceOnlyInPreviousRing() {
+        shardRings.createGroup("users", Arrays.asList("one", "two", "three"));
+        String moved = keyRoutedTo("three");
+        shardRings.removeShard("users", "three");
+        assertTrue(shardRings.readRoute("users", moved).contains("three"));
+
+        shardRings.forgetDataSource("three");
+        assertEquals(1, shardRings.readRoute("users", moved).size());
+        assertEquals(Collections.emptyList(), shardRings.describe("users").get("generations"));
+    }
+
+    @Test
+    public void testReadsEveryGenerationUntilRetired() {
+        shardRings.createGroup("users", Collections.singletonList("one"));
+        shardRings.addShard("users", "two");
+        shardRings.addShard("users", "three");
+
+        // 两次变更后，第一次变更前写入one的键仍可读到
+        String key = null;
+        for (int i = 0; i < 10000 && key == null; i++) {
+            String candidate = "user" + i + "@example.com";
+            if (shardRings.readRoute("users", candidate).size() == 3) {
+                key = candidate;
+            }
+        }
+        assertNotNull(key);
+        assertEquals(Arrays.asList("three", "two", "one"), shardRings.readRoute("users", key));
+        assertEquals(Arrays.asList("one", "three", "two"), shardRings.shardsOf("users"));
+
+        // 迁移期间的变更产生的新一代环不随迁移开始时的环退役
+        List<ConsistentHashRing> migrated = shardRings.generations("users");
+        shardRings.removeShard("users", "two");
+        assertEquals(2, shardRings.retireGenerations("users", migrated));
+        assertEquals(Collections.singletonList(Arrays.asList("one", "three", "two")),
+                shardRings.describe("users").get("generations"));
+    }
+
+    @Test
+    public void testRejectsDataSourcesOutsideRoutingTable() {
+        // 预定义数据源与运行时添加的数据源都可以作为分片
+        shardRings.createGroup("users", Collections.singletonList("one"));
+        shardRings.addShard("users", "two");
+        shardRings.addShard("users", "three");
+
+        assertThrows(IllegalArgumentException.class, () -> shardRings.addShard("users", "missing"));
+        assertThrows(IllegalArgumentException.class,
+                () -> shardRings.createGroup("orders", Arrays.asList("one", "missing")));
+        assertFalse(shardRings.containsGroup("orders"));
+        assertEquals(Arrays.asList("one", "three", "two"), shardRings.describe("users").get("shards"));
+    }
+
+    /**
+     * 找一个当前路由到指定分片的键
+     */
+    private String keyRoutedTo(String dsName) {
+        for (int i = 0; i < 10000; i++) {
+            String key = "user" + i + "@example.com";
+            if (dsName.equals(shardRings.route("users", key))) {
+                return key;
+            }
+        }
+        throw new AssertionError("没有路由到 " + dsName + " 的键");
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedPoolSchedulersTest {
+
+    private final SharedPoolSchedulers schedulers = new SharedPoolSchedulers();
+
+    private final List<ManagedDataSource> pools = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        for (ManagedDataSource pool : pools) {
+            pool.close();
+        }
+        schedulers.shutdown();
+    }
+
+    @Test
+    public void testEvictionTasksRunInSharedBatches() throws Exception {
+        schedulers.setEvictionIntervalMillis(20);
+        ScheduledExecutorService destroyScheduler = schedulers.getDestroyScheduler();
+
+        AtomicInteger[] runs = new AtomicInteger[5];
+        List<ScheduledFuture<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < runs.length; i++) {
+            AtomicInteger counter = new AtomicInteger();
+            runs[i] = counter;
+            // Druid为每个连接池注册的回收任务，周期参数由批次统一决定
+            tasks.add(destroyScheduler.scheduleAtFixedRate(counter::incrementAndGet, 0, 1, TimeUnit.HOURS));
+        }
+        assertEquals(runs.length, schedulers.getEvictionTaskCount());
+
+        awaitRuns(runs, 2);
+
+        // 取消的任务离开批次，不再执行
+        assertTrue(tasks.get(0).cancel(false));
+        assertTrue(tasks.get(0).isCancelled());
+        assertEquals(runs.length - 1, schedulers.getEvictionTaskCount());
+        Thread.sleep(60);
+        int cancelledRuns = runs[0].get();
+        awaitRuns(new AtomicInteger[]{runs[1]}, runs[1].get() + 2);
+        assertEquals(cancelledRuns, runs[0].get());
+    }
+
+    @Test
+    public void testThreadCountStaysFlatAsPoolsAreAdded() throws Exception {
+        schedulers.setCreateThreads(2);
+        schedulers.setDestroyThreads(1);
+        int druidThreadsBefore = countThreads("Druid-ConnectionPool-");
+
+        for (int i = 0; i < 20; i++) {
+            ManagedDataSource pool = TestPools.pool("shared" + i, "sharedSchedulersTest_" + i);
+            pool.setSchedulers(schedulers);
+            pools.add(pool);
+            try (Connection ignored = pool.getConnection()) {
+                assertTrue(pool.isMaterialized());
+            }
+        }
+
+        // 连接池不再各自启动创建/销毁线程，共享调度器的线程数有上限
+        assertTrue(countThreads("Druid-ConnectionPool-") <= druidThreadsBefore);
+        assertTrue(countThreads("druid-create-") <= 2);
+        assertTrue(countThreads("druid-destroy-") <= 1);
+        assertEquals(20, schedulers.getEvictionTaskCount());
+
+        // 关闭的连接池取消回收任务
+        pools.remove(0).close();
+        assertEquals(19, schedulers.getEvictionTaskCount());
+    }
+
+    private static void awaitRuns(AtomicInteger[] runs, int minimum) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        for (AtomicInteger counter : runs) {
+            while (counter.get() < minimum && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(counter.get() >= minimum, "eviction task ran " + counter.get() + " times");
+        }
+    }
+
+    private static int countThreads(String prefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
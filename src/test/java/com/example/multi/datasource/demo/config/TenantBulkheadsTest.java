@@ -0,0 +1,69 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TenantBulkheadsTest {
+
+    private DynamicDataSource previousInstance;
+
+    private DynamicDataSource dynamicDataSource;
+
+    private final TenantBulkheads bulkheads = new TenantBulkheads();
+
+    @BeforeEach
+    public void setUp() {
+        previousInstance = DynamicDataSource.getInstance();
+        dynamicDataSource = new DynamicDataSource();
+        dynamicDataSource.addTargetDataSource("tenant", TestPools.h2("tenantBulkheadsTest"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dynamicDataSource.destroy();
+        ReflectionTestUtils.setField(DynamicDataSource.class, "instance", previousInstance);
+    }
+
+    @Test
+    public void testUnknownDataSourceIsNotTracked() {
+        bulkheads.setDefaultLimit(1);
+
+        // 不存在的数据源直接放行，不会建立舱壁
+        assertTrue(bulkheads.tryAcquire("missing"));
+        assertTrue(bulkheads.tryAcquire("missing"));
+        bulkheads.release("missing");
+        assertFalse(tenants().containsKey("missing"));
+
+        assertTrue(bulkheads.tryAcquire("tenant"));
+        assertFalse(bulkheads.tryAcquire("tenant"));
+        bulkheads.release("tenant");
+        assertTrue(bulkheads.tryAcquire("tenant"));
+        bulkheads.release("tenant");
+    }
+
+    @Test
+    public void testRemovedDataSourceDropsBulkhead() {
+        assertTrue(bulkheads.tryAcquire("tenant"));
+        assertTrue(tenants().containsKey("tenant"));
+
+        bulkheads.onDataSourceRemoved(new DataSourceRemovedEvent(dynamicDataSource, "tenant"));
+        assertFalse(tenants().containsKey("tenant"));
+
+        // 移除前借出的名额归还时不影响重新建立的舱壁
+        assertTrue(bulkheads.tryAcquire("tenant"));
+        bulkheads.release("tenant");
+        bulkheads.release("tenant");
+        assertEquals(0, tenants().get("tenant").get("inFlight"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<String, Object>> tenants() {
+        return (Map<String, Map<String, Object>>) bulkheads.describe().get("tenants");
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.multi.datasource.demo.config;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 三种多租户模式的对比基准：独立连接池、库内Schema、共享表
+ *
+ * 对每种模式分别统计物理连接池数量、建立租户后的堆内存增量以及按租户轮询主键查询的平均耗时。
+ * 内存与耗时依赖运行机器，标记为benchmark，默认构建不执行，使用 mvn test -Pbenchmark 运行；
+ * 物理连接池数量与租户隔离的校验始终执行。
+ */
+public class TenantStrategyBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantStrategyBenchmarkTest.class);
+
+    private static final int TENANTS = 50;
+    private static final int USERS_PER_TENANT = 20;
+    private static final int QUERIES = 20_000;
+
+    @Test
+    public void testPhysicalPoolsPerStrategy() {
+        // 独立连接池模式每个租户一个物理连接池，其余两种模式所有租户共享一个
+        assertEquals(TENANTS, verify(this::setUpPoolPerTenant));
+        assertEquals(1, verify(this::setUpSchemaPerTenant));
+        assertEquals(1, verify(this::setUpSharedTable));
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void testCompareTenantStrategies() {
+        measure("pool-per-tenant", this::setUpPoolPerTenant);
+        measure("schema-per-tenant", this::setUpSchemaPerTenant);
+        measure("shared-table", this::setUpSharedTable);
+    }
+
+    /**
+     * 每个租户内的每个主键都恰好查到本租户的一行
+     * @return 物理连接池数量
+     */
+    private int verify(Setup setup) {
+        Fixture fixture = setup.create();
+        try {
+            int queries = TENANTS * USERS_PER_TENANT;
+            assertEquals(queries, run(fixture, queries));
+            return fixture.pools.size();
+        } finally {
+            close(fixture);
+        }
+    }
+
+    private void measure(String strategy, Setup setup) {
+        long before = usedMemory();
+        Fixture fixture = setup.create();
+        long memory = usedMemory() - before;
+        try {
+            // 预热
+            long sink = run(fixture, QUERIES);
+            long start = System.nanoTime();
+            sink += run(fixture, QUERIES);
+            long elapsed = System.nanoTime() - start;
+            assertEquals(2L * QUERIES, sink);
+
+            log.info("{}: tenants={}, physicalPools={}, heap={} KB, query={} us/op", strategy, TENANTS,
+                    fixture.pools.size(), memory / 1024, String.format("%.1f", (double) elapsed / QUERIES / 1000));
+        } finally {
+            close(fixture);
+        }
+    }
+
+    private static void close(Fixture fixture) {
+        for (ManagedDataSource pool : fixture.pools) {
+            pool.close();
+        }
+    }
+
+    private long run(Fixture fixture, int queries) {
+        long hits = 0;
+        for (int i = 0; i < queries; i++) {
+            int tenant = i % TENANTS;
+            long id = i % USERS_PER_TENANT + 1;
+            hits += fixture.queries.get(tenant).count(id);
+        }
+        return hits;
+    }
+
+    private Fixture setUpPoolPerTenant() {
+        Fixture fixture = new Fixture();
+        for (int t = 0; t < TENANTS; t++) {
+            ManagedDataSource pool = TestPools.pool("tenant" + t, "bench_pool_" + t);
+            fixture.pools.add(pool);
+            JdbcTemplate template = new JdbcTemplate(pool);
+            template.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, name VARCHAR(64), email VARCHAR(64))");
+            insertUsers(template, "users", null);
+            fixture.queries.add(id -> template.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Long.class, id));
+        }
+        return fixture;
+    }
+
+    private Fixture setUpSchemaPerTenant() {
+        Fixture fixture = new Fixture();
+        ManagedDataSource pool = TestPools.pool("schema", "bench_schema");
+        fixture.pools.add(pool);
+        JdbcTemplate base = new JdbcTemplate(pool);
+        for (int t = 0; t < TENANTS; t++) {
+            String schema = "TENANT_" + t;
+            base.execute("CREATE SCHEMA " + schema);
+            base.execute("CREATE TABLE " + schema + ".users (id BIGINT PRIMARY KEY, name VARCHAR(64), email VARCHAR(64))");
+            insertUsers(base, schema + ".users", null);
+            JdbcTemplate template = new JdbcTemplate(new SchemaTenantDataSource("tenant" + t, schema, pool, true));
+            fixture.queries.add(id -> template.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Long.class, id));
+        }
+        return fixture;
+    }
+
+    private Fixture setUpSharedTable() {
+        Fixture fixture = new Fixture();
+        ManagedDataSource pool = TestPools.pool("shared", "bench_shared");
+        fixture.pools.add(pool);
+        JdbcTemplate template = new JdbcTemplate(pool);
+        template.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, name VARCHAR(64), email VARCHAR(64), tenant_id VARCHAR(64))");
+        template.execute("CREATE INDEX idx_users_tenant_id ON users (tenant_id, id)");
+        for (int t = 0; t < TENANTS; t++) {
+            String tenantId = "tenant" + t;
+            int offset = t * USERS_PER_TENANT;
+            insertUsers(template, "users", tenantId, offset);
+            // 共享表中主键全局唯一，按租户内序号换算
+            fixture.queries.add(id -> template.queryForObject(
+                    "SELECT COUNT(*) FROM users WHERE tenant_id = ? AND id = ?", Long.class, tenantId, id + offset));
+        }
+        return fixture;
+    }
+
+    private static void insertUsers(JdbcTemplate template, String table, String tenantId) {
+        insertUsers(template, table, tenantId, 0);
+    }
+
+    private static void insertUsers(JdbcTemplate template, String table, String tenantId, int offset) {
+        for (int i = 1; i <= USERS_PER_TENANT; i++) {
+            if (tenantId == null) {
+                template.update("INSERT INTO " + table + " (id, name, email) VALUES (?, ?, ?)",
+                        i + offset, "user" + i, "user" + i + "@example.com");
+            } else {
+                template.update("INSERT INTO " + table + " (id, name, email, tenant_id) VALUES (?, ?, ?, ?)",
+                        i + offset, "user" + i, "user" + i + "@example.com", tenantId);
+            }
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @FunctionalInterface
+    private interface Setup {
+        Fixture create();
+    }
+
+    @FunctionalInterface
+    private interface TenantQuery {
+        long count(long id);
+    }
+
+    private static class Fixture {
+        private final List<ManagedDataSource> pools = new ArrayList<>();
+        private final List<TenantQuery> queries = new ArrayList<>();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.multi.datasource.demo.config;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 测试用的H2内存库连接池
+ */
+public final class TestPools {
+
+    private TestPools() {
+    }
+
+    /**
+     * 指向H2内存库的连接池描述：1个初始连接，最多4个连接，可在返回后按需修改
+     * @param database 内存库名称
+     */
+    public static DataSourceProperties.DruidDataSourceProperties h2(String database) {
+        DataSourceProperties.DruidDataSourceProperties descriptor = new DataSourceProperties.DruidDataSourceProperties();
+        descriptor.setUrl("jdbc:h2:mem:" + database);
+        descriptor.setUsername("sa");
+        descriptor.setPassword("");
+        descriptor.setDriverClassName("org.h2.Driver");
+        descriptor.setInitialSize(1);
+        descriptor.setMinIdle(1);
+        descriptor.setMaxActive(4);
+        return descriptor;
+    }
+
+    /**
+     * 指向H2内存库的受管数据源，连接池在第一次借用时创建
+     * @param name 数据源名称
+     * @param database 内存库名称
+     */
+    public static ManagedDataSource pool(String name, String database) {
+        return new ManagedDataSource(name, h2(database));
+    }
+
+    /**
+     * 在库中建一张只有一行的node表，记录数据源名称，便于判断请求落在哪个库
+     * @param dataSource 受管数据源
+     * @return 传入的数据源
+     */
+    public static ManagedDataSource withNodeTable(ManagedDataSource dataSource) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("CREATE TABLE node (name VARCHAR(32))");
+        template.update("INSERT INTO node (name) VALUES (?)", dataSource.getName());
+        return dataSource;
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.multi.datasource.demo.controller;
 
 import com.example.multi.datasource.demo.MultiDatasourceDemoApplication;
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.TenantBulkheads;
+import com.example.multi.datasource.demo.config.TestPools;
 import com.example.multi.datasource.demo.entity.User;
 import com.example.multi.datasource.demo.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +18,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -30,6 +34,9 @@ public class UnifiedDataSourceControllerTest {
     @MockBean
     private UserService userService;
 
+    @Autowired
+    private TenantBulkheads tenantBulkheads;
+
     private User testUser;
 
     @BeforeEach
@@ -46,6 +53,29 @@ public class UnifiedDataSourceControllerTest {
                 .andExpect(jsonPath("$.success").value(true));
     }
 
+    @Test
+    public void testBulkheadRejectsWhenFull() throws Exception {
+        // 舱壁只对路由中的数据源生效，先注册一个数据源
+        DynamicDataSource dynamicDataSource = DynamicDataSource.getInstance();
+        dynamicDataSource.addTargetDataSource("bulkheadTest", TestPools.h2("unifiedControllerTest_bulkhead"));
+        tenantBulkheads.setLimit("bulkheadTest", 1);
+        assertTrue(tenantBulkheads.tryAcquire("bulkheadTest"));
+        try {
+            mockMvc.perform(get("/api/datasource/bulkheadTest/users"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"))
+                    .andExpect(jsonPath("$.success").value(false));
+            // 表管理接口的路径变量名为dataSourceName，同样受舱壁限制
+            mockMvc.perform(get("/api/datasource/bulkheadTest/table/list"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.success").value(false));
+        } finally {
+            tenantBulkheads.release("bulkheadTest");
+            tenantBulkheads.removeLimit("bulkheadTest");
+            dynamicDataSource.removeTargetDataSource("bulkheadTest");
+        }
+    }
+
     @Test
     public void testAddUser() throws Exception {
         when(userService.saveToDynamicDataSource(anyString(), anyString(), anyString()))
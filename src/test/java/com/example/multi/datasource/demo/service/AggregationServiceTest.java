@@ -0,0 +1,160 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AggregationServiceTest {
+
+    private final ContextRoutingDataSource dataSources = new ContextRoutingDataSource();
+
+    private FanOutExecutor fanOutExecutor;
+
+    private AggregationService aggregationService;
+
+    @BeforeEach
+    public void setUp() {
+        // agg1: 订单金额 1..10，agg2: 订单金额 11..15，agg3没有orders表
+        database("agg1", "aggregationTest1", 1, 10, true);
+        database("agg2", "aggregationTest2", 11, 5, true);
+        database("agg3", "aggregationTest3", 0, 3, false);
+
+        DataSourceProperties properties = new DataSourceProperties();
+        fanOutExecutor = new FanOutExecutor();
+        ReflectionTestUtils.setField(fanOutExecutor, "dataSourceProperties", properties);
+        aggregationService = new AggregationService() {
+            @Override
+            List<String> dataSourceNames() {
+                return new ArrayList<>(Arrays.asList("agg1", "agg2", "agg3"));
+            }
+        };
+        ReflectionTestUtils.setField(aggregationService, "fanOutExecutor", fanOutExecutor);
+        ReflectionTestUtils.setField(aggregationService, "jdbcTemplate", new JdbcTemplate(dataSources));
+        ReflectionTestUtils.setField(aggregationService, "dataSourceProperties", properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fanOutExecutor.shutdown();
+    }
+
+    @Test
+    public void testCountUsersPerDataSource() {
+        AggregationQuery query = new AggregationQuery();
+        query.setGroupBy(Collections.singletonList(AggregationQuery.DATA_SOURCE_GROUP));
+        query.setAggregates(Collections.singletonList(new AggregationQuery.Aggregate(AggregationQuery.Function.COUNT, null)));
+
+        AggregationResult result = aggregationService.aggregate(query);
+
+        assertTrue(result.getSources().isComplete());
+        Map<Object, Object> counts = column(result.getRows(), "dsName", "count");
+        assertEquals(10L, counts.get("agg1"));
+        assertEquals(5L, counts.get("agg2"));
+        assertEquals(3L, counts.get("agg3"));
+    }
+
+    @Test
+    public void testPartialAggregatesAreMerged() {
+        AggregationQuery query = new AggregationQuery();
+        query.setTable("orders");
+        query.setDataSources(Arrays.asList("agg1", "agg2"));
+        query.setAggregates(Arrays.asList(
+                new AggregationQuery.Aggregate(AggregationQuery.Function.COUNT, null),
+                new AggregationQuery.Aggregate(AggregationQuery.Function.SUM, "amount"),
+                new AggregationQuery.Aggregate(AggregationQuery.Function.MIN, "amount"),
+                new AggregationQuery.Aggregate(AggregationQuery.Function.MAX, "amount"),
+                new AggregationQuery.Aggregate(AggregationQuery.Function.AVG, "amount")));
+
+        AggregationResult result = aggregationService.aggregate(query);
+
+        assertEquals(1, result.getRows().size());
+        Map<String, Object> row = result.getRows().get(0);
+        assertEquals(15L, row.get("count"));
+        assertEquals(0, new BigDecimal(120).compareTo((BigDecimal) row.get("sum_amount")));
+        assertEquals(0, new BigDecimal(1).compareTo(new BigDecimal(row.get("min_amount").toString())));
+        assertEquals(0, new BigDecimal(15).compareTo(new BigDecimal(row.get("max_amount").toString())));
+        // 全局平均值是 120/15，而不是两个数据源平均值的平均
+        assertEquals(0, new BigDecimal(8).compareTo((BigDecimal) row.get("avg_amount")));
+    }
+
+    @Test
+    public void testGroupByIsPushedDownAndMergedAcrossDataSources() {
+        AggregationQuery query = new AggregationQuery();
+        query.setTable("orders");
+        query.setDataSources(Arrays.asList("agg1", "agg2"));
+        query.setGroupBy(Collections.singletonList("status"));
+        query.setAggregates(Collections.singletonList(new AggregationQuery.Aggregate(AggregationQuery.Function.COUNT, null)));
+
+        AggregationResult result = aggregationService.aggregate(query);
+
+        Map<Object, Object> counts = column(result.getRows(), "status", "count");
+        // 奇数金额为NEW，偶数金额为PAID
+        assertEquals(8L, counts.get("NEW"));
+        assertEquals(7L, counts.get("PAID"));
+    }
+
+    @Test
+    public void testFailedDataSourceMakesResultPartial() {
+        AggregationQuery query = new AggregationQuery();
+        query.setTable("orders");
+        query.setAggregates(Collections.singletonList(new AggregationQuery.Aggregate(AggregationQuery.Function.COUNT, null)));
+
+        AggregationResult result = aggregationService.aggregate(query);
+
+        assertFalse(result.getSources().isComplete());
+        assertEquals(FanOutResult.Status.FAILED, result.getSources().getResults().get(2).getStatus());
+        assertEquals(15L, result.getRows().get(0).get("count"));
+    }
+
+    @Test
+    public void testRejectsUnsafeIdentifiers() {
+        AggregationQuery query = new AggregationQuery();
+        query.setAggregates(Collections.singletonList(
+                new AggregationQuery.Aggregate(AggregationQuery.Function.SUM, "id); drop table users; --")));
+        assertThrows(IllegalArgumentException.class, () -> aggregationService.aggregate(query));
+
+        query.setAggregates(Collections.singletonList(new AggregationQuery.Aggregate(AggregationQuery.Function.MAX, null)));
+        assertThrows(IllegalArgumentException.class, () -> aggregationService.aggregate(query));
+
+        query.setAggregates(Collections.singletonList(new AggregationQuery.Aggregate(AggregationQuery.Function.COUNT, null)));
+        query.setDataSources(Collections.singletonList("missing"));
+        assertThrows(IllegalArgumentException.class, () -> aggregationService.aggregate(query));
+    }
+
+    private static Map<Object, Object> column(List<Map<String, Object>> rows, String key, String value) {
+        Map<Object, Object> values = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            values.put(row.get(key), row.get(value));
+        }
+        return values;
+    }
+
+    private void database(String dsName, String database, int firstAmount, int count, boolean orders) {
+        JdbcTemplate template = dataSources.register(dsName, database);
+        ContextRoutingDataSource.createUsersTable(template);
+        template.execute("DROP TABLE IF EXISTS orders");
+        if (orders) {
+            template.execute("CREATE TABLE orders (id BIGINT PRIMARY KEY, amount INT, status VARCHAR(16))");
+        }
+        for (int i = 0; i < count; i++) {
+            template.update("INSERT INTO users VALUES (?, ?, ?, NULL)", i + 1, "user" + i, "user" + i + "@example.com");
+            if (orders) {
+                int amount = firstAmount + i;
+                template.update("INSERT INTO orders VALUES (?, ?, ?)", i + 1, amount, amount % 2 == 1 ? "NEW" : "PAID");
+            }
+        }
+    }
+}
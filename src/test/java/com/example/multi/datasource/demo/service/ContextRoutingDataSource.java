@@ -0,0 +1,59 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 服务测试中代替DynamicDataSource的路由替身：按当前线程的数据源上下文选择登记的H2内存库
+ */
+class ContextRoutingDataSource extends AbstractDataSource {
+
+    private final Map<String, DataSource> databases = new ConcurrentHashMap<>();
+
+    /**
+     * 以数据源名称登记一个H2内存库，库在连接全部关闭后仍保留
+     * @param dsName 数据源名称
+     * @param database 内存库名称
+     * @return 直接访问该库的JdbcTemplate，用于准备数据
+     */
+    JdbcTemplate register(String dsName, String database) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        databases.put(dsName, dataSource);
+        return new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * 重建与User实体一致的空users表
+     * @param template 目标库
+     */
+    static void createUsersTable(JdbcTemplate template) {
+        template.execute("DROP TABLE IF EXISTS users");
+        template.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, name VARCHAR(64), email VARCHAR(64), "
+                + "tenant_id VARCHAR(64))");
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        String dsName = DynamicDataSource.getContext();
+        DataSource dataSource = dsName != null ? databases.get(dsName) : null;
+        if (dataSource == null) {
+            throw new SQLException("数据源 " + dsName + " 未登记");
+        }
+        return dataSource.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceDescriptor;
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.ManagedDataSource;
+import com.example.multi.datasource.demo.config.TestPools;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataSourceRegistrationServiceTest {
+
+    private DynamicDataSource previousInstance;
+
+    private RecordingDynamicDataSource dynamicDataSource;
+
+    private DataSourceRegistrationService registrationService;
+
+    @BeforeEach
+    public void setUp() {
+        previousInstance = DynamicDataSource.getInstance();
+        dynamicDataSource = new RecordingDynamicDataSource();
+        registrationService = new DataSourceRegistrationService();
+        ReflectionTestUtils.setField(registrationService, "dataSourceProperties", new DataSourceProperties());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        registrationService.shutdown();
+        dynamicDataSource.destroy();
+        ReflectionTestUtils.setField(DynamicDataSource.class, "instance", previousInstance);
+    }
+
+    @Test
+    public void testReportsEachEntryAndPublishesSuccessesInOneSwap() {
+        DataSourceDescriptor missingUrl = descriptor("missingUrl", "registrationTest_missingUrl");
+        missingUrl.setUrl(null);
+        DataSourceDescriptor badDriver = descriptor("badDriver", "registrationTest_badDriver");
+        badDriver.setDriverClassName("com.example.NoSuchDriver");
+
+        List<Map<String, Object>> results = registrationService.registerAll(Arrays.asList(
+                descriptor("ok1", "registrationTest_ok1"),
+                descriptor("ok1", "registrationTest_ok1"),
+                missingUrl,
+                badDriver,
+                descriptor("ok2", "registrationTest_ok2")), true);
+
+        // 结果与请求一一对应，失败原因逐条给出
+        assertEquals(5, results.size());
+        assertResult(results.get(0), "ok1", true, "添加成功");
+        assertResult(results.get(1), "ok1", false, "重复");
+        assertResult(results.get(2), "missingUrl", false, "不能为空");
+        assertResult(results.get(3), "badDriver", false, "初始化连接池失败");
+        assertResult(results.get(4), "ok2", true, "添加成功");
+
+        // 成功的数据源通过一次路由替换同时生效
+        assertEquals(1, dynamicDataSource.swaps.size());
+        assertEquals(new HashSet<>(Arrays.asList("ok1", "ok2")), dynamicDataSource.swaps.get(0));
+        assertTrue(dynamicDataSource.containsDataSource("ok1"));
+        assertTrue(dynamicDataSource.containsDataSource("ok2"));
+        assertFalse(dynamicDataSource.containsDataSource("badDriver"));
+        // 初始化失败的连接池已释放
+        assertEquals(urls("registrationTest_ok1", "registrationTest_ok2"), physicalUrls());
+    }
+
+    @Test
+    public void testDataSourceAddedDuringRegistrationIsNotOverwritten() {
+        // 批量注册初始化连接池期间，同名数据源通过单个添加接口先加入
+        dynamicDataSource.beforeSwap = () -> dynamicDataSource.addTargetDataSource("raced",
+                TestPools.h2("registrationTest_raced_winner"));
+
+        List<Map<String, Object>> results = registrationService.registerAll(Arrays.asList(
+                descriptor("raced", "registrationTest_raced_candidate"),
+                descriptor("other", "registrationTest_other")), true);
+
+        assertResult(results.get(0), "raced", false, "在注册期间已被添加");
+        assertResult(results.get(1), "other", true, "添加成功");
+        DataSource winner = dynamicDataSource.getDynamicDataSources().get("raced");
+        assertEquals("jdbc:h2:mem:registrationTest_raced_winner", ((ManagedDataSource) winner).getDescriptor().getUrl());
+        // 落选的连接池已关闭，不再登记在物理连接池注册表中
+        assertEquals(urls("registrationTest_raced_winner", "registrationTest_other"), physicalUrls());
+    }
+
+    @Test
+    public void testSharedPoolOfExistingDataSourceIsKept() throws Exception {
+        // 落选的候选与已加入的同名数据源指向同一个库，物理连接池仍由后者使用
+        dynamicDataSource.beforeSwap = () -> dynamicDataSource.addTargetDataSource("raced",
+                TestPools.h2("registrationTest_shared"));
+
+        List<Map<String, Object>> results = registrationService.registerAll(Arrays.asList(
+                descriptor("raced", "registrationTest_shared")), true);
+
+        assertResult(results.get(0), "raced", false, "在注册期间已被添加");
+        DataSource winner = dynamicDataSource.getDynamicDataSources().get("raced");
+        winner.getConnection().close();
+        assertEquals(urls("registrationTest_shared"), physicalUrls());
+    }
+
+    private Set<String> physicalUrls() {
+        Set<String> urls = new HashSet<>();
+        for (Map<String, Object> pool : dynamicDataSource.getPhysicalPools()) {
+            urls.add((String) pool.get("url"));
+        }
+        return urls;
+    }
+
+    private static Set<String> urls(String... databases) {
+        Set<String> urls = new HashSet<>();
+        for (String database : databases) {
+            urls.add("jdbc:h2:mem:" + database);
+        }
+        return urls;
+    }
+
+    private static void assertResult(Map<String, Object> result, String dsName, boolean success, String message) {
+        assertEquals(dsName, result.get("dsName"));
+        assertEquals(success, result.get("success"));
+        assertTrue(((String) result.get("message")).contains(message), String.valueOf(result.get("message")));
+    }
+
+    private static DataSourceDescriptor descriptor(String dsName, String database) {
+        DataSourceDescriptor descriptor = new DataSourceDescriptor();
+        descriptor.setDsName(dsName);
+        descriptor.setUrl("jdbc:h2:mem:" + database);
+        descriptor.setUsername("sa");
+        descriptor.setPassword("");
+        descriptor.setDriverClassName("org.h2.Driver");
+        descriptor.setInitialSize(1);
+        descriptor.setMinIdle(1);
+        descriptor.setMaxActive(4);
+        return descriptor;
+    }
+
+    /**
+     * 记录每次批量路由替换包含的数据源，并可在替换前模拟并发的单个添加
+     */
+    private static class RecordingDynamicDataSource extends DynamicDataSource {
+
+        private final List<Set<String>> swaps = new ArrayList<>();
+
+        private Runnable beforeSwap;
+
+        @Override
+        public Set<String> addTargetDataSources(Map<String, ? extends DataSource> dataSources) {
+            if (beforeSwap != null) {
+                beforeSwap.run();
+            }
+            Set<String> skipped = super.addTargetDataSources(dataSources);
+            Set<String> published = new HashSet<>(dataSources.keySet());
+            published.removeAll(skipped);
+            swaps.add(published);
+            return skipped;
+        }
+    }
+}
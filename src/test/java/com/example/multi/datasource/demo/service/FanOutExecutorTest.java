@@ -0,0 +1,145 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import com.example.multi.datasource.demo.config.DataSourceUnavailableException;
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.RequestDeadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FanOutExecutorTest {
+
+    private DataSourceProperties properties;
+
+    private FanOutExecutor fanOutExecutor;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        properties = new DataSourceProperties();
+        properties.setFanOutThreads(8);
+        properties.setFanOutTimeout(2000);
+        fanOutExecutor = new FanOutExecutor();
+        java.lang.reflect.Field field = FanOutExecutor.class.getDeclaredField("dataSourceProperties");
+        field.setAccessible(true);
+        field.set(fanOutExecutor, properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fanOutExecutor.shutdown();
+        RequestDeadline.clear();
+        DynamicDataSource.setReadOnly(false);
+        DynamicDataSource.clearContext();
+    }
+
+    @Test
+    public void testSourcesRunInParallel() {
+        long start = System.currentTimeMillis();
+        FanOutResult<String> result = fanOutExecutor.execute(Arrays.asList("ds1", "ds2", "ds3", "ds4"), dsName -> {
+            sleep(300);
+            return dsName;
+        });
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(result.isComplete());
+        assertEquals(Arrays.asList("ds1", "ds2", "ds3", "ds4"), result.getValues());
+        // 总耗时接近最慢的数据源，而不是所有数据源之和
+        assertTrue(elapsed < 900, "并行执行耗时 " + elapsed + " ms");
+    }
+
+    @Test
+    public void testSlowSourceTimesOutWithoutBlockingOthers() {
+        properties.setFanOutTimeout(200);
+        long start = System.currentTimeMillis();
+        FanOutResult<String> result = fanOutExecutor.execute(Arrays.asList("fast", "slow"), dsName -> {
+            if ("slow".equals(dsName)) {
+                sleep(1500);
+            }
+            return dsName;
+        });
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertFalse(result.isComplete());
+        assertEquals(Arrays.asList("fast"), result.getValues());
+        assertEquals(FanOutResult.Status.SUCCESS, result.getResults().get(0).getStatus());
+        assertEquals(FanOutResult.Status.TIMEOUT, result.getResults().get(1).getStatus());
+        assertTrue(elapsed < 1000, "超时的数据源拖慢了整体耗时 " + elapsed + " ms");
+    }
+
+    @Test
+    public void testFailuresAreReportedPerSource() {
+        FanOutResult<String> result = fanOutExecutor.execute(Arrays.asList("ok", "broken", "shed"), dsName -> {
+            if ("broken".equals(dsName)) {
+                throw new IllegalStateException("查询失败");
+            }
+            if ("shed".equals(dsName)) {
+                throw new DataSourceUnavailableException(dsName, "并发超限", 100);
+            }
+            return dsName;
+        });
+
+        assertEquals(1, result.getSuccessCount());
+        assertEquals(FanOutResult.Status.FAILED, result.getResults().get(1).getStatus());
+        assertEquals("查询失败", result.getResults().get(1).getError());
+        assertEquals(FanOutResult.Status.REJECTED, result.getResults().get(2).getStatus());
+    }
+
+    @Test
+    public void testContextIsPropagatedToWorkers() {
+        Map<String, String> contexts = new ConcurrentHashMap<>();
+        Map<String, Boolean> readOnly = new ConcurrentHashMap<>();
+        Map<String, Long> deadlines = new ConcurrentHashMap<>();
+        DynamicDataSource.setReadOnly(true);
+        RequestDeadline.start(500);
+        Long callerDeadline = RequestDeadline.current();
+
+        FanOutResult<String> result = fanOutExecutor.execute(Arrays.asList("ds1", "ds2"), dsName -> {
+            contexts.put(dsName, DynamicDataSource.getContext());
+            readOnly.put(dsName, DynamicDataSource.isReadOnly());
+            deadlines.put(dsName, RequestDeadline.current());
+            return dsName;
+        });
+
+        assertTrue(result.isComplete());
+        assertEquals("ds1", contexts.get("ds1"));
+        assertEquals("ds2", contexts.get("ds2"));
+        assertTrue(readOnly.get("ds1"));
+        // 请求截止时间早于单源超时，工作线程使用请求截止时间
+        assertEquals(callerDeadline, deadlines.get("ds1"));
+
+        // 工作线程执行结束后清理上下文，后续任务不会继承
+        RequestDeadline.clear();
+        DynamicDataSource.setReadOnly(false);
+        FanOutResult<Boolean> next = fanOutExecutor.execute(Arrays.asList("ds1", "ds2"),
+                dsName -> DynamicDataSource.isReadOnly());
+        assertEquals(Arrays.asList(false, false), next.getValues());
+    }
+
+    @Test
+    public void testExpiredDeadlineSkipsAllSources() {
+        RequestDeadline.start(1);
+        sleep(20);
+
+        FanOutResult<String> result = fanOutExecutor.execute(Arrays.asList("ds1", "ds2"), dsName -> dsName);
+
+        assertEquals(0, result.getSuccessCount());
+        for (FanOutResult.SourceResult<String> source : result.getResults()) {
+            assertEquals(FanOutResult.Status.TIMEOUT, source.getStatus());
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
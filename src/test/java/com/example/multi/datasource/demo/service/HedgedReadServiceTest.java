@@ -0,0 +1,129 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import com.example.multi.datasource.demo.config.ManagedDataSource;
+import com.example.multi.datasource.demo.config.ReplicaBalancers;
+import com.example.multi.datasource.demo.config.ReplicaGroupDataSource;
+import com.example.multi.datasource.demo.config.TestPools;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HedgedReadServiceTest {
+
+    // 慢副本上每次查询的额外耗时(ms)
+    private static volatile long stallMillis;
+
+    private ManagedDataSource primary;
+
+    private ManagedDataSource slow;
+
+    private ManagedDataSource fast;
+
+    private HedgedReadService hedgedReadService;
+
+    private JdbcTemplate template;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        stallMillis = 0;
+        primary = pool("primary", "noStall");
+        slow = pool("slow", "stall");
+        fast = pool("fast", "noStall");
+        ReplicaGroupDataSource group = new ReplicaGroupDataSource("hedgeTest", primary, Arrays.asList(slow, fast),
+                ReplicaBalancers.of(ReplicaBalancers.ROUND_ROBIN));
+        template = new JdbcTemplate(group);
+
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setHedgeEnabled(true);
+        properties.setHedgePercentile(95);
+        properties.setHedgeMinDelay(20);
+        properties.setHedgeBudgetRatio(0.5);
+        hedgedReadService = new HedgedReadService();
+        java.lang.reflect.Field field = HedgedReadService.class.getDeclaredField("dataSourceProperties");
+        field.setAccessible(true);
+        field.set(hedgedReadService, properties);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        stallMillis = 0;
+        hedgedReadService.shutdown();
+        // 等待被取消的慢查询结束
+        Thread.sleep(500);
+        primary.close();
+        slow.close();
+        fast.close();
+    }
+
+    @Test
+    public void testHedgeAvoidsStalledReplica() {
+        // 建立近期耗时窗口
+        for (int i = 0; i < 40; i++) {
+            assertNotEquals("primary", read());
+        }
+
+        stallMillis = 400;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            assertEquals("fast", read());
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(300), "read was not hedged");
+        }
+
+        Map<String, Object> stats = hedgedReadService.getStats();
+        assertTrue((Long) stats.get("hedges") > 0);
+        assertTrue((Long) stats.get("hedgeWins") > 0);
+    }
+
+    @Test
+    public void testBudgetCapsHedges() throws Exception {
+        java.lang.reflect.Field field = HedgedReadService.class.getDeclaredField("dataSourceProperties");
+        field.setAccessible(true);
+        ((DataSourceProperties) field.get(hedgedReadService)).setHedgeBudgetRatio(0.01);
+
+        for (int i = 0; i < 40; i++) {
+            read();
+        }
+        stallMillis = 100;
+        for (int i = 0; i < 10; i++) {
+            read();
+        }
+
+        Map<String, Object> stats = hedgedReadService.getStats();
+        assertEquals(0L, stats.get("hedges"));
+        assertTrue((Long) stats.get("budgetExhausted") > 0);
+    }
+
+    private String read() {
+        return hedgedReadService.read("hedgeTest",
+                () -> template.queryForObject("SELECT name FROM node WHERE PAUSE() = 0", String.class));
+    }
+
+    public static int stall() throws InterruptedException {
+        long millis = stallMillis;
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+        return 0;
+    }
+
+    public static int noStall() {
+        return 0;
+    }
+
+    private static ManagedDataSource pool(String name, String pauseMethod) {
+        DataSourceProperties.DruidDataSourceProperties descriptor = TestPools.h2("hedgeTest_" + name);
+        descriptor.setMaxActive(8);
+        ManagedDataSource dataSource = new ManagedDataSource(name, descriptor);
+        new JdbcTemplate(dataSource).execute(
+                "CREATE ALIAS PAUSE FOR \"" + HedgedReadServiceTest.class.getName() + "." + pauseMethod + "\"");
+        return TestPools.withNodeTable(dataSource);
+    }
+}
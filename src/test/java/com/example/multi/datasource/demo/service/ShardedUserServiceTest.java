@@ -0,0 +1,159 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.example.multi.datasource.demo.config.ShardRings;
+import com.example.multi.datasource.demo.config.TestPools;
+import com.example.multi.datasource.demo.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ShardedUserServiceTest {
+
+    private DynamicDataSource previousInstance;
+
+    private DynamicDataSource dynamicDataSource;
+
+    private ShardRings shardRings;
+
+    private UserService userService;
+
+    private ShardedUserService shardedUserService;
+
+    @BeforeEach
+    public void setUp() {
+        previousInstance = DynamicDataSource.getInstance();
+        dynamicDataSource = new DynamicDataSource();
+        dynamicDataSource.addTargetDataSource("shard1", TestPools.h2("shardedUserServiceTest_shard1"));
+        dynamicDataSource.addTargetDataSource("shard2", TestPools.h2("shardedUserServiceTest_shard2"));
+        dynamicDataSource.addTargetDataSource("shard3", TestPools.h2("shardedUserServiceTest_shard3"));
+        shardRings = new ShardRings();
+        shardRings.createGroup("users", Arrays.asList("shard1", "shard2"));
+
+        userService = mock(UserService.class);
+        shardedUserService = new ShardedUserService();
+        ReflectionTestUtils.setField(shardedUserService, "shardRings", shardRings);
+        ReflectionTestUtils.setField(shardedUserService, "userService", userService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dynamicDataSource.destroy();
+        ReflectionTestUtils.setField(DynamicDataSource.class, "instance", previousInstance);
+    }
+
+    @Test
+    public void testSaveAndFindUseRoutedShard() {
+        String email = "alice@example.com";
+        String dsName = shardRings.route("users", email);
+        User user = new User("Alice", email);
+        when(userService.saveToDynamicDataSource("Alice", email, dsName)).thenReturn(user);
+
+        ShardedUserService.Placement saved = shardedUserService.save("users", "Alice", email);
+        assertEquals(dsName, saved.getDsName());
+        assertSame(user, saved.getUser());
+
+        when(userService.getUserByEmailFromDynamicDataSource(email, dsName)).thenReturn(user);
+        ShardedUserService.Placement found = shardedUserService.findByEmail("users", email);
+        assertEquals(dsName, found.getDsName());
+        assertSame(user, found.getUser());
+        // 保存前检查一次，查询时在当前归属中找到后不再查询其他分片
+        verify(userService, times(2)).getUserByEmailFromDynamicDataSource(anyString(), anyString());
+    }
+
+    @Test
+    public void testSaveRejectsEmailStillOnPreviousShard() {
+        shardRings.addShard("users", "shard3");
+        String email = emailRoutedTo("shard3");
+        String previous = shardRings.readRoute("users", email).get(1);
+        when(userService.getUserByEmailFromDynamicDataSource(email, previous)).thenReturn(new User("Dave", email));
+
+        // 尚未迁移的用户不能在新归属中再写入一份
+        assertThrows(IllegalArgumentException.class, () -> shardedUserService.save("users", "Dave", email));
+        verify(userService, never()).saveToDynamicDataSource(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void testMigrateMovesUsersToCurrentOwnerAndRetiresGenerations() {
+        shardRings.addShard("users", "shard3");
+        String moved = emailRoutedTo("shard3");
+        String previous = shardRings.readRoute("users", moved).get(1);
+        String stayed = emailRoutedTo(previous);
+        User movedUser = new User("Erin", moved);
+        movedUser.setId(1L);
+        User stayedUser = new User("Frank", stayed);
+        stayedUser.setId(2L);
+        when(userService.getAllUsersFromDynamicDataSource(previous)).thenReturn(Arrays.asList(movedUser, stayedUser));
+
+        assertEquals(1, shardedUserService.migrate("users"));
+
+        // 先写入当前归属再从原分片删除，已在当前归属的用户不动
+        verify(userService).saveToDynamicDataSource("Erin", moved, "shard3");
+        verify(userService).deleteUserFromDynamicDataSource(1L, previous);
+        verify(userService, never()).deleteUserFromDynamicDataSource(2L, previous);
+        assertTrue(shardRings.generations("users").isEmpty());
+        assertEquals(Collections.singletonList("shard3"), shardRings.readRoute("users", moved));
+        // 没有历代环时无需迁移
+        assertEquals(0, shardedUserService.migrate("users"));
+    }
+
+    @Test
+    public void testFindFallsBackToPreviousShard() {
+        shardRings.addShard("users", "shard3");
+        String email = emailRoutedTo("shard3");
+        List<String> route = shardRings.readRoute("users", email);
+        User user = new User("Bob", email);
+        when(userService.getUserByEmailFromDynamicDataSource(email, route.get(1))).thenReturn(user);
+
+        // 尚未迁移的用户仍从变更前的分片读到
+        ShardedUserService.Placement found = shardedUserService.findByEmail("users", email);
+        assertEquals(route.get(1), found.getDsName());
+        verify(userService).getUserByEmailFromDynamicDataSource(email, "shard3");
+
+        assertNull(shardedUserService.findByEmail("users", "nobody@example.com"));
+    }
+
+    @Test
+    public void testRejectsRouteOutsideRoutingTable() {
+        String email = "carol@example.com";
+        String dsName = shardRings.route("users", email);
+        // 绕过删除事件直接移除数据源，分片组中仍留有该分片
+        dynamicDataSource.removeTargetDataSource(dsName);
+
+        assertThrows(IllegalStateException.class, () -> shardedUserService.save("users", "Carol", email));
+        assertThrows(IllegalStateException.class, () -> shardedUserService.findByEmail("users", email));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    public void testSkipsRemovedPreviousShard() {
+        shardRings.addShard("users", "shard3");
+        String email = emailRoutedTo("shard3");
+        String previous = shardRings.readRoute("users", email).get(1);
+        dynamicDataSource.removeTargetDataSource(previous);
+
+        // 变更前的分片已不在路由表中，只读当前归属，不会落到默认数据源
+        assertNull(shardedUserService.findByEmail("users", email));
+        verify(userService).getUserByEmailFromDynamicDataSource(email, "shard3");
+        verify(userService, never()).getUserByEmailFromDynamicDataSource(email, previous);
+    }
+
+    private String emailRoutedTo(String dsName) {
+        for (int i = 0; i < 10000; i++) {
+            String email = "user" + i + "@example.com";
+            if (dsName.equals(shardRings.route("users", email))) {
+                return email;
+            }
+        }
+        throw new AssertionError("没有路由到 " + dsName + " 的邮箱");
+    }
+}
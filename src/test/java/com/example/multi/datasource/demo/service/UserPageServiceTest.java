@@ -0,0 +1,128 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserPageServiceTest {
+
+    private static final List<String> SHARDS = new ArrayList<>();
+
+    static {
+        SHARDS.add("page1");
+        SHARDS.add("page2");
+        SHARDS.add("page3");
+    }
+
+    private final ContextRoutingDataSource dataSources = new ContextRoutingDataSource();
+
+    private FanOutExecutor fanOutExecutor;
+
+    private UserPageService userPageService;
+
+    @BeforeEach
+    public void setUp() {
+        // 各数据源的id交错，名称在数据源之间交叉分布
+        database("page1", "userPageTest1", 1, 3, 20);
+        database("page2", "userPageTest2", 2, 3, 20);
+        database("page3", "userPageTest3", 3, 3, 5);
+
+        DataSourceProperties properties = new DataSourceProperties();
+        fanOutExecutor = new FanOutExecutor();
+        ReflectionTestUtils.setField(fanOutExecutor, "dataSourceProperties", properties);
+        userPageService = new UserPageService() {
+            @Override
+            List<String> dataSourceNames() {
+                return SHARDS;
+            }
+        };
+        ReflectionTestUtils.setField(userPageService, "fanOutExecutor", fanOutExecutor);
+        ReflectionTestUtils.setField(userPageService, "jdbcTemplate", new JdbcTemplate(dataSources));
+        ReflectionTestUtils.setField(userPageService, "objectMapper", new ObjectMapper());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fanOutExecutor.shutdown();
+    }
+
+    @Test
+    public void testPagesCoverAllRowsInGlobalIdOrder() {
+        List<Map<String, Object>> all = pageThrough("id", 7);
+
+        assertEquals(45, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue((Long) all.get(i - 1).get("id") < (Long) all.get(i).get("id"));
+        }
+    }
+
+    @Test
+    public void testPagesCoverAllRowsInGlobalNameOrder() {
+        List<Map<String, Object>> all = pageThrough("name", 4);
+
+        assertEquals(45, all.size());
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < all.size(); i++) {
+            assertTrue(seen.add(all.get(i).get("dsName") + ":" + all.get(i).get("id")), "重复的行");
+            if (i > 0) {
+                assertTrue(((String) all.get(i - 1).get("name")).compareTo((String) all.get(i).get("name")) <= 0);
+            }
+        }
+    }
+
+    @Test
+    public void testExhaustedShardsAreDroppedFromCursor() {
+        // page3只有5行，第一页取完后不再出现在游标中
+        UserPage first = userPageService.getUsersPage("id", 20, null);
+        UserPage second = userPageService.getUsersPage(null, 20, first.getNextCursor());
+
+        assertEquals(2, second.getSources().getResults().size());
+    }
+
+    @Test
+    public void testRejectsInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> userPageService.getUsersPage("password", 10, null));
+        assertThrows(IllegalArgumentException.class, () -> userPageService.getUsersPage("id", 0, null));
+        assertThrows(IllegalArgumentException.class, () -> userPageService.getUsersPage("id", 10, "not-a-cursor"));
+
+        String cursor = userPageService.getUsersPage("id", 5, null).getNextCursor();
+        assertThrows(IllegalArgumentException.class, () -> userPageService.getUsersPage("name", 5, cursor));
+    }
+
+    private List<Map<String, Object>> pageThrough(String sort, int limit) {
+        List<Map<String, Object>> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            UserPage page = userPageService.getUsersPage(sort, limit, cursor);
+            assertTrue(page.getSources().isComplete());
+            assertTrue(page.getUsers().size() <= limit);
+            all.addAll(page.getUsers());
+            cursor = page.getNextCursor();
+            assertTrue(++pages < 100, "分页没有结束");
+        } while (cursor != null);
+        return all;
+    }
+
+    private void database(String dsName, String database, int firstId, int step, int count) {
+        JdbcTemplate template = dataSources.register(dsName, database);
+        ContextRoutingDataSource.createUsersTable(template);
+        for (int i = 0; i < count; i++) {
+            long id = firstId + (long) i * step;
+            template.update("INSERT INTO users VALUES (?, ?, ?, NULL)", id, "user" + (char) ('a' + (id * 7) % 26),
+                    "user" + id + "@example.com");
+        }
+    }
+}
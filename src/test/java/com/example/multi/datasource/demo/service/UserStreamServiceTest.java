@@ -0,0 +1,115 @@
+package com.example.multi.datasource.demo.service;
+
+import com.example.multi.datasource.demo.config.DataSourceProperties;
+import com.example.multi.datasource.demo.config.DynamicDataSource;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserStreamServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ContextRoutingDataSource dataSources = new ContextRoutingDataSource();
+
+    private UserStreamService userStreamService;
+
+    @BeforeEach
+    public void setUp() {
+        database("ds1", "userStreamTest1", 1000);
+        database("ds2", "userStreamTest2", 10);
+        // 没有users表的数据源，读取失败
+        database("broken", "userStreamTestBroken", -1);
+
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setStreamFetchSize(100);
+        properties.setStreamFlushRows(50);
+        userStreamService = new UserStreamService();
+        ReflectionTestUtils.setField(userStreamService, "jdbcTemplate", new JdbcTemplate(dataSources));
+        ReflectionTestUtils.setField(userStreamService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(userStreamService, "dataSourceProperties", properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DynamicDataSource.setReadOnly(false);
+        DynamicDataSource.clearContext();
+    }
+
+    @Test
+    public void testWritesOneLinePerUserAndSourceStatus() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        userStreamService.writeAllUsers(out, Arrays.asList("ds1", "broken", "ds2"));
+
+        List<JsonNode> lines = parseLines(out);
+        assertEquals(1000 + 10 + 3, lines.size());
+        assertEquals("user", lines.get(0).get("type").asText());
+        assertEquals("ds1", lines.get(0).get("dsName").asText());
+        assertEquals(1, lines.get(0).get("id").asLong());
+
+        JsonNode ds1Status = lines.get(1000);
+        assertEquals("source", ds1Status.get("type").asText());
+        assertEquals("SUCCESS", ds1Status.get("status").asText());
+        assertEquals(1000, ds1Status.get("count").asLong());
+
+        // 单个数据源失败不影响后续数据源的输出
+        JsonNode brokenStatus = lines.get(1001);
+        assertEquals("broken", brokenStatus.get("dsName").asText());
+        assertEquals("FAILED", brokenStatus.get("status").asText());
+        assertEquals(10, lines.get(lines.size() - 1).get("count").asLong());
+
+        assertNull(DynamicDataSource.getContext());
+        assertFalse(DynamicDataSource.isReadOnly());
+    }
+
+    @Test
+    public void testClientDisconnectStopsReading() {
+        OutputStream disconnected = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++written > 2048) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+
+        assertThrows(IOException.class,
+                () -> userStreamService.writeAllUsers(disconnected, Arrays.asList("ds1", "ds2")));
+        assertNull(DynamicDataSource.getContext());
+    }
+
+    private List<JsonNode> parseLines(ByteArrayOutputStream out) throws IOException {
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private void database(String dsName, String database, int users) {
+        JdbcTemplate template = dataSources.register(dsName, database);
+        if (users >= 0) {
+            ContextRoutingDataSource.createUsersTable(template);
+            for (int i = 1; i <= users; i++) {
+                template.update("INSERT INTO users VALUES (?, ?, ?, NULL)", i, "user" + i, "user" + i + "@example.com");
+            }
+        }
+    }
+}